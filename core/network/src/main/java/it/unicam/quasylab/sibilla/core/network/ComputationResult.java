@@ -25,6 +25,7 @@ package it.unicam.quasylab.sibilla.core.network;
 
 import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
 
 import java.io.Externalizable;
 import java.io.IOException;
@@ -35,6 +36,9 @@ import java.util.List;
 
 /**
  * Class that stores the results of a simulation executed by a slave.
+ * Results consist of the statistics collected by the slave in a local
+ * {@link SamplingFunction}, that are merged by the master in the one of the simulation,
+ * and possibly of the list of the generated trajectories.
  *
  * @param <S> The {@link State} of the simulation model.
  * @author Belenchia Matteo
@@ -49,6 +53,23 @@ public class ComputationResult<S extends State> implements Externalizable {
      */
     private List<Trajectory<S>> results;
 
+    /**
+     * Number of simulation tasks whose results are stored in this object.
+     */
+    private int completedTasks;
+
+    /**
+     * Index of the first replica whose results are stored in this object. The results refer to
+     * the replicas from this index to <code>firstReplica + completedTasks - 1</code>. It is negative
+     * when the replicas are not known or not consecutive.
+     */
+    private int firstReplica = -1;
+
+    /**
+     * Statistics collected while executing the tasks.
+     */
+    private SamplingFunction<S> statistics;
+
     public ComputationResult() {
     }
 
@@ -59,6 +80,33 @@ public class ComputationResult<S extends State> implements Externalizable {
      */
     public ComputationResult(List<Trajectory<S>> results) {
         this.results = new LinkedList<>(results);
+        this.completedTasks = results.size();
+    }
+
+    /**
+     * Creates a new ComputationResult object containing the statistics collected while executing
+     * the given number of tasks
+     *
+     * @param completedTasks number of executed tasks
+     * @param statistics     sampling function where the data of the executed tasks have been collected
+     */
+    public ComputationResult(int completedTasks, SamplingFunction<S> statistics) {
+        this.results = new LinkedList<>();
+        this.completedTasks = completedTasks;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Creates a new ComputationResult object containing the statistics collected while executing
+     * the given range of replicas
+     *
+     * @param firstReplica   index of the first executed replica
+     * @param completedTasks number of executed replicas
+     * @param statistics     sampling function where the data of the executed replicas have been collected
+     */
+    public ComputationResult(int firstReplica, int completedTasks, SamplingFunction<S> statistics) {
+        this(completedTasks, statistics);
+        this.firstReplica = firstReplica;
     }
 
     /**
@@ -70,12 +118,55 @@ public class ComputationResult<S extends State> implements Externalizable {
         return results;
     }
 
+    /**
+     * Returns the number of tasks whose results are stored in this object
+     *
+     * @return number of executed tasks
+     */
+    public int getCompletedTasks() {
+        return completedTasks;
+    }
+
+    /**
+     * Returns the index of the first replica whose results are stored in this object
+     *
+     * @return index of the first executed replica, or a negative value if the executed replicas are not known
+     */
+    public int getFirstReplica() {
+        return firstReplica;
+    }
+
+    /**
+     * Returns the statistics collected while executing the tasks
+     *
+     * @return the sampling function with the collected data or <code>null</code> if no statistics are available
+     */
+    public SamplingFunction<S> getStatistics() {
+        return statistics;
+    }
+
     public void add(ComputationResult<S> otherResults) {
+        if (this.completedTasks == 0) {
+            this.firstReplica = otherResults.firstReplica;
+        } else if (this.firstReplica < 0 || this.firstReplica + this.completedTasks != otherResults.firstReplica) {
+            this.firstReplica = -1;
+        }
         this.results.addAll(otherResults.results);
+        this.completedTasks += otherResults.completedTasks;
+        if (otherResults.statistics != null) {
+            if (this.statistics == null) {
+                this.statistics = otherResults.statistics;
+            } else {
+                this.statistics.merge(otherResults.statistics);
+            }
+        }
     }
 
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(completedTasks);
+        out.writeInt(firstReplica);
+        out.writeObject(statistics);
         out.writeInt(results.size());
         for (Trajectory trajectoryToWrite : results) {
             out.writeObject(trajectoryToWrite);
@@ -84,6 +175,9 @@ public class ComputationResult<S extends State> implements Externalizable {
 
     @Override
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        this.completedTasks = in.readInt();
+        this.firstReplica = in.readInt();
+        this.statistics = (SamplingFunction<S>) in.readObject();
         LinkedList<Trajectory<S>> trajectories = new LinkedList<>();
         int numberOfTrajectories = in.readInt();
         for (int i = 0; i < numberOfTrajectories; i++) {
@@ -91,4 +185,4 @@ public class ComputationResult<S extends State> implements Externalizable {
         }
         this.results = trajectories;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network;
+
+/**
+ * Command exchanged between the hosts of the network. Each command is identified on the wire by
+ * a one-byte opcode, that must be unique among all the commands and must never change, since it
+ * is part of the protocol.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public interface NetworkCommand {
+
+    /**
+     * @return the opcode identifying the command on the wire
+     */
+    byte getOpcode();
+
+}
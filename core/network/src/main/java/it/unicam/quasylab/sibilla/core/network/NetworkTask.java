@@ -24,13 +24,44 @@
 package it.unicam.quasylab.sibilla.core.network;
 
 import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializationBuffer;
+import it.unicam.quasylab.sibilla.core.simulator.DefaultRandomGenerator;
 import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationUnit;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
- * Class that stores a list of tasks sent through network.
+ * Class that describes a group of tasks sent through network. Tasks are not sent
+ * one by one: a NetworkTask only contains the {@link SimulationUnit} to simulate,
+ * the range of replicas to execute and the seed of the simulation. The random
+ * generator of each replica is derived from the seed and from the replica index,
+ * so that the result of a replica does not depend on the slave executing it.
+ * The sampling function used by the slave to collect the statistics of the
+ * tasks is also sent.
+ * <p>
+ * The unit and the sampling function do not change between the batches of a
+ * simulation, so they are sent as a {@link Payload} that the master encodes once
+ * per simulation. Each batch carries the seed, the range of replicas and the hash
+ * of the encoded payload; the payload bytes are only added the first time the
+ * payload is sent on a connection. The master records the payloads sent on each
+ * connection in the set returned by {@link #newSentPayloads()} and the slave keeps
+ * the decoded ones in the cache returned by {@link #newPayloadCache()}: both evict
+ * their oldest entry when they exceed {@link #PAYLOAD_CACHE_SIZE}, so that, since
+ * batches are received in the order they are sent, the master knows which payloads
+ * the slave still has.
  *
  * @param <S> The {@link State} of the simulation model.
  * @author Belenchia Matteo
@@ -41,26 +72,245 @@ public class NetworkTask<S extends State> implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * List of tasks to be executed by a slave server
+     * Maximum number of payloads kept by the caches returned by {@link #newPayloadCache()} and
+     * {@link #newSentPayloads()}
      */
-    private final List<SimulationTask<S>> tasks;
+    public static final int PAYLOAD_CACHE_SIZE = 64;
 
     /**
-     * Creates a NetworkTask object from a list of tasks
+     * Simulation unit (model, initial state and deadline) of the tasks
+     */
+    private final SimulationUnit<S> unit;
+
+    /**
+     * Empty sampling function used to collect the statistics of the tasks
+     */
+    private final SamplingFunction<S> samplingFunction;
+
+    /**
+     * Seed of the simulation
+     */
+    private final long seed;
+
+    /**
+     * Index of the first replica to execute
+     */
+    private final int firstReplica;
+
+    /**
+     * Number of replicas to execute
+     */
+    private final int replicas;
+
+    /**
+     * Creates a NetworkTask object describing a range of replicas of a simulation unit
+     *
+     * @param unit             simulation unit of the tasks
+     * @param samplingFunction empty sampling function used to collect the statistics of the tasks
+     * @param seed             seed of the simulation
+     * @param firstReplica     index of the first replica to execute
+     * @param replicas         number of replicas to execute
+     */
+    public NetworkTask(SimulationUnit<S> unit, SamplingFunction<S> samplingFunction, long seed, int firstReplica,
+                       int replicas) {
+        this.unit = unit;
+        this.samplingFunction = samplingFunction;
+        this.seed = seed;
+        this.firstReplica = firstReplica;
+        this.replicas = replicas;
+    }
+
+    /**
+     * Returns the seed of the random generator used to simulate a given replica
      *
-     * @param tasks list of tasks to be executed by a slave server
+     * @param seed    seed of the simulation
+     * @param replica index of the replica
+     * @return the seed of the replica
      */
-    public NetworkTask(List<SimulationTask<S>> tasks) {
-        this.tasks = tasks;
+    public static long replicaSeed(long seed, int replica) {
+        long z = seed + (replica + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
-     * Returns the list of tasks to be executed by a slave server
+     * Returns the tasks to be executed by a slave server. Each invocation creates
+     * new tasks, each one with its own random generator.
      *
      * @return list of tasks to be executed by a slave server
      */
     public List<SimulationTask<S>> getTasks() {
+        List<SimulationTask<S>> tasks = new ArrayList<>(replicas);
+        for (int i = 0; i < replicas; i++) {
+            tasks.add(getTask(firstReplica + i));
+        }
         return tasks;
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns the task executing the given replica
+     *
+     * @param replica index of the replica
+     * @return the task executing the given replica
+     */
+    public SimulationTask<S> getTask(int replica) {
+        RandomGenerator random = new DefaultRandomGenerator();
+        random.setSeed(replicaSeed(seed, replica));
+        return new SimulationTask<>(replica, random, unit);
+    }
+
+    /**
+     * Returns a new sampling function where the statistics of the tasks can be collected.
+     * Each invocation returns a different function, so that executors can collect the
+     * results of different subsets of tasks separately.
+     *
+     * @return an empty sampling function used to collect the statistics of the tasks
+     */
+    public SamplingFunction<S> getSamplingFunction() {
+        return samplingFunction.getEmptyCopy();
+    }
+
+    public SimulationUnit<S> getUnit() {
+        return unit;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getFirstReplica() {
+        return firstReplica;
+    }
+
+    /**
+     * Returns the number of replicas to execute
+     *
+     * @return number of replicas to execute
+     */
+    public int getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Returns the part of this group of tasks that is shared by all the batches of the simulation
+     *
+     * @return the simulation unit and the sampling function of the tasks
+     */
+    public Payload<S> getPayload() {
+        return new Payload<>(unit, samplingFunction);
+    }
+
+    /**
+     * Returns the data sent to a slave server for this group of tasks: the seed, the range of replicas and the
+     * hash of the payload, followed by the encoded payload if the slave does not already have it
+     *
+     * @param payloadHash    hash of the encoded payload
+     * @param encodedPayload payload of the simulation, serialized and compressed, or null if it has already
+     *                       been sent on the connection
+     * @return the data to send to the slave server
+     */
+    public byte[] encode(String payloadHash, byte[] encodedPayload) {
+        byte[] hash = payloadHash.getBytes(StandardCharsets.US_ASCII);
+        SerializationBuffer buffer = SerializationBuffer.local().clear().putLong(seed).putVarInt(firstReplica)
+                .putVarInt(replicas).putVarInt(hash.length).putBytes(hash);
+        if (encodedPayload == null) {
+            return buffer.putVarInt(0).toByteArray();
+        }
+        return buffer.putVarInt(encodedPayload.length).putBytes(encodedPayload).toByteArray();
+    }
+
+    /**
+     * Decodes a group of tasks received by a slave server. The payload is decoded and added to the cache only
+     * when its bytes are received, namely the first time it is sent on the connection.
+     *
+     * @param data           data received by the slave server
+     * @param payloads       cache of the payloads already decoded, indexed by their hash
+     * @param payloadDecoder function that decompresses and deserializes an encoded payload
+     * @return the group of tasks to execute
+     * @throws IllegalStateException if the payload is neither received nor in the cache
+     */
+    public static NetworkTask<?> decode(byte[] data, Map<String, Payload<?>> payloads,
+                                        Function<byte[], Payload<?>> payloadDecoder) {
+        ByteBuffer source = ByteBuffer.wrap(data);
+        long seed = source.getLong();
+        int firstReplica = SerializationBuffer.getVarInt(source);
+        int replicas = SerializationBuffer.getVarInt(source);
+        byte[] hash = new byte[SerializationBuffer.getVarInt(source)];
+        source.get(hash);
+        String payloadHash = new String(hash, StandardCharsets.US_ASCII);
+        int length = SerializationBuffer.getVarInt(source);
+        Payload<?> payload;
+        if (length > 0) {
+            payload = payloadDecoder.apply(Arrays.copyOfRange(data, source.position(), source.position() + length));
+            payloads.put(payloadHash, payload);
+        } else {
+            payload = payloads.get(payloadHash);
+            if (payload == null) {
+                throw new IllegalStateException(String.format("Payload %s has not been received", payloadHash));
+            }
+        }
+        return payload.createTask(seed, firstReplica, replicas);
+    }
+
+    /**
+     * Returns a cache of decoded payloads that keeps the {@link #PAYLOAD_CACHE_SIZE} most recently received ones
+     *
+     * @return an empty cache of decoded payloads
+     */
+    public static Map<String, Payload<?>> newPayloadCache() {
+        return Collections.synchronizedMap(newBoundedMap());
+    }
+
+    /**
+     * Returns a set recording the hashes of the {@link #PAYLOAD_CACHE_SIZE} payloads most recently sent on a
+     * connection, that are the ones still in the cache of the slave server
+     *
+     * @return an empty set of payload hashes
+     */
+    public static Set<String> newSentPayloads() {
+        return Collections.synchronizedSet(Collections.newSetFromMap(newBoundedMap()));
+    }
+
+    private static <V> Map<String, V> newBoundedMap() {
+        return new LinkedHashMap<>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > PAYLOAD_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Simulation unit and empty sampling function shared by all the batches of a simulation
+     *
+     * @param <S> The {@link State} of the simulation model.
+     */
+    public static final class Payload<S extends State> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final SimulationUnit<S> unit;
+
+        private final SamplingFunction<S> samplingFunction;
+
+        private Payload(SimulationUnit<S> unit, SamplingFunction<S> samplingFunction) {
+            this.unit = unit;
+            this.samplingFunction = samplingFunction;
+        }
+
+        /**
+         * Returns a group of tasks of this payload
+         *
+         * @param seed         seed of the simulation
+         * @param firstReplica index of the first replica to execute
+         * @param replicas     number of replicas to execute
+         * @return the group of tasks
+         */
+        public NetworkTask<S> createTask(long seed, int firstReplica, int replicas) {
+            return new NetworkTask<>(unit, samplingFunction, seed, firstReplica, replicas);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Points of the parameter space of a model that are simulated by a single distributed
+ * simulation. Each point assigns a value to every parameter of the sweep: the model of a
+ * point is obtained by setting these values in the {@link ModelDefinition} of the model.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class ParameterSweep implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Names of the parameters of the sweep
+     */
+    private final String[] parameters;
+
+    /**
+     * Values assigned to the parameters by each point of the sweep
+     */
+    private final List<double[]> points;
+
+    /**
+     * Creates a sweep over the given list of points
+     *
+     * @param parameters names of the parameters of the sweep
+     * @param points     values assigned to the parameters by each point, in the same order of the parameters
+     */
+    public ParameterSweep(String[] parameters, List<double[]> points) {
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("A parameter sweep requires at least one point");
+        }
+        for (double[] point : points) {
+            if (point.length != parameters.length) {
+                throw new IllegalArgumentException(String.format("A point of %d values does not match the %d parameters %s",
+                        point.length, parameters.length, Arrays.toString(parameters)));
+            }
+        }
+        this.parameters = parameters.clone();
+        this.points = points.stream().map(double[]::clone).collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a sweep over the grid obtained by combining the values of each parameter. The points
+     * are ordered so that the value of the last parameter varies fastest.
+     *
+     * @param values values of each parameter, in the order in which the parameters appear in the points
+     * @return the sweep over the grid
+     */
+    public static ParameterSweep grid(LinkedHashMap<String, double[]> values) {
+        String[] parameters = values.keySet().toArray(new String[0]);
+        List<double[]> points = new ArrayList<>();
+        points.add(new double[0]);
+        for (double[] parameterValues : values.values()) {
+            List<double[]> extended = new ArrayList<>(points.size() * parameterValues.length);
+            for (double[] point : points) {
+                for (double value : parameterValues) {
+                    double[] next = Arrays.copyOf(point, point.length + 1);
+                    next[point.length] = value;
+                    extended.add(next);
+                }
+            }
+            points = extended;
+        }
+        return new ParameterSweep(parameters, points);
+    }
+
+    /**
+     * Checks that all the parameters of the sweep are parameters of the given model definition
+     *
+     * @param definition the definition of the swept model
+     * @return this sweep
+     * @throws IllegalArgumentException if a parameter is not defined by the model
+     */
+    public ParameterSweep validate(ModelDefinition<?> definition) {
+        Set<String> defined = new HashSet<>(Arrays.asList(definition.getModelParameters()));
+        for (String parameter : parameters) {
+            if (!defined.contains(parameter)) {
+                throw new IllegalArgumentException(String.format("Parameter %s is not defined by the model %s",
+                        parameter, definition.getClass().getName()));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets in the given model definition the values assigned to the parameters by a point of the sweep
+     *
+     * @param definition the definition of the swept model
+     * @param point      index of the point
+     */
+    public void apply(ModelDefinition<?> definition, int point) {
+        double[] values = points.get(point);
+        for (int i = 0; i < parameters.length; i++) {
+            definition.setParameter(parameters[i], values[i]);
+        }
+    }
+
+    /**
+     * @return the number of points of the sweep
+     */
+    public int size() {
+        return points.size();
+    }
+
+    /**
+     * @return the names of the parameters of the sweep
+     */
+    public String[] getParameters() {
+        return parameters.clone();
+    }
+
+    /**
+     * Returns the values assigned to the parameters by a point of the sweep
+     *
+     * @param point index of the point
+     * @return the values of the parameters, in the same order of {@link #getParameters()}
+     */
+    public double[] getPoint(int point) {
+        return points.get(point).clone();
+    }
+
+    /**
+     * Returns a description of a point of the sweep, such as <code>a=0.1, b=2.0</code>
+     *
+     * @param point index of the point
+     * @return the description of the point
+     */
+    public String toString(int point) {
+        double[] values = points.get(point);
+        return IntStream.range(0, parameters.length).mapToObj(i -> parameters[i] + "=" + values[i])
+                .collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d points over the parameters %s", points.size(), Arrays.toString(parameters));
+    }
+}
@@ -74,6 +74,12 @@ public class SimulationDataSet<S extends State> implements Serializable {
      */
     private final double deadline;
 
+    /**
+     * Weight of the simulation in the sharing of the slave servers with the other simulations executed
+     * at the same time, see {@link it.unicam.quasylab.sibilla.core.network.master.MultiplexedSlavePool}.
+     */
+    private double weight = 1.0;
+
     /**
      * Creates a SimulationDataSet object with the parameters given in input.
      *
@@ -201,6 +207,30 @@ public class SimulationDataSet<S extends State> implements Serializable {
         return replica;
     }
 
+    /**
+     * Returns the parameter sweep of the simulation, that is submitted as a sweep when its sampling
+     * function is a {@link SweepSamplingFunction}.
+     *
+     * @return the parameter sweep of the simulation, or null if it is not a sweep
+     */
+    public ParameterSweep getSweep() {
+        if (modelSamplingFunction instanceof SweepSamplingFunction) {
+            return ((SweepSamplingFunction<S>) modelSamplingFunction).getSweep();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the total number of replicas of the simulation, that is the number of replicas of each point
+     * multiplied by the number of points when the simulation is a parameter sweep.
+     *
+     * @return total number of replicas of the simulation
+     */
+    public int getTotalReplica() {
+        ParameterSweep sweep = getSweep();
+        return sweep == null ? replica : replica * sweep.size();
+    }
+
     /**
      * Returns the deadline of the simulation.
      *
@@ -210,6 +240,29 @@ public class SimulationDataSet<S extends State> implements Serializable {
         return deadline;
     }
 
+    /**
+     * Returns the weight of the simulation in the sharing of the slave servers. A simulation with twice
+     * the weight of another one receives twice its tasks per unit of time while both are running.
+     *
+     * @return weight of the simulation
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets the weight of the simulation in the sharing of the slave servers. The weight does not identify
+     * the simulation, so it is not considered by {@link #equals(Object)}.
+     *
+     * @param weight positive weight of the simulation
+     */
+    public void setWeight(double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException(String.format("The weight of a simulation must be positive: %s", weight));
+        }
+        this.weight = weight;
+    }
+
 
     public String toString() {
         return String.format(
@@ -0,0 +1,120 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+
+import java.io.Serializable;
+
+/**
+ * Partial results of a simulation that is still being executed. It is periodically sent by
+ * the master server to the client that submitted the simulation, so that the client can
+ * inspect the statistics merged so far and possibly cancel the simulation.
+ *
+ * @param <S> The {@link State} of the simulation model.
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class SimulationProgress<S extends State> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of replicas whose statistics have been merged
+     */
+    private final int completedTasks;
+
+    /**
+     * Number of replicas of the simulation
+     */
+    private final int totalTasks;
+
+    /**
+     * Milliseconds elapsed since the simulation was submitted
+     */
+    private final long elapsedTime;
+
+    /**
+     * Sampling function containing the statistics merged so far
+     */
+    private final SamplingFunction<S> samplingFunction;
+
+    /**
+     * Creates a new snapshot of the progress of a simulation
+     *
+     * @param completedTasks   number of replicas whose statistics have been merged
+     * @param totalTasks       number of replicas of the simulation
+     * @param elapsedTime      milliseconds elapsed since the simulation was submitted
+     * @param samplingFunction sampling function containing the statistics merged so far
+     */
+    public SimulationProgress(int completedTasks, int totalTasks, long elapsedTime,
+                              SamplingFunction<S> samplingFunction) {
+        this.completedTasks = completedTasks;
+        this.totalTasks = totalTasks;
+        this.elapsedTime = elapsedTime;
+        this.samplingFunction = samplingFunction;
+    }
+
+    /**
+     * @return the number of replicas whose statistics have been merged
+     */
+    public int getCompletedTasks() {
+        return completedTasks;
+    }
+
+    /**
+     * @return the number of replicas of the simulation
+     */
+    public int getTotalTasks() {
+        return totalTasks;
+    }
+
+    /**
+     * @return the fraction of replicas whose statistics have been merged
+     */
+    public double getCompletedFraction() {
+        return (totalTasks == 0 ? 1.0 : (double) completedTasks / totalTasks);
+    }
+
+    /**
+     * @return the milliseconds elapsed since the simulation was submitted
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return the sampling function containing the statistics merged so far
+     */
+    public SamplingFunction<S> getSamplingFunction() {
+        return samplingFunction;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d replicas completed in %d ms", completedTasks, totalTasks, elapsedTime);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
+import it.unicam.quasylab.sibilla.core.models.SimulatorCursor;
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.Measure;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Model of a point of a {@link ParameterSweep}. Only the name of the model definition class and the
+ * values of the parameters are sent over the network: the actual model is instantiated, the first time
+ * it is needed, through {@link ModelDefinition#setParameter(String, double)} and
+ * {@link ModelDefinition#createModel()}. The instantiated models are cached, so that each host
+ * instantiates each point once. The model definition class must have a constructor without arguments.
+ *
+ * @param <S> The {@link State} of the simulation model.
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class SweepPointModel<S extends State> implements Model<S> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Models instantiated by this host, indexed by the name of their definition class and by their point
+     */
+    private static final Map<String, Map<String, Model<?>>> MODELS = new ConcurrentHashMap<>();
+
+    /**
+     * Name of the model definition class
+     */
+    private final String modelDefinitionClassName;
+
+    /**
+     * Names of the parameters of the sweep
+     */
+    private final String[] parameters;
+
+    /**
+     * Values assigned to the parameters by the point
+     */
+    private final double[] values;
+
+    private transient volatile Model<S> model;
+
+    /**
+     * Creates the model of a point of a sweep
+     *
+     * @param modelDefinitionClassName name of the model definition class
+     * @param sweep                    the sweep
+     * @param point                    index of the point
+     */
+    public SweepPointModel(String modelDefinitionClassName, ParameterSweep sweep, int point) {
+        this.modelDefinitionClassName = modelDefinitionClassName;
+        this.parameters = sweep.getParameters();
+        this.values = sweep.getPoint(point);
+    }
+
+    /**
+     * Removes from the cache the models instantiated from the given model definition class
+     *
+     * @param modelDefinitionClassName name of the model definition class
+     */
+    public static void evict(String modelDefinitionClassName) {
+        MODELS.remove(modelDefinitionClassName);
+    }
+
+    /**
+     * Returns the model of the point, instantiating it if it is not in the cache
+     *
+     * @return the model of the point
+     */
+    public Model<S> getModel() {
+        Model<S> result = model;
+        if (result == null) {
+            String key = Arrays.toString(parameters) + Arrays.toString(values);
+            result = (Model<S>) MODELS.computeIfAbsent(modelDefinitionClassName, name -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(key, k -> instantiate());
+            model = result;
+        }
+        return result;
+    }
+
+    private Model<?> instantiate() {
+        try {
+            ModelDefinition<?> definition = (ModelDefinition<?>) Class.forName(modelDefinitionClassName)
+                    .getDeclaredConstructor().newInstance();
+            for (int i = 0; i < parameters.length; i++) {
+                definition.setParameter(parameters[i], values[i]);
+            }
+            return definition.createModel();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException(String.format("[%s] The model definition %s cannot be instantiated",
+                    e.getMessage(), modelDefinitionClassName), e);
+        }
+    }
+
+    @Override
+    public SimulatorCursor<S> createSimulationCursor(RandomGenerator r, Function<RandomGenerator, S> initialStateBuilder) {
+        return getModel().createSimulationCursor(r, initialStateBuilder);
+    }
+
+    @Override
+    public int stateByteArraySize() {
+        return getModel().stateByteArraySize();
+    }
+
+    @Override
+    public byte[] byteOf(S state) throws IOException {
+        return getModel().byteOf(state);
+    }
+
+    @Override
+    public S fromByte(byte[] bytes) throws IOException {
+        return getModel().fromByte(bytes);
+    }
+
+    @Override
+    public String[] measures() {
+        return getModel().measures();
+    }
+
+    @Override
+    public double measure(String m, S state) {
+        return getModel().measure(m, state);
+    }
+
+    @Override
+    public Measure<? super S> getMeasure(String m) {
+        return getModel().getMeasure(m);
+    }
+
+    @Override
+    public Predicate<? super S> getPredicate(String name) {
+        return getModel().getPredicate(name);
+    }
+
+    @Override
+    public String[] predicates() {
+        return getModel().predicates();
+    }
+}
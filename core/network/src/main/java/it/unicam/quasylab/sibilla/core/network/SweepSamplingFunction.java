@@ -0,0 +1,203 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingHandler;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Statistics of a distributed {@link ParameterSweep}, collected separately for each point of the sweep.
+ * The replicas of the sweep are submitted point by point, so that the replicas of each point have
+ * consecutive indexes.
+ *
+ * @param <S> The {@link State} of the simulation model.
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class SweepSamplingFunction<S extends State> implements SamplingFunction<S> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The sweep whose statistics are collected
+     */
+    private final ParameterSweep sweep;
+
+    /**
+     * Number of replicas simulated for each point
+     */
+    private final int replicas;
+
+    /**
+     * Sampling functions where the statistics of each point are collected
+     */
+    private final List<SamplingFunction<S>> points;
+
+    /**
+     * Number of sampling handlers returned by {@link #getSamplingHandler()}
+     */
+    private int sampledReplicas = 0;
+
+    /**
+     * Creates the statistics of a sweep, collected for each point by an empty copy of the given sampling function
+     *
+     * @param sweep            the sweep
+     * @param samplingFunction sampling function used to collect the statistics of each point
+     * @param replicas         number of replicas simulated for each point
+     */
+    public SweepSamplingFunction(ParameterSweep sweep, SamplingFunction<S> samplingFunction, int replicas) {
+        this(sweep, replicas, new ArrayList<>(sweep.size()));
+        for (int i = 0; i < sweep.size(); i++) {
+            points.add(samplingFunction.getEmptyCopy());
+        }
+    }
+
+    private SweepSamplingFunction(ParameterSweep sweep, int replicas, List<SamplingFunction<S>> points) {
+        this.sweep = sweep;
+        this.replicas = replicas;
+        this.points = points;
+    }
+
+    public ParameterSweep getSweep() {
+        return sweep;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Returns the index of the point a replica belongs to
+     *
+     * @param replica      index of the replica
+     * @param firstReplica index of the first replica of the sweep
+     * @return the index of the point of the replica
+     */
+    public int getPointOf(int replica, int firstReplica) {
+        return (replica - firstReplica) / replicas;
+    }
+
+    /**
+     * Returns the statistics collected for a point
+     *
+     * @param point index of the point
+     * @return the sampling function of the point
+     */
+    public SamplingFunction<S> getPoint(int point) {
+        return points.get(point);
+    }
+
+    /**
+     * @return an empty sampling function where the statistics of the replicas of a single point can be collected
+     */
+    public SamplingFunction<S> getEmptyPointCopy() {
+        return points.get(0).getEmptyCopy();
+    }
+
+    /**
+     * Adds to the statistics of a point the data collected by a sampling function obtained from
+     * {@link #getEmptyPointCopy()}
+     *
+     * @param point index of the point
+     * @param other the sampling function whose data are added
+     */
+    public void merge(int point, SamplingFunction<S> other) {
+        points.get(point).merge(other);
+    }
+
+    /**
+     * Returns a handler that records a replica in the statistics of its point
+     *
+     * @param replica      index of the replica
+     * @param firstReplica index of the first replica of the sweep
+     * @return the sampling handler of the point of the replica
+     */
+    public SamplingHandler<S> getSamplingHandler(int replica, int firstReplica) {
+        int point = getPointOf(replica, firstReplica);
+        if (replica < firstReplica || point >= points.size()) {
+            throw new IllegalArgumentException(String.format("Replica %d does not belong to the sweep", replica));
+        }
+        return points.get(point).getSamplingHandler();
+    }
+
+    /**
+     * Returns the handlers of the replicas in the order the replicas are submitted: the first
+     * {@link #getReplicas()} handlers record the replicas of the first point, the following ones the
+     * replicas of the second point, and so on. When the index of the replica is known,
+     * {@link #getSamplingHandler(int, int)} should be used instead.
+     */
+    @Override
+    public synchronized SamplingHandler<S> getSamplingHandler() {
+        if (sampledReplicas >= replicas * points.size()) {
+            throw new IllegalStateException("All the replicas of the parameter sweep have already been sampled");
+        }
+        return getSamplingHandler(sampledReplicas++, 0);
+    }
+
+    @Override
+    public void printTimeSeries(Function<String, String> nameFunction, char separator, double significance)
+            throws FileNotFoundException {
+        for (int i = 0; i < points.size(); i++) {
+            int point = i;
+            points.get(i).printTimeSeries(name -> nameFunction.apply(name + "_" + point), separator, significance);
+        }
+    }
+
+    /**
+     * Returns the time series of every point. The name of each series is followed by the index of its point.
+     */
+    @Override
+    public Map<String, double[][]> getSimulationTimeSeries() {
+        Map<String, double[][]> series = new LinkedHashMap<>();
+        for (int i = 0; i < points.size(); i++) {
+            int point = i;
+            points.get(i).getSimulationTimeSeries().forEach((name, values) -> series.put(name + "_" + point, values));
+        }
+        return series;
+    }
+
+    @Override
+    public SamplingFunction<S> getEmptyCopy() {
+        List<SamplingFunction<S>> copies = new ArrayList<>(points.size());
+        points.forEach(point -> copies.add(point.getEmptyCopy()));
+        return new SweepSamplingFunction<>(sweep, replicas, copies);
+    }
+
+    @Override
+    public void merge(SamplingFunction<S> other) {
+        if (!(other instanceof SweepSamplingFunction) || ((SweepSamplingFunction<S>) other).points.size() != points.size()) {
+            throw new IllegalArgumentException("Only the statistics of the same parameter sweep can be merged");
+        }
+        for (int i = 0; i < points.size(); i++) {
+            points.get(i).merge(((SweepSamplingFunction<S>) other).points.get(i));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.benchmark.cluster;
+
+import it.unicam.quasylab.sibilla.core.network.master.SimulationState;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performance report of a simulation executed by a {@link LoopbackCluster}. It is built by listening
+ * to the updates of the {@link SimulationState} of the simulation: every time the results of some
+ * replicas are merged, the time elapsed since the submission of the simulation is recorded. The report
+ * contains the throughput of the cluster and the distribution of the completion times of the replicas,
+ * whose tail shows the effect of slow or failed slave servers.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class ClusterReport implements PropertyChangeListener {
+
+    private final LoopbackCluster.DispatchType dispatchType;
+
+    private final int replicas;
+
+    private final int slaves;
+
+    private final long startTime;
+
+    /**
+     * Times, in nanoseconds since the submission, when the results of some replicas have been merged
+     */
+    private final List<Long> completionTimes = new ArrayList<>();
+
+    /**
+     * Number of replicas whose results have been merged at the corresponding completion time
+     */
+    private final List<Integer> completedReplicas = new ArrayList<>();
+
+    private int completed = 0;
+
+    private long endTime = -1;
+
+    ClusterReport(LoopbackCluster.DispatchType dispatchType, int replicas, int slaves) {
+        this.dispatchType = dispatchType;
+        this.replicas = replicas;
+        this.slaves = slaves;
+        this.startTime = System.nanoTime();
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (!(evt.getNewValue() instanceof SimulationState)) {
+            return;
+        }
+        // the state is read before locking the report: the events are fired both while holding the lock of the
+        // state and without it, so locking the state while holding the report could deadlock
+        SimulationState state = (SimulationState) evt.getNewValue();
+        int total = state.getCompletedTasks();
+        boolean concluded = state.isConcluded();
+        synchronized (this) {
+            if (endTime >= 0) {
+                return;
+            }
+            long now = System.nanoTime() - startTime;
+            if (total > completed) {
+                completionTimes.add(now);
+                completedReplicas.add(total - completed);
+                completed = total;
+            }
+            if (concluded) {
+                endTime = now;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until the simulation is concluded
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized void awaitConclusion() throws InterruptedException {
+        while (endTime < 0) {
+            wait();
+        }
+    }
+
+    /**
+     * @return the strategy used to dispatch the tasks to the slave servers
+     */
+    public LoopbackCluster.DispatchType getDispatchType() {
+        return dispatchType;
+    }
+
+    /**
+     * @return the number of replicas of the simulation
+     */
+    public int getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the number of slave servers available when the simulation was submitted
+     */
+    public int getSlaves() {
+        return slaves;
+    }
+
+    /**
+     * @return the number of replicas whose results have been merged
+     */
+    public synchronized int getCompletedReplicas() {
+        return completed;
+    }
+
+    /**
+     * @return the milliseconds between the submission and the conclusion of the simulation
+     */
+    public synchronized double getMakespan() {
+        return toMillis(endTime);
+    }
+
+    /**
+     * @return the number of replicas completed per second
+     */
+    public synchronized double getThroughput() {
+        return (endTime <= 0 ? 0.0 : completed * (double) TimeUnit.SECONDS.toNanos(1) / endTime);
+    }
+
+    /**
+     * @return the milliseconds between the submission of the simulation and the first merged results
+     */
+    public synchronized double getFirstResultTime() {
+        return (completionTimes.isEmpty() ? Double.NaN : toMillis(completionTimes.get(0)));
+    }
+
+    /**
+     * @return the longest interval, in milliseconds, between two consecutive merges of results
+     */
+    public synchronized double getMaxResultGap() {
+        long gap = 0;
+        for (int i = 1; i < completionTimes.size(); i++) {
+            gap = Math.max(gap, completionTimes.get(i) - completionTimes.get(i - 1));
+        }
+        return toMillis(gap);
+    }
+
+    /**
+     * Returns the time needed to complete the given fraction of the replicas of the simulation
+     *
+     * @param percentile fraction of the replicas, between 0 and 1
+     * @return milliseconds between the submission of the simulation and the completion of the given
+     * fraction of its replicas, or NaN if they have not been completed
+     */
+    public synchronized double getCompletionTime(double percentile) {
+        long needed = Math.max(1, (long) Math.ceil(percentile * replicas));
+        long sum = 0;
+        for (int i = 0; i < completionTimes.size(); i++) {
+            sum += completedReplicas.get(i);
+            if (sum >= needed) {
+                return toMillis(completionTimes.get(i));
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("[%s] slaves: %d - replicas: %d/%d - makespan: %.1f ms - throughput: %.1f replicas/s"
+                        + " - first result: %.1f ms - completion p50: %.1f ms - p90: %.1f ms - p99: %.1f ms"
+                        + " - max gap: %.1f ms",
+                dispatchType, slaves, completed, replicas, getMakespan(), getThroughput(), getFirstResultTime(),
+                getCompletionTime(0.5), getCompletionTime(0.9), getCompletionTime(0.99), getMaxResultGap());
+    }
+}
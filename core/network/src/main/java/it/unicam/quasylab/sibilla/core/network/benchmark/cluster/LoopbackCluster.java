@@ -0,0 +1,386 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.benchmark.cluster;
+
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.SimulationDataSet;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.master.MasterState;
+import it.unicam.quasylab.sibilla.core.network.master.MultiplexedNetworkSimulationManager;
+import it.unicam.quasylab.sibilla.core.network.master.MultiplexedSlavePool;
+import it.unicam.quasylab.sibilla.core.network.master.NetworkSimulationManager;
+import it.unicam.quasylab.sibilla.core.network.master.SelectorNetworkSimulationManager;
+import it.unicam.quasylab.sibilla.core.network.master.SimulationState;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.BasicSimulationServer;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
+import it.unicam.quasylab.sibilla.core.network.slave.executor.SimulationExecutor;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationEnvironment;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationManagerFactory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Harness that runs a master and a set of {@link BasicSimulationServer} slaves in the same JVM, connected
+ * through the loopback interface. Each slave server is reached through a {@link LoopbackProxy}, so that
+ * latency, bandwidth limits and failures of the slave servers can be injected. Simulations are submitted
+ * directly to the simulation managers of the master, without the discovery of the slave servers and the
+ * connection with a client, and a {@link ClusterReport} is returned for each of them. This allows to
+ * measure the performance of the distributed simulation on a single machine, in a reproducible way.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class LoopbackCluster implements AutoCloseable {
+
+    /**
+     * Strategies used by the master to dispatch the tasks to the slave servers
+     */
+    public enum DispatchType {
+        /**
+         * A thread for each slave server, see {@link NetworkSimulationManager}
+         */
+        THREADS,
+        /**
+         * A single selector thread, see {@link SelectorNetworkSimulationManager}
+         */
+        SELECTOR,
+        /**
+         * Connections shared by concurrent simulations, see {@link MultiplexedNetworkSimulationManager}
+         */
+        MULTIPLEXED
+    }
+
+    /**
+     * Maximum time, in milliseconds, waited for a slave server to accept connections
+     */
+    private static final long STARTUP_TIMEOUT = 10000;
+
+    private final Logger LOGGER;
+
+    private final SerializerType serializerType;
+
+    private final ComputationResultSerializerType crSerializerType;
+
+    private final List<BasicSimulationServer> slaves = new ArrayList<>();
+
+    private final List<LoopbackProxy> proxies = new ArrayList<>();
+
+    private final NetworkInfo masterInfo;
+
+    private final MasterState masterState;
+
+    private final ScheduledExecutorService failureScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private MultiplexedSlavePool slavePool;
+
+    /**
+     * State of the last simulation submitted to the cluster
+     */
+    private volatile SimulationState simulationState;
+
+    /**
+     * Starts a cluster with the given number of slave servers
+     *
+     * @param slaves           number of slave servers
+     * @param executorType     executor used by the slave servers to run the tasks
+     * @param serializerType   serializer used to exchange commands between the master and the slaves
+     * @param crSerializerType serializer used by the slaves to send results
+     * @throws IOException if a slave server cannot be started
+     */
+    public LoopbackCluster(int slaves, SimulationExecutor.ExecutorType executorType, SerializerType serializerType,
+                           ComputationResultSerializerType crSerializerType) throws IOException {
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        this.serializerType = serializerType;
+        this.crSerializerType = crSerializerType;
+        this.masterInfo = new NetworkInfo(InetAddress.getLoopbackAddress(), 0, TCPNetworkManagerType.DEFAULT);
+        this.masterState = new MasterState(masterInfo);
+        for (int i = 0; i < slaves; i++) {
+            startSlave(executorType);
+        }
+        LOGGER.info(String.format("Started a loopback cluster with %d slave servers", slaves));
+    }
+
+    private void startSlave(SimulationExecutor.ExecutorType executorType) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        BasicSimulationServer slave = new BasicSimulationServer(TCPNetworkManagerType.DEFAULT, serializerType,
+                executorType, crSerializerType);
+        Thread thread = new Thread(() -> slave.start(port));
+        thread.setDaemon(true);
+        thread.start();
+        awaitStartup(port);
+        slaves.add(slave);
+        proxies.add(new LoopbackProxy(port));
+    }
+
+    private void awaitStartup(int port) throws IOException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (true) {
+            try {
+                new Socket(InetAddress.getLoopbackAddress(), port).close();
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException(String.format("The slave server on port [%d] did not start", port), e);
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the one-way latency between the master and every slave server
+     *
+     * @param latency latency in milliseconds
+     */
+    public void setLatency(long latency) {
+        proxies.forEach(proxy -> proxy.setLatency(latency));
+    }
+
+    /**
+     * Sets the bandwidth of each direction of the connections between the master and every slave server
+     *
+     * @param bandwidth bandwidth in bytes per second, non positive for unlimited bandwidth
+     */
+    public void setBandwidth(long bandwidth) {
+        proxies.forEach(proxy -> proxy.setBandwidth(bandwidth));
+    }
+
+    /**
+     * Returns the proxy through which a slave server is reached, to configure it individually
+     *
+     * @param slave index of the slave server
+     * @return the proxy of the slave server
+     */
+    public LoopbackProxy getProxy(int slave) {
+        return proxies.get(slave);
+    }
+
+    /**
+     * Fails a slave server after the given delay: its connections are closed and new connections are refused
+     *
+     * @param slave index of the slave server
+     * @param delay delay in milliseconds
+     */
+    public void failSlaveAfter(int slave, long delay) {
+        failureScheduler.schedule(proxies.get(slave)::fail, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stalls a slave server after the given delay: its connections stay open but it stops answering
+     *
+     * @param slave index of the slave server
+     * @param delay delay in milliseconds
+     */
+    public void stallSlaveAfter(int slave, long delay) {
+        failureScheduler.schedule(proxies.get(slave)::stall, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Slows down a slave server after the given delay, raising the one-way latency of its connections
+     *
+     * @param slave   index of the slave server
+     * @param delay   delay in milliseconds
+     * @param latency new latency in milliseconds
+     */
+    public void slowSlaveAfter(int slave, long delay, long latency) {
+        failureScheduler.schedule(() -> proxies.get(slave).setLatency(latency), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drains a slave server after the given delay: it completes the tasks of the running simulation it is
+     * executing, then it receives no new ones
+     *
+     * @param slave index of the slave server
+     * @param delay delay in milliseconds
+     */
+    public void drainSlaveAfter(int slave, long delay) {
+        failureScheduler.schedule(() -> {
+            SimulationState state = this.simulationState;
+            if (state != null && state.drainSlaveServer(getSlaveInfo(slave))) {
+                LOGGER.warning(String.format("Injected drain of the slave server on port [%d]", proxies.get(slave).getPort()));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the state of a slave server in the last simulation submitted to the cluster
+     *
+     * @param slave index of the slave server
+     * @return the state of the slave server, or null if it does not take part in the simulation
+     */
+    public SlaveState getSlaveState(int slave) {
+        SimulationState state = this.simulationState;
+        return state == null ? null : state.getSlaveStateByServerInfo(getSlaveInfo(slave));
+    }
+
+    /**
+     * @return the network infos of the slave servers that have not been failed
+     */
+    public Set<NetworkInfo> getSlaveInfos() {
+        return IntStream.range(0, proxies.size()).filter(i -> !proxies.get(i).isFailed())
+                .mapToObj(this::getSlaveInfo)
+                .collect(Collectors.toSet());
+    }
+
+    private NetworkInfo getSlaveInfo(int slave) {
+        return new NetworkInfo(InetAddress.getLoopbackAddress(), proxies.get(slave).getPort(),
+                TCPNetworkManagerType.DEFAULT);
+    }
+
+    /**
+     * Executes a simulation on the cluster and waits for its conclusion. The class of the model definition
+     * must be available in the classpath of the JVM.
+     *
+     * @param dispatchType     strategy used to dispatch the tasks to the slave servers
+     * @param random           random generator of the simulation
+     * @param modelDefinition  definition of the simulated model
+     * @param model            simulated model
+     * @param initialState     initial state of the simulation
+     * @param samplingFunction sampling function collecting the results
+     * @param replicas         number of replicas
+     * @param deadline         time horizon of each replica
+     * @param <S>              state of the simulated model
+     * @return the performance report of the simulation
+     * @throws InterruptedException if the thread is interrupted while waiting for the simulation
+     */
+    public <S extends State> ClusterReport simulate(DispatchType dispatchType, RandomGenerator random,
+                                                    ModelDefinition<S> modelDefinition, Model<S> model, S initialState,
+                                                    SamplingFunction<S> samplingFunction, int replicas,
+                                                    double deadline) throws InterruptedException {
+        return simulate(dispatchType, random, modelDefinition, model, initialState, samplingFunction, replicas,
+                deadline, 1.0);
+    }
+
+    /**
+     * Executes a simulation with the given weight on the cluster and waits for its conclusion. The weight
+     * is used by the multiplexed dispatch to share the slave servers among the simulations executed at the
+     * same time.
+     *
+     * @param dispatchType     strategy used to dispatch the tasks to the slave servers
+     * @param random           random generator of the simulation
+     * @param modelDefinition  definition of the simulated model
+     * @param model            simulated model
+     * @param initialState     initial state of the simulation
+     * @param samplingFunction sampling function collecting the results
+     * @param replicas         number of replicas
+     * @param deadline         time horizon of each replica
+     * @param weight           weight of the simulation in the sharing of the slave servers
+     * @param <S>              state of the simulated model
+     * @return the performance report of the simulation
+     * @throws InterruptedException if the thread is interrupted while waiting for the simulation
+     */
+    public <S extends State> ClusterReport simulate(DispatchType dispatchType, RandomGenerator random,
+                                                    ModelDefinition<S> modelDefinition, Model<S> model, S initialState,
+                                                    SamplingFunction<S> samplingFunction, int replicas,
+                                                    double deadline, double weight) throws InterruptedException {
+        Set<NetworkInfo> slaveInfos = getSlaveInfos();
+        SimulationState simulationState = new SimulationState(masterState, masterInfo, masterInfo, slaveInfos, null);
+        simulationState.setSimulationModelName(modelDefinition.getClass().getName());
+        SimulationDataSet<S> dataSet = new SimulationDataSet<>(random, modelDefinition.getClass().getName(),
+                model, initialState, samplingFunction, replicas, deadline);
+        dataSet.setWeight(weight);
+        simulationState.setSimulationDataSet(dataSet);
+        this.simulationState = simulationState;
+        ClusterReport report = new ClusterReport(dispatchType, replicas, slaveInfos.size());
+        simulationState.addPropertyChangeListener("Master Environment Update", report);
+
+        SimulationEnvironment environment = new SimulationEnvironment(getFactory(dispatchType, simulationState));
+        environment.simulate(random, model, (Function<RandomGenerator, S> & Serializable) rg -> initialState,
+                samplingFunction::getSamplingHandler, replicas, deadline);
+        report.awaitConclusion();
+        LOGGER.info(report.toString());
+        return report;
+    }
+
+    private SimulationManagerFactory getFactory(DispatchType dispatchType, SimulationState simulationState) {
+        switch (dispatchType) {
+            case SELECTOR:
+                return SelectorNetworkSimulationManager.getSelectorNetworkSimulationManagerFactory(simulationState,
+                        serializerType, crSerializerType);
+            case MULTIPLEXED:
+                return MultiplexedNetworkSimulationManager.getMultiplexedNetworkSimulationManagerFactory(
+                        simulationState, serializerType, crSerializerType, getSlavePool(),
+                        simulationState.simulationDataSet().getWeight());
+            case THREADS:
+            default:
+                return NetworkSimulationManager.getNetworkSimulationManagerFactory(simulationState, serializerType,
+                        crSerializerType, masterInfo);
+        }
+    }
+
+    private synchronized MultiplexedSlavePool getSlavePool() {
+        if (slavePool == null) {
+            slavePool = new MultiplexedSlavePool();
+        }
+        return slavePool;
+    }
+
+    /**
+     * Stops the slave servers and closes all the connections of the cluster
+     */
+    @Override
+    public synchronized void close() {
+        failureScheduler.shutdownNow();
+        if (slavePool != null) {
+            slavePool.close();
+        }
+        proxies.forEach(LoopbackProxy::close);
+        slaves.forEach(BasicSimulationServer::stop);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.benchmark.cluster;
+
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * TCP proxy listening on the loopback interface that forwards the connections it accepts to a
+ * local server. Data are forwarded in both directions after a configurable one-way latency and at
+ * a configurable bandwidth, so that the proxy can emulate the network between a master server and
+ * a slave server. The proxy can also be failed, closing all its connections and refusing new ones,
+ * to emulate the crash of the server behind it, or stalled, keeping its connections open without
+ * forwarding any data, to emulate a server that hangs.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class LoopbackProxy {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Time, in milliseconds, between two checks of whether the proxy is still stalled
+     */
+    private static final long STALL_CHECK_TIME = 10;
+
+    private final Logger LOGGER;
+
+    private final int targetPort;
+
+    private final ServerSocket serverSocket;
+
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * One-way latency, in nanoseconds
+     */
+    private volatile long latency = 0;
+
+    /**
+     * Bandwidth of each direction of a connection, in bytes per second. Non positive values mean unlimited bandwidth.
+     */
+    private volatile long bandwidth = 0;
+
+    private volatile boolean failed = false;
+
+    private volatile boolean stalled = false;
+
+    /**
+     * Creates a proxy forwarding the connections to the given local port and starts accepting connections
+     *
+     * @param targetPort port of the local server the connections are forwarded to
+     * @throws IOException if the proxy cannot listen on the loopback interface
+     */
+    public LoopbackProxy(int targetPort) throws IOException {
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        this.targetPort = targetPort;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::accept);
+    }
+
+    /**
+     * @return the port where the proxy accepts connections
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Sets the one-way latency added to the forwarded data
+     *
+     * @param latency latency in milliseconds
+     */
+    public void setLatency(long latency) {
+        this.latency = TimeUnit.MILLISECONDS.toNanos(latency);
+    }
+
+    /**
+     * Sets the bandwidth of each direction of the forwarded connections
+     *
+     * @param bandwidth bandwidth in bytes per second, non positive for unlimited bandwidth
+     */
+    public void setBandwidth(long bandwidth) {
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * @return true if the proxy has been failed
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Fails the proxy: all the forwarded connections are closed and new connections are refused
+     */
+    public void fail() {
+        failed = true;
+        LOGGER.warning(String.format("Injected failure of the server on port [%d]", targetPort));
+        close();
+    }
+
+    /**
+     * Stalls the proxy: the forwarded connections, and the ones accepted later, stay open but no data is
+     * forwarded anymore
+     */
+    public void stall() {
+        stalled = true;
+        LOGGER.warning(String.format("Injected stall of the server on port [%d]", targetPort));
+    }
+
+    /**
+     * Closes the proxy and all the forwarded connections
+     */
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Failure while closing the proxy", e.getMessage()));
+        }
+        sockets.forEach(this::closeQuietly);
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        try {
+            while (!failed) {
+                Socket client = serverSocket.accept();
+                Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                client.setTcpNoDelay(true);
+                server.setTcpNoDelay(true);
+                sockets.add(client);
+                sockets.add(server);
+                forward(client, server);
+                forward(server, client);
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                LOGGER.severe(String.format("[%s] Failure while accepting connections on the proxy", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Forwards the data received from a socket to the other one. Data are read by one thread and
+     * written by another one, so that the latency delays the data without limiting the throughput.
+     */
+    private void forward(Socket from, Socket to) {
+        BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        executor.execute(() -> {
+            try (InputStream in = from.getInputStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    queue.put(new Chunk(System.nanoTime() + latency, Arrays.copyOf(buffer, read)));
+                }
+            } catch (IOException | InterruptedException e) {
+                // The connection has been closed
+            }
+            queue.add(Chunk.END);
+        });
+        executor.execute(() -> {
+            long nextFree = System.nanoTime();
+            try {
+                OutputStream out = to.getOutputStream();
+                Chunk chunk;
+                while ((chunk = queue.take()) != Chunk.END) {
+                    long bytesPerSecond = bandwidth;
+                    long sendTime = chunk.deliveryTime;
+                    if (bytesPerSecond > 0) {
+                        nextFree = Math.max(nextFree, chunk.deliveryTime)
+                                + chunk.data.length * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+                        sendTime = nextFree;
+                    }
+                    long wait = sendTime - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    while (stalled) {
+                        TimeUnit.MILLISECONDS.sleep(STALL_CHECK_TIME);
+                    }
+                    out.write(chunk.data);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // The connection has been closed
+            }
+            closeQuietly(from);
+            closeQuietly(to);
+        });
+    }
+
+    private void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // The socket is already closed
+        }
+        sockets.remove(socket);
+    }
+
+    /**
+     * Data read from a connection, to be written after the given time
+     */
+    private static class Chunk {
+        private static final Chunk END = new Chunk(0, new byte[0]);
+
+        private final long deliveryTime;
+        private final byte[] data;
+
+        private Chunk(long deliveryTime, byte[] data) {
+            this.deliveryTime = deliveryTime;
+            this.data = data;
+        }
+    }
+}
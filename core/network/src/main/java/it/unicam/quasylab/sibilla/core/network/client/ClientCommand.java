@@ -23,27 +23,44 @@
 
 package it.unicam.quasylab.sibilla.core.network.client;
 
+import it.unicam.quasylab.sibilla.core.network.NetworkCommand;
+
 /**
  * All the possible command that can be sent from a client.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
  */
-public enum ClientCommand {
+public enum ClientCommand implements NetworkCommand {
     /**
      * The command sent by a client to initiate a new connection over the network.
      */
-    INIT,
+    INIT(0x30),
     /**
      * The command sent by a client to signal that data will be passed over the network.
      */
-    DATA,
+    DATA(0x31),
     /**
      * The command sent by a client to ping an host which has a connection open with.
      */
-    PING,
+    PING(0x32),
+    /**
+     * The command sent by a client to cancel the simulation it has submitted. The results collected so far are still sent back.
+     */
+    CANCEL(0x33),
     /**
      * The command sent by a client to inform that the connection with an host will be closed.
      */
-    CLOSE_CONNECTION
+    CLOSE_CONNECTION(0x34);
+
+    private final byte opcode;
+
+    ClientCommand(int opcode) {
+        this.opcode = (byte) opcode;
+    }
+
+    @Override
+    public byte getOpcode() {
+        return opcode;
+    }
 }
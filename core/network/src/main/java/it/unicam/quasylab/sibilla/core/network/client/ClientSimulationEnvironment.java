@@ -28,11 +28,15 @@ import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
 import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
 import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.ParameterSweep;
 import it.unicam.quasylab.sibilla.core.network.SimulationDataSet;
+import it.unicam.quasylab.sibilla.core.network.SimulationProgress;
+import it.unicam.quasylab.sibilla.core.network.SweepSamplingFunction;
 import it.unicam.quasylab.sibilla.core.network.benchmark.BenchmarkUnit;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.loaders.ClassBytesLoader;
 import it.unicam.quasylab.sibilla.core.network.master.MasterCommand;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
 import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
@@ -41,6 +45,7 @@ import org.apache.commons.math3.random.RandomGenerator;
 import java.io.IOException;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 /**
@@ -73,6 +78,17 @@ public class ClientSimulationEnvironment<S extends State> {
     private int submitRepetitions;
     private BenchmarkUnit clientBenchmark;
 
+    /**
+     * Receives the partial results sent by the master server while the simulation is running.
+     * When it returns false, the simulation is cancelled.
+     */
+    private final Predicate<SimulationProgress<S>> progressListener;
+
+    /**
+     * The sampling function containing the results of the last submitted simulation.
+     */
+    private SamplingFunction<S> results;
+
     /**
      * Initiates a new client that submits simulations using the parameters of
      * the simulation to execute and the network related data of the
@@ -91,8 +107,83 @@ public class ClientSimulationEnvironment<S extends State> {
     public ClientSimulationEnvironment(RandomGenerator random, ModelDefinition<S> modelDefinition, Model<S> model,
                                        S initialState, SamplingFunction<S> samplingFunction, int replica, double deadline,
                                        NetworkInfo masterNetworkInfo, SerializerType serializerType, int submitRepetitions) {
+        this(random, modelDefinition, model, initialState, samplingFunction, replica, deadline, masterNetworkInfo,
+                serializerType, submitRepetitions, progress -> true);
+    }
+
+    /**
+     * Initiates a new client that submits a parameter sweep. All the points of the sweep are simulated by a single
+     * distributed simulation: the slave servers instantiate the model of each point once, through the
+     * {@link ModelDefinition#setParameter(String, double)} of the model definition, that must have a constructor
+     * without arguments. The results are a {@link SweepSamplingFunction} containing the statistics of each point.
+     *
+     * @param random            {@link org.apache.commons.math3.random.RandomGenerator} of the simulation.
+     * @param modelDefinition   {@link ModelDefinition} that defines the simulation model to be sent.
+     * @param initialState      The initial {@link State} of the model, the same for every point.
+     * @param samplingFunction  The {@link SamplingFunction} that will be used to collect
+     *                          data of each point.
+     * @param sweep             The points of the parameter space to simulate.
+     * @param replica           Repetitions of the simulation of each point.
+     * @param deadline          Time interval between two samplings.
+     * @param masterNetworkInfo {@link NetworkInfo} of the master to be reached.
+     */
+    public ClientSimulationEnvironment(RandomGenerator random, ModelDefinition<S> modelDefinition, S initialState,
+                                       SamplingFunction<S> samplingFunction, ParameterSweep sweep, int replica,
+                                       double deadline, NetworkInfo masterNetworkInfo, SerializerType serializerType) {
+        this(random, modelDefinition, modelDefinition.createModel(), initialState,
+                new SweepSamplingFunction<>(sweep.validate(modelDefinition), samplingFunction, replica), replica,
+                deadline, masterNetworkInfo, serializerType, 1);
+    }
+
+    /**
+     * Initiates a new client that submits simulations and receives their partial results while they are
+     * executed. The given listener is invoked every time the master server sends the statistics merged
+     * so far: if it returns false, the simulation is cancelled and the results collected until then are
+     * retrieved.
+     *
+     * @param random            {@link org.apache.commons.math3.random.RandomGenerator} of the simulation.
+     * @param modelDefinition   {@link ModelDefinition} that defines the simulation model to be sent.
+     * @param model             The {@link Model} of the simulation.
+     * @param initialState      The initial {@link State} of the model.
+     * @param samplingFunction  The {@link SamplingFunction} that will be used to collect
+     *                          data.
+     * @param replica           Repetitions of the simulation.
+     * @param deadline          Time interval between two samplings.
+     * @param masterNetworkInfo {@link NetworkInfo} of the master to be reached.
+     * @param progressListener  receives the partial results, returns false to cancel the simulation.
+     */
+    public ClientSimulationEnvironment(RandomGenerator random, ModelDefinition<S> modelDefinition, Model<S> model,
+                                       S initialState, SamplingFunction<S> samplingFunction, int replica, double deadline,
+                                       NetworkInfo masterNetworkInfo, SerializerType serializerType, int submitRepetitions,
+                                       Predicate<SimulationProgress<S>> progressListener) {
+        this(random, modelDefinition, model, initialState, samplingFunction, replica, deadline, masterNetworkInfo,
+                serializerType, submitRepetitions, progressListener, 1.0);
+    }
+
+    /**
+     * Initiates a new client that submits simulations with the given weight. When the master server
+     * executes several simulations at the same time on shared connections with the slave servers, each
+     * simulation receives a share of the slave servers proportional to its weight.
+     *
+     * @param random            {@link org.apache.commons.math3.random.RandomGenerator} of the simulation.
+     * @param modelDefinition   {@link ModelDefinition} that defines the simulation model to be sent.
+     * @param model             The {@link Model} of the simulation.
+     * @param initialState      The initial {@link State} of the model.
+     * @param samplingFunction  The {@link SamplingFunction} that will be used to collect
+     *                          data.
+     * @param replica           Repetitions of the simulation.
+     * @param deadline          Time interval between two samplings.
+     * @param masterNetworkInfo {@link NetworkInfo} of the master to be reached.
+     * @param progressListener  receives the partial results, returns false to cancel the simulation.
+     * @param weight            positive weight of the simulation in the sharing of the slave servers.
+     */
+    public ClientSimulationEnvironment(RandomGenerator random, ModelDefinition<S> modelDefinition, Model<S> model,
+                                       S initialState, SamplingFunction<S> samplingFunction, int replica, double deadline,
+                                       NetworkInfo masterNetworkInfo, SerializerType serializerType, int submitRepetitions,
+                                       Predicate<SimulationProgress<S>> progressListener, double weight) {
 
         LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        this.progressListener = progressListener;
 
         serializer = Serializer.getSerializer(serializerType);
         this.submitRepetitions = submitRepetitions;
@@ -105,6 +196,7 @@ public class ClientSimulationEnvironment<S extends State> {
 
         this.data = new SimulationDataSet<>(random, modelDefinition.getClass().getName(), model, initialState, samplingFunction, replica,
                 deadline);
+        this.data.setWeight(weight);
 
         for (int i = 1; i <= this.submitRepetitions; i++) {
             this.clientBenchmark.run(() -> {
@@ -131,12 +223,12 @@ public class ClientSimulationEnvironment<S extends State> {
      */
     private void closeConnection(TCPNetworkManager targetMaster) throws IOException {
         try {
-            targetMaster.writeObject(serializer.serialize(ClientCommand.CLOSE_CONNECTION));
+            targetMaster.writeObject(CommandSerializer.serialize(ClientCommand.CLOSE_CONNECTION));
             LOGGER.info(String.format("[%s] command sent to the master: %s", ClientCommand.CLOSE_CONNECTION,
                     targetMaster.getNetworkInfo().toString()));
-            targetMaster.writeObject(serializer.serialize(this.data.getModelDefinitionClassName()));
+            targetMaster.writeObject(CommandSerializer.serializeString(this.data.getModelDefinitionClassName()));
 
-            MasterCommand answer = (MasterCommand) serializer.deserialize(targetMaster.readObject());
+            MasterCommand answer = CommandSerializer.deserialize(targetMaster.readObject(), MasterCommand.class);
             if (answer.equals(MasterCommand.CLOSE_CONNECTION)) {
                 LOGGER.info(String.format("Answer received: [%s] - Master: %s", answer, targetMaster.getNetworkInfo().toString()));
             } else {
@@ -165,16 +257,16 @@ public class ClientSimulationEnvironment<S extends State> {
             LOGGER.info(String.format("Loading [%s] class bytes to be transmitted over network", data.getModelDefinitionClassName()));
             byte[] classBytes = ClassBytesLoader.loadClassBytes(data.getModelDefinitionClassName());
 
-            targetMaster.writeObject(serializer.serialize(ClientCommand.INIT));
+            targetMaster.writeObject(CommandSerializer.serialize(ClientCommand.INIT));
             LOGGER.info(String.format("[%s] command sent to the master: %s", ClientCommand.INIT,
                     targetMaster.getNetworkInfo().toString()));
-            targetMaster.writeObject(serializer.serialize(data.getModelDefinitionClassName()));
+            targetMaster.writeObject(CommandSerializer.serializeString(data.getModelDefinitionClassName()));
             LOGGER.info(String.format("[%s] Model name has been sent to the master: %s", this.data.getModelDefinitionClassName(),
                     targetMaster.getNetworkInfo().toString()));
             targetMaster.writeObject(classBytes);
             LOGGER.info(String.format("Class bytes have been sent to the master: %s", targetMaster.getNetworkInfo().toString()));
 
-            MasterCommand answer = (MasterCommand) serializer.deserialize(targetMaster.readObject());
+            MasterCommand answer = CommandSerializer.deserialize(targetMaster.readObject(), MasterCommand.class);
             if (answer.equals(MasterCommand.INIT_RESPONSE)) {
                 LOGGER.info(String.format("Answer received: [%s] - Master: %s", answer, targetMaster.getNetworkInfo().toString()));
             } else {
@@ -197,25 +289,37 @@ public class ClientSimulationEnvironment<S extends State> {
      */
     private void sendSimulationInfo(TCPNetworkManager targetMaster) throws IOException {
         try {
-            targetMaster.writeObject(serializer.serialize(ClientCommand.DATA));
+            targetMaster.writeObject(CommandSerializer.serialize(ClientCommand.DATA));
             LOGGER.info(String.format("[%s] command sent to the master: %s", ClientCommand.DATA,
                     targetMaster.getNetworkInfo().toString()));
             targetMaster.writeObject(serializer.serialize(data));
             LOGGER.info(String.format("Simulation datas have been sent to the master: %s",
                     targetMaster.getNetworkInfo().toString()));
 
-            MasterCommand answer = (MasterCommand) serializer.deserialize(targetMaster.readObject());
+            MasterCommand answer = CommandSerializer.deserialize(targetMaster.readObject(), MasterCommand.class);
             if (answer.equals(MasterCommand.DATA_RESPONSE)) {
                 LOGGER.info(String.format("Answer received: [%s] - Master: %s", answer, targetMaster.getNetworkInfo().toString()));
             } else {
                 throw new ClassCastException("Wrong answer after DATA command. Expected DATA_RESPONSE");
             }
-            MasterCommand command = (MasterCommand) serializer.deserialize(targetMaster.readObject());
+            boolean cancelled = false;
+            MasterCommand command = CommandSerializer.deserialize(targetMaster.readObject(), MasterCommand.class);
+            while (command.equals(MasterCommand.PROGRESS)) {
+                SimulationProgress<S> progress = (SimulationProgress<S>) serializer.deserialize(targetMaster.readObject());
+                LOGGER.info(String.format("Partial results received: %s - Master: %s", progress.toString(),
+                        targetMaster.getNetworkInfo().toString()));
+                if (!cancelled && !progressListener.test(progress)) {
+                    cancelled = true;
+                    targetMaster.writeObject(CommandSerializer.serialize(ClientCommand.CANCEL));
+                    LOGGER.info(String.format("[%s] command sent to the master: %s", ClientCommand.CANCEL,
+                            targetMaster.getNetworkInfo().toString()));
+                }
+                command = CommandSerializer.deserialize(targetMaster.readObject(), MasterCommand.class);
+            }
             LOGGER.info(String.format("[%s] command read by the master: %s", command,
                     targetMaster.getNetworkInfo().toString()));
             if (command.equals(MasterCommand.RESULTS)) {
-                SamplingFunction<?> samplingFunction = (SamplingFunction<?>) serializer
-                        .deserialize(targetMaster.readObject());
+                this.results = (SamplingFunction<S>) serializer.deserialize(targetMaster.readObject());
                 LOGGER.info("The simulation results have been received correctly");
             } else {
                 throw new ClassCastException("Wrong command from master. Expected RESULTS");
@@ -229,6 +333,22 @@ public class ClientSimulationEnvironment<S extends State> {
         }
     }
 
+    /**
+     * @return the sampling function containing the results of the last submitted simulation,
+     * or null if no results have been received.
+     */
+    public SamplingFunction<S> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the statistics of each point of the last submitted parameter sweep, or null if no results
+     * of a parameter sweep have been received.
+     */
+    public SweepSamplingFunction<S> getSweepResults() {
+        return results instanceof SweepSamplingFunction ? (SweepSamplingFunction<S>) results : null;
+    }
+
     /**
      * Sends a ping command to the given master server
      *
@@ -236,12 +356,12 @@ public class ClientSimulationEnvironment<S extends State> {
      */
     private void sendPing(TCPNetworkManager targetMaster) throws IOException {
         try {
-            targetMaster.writeObject(serializer.serialize(ClientCommand.PING));
+            targetMaster.writeObject(CommandSerializer.serialize(ClientCommand.PING));
             LOGGER.info(String.format("[%s] command sent to the master: %s", ClientCommand.PING,
                     targetMaster.getNetworkInfo().toString()));
             LOGGER.info("Ping has been sent to the master");
 
-            MasterCommand answer = (MasterCommand) serializer.deserialize(targetMaster.readObject());
+            MasterCommand answer = CommandSerializer.deserialize(targetMaster.readObject(), MasterCommand.class);
             if (answer.equals(MasterCommand.PONG)) {
                 LOGGER.info(String.format("Answer received: [%s] - Master: %s", answer, targetMaster.getNetworkInfo().toString()));
             } else {
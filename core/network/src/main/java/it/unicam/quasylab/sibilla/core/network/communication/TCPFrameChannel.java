@@ -0,0 +1,184 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.communication;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link TCPDefaultNetworkManager}. Data are exchanged as
+ * length-prefixed frames, with the same format used by {@link TCPDefaultNetworkManager},
+ * over a {@link SocketChannel} that is driven by a {@link Selector}. Incoming frames are
+ * assembled while data become available and outgoing frames are queued until the
+ * channel can accept them, so that a single thread can handle many connections.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class TCPFrameChannel {
+
+    private final SocketChannel channel;
+    private final NetworkInfo networkInfo;
+    private final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+    private ByteBuffer body;
+    private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private SelectionKey key;
+
+    private TCPFrameChannel(SocketChannel channel, NetworkInfo networkInfo) {
+        this.channel = channel;
+        this.networkInfo = networkInfo;
+    }
+
+    /**
+     * Opens a non-blocking connection towards the given host.
+     *
+     * @param info the network related infos about the host to connect to
+     * @return the channel associated with the new connection
+     * @throws IOException if the connection cannot be established
+     */
+    public static TCPFrameChannel open(NetworkInfo info) throws IOException {
+        if (info.getType() != TCPNetworkManagerType.DEFAULT) {
+            throw new IllegalArgumentException(String.format("Unsupported network manager type: %s", info.getType()));
+        }
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(info.getAddress(), info.getPort()));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        return new TCPFrameChannel(channel, info);
+    }
+
+    /**
+     * Registers this channel to the given selector.
+     *
+     * @param selector   the selector used to wait for network events
+     * @param attachment the object associated with the selection key
+     * @throws IOException if the channel cannot be registered
+     */
+    public void register(Selector selector, Object attachment) throws IOException {
+        this.key = channel.register(selector, SelectionKey.OP_READ, attachment);
+        updateInterest();
+    }
+
+    /**
+     * Reads the available data and returns the frames that have been completely received.
+     *
+     * @return the list of received frames
+     * @throws IOException if the connection has been closed or a communication error occurred
+     */
+    public List<byte[]> read() throws IOException {
+        List<byte[]> frames = new LinkedList<>();
+        while (true) {
+            ByteBuffer target = (body == null ? header : body);
+            int read = channel.read(target);
+            if (read < 0) {
+                throw new EOFException(String.format("Connection closed by %s", networkInfo));
+            }
+            if (target.hasRemaining()) {
+                return frames;
+            }
+            if (body == null) {
+                int length = header.flip().getInt();
+                header.clear();
+                if (length <= 0) {
+                    frames.add(null);
+                } else {
+                    body = ByteBuffer.allocate(length);
+                }
+            } else {
+                frames.add(body.array());
+                body = null;
+            }
+        }
+    }
+
+    /**
+     * Queues a frame to be sent.
+     *
+     * @param toWrite the data to send
+     * @throws IOException if a communication error occurred
+     */
+    public void write(byte[] toWrite) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + toWrite.length);
+        frame.putInt(toWrite.length).put(toWrite).flip();
+        pendingWrites.add(frame);
+        flush();
+    }
+
+    /**
+     * Sends the queued frames as long as the channel accepts data.
+     *
+     * @return true if all the queued frames have been sent
+     * @throws IOException if a communication error occurred
+     */
+    public boolean flush() throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            ByteBuffer frame = pendingWrites.peek();
+            channel.write(frame);
+            if (frame.hasRemaining()) {
+                break;
+            }
+            pendingWrites.poll();
+        }
+        updateInterest();
+        return pendingWrites.isEmpty();
+    }
+
+    private void updateInterest() {
+        if ((key != null) && key.isValid()) {
+            key.interestOps(pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * @return the network related infos about the connected host.
+     */
+    public NetworkInfo getNetworkInfo() {
+        return networkInfo;
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if a communication error occurred
+     */
+    public void closeConnection() throws IOException {
+        if (key != null) {
+            key.cancel();
+        }
+        channel.close();
+    }
+
+}
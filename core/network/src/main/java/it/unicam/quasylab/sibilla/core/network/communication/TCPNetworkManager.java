@@ -33,6 +33,7 @@ import javax.net.ssl.SSLServerSocketFactory;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface that needs to be extended from all of the communication related classes that are based upon the TCP transport protocol.
@@ -59,6 +60,27 @@ public interface TCPNetworkManager {
         return createNetworkManager((TCPNetworkManagerType) info.getType(), socket);
     }
 
+    /**
+     * Factory method used to obtain {@link TCPNetworkManager} implementations' instances without waiting
+     * for the connection to be established. The TLS handshakes of the secure connections are performed
+     * on a dedicated pool of threads, so that many connections can be opened in parallel.
+     *
+     * @param info The network related infos about the connection that the manager will manage
+     * @return a future completed with the {@link TCPNetworkManager} that will manage the requested connection
+     */
+    static CompletableFuture<TCPNetworkManager> createNetworkManagerAsync(NetworkInfo info) {
+        if (info.getType() == TCPNetworkManagerType.SECURE) {
+            return TCPSecureNetworkManager.connect(info);
+        }
+        CompletableFuture<TCPNetworkManager> result = new CompletableFuture<>();
+        try {
+            result.complete(createNetworkManager(info));
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     /**
      * Factory method used to obtain {@link TCPNetworkManager} implementations' instances.
      * Used in classes that want to initiate a network communication.
@@ -90,7 +112,7 @@ public interface TCPNetworkManager {
     static ServerSocket createServerSocket(TCPNetworkManagerType networkType, int port) throws IOException {
         switch (networkType) {
             case SECURE:
-                SSLContext sslContext = SSLUtils.getInstance().createSSLContext();
+                SSLContext sslContext = SSLUtils.getInstance().getSSLContext();
                 SSLServerSocketFactory sslServerSocketFactory = sslContext.getServerSocketFactory();
                 SSLServerSocket sslServerSocket = (SSLServerSocket) sslServerSocketFactory.createServerSocket(port);
                 sslServerSocket.setNeedClientAuth(true);
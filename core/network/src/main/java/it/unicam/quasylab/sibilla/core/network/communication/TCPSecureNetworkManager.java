@@ -33,6 +33,9 @@ import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
@@ -43,6 +46,17 @@ import java.util.logging.Logger;
  */
 public class TCPSecureNetworkManager implements TCPNetworkManager {
 
+    /**
+     * Pool of threads dedicated to the TLS handshakes of the outgoing connections, so that the
+     * handshakes with different hosts are performed in parallel.
+     */
+    private static final ExecutorService HANDSHAKE_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "tls-handshake");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private Logger LOGGER;
 
     private Socket socket;
@@ -60,7 +74,7 @@ public class TCPSecureNetworkManager implements TCPNetworkManager {
     public TCPSecureNetworkManager(NetworkInfo networkInfo) throws IOException {
         this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
         if (networkInfo.getType().equals(TCPNetworkManagerType.SECURE)) {
-            SSLContext sslContext = SSLUtils.getInstance().createSSLContext();
+            SSLContext sslContext = SSLUtils.getInstance().getSSLContext();
             SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
             SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(networkInfo.getAddress(), networkInfo.getPort());
             this.buildWithSocket(sslSocket);
@@ -69,6 +83,25 @@ public class TCPSecureNetworkManager implements TCPNetworkManager {
         }
     }
 
+    /**
+     * Initiates the manager as a client, performing the connection and the TLS handshake on the
+     * dedicated handshake threads.
+     *
+     * @param networkInfo The network related infos about the connection that the manager will manage
+     * @return a future completed with the manager once the handshake is completed
+     */
+    static CompletableFuture<TCPNetworkManager> connect(NetworkInfo networkInfo) {
+        CompletableFuture<TCPNetworkManager> result = new CompletableFuture<>();
+        HANDSHAKE_EXECUTOR.execute(() -> {
+            try {
+                result.complete(new TCPSecureNetworkManager(networkInfo));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
     //The socket has already been built - Example: Server-side connection
 
     /**
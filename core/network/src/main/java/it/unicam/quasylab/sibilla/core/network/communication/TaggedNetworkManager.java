@@ -0,0 +1,130 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.communication;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decorator of a {@link TCPNetworkManager} that tags each written frame with the identifier of a
+ * simulation, so that the frames of different simulations can be multiplexed on the same connection.
+ * The tag is written in the first 4 bytes of each frame.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class TaggedNetworkManager implements TCPNetworkManager {
+
+    private final TCPNetworkManager networkManager;
+
+    private final int tag;
+
+    /**
+     * Creates a new network manager that tags the frames written on the given one
+     *
+     * @param networkManager network manager used to communicate
+     * @param tag            identifier of the simulation the frames refer to
+     */
+    public TaggedNetworkManager(TCPNetworkManager networkManager, int tag) {
+        this.networkManager = networkManager;
+        this.tag = tag;
+    }
+
+    /**
+     * Adds a tag to a frame
+     *
+     * @param tag   identifier of the simulation the frame refers to
+     * @param frame the frame to tag
+     * @return the tagged frame
+     */
+    public static byte[] tag(int tag, byte[] frame) {
+        byte[] tagged = new byte[frame.length + 4];
+        ByteBuffer.wrap(tagged).putInt(tag).put(frame);
+        return tagged;
+    }
+
+    /**
+     * Returns the tag of a frame
+     *
+     * @param tagged the tagged frame
+     * @return the tag of the frame
+     */
+    public static int getTag(byte[] tagged) {
+        return ByteBuffer.wrap(tagged).getInt();
+    }
+
+    /**
+     * Removes the tag from a frame
+     *
+     * @param tagged the tagged frame
+     * @return the frame without the tag
+     */
+    public static byte[] untag(byte[] tagged) {
+        return Arrays.copyOfRange(tagged, 4, tagged.length);
+    }
+
+    /**
+     * Reads a frame, checking that it refers to the simulation of this network manager
+     *
+     * @return the frame without the tag
+     * @throws IOException if the frame refers to a different simulation
+     */
+    @Override
+    public byte[] readObject() throws IOException {
+        byte[] tagged = networkManager.readObject();
+        if (getTag(tagged) != tag) {
+            throw new IOException(String.format("Received a frame of simulation %d while expecting simulation %d",
+                    getTag(tagged), tag));
+        }
+        return untag(tagged);
+    }
+
+    @Override
+    public void writeObject(byte[] toWrite) throws IOException {
+        networkManager.writeObject(tag(tag, toWrite));
+    }
+
+    @Override
+    public Socket getSocket() {
+        return networkManager.getSocket();
+    }
+
+    @Override
+    public void closeConnection() throws IOException {
+        networkManager.closeConnection();
+    }
+
+    @Override
+    public TCPNetworkManagerType getType() {
+        return networkManager.getType();
+    }
+
+    public int getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.compression;
+
+import java.io.IOException;
+
+/**
+ * Algorithm used to compress and decompress byte arrays.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public interface Codec {
+
+    static Codec getCodec(CompressionType type) {
+        switch (type) {
+            case IDENTITY:
+                return new IdentityCodec();
+            case DEFLATE:
+                return new DeflateCodec();
+            case GZIP:
+                return new GZIPCodec();
+            case LZ:
+            default:
+                return new LZCodec();
+        }
+    }
+
+    /**
+     * Compresses a byte array.
+     *
+     * @param data byte array to be compressed
+     * @return compressed byte array
+     * @throws IOException if the data cannot be compressed
+     */
+    byte[] compress(byte[] data) throws IOException;
+
+    /**
+     * Decompresses a portion of a byte array.
+     *
+     * @param data   byte array containing the data to be decompressed
+     * @param offset index of the first byte to be decompressed
+     * @param length number of bytes to be decompressed
+     * @return decompressed byte array
+     * @throws IOException if the data is not valid
+     */
+    byte[] decompress(byte[] data, int offset, int length) throws IOException;
+
+    CompressionType getType();
+}
@@ -0,0 +1,61 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.compression;
+
+/**
+ * Represents the codecs that can be used by the {@link Compressor}. Each type is associated with the
+ * identifier written in the first byte of the compressed data.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public enum CompressionType {
+    IDENTITY(0), LZ(1), DEFLATE(2), GZIP(3);
+
+    private final byte id;
+
+    CompressionType(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Returns the type associated with the given identifier
+     *
+     * @param id identifier of the type
+     * @return the type associated with the given identifier
+     */
+    public static CompressionType fromId(byte id) {
+        for (CompressionType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown compression codec: %d", id));
+    }
+}
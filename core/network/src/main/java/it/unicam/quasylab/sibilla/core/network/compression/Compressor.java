@@ -21,23 +21,73 @@
  *  limitations under the License.
  */
 
+
 package it.unicam.quasylab.sibilla.core.network.compression;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class used to compress and decompress byte arrays containing data.
- * The class operations are based upon the tool GZIP.
+ * The data is compressed with the selected {@link Codec}, unless it is smaller than a
+ * threshold: in that case the {@link IdentityCodec} is used, since the compression of small
+ * messages costs more than the bytes it saves. The first byte of the compressed data identifies
+ * the codec used, so that the receiver does not need to be configured with the same codec.
+ * Data compressed with GZIP by previous versions, that has no codec identifier, can still be
+ * decompressed.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
  */
 public class Compressor {
 
+    /**
+     * Default size, in bytes, under which data is not compressed
+     */
+    public static final int DEFAULT_THRESHOLD = 512;
+
+    private static final byte GZIP_MAGIC = (byte) 0x1f;
+
+    private static final Codec IDENTITY_CODEC = new IdentityCodec();
+
+    private static final Codec[] DECODERS = new Codec[CompressionType.values().length];
+
+    private static volatile Codec codec = new LZCodec();
+
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    static {
+        for (CompressionType type : CompressionType.values()) {
+            DECODERS[type.getId()] = Codec.getCodec(type);
+        }
+    }
+
+    /**
+     * Sets the codec used to compress data
+     *
+     * @param type the type of codec used to compress data
+     */
+    public static void setCodec(CompressionType type) {
+        setCodec(Codec.getCodec(type));
+    }
+
+    /**
+     * Sets the codec used to compress data
+     *
+     * @param codec the codec used to compress data
+     */
+    public static void setCodec(Codec codec) {
+        Compressor.codec = codec;
+    }
+
+    /**
+     * Sets the size under which data is sent without compression
+     *
+     * @param threshold size in bytes
+     */
+    public static void setThreshold(int threshold) {
+        Compressor.threshold = threshold;
+    }
+
     /**
      * Compresses a byte array.
      *
@@ -45,12 +95,13 @@ public class Compressor {
      * @return compressed byte array
      */
     public static byte[] compress(byte[] decompressedData) {
+        Codec selected = (decompressedData.length < threshold ? IDENTITY_CODEC : codec);
         byte[] result = new byte[]{};
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(decompressedData.length);
-             GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
-            gzipOutputStream.write(decompressedData);
-            gzipOutputStream.close();
-            result = byteArrayOutputStream.toByteArray();
+        try {
+            byte[] compressed = selected.compress(decompressedData);
+            result = new byte[compressed.length + 1];
+            result[0] = selected.getType().getId();
+            System.arraycopy(compressed, 0, result, 1, compressed.length);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -65,11 +116,17 @@ public class Compressor {
      */
     public static byte[] decompress(byte[] compressedData) {
         byte[] result = new byte[]{};
+        if (compressedData.length == 0) {
+            return result;
+        }
         try {
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressedData);
-            GZIPInputStream gzipInputStream = new GZIPInputStream(byteArrayInputStream);
-            result = gzipInputStream.readAllBytes();
-        } catch (IOException e) {
+            if (compressedData[0] == GZIP_MAGIC) {
+                result = DECODERS[CompressionType.GZIP.getId()].decompress(compressedData, 0, compressedData.length);
+            } else {
+                result = DECODERS[CompressionType.fromId(compressedData[0]).getId()]
+                        .decompress(compressedData, 1, compressedData.length - 1);
+            }
+        } catch (IOException | IllegalArgumentException e) {
             e.printStackTrace();
         }
         return result;
@@ -0,0 +1,109 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec based upon the DEFLATE algorithm with a configurable compression level. Each thread reuses
+ * the same {@link Deflater} and {@link Inflater}. The length of the original data is written
+ * before the compressed data, so that the decompressed array is allocated only once.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class DeflateCodec implements Codec {
+
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * Creates a new codec that privileges the compression speed
+     */
+    public DeflateCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Creates a new codec with the given compression level
+     *
+     * @param level compression level, from 0 to 9
+     */
+    public DeflateCodec(int level) {
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = this.deflater.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] output = new byte[4 + data.length + data.length / 1000 + 64];
+        ByteBuffer.wrap(output).putInt(data.length);
+        int length = 4;
+        while (!deflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        return Arrays.copyOf(output, length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+        Inflater inflater = this.inflater.get();
+        inflater.reset();
+        byte[] output = new byte[ByteBuffer.wrap(data, offset, length).getInt()];
+        inflater.setInput(data, offset + 4, length - 4);
+        try {
+            int read = 0;
+            while (read < output.length && !inflater.finished()) {
+                int inflated = inflater.inflate(output, read, output.length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != output.length) {
+                throw new IOException("Truncated compressed data");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return output;
+    }
+
+    @Override
+    public CompressionType getType() {
+        return CompressionType.DEFLATE;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fast codec of the LZ77 family, using the sequence format of LZ4 blocks. Matches are found with a
+ * single-entry hash table of 4-byte sequences, so the compression ratio is lower than the one of
+ * DEFLATE but both compression and decompression are much cheaper. The length of the original data
+ * is written before the sequences.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class LZCodec implements Codec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public byte[] compress(byte[] data) {
+        int length = data.length;
+        byte[] output = new byte[4 + length + length / 255 + 16];
+        writeInt(output, 0, length);
+        int op = 4;
+        int[] table = HASH_TABLE.get();
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int ip = 0;
+        while (ip + MIN_MATCH <= length) {
+            int sequence = readInt(data, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = ip;
+            if (ref >= 0 && ip - ref <= MAX_OFFSET && readInt(data, ref) == sequence) {
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < length && data[ref + matchLength] == data[ip + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(output, op, data, anchor, ip - anchor, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            } else {
+                ip++;
+            }
+        }
+        op = writeSequence(output, op, data, anchor, length - anchor, 0, 0);
+        return Arrays.copyOf(output, op);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+        try {
+            byte[] output = new byte[readInt(data, offset)];
+            int ip = offset + 4;
+            int end = offset + length;
+            int op = 0;
+            while (op < output.length) {
+                int token = data[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = data[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(data, ip, output, op, literals);
+                ip += literals;
+                op += literals;
+                if (op >= output.length) {
+                    break;
+                }
+                int matchOffset = (data[ip++] & 0xFF) | ((data[ip++] & 0xFF) << 8);
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = data[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (matchOffset == 0 || matchOffset > op || op + matchLength > output.length) {
+                    throw new IOException("Corrupted compressed data");
+                }
+                for (int i = 0; i < matchLength; i++, op++) {
+                    output[op] = output[op - matchOffset];
+                }
+            }
+            if (ip > end) {
+                throw new IOException("Truncated compressed data");
+            }
+            return output;
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupted compressed data", e);
+        }
+    }
+
+    @Override
+    public CompressionType getType() {
+        return CompressionType.LZ;
+    }
+
+    private static int writeSequence(byte[] output, int op, byte[] data, int anchor, int literals, int matchOffset,
+                                     int matchLength) {
+        int tokenIndex = op++;
+        int token = Math.min(literals, 15) << 4;
+        if (literals >= 15) {
+            op = writeLength(output, op, literals - 15);
+        }
+        System.arraycopy(data, anchor, output, op, literals);
+        op += literals;
+        if (matchLength > 0) {
+            output[op++] = (byte) matchOffset;
+            output[op++] = (byte) (matchOffset >>> 8);
+            int length = matchLength - MIN_MATCH;
+            token |= Math.min(length, 15);
+            if (length >= 15) {
+                op = writeLength(output, op, length - 15);
+            }
+        }
+        output[tokenIndex] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(byte[] output, int op, int length) {
+        while (length >= 255) {
+            output[op++] = (byte) 255;
+            length -= 255;
+        }
+        output[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] data, int index) {
+        return ((data[index] & 0xFF) << 24) | ((data[index + 1] & 0xFF) << 16) | ((data[index + 2] & 0xFF) << 8)
+                | (data[index + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] data, int index, int value) {
+        data[index] = (byte) (value >>> 24);
+        data[index + 1] = (byte) (value >>> 16);
+        data[index + 2] = (byte) (value >>> 8);
+        data[index + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.loaders;
+
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the model classes received by a slave server. Classes are identified by the
+ * SHA-256 hash of their bytes: the class bytes are stored on disk, so that they survive the
+ * restart of the slave server, and the classes already defined in the running JVM are
+ * recorded in memory. This allows a master server to send the bytes of a class only when
+ * the slave server does not have them yet.
+ * <p>
+ * Classes are defined by name in the system class loader, where a class cannot be redefined:
+ * a class whose name is already defined, or available in the classpath, with different bytes
+ * is rejected with an {@link IOException}, instead of silently running the old class.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class ModelClassCache {
+
+    /**
+     * Default directory where the class bytes are stored.
+     */
+    public static final String DEFAULT_DIRECTORY = System.getProperty("user.home") + File.separator + ".sibilla"
+            + File.separator + "models";
+
+    /**
+     * Names of the classes defined in the running JVM, associated with the hashes of their bytes.
+     * Classes are defined in the system class loader, hence this map is shared by all the caches.
+     */
+    private static final Map<String, String> definedClasses = new ConcurrentHashMap<>();
+
+    /**
+     * Directory where the class bytes are stored, null if classes are only cached in memory.
+     */
+    private final Path directory;
+
+    /**
+     * Creates a cache that stores the class bytes in the given directory.
+     *
+     * @param directory directory where the class bytes are stored, null to keep the cache only in memory.
+     */
+    public ModelClassCache(String directory) {
+        this.directory = (directory == null ? null : Paths.get(directory));
+    }
+
+    /**
+     * Creates a cache that stores the class bytes in the {@link #DEFAULT_DIRECTORY}.
+     */
+    public ModelClassCache() {
+        this(DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * Computes the hash used to identify the bytes of a class.
+     *
+     * @param classBytes the bytes of a class
+     * @return the hexadecimal representation of the SHA-256 hash of the given bytes
+     */
+    public static String hash(byte[] classBytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(classBytes);
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Makes available the class with the given name and hash, if its bytes are in the cache.
+     *
+     * @param className name of the class
+     * @param hash      hash of the bytes of the class
+     * @return true if the class is available, false if its bytes have to be provided with
+     * {@link #store(String, String, byte[])}
+     * @throws IOException if a class with the same name and different bytes is already defined
+     */
+    public synchronized boolean load(String className, String hash) throws IOException {
+        if (isDefined(className, hash)) {
+            return true;
+        }
+        if (directory == null) {
+            return false;
+        }
+        Path file = directory.resolve(hash);
+        try {
+            if (Files.exists(file)) {
+                byte[] classBytes = Files.readAllBytes(file);
+                String storedName = new String(Files.readAllBytes(directory.resolve(hash + ".name")),
+                        StandardCharsets.UTF_8);
+                if (hash.equals(hash(classBytes)) && className.equals(storedName)) {
+                    define(className, hash, classBytes);
+                    return true;
+                }
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            HostLoggerSupplier.getInstance().getLogger().warning(
+                    String.format("[%s] Failure while reading the model class cache", e.getMessage()));
+        }
+        return false;
+    }
+
+    /**
+     * Adds the bytes of a class to the cache and defines the class.
+     *
+     * @param className  name of the class
+     * @param hash       hash of the bytes of the class
+     * @param classBytes bytes of the class
+     * @throws IOException if the given bytes do not match the given hash, or if a class with the same name and
+     *                     different bytes is already defined
+     */
+    public synchronized void store(String className, String hash, byte[] classBytes) throws IOException {
+        if (!hash.equals(hash(classBytes))) {
+            throw new IOException(String.format("The bytes of class %s do not match the hash %s", className, hash));
+        }
+        if (isDefined(className, hash)) {
+            return;
+        }
+        define(className, hash, classBytes);
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, hash, ".tmp");
+            Files.write(tmp, classBytes);
+            Files.write(directory.resolve(hash + ".name"), className.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, directory.resolve(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            HostLoggerSupplier.getInstance().getLogger().warning(
+                    String.format("[%s] Failure while writing the model class cache", e.getMessage()));
+        }
+    }
+
+    /**
+     * Checks whether the class with the given name is already available in the running JVM.
+     *
+     * @param className name of the class
+     * @param hash      hash of the bytes of the class
+     * @return true if the class is defined, or in the classpath, with the given hash; false if it is not available
+     * @throws IOException if the class is defined, or in the classpath, with a different hash
+     */
+    private boolean isDefined(String className, String hash) throws IOException {
+        String definedHash = definedClasses.get(className);
+        if (definedHash == null) {
+            try {
+                definedHash = hash(ClassBytesLoader.loadClassBytes(className));
+                definedClasses.put(className, definedHash);
+            } catch (IOException e) {
+                // The class is neither in the classpath nor already defined.
+                return false;
+            }
+        }
+        if (!definedHash.equals(hash)) {
+            throw new IOException(String.format(
+                    "Class %s is already defined with hash %s and cannot be redefined with hash %s",
+                    className, definedHash, hash));
+        }
+        return true;
+    }
+
+    private void define(String className, String hash, byte[] classBytes) throws IOException {
+        CustomClassLoader.defClass(className, classBytes);
+        try {
+            Class.forName(className, false, ClassLoader.getSystemClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            CustomClassLoader.removeClassBytes(className);
+            throw new IOException(String.format("Class %s cannot be defined with hash %s", className, hash), e);
+        }
+        definedClasses.put(className, hash);
+    }
+
+}
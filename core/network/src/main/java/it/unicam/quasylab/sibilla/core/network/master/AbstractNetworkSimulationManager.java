@@ -0,0 +1,553 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.ComputationResult;
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.NetworkTask;
+import it.unicam.quasylab.sibilla.core.network.SweepSamplingFunction;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.compression.Compressor;
+import it.unicam.quasylab.sibilla.core.network.loaders.ClassBytesLoader;
+import it.unicam.quasylab.sibilla.core.network.loaders.ModelClassCache;
+import it.unicam.quasylab.sibilla.core.network.metrics.MetricsRegistry;
+import it.unicam.quasylab.sibilla.core.network.metrics.NetworkMetrics;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveCommand;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
+import it.unicam.quasylab.sibilla.core.simulator.QueuedSimulationManager;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationMonitor;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationUnit;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Base class of the simulation managers that distribute the tasks of a simulation
+ * among the slave servers. It contains the state shared by the different
+ * strategies used to communicate with the slaves: tasks are grouped in
+ * {@link NetworkTask} and the statistics computed by the slaves are merged
+ * in the sampling function of the simulation.
+ *
+ * @param <S> The {@link State} of the simulation model.
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public abstract class AbstractNetworkSimulationManager<S extends State> extends QueuedSimulationManager<S> {
+
+    /**
+     * Minimum time, in milliseconds, between two checkpoints of the journal of a simulation.
+     */
+    private static final long CHECKPOINT_INTERVAL = 5000;
+
+    /**
+     * Class logger.
+     */
+    protected final Logger LOGGER;
+
+    /**
+     * {@link ModelDefinition} that represent the Model
+     * used in the simulation.
+     */
+    protected final String modelDefinitionClassName;
+
+    /**
+     * State of the simulation that is being executed
+     */
+    protected final SimulationState simulationState;
+
+    protected final Serializer serializer;
+
+    protected final ComputationResultSerializerType crSerializerType;
+
+    /**
+     * Scheduler that computes the number of tasks sent to each slave server
+     */
+    protected final ThroughputScheduler scheduler;
+
+    /**
+     * Sampling function of the simulation where the statistics computed by the slaves are merged
+     */
+    private final SamplingFunction<S> samplingFunction;
+
+    /**
+     * Empty copy of the sampling function that is sent to the slaves together with the tasks
+     */
+    private final SamplingFunction<S> emptySamplingFunction;
+
+    /**
+     * Bytes of the model class, loaded the first time they are needed
+     */
+    private byte[] modelClassBytes;
+
+    /**
+     * Hash of the bytes of the model class
+     */
+    private String modelClassHash;
+
+    /**
+     * Seed from which the random generators of the replicas executed by the slaves are derived
+     */
+    private final long seed;
+
+    /**
+     * Replicas whose results have been merged
+     */
+    private final ReplicaLedger ledger = new ReplicaLedger();
+
+    /**
+     * Payloads already encoded, indexed by their simulation unit
+     */
+    private final Map<SimulationUnit<S>, EncodedPayload> encodedPayloads = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Journal where the progress of the simulation is stored, null if the progress is not stored
+     */
+    private final SimulationJournal journal;
+
+    /**
+     * Time of the last checkpoint of the journal, in milliseconds
+     */
+    private long lastCheckpoint;
+
+    /**
+     * Index of the first replica submitted, used to find the point of the replicas of a parameter sweep
+     */
+    private volatile int firstReplica = -1;
+
+    /**
+     * Creates a new manager for the given simulation
+     *
+     * @param random           RandomGenerator used in the simulation
+     * @param monitor          monitor of the simulation
+     * @param simulationState  state of the simulation that is being executed
+     * @param serializerType   serializer used to exchange commands with the slaves
+     * @param crSerializerType serializer used by the slaves to send results
+     */
+    public AbstractNetworkSimulationManager(RandomGenerator random, SimulationMonitor monitor,
+                                            SimulationState simulationState, SerializerType serializerType,
+                                            ComputationResultSerializerType crSerializerType) {
+        super(random, monitor);
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        this.serializer = Serializer.getSerializer(serializerType);
+        this.crSerializerType = crSerializerType;
+        this.simulationState = simulationState;
+        this.modelDefinitionClassName = simulationState.getSimulationModelName();
+        this.journal = openJournal();
+        this.seed = random.nextLong();
+        this.samplingFunction = (SamplingFunction<S>) simulationState.simulationDataSet().getModelSamplingFunction();
+        this.emptySamplingFunction = this.samplingFunction instanceof SweepSamplingFunction
+                ? ((SweepSamplingFunction<S>) this.samplingFunction).getEmptyPointCopy()
+                : this.samplingFunction.getEmptyCopy();
+        this.scheduler = new ThroughputScheduler(simulationState);
+        restoreJournal();
+    }
+
+    /**
+     * Opens the journal of the simulation, if a journal directory has been set. The key of the journal
+     * is computed from the model class and from the data set of the simulation before the random generator
+     * is used, so that the same submission always produces the same seed and the same key.
+     *
+     * @return the journal of the simulation, or null if the progress of the simulation is not stored
+     */
+    private SimulationJournal openJournal() {
+        String directory = simulationState.getJournalDirectory();
+        if (directory == null) {
+            return null;
+        }
+        try {
+            byte[] dataSet = serializer.serialize(simulationState.simulationDataSet());
+            String key = ModelClassCache.hash((getModelClassHash() + ModelClassCache.hash(dataSet))
+                    .getBytes(StandardCharsets.UTF_8));
+            return new SimulationJournal(directory, key);
+        } catch (IOException e) {
+            LOGGER.warning(String.format("[%s] The progress of the simulation of model %s will not be journaled",
+                    e.getMessage(), modelDefinitionClassName));
+            return null;
+        }
+    }
+
+    /**
+     * Restores the statistics and the completed replicas stored in the journal of the simulation
+     */
+    private void restoreJournal() {
+        if (journal == null) {
+            return;
+        }
+        byte[] statistics = journal.restore(ledger);
+        if (statistics != null && ledger.getCompletedReplicas() > 0) {
+            samplingFunction.merge(SerializationUtils.deserialize(statistics));
+            simulationState.addCompletedTasks(ledger.getCompletedReplicas());
+        }
+    }
+
+    /**
+     * Stores the progress of the simulation in its journal. Unless forced, the journal is written at most
+     * once every {@link #CHECKPOINT_INTERVAL} milliseconds. When all the replicas have been completed the
+     * journal is deleted.
+     *
+     * @param force true to write the journal regardless of the time elapsed since the last checkpoint
+     */
+    protected void checkpoint(boolean force) {
+        if (journal == null) {
+            return;
+        }
+        synchronized (journal) {
+            if (ledger.getCompletedReplicas() >= simulationState.getTotalSimulationTasks()) {
+                journal.delete();
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!force && now - lastCheckpoint < CHECKPOINT_INTERVAL) {
+                return;
+            }
+            lastCheckpoint = now;
+            List<int[]> completed;
+            byte[] statistics;
+            synchronized (samplingFunction) {
+                completed = ledger.getCompletedRanges();
+                statistics = SerializationUtils.serialize(samplingFunction);
+            }
+            journal.write(completed, statistics);
+        }
+    }
+
+    /**
+     * Adds a task to the tasks to be executed, unless its replica has already been completed
+     * according to the journal of the simulation
+     *
+     * @param simulationTask task to be added
+     */
+    @Override
+    protected void handleTask(SimulationTask<S> simulationTask) {
+        if (firstReplica < 0) {
+            firstReplica = simulationTask.getIndex();
+        }
+        if (!ledger.isCompleted(simulationTask.getIndex())) {
+            super.handleTask(simulationTask);
+        }
+    }
+
+    /**
+     * Returns the tasks, among the given ones, whose replicas have not been completed yet
+     *
+     * @param tasks tasks sent to a slave server
+     * @return the tasks whose results have not been merged
+     */
+    protected List<SimulationTask<S>> missingTasks(List<SimulationTask<S>> tasks) {
+        return tasks.stream().filter(task -> !ledger.isCompleted(task.getIndex()))
+                .collect(Collectors.toCollection(LinkedList::new));
+    }
+
+    /**
+     * Returns the number of tasks to send to the given slave server
+     *
+     * @param state state of the slave server
+     * @return number of tasks to send to the slave server
+     */
+    protected int nextBatchSize(SlaveState state) {
+        return scheduler.getBatchSize(state, pendingTasks(), !isRunning());
+    }
+
+    /**
+     * Updates the state of a slave server after the execution of a group of tasks
+     *
+     * @param state       state of the slave server
+     * @param tasks       number of executed tasks
+     * @param busyTime    time during which the slave server has been executing the tasks
+     * @param elapsedTime time between the sending of the tasks and the reception of all their results,
+     *                    or a negative value if it is not available
+     */
+    protected void updateSlaveState(SlaveState state, int tasks, long busyTime, long elapsedTime) {
+        state.updateThroughput(tasks, busyTime, elapsedTime);
+        state.update(busyTime);
+        scheduler.record(state);
+        getMetrics(state.getSlaveInfo()).getBatchTime().record(busyTime);
+    }
+
+    /**
+     * Returns the metrics of the communication with a slave server
+     *
+     * @param slaveInfo network info of the slave server
+     * @return the metrics of the communication with the slave server
+     */
+    protected NetworkMetrics getMetrics(NetworkInfo slaveInfo) {
+        return MetricsRegistry.getInstance().getMetrics("master", slaveInfo);
+    }
+
+    /**
+     * Encodes a group of tasks to send to a slave server. The payload of the simulation unit is serialized and
+     * compressed only the first time one of its batches is sent, then the encoded bytes are reused. The bytes
+     * are only added to the batch if they have not already been sent on the connection.
+     *
+     * @param networkTask  tasks to send
+     * @param sentPayloads payloads already sent on the connection, see {@link NetworkTask#newSentPayloads()}
+     * @param metrics      metrics of the communication with the slave server
+     * @return the data to send to the slave server
+     */
+    protected byte[] encodeTask(NetworkTask<S> networkTask, Set<String> sentPayloads, NetworkMetrics metrics) {
+        EncodedPayload payload = encodedPayloads.computeIfAbsent(networkTask.getUnit(), unit -> {
+            long serializationTime = System.nanoTime();
+            byte[] serialized = serializer.serialize(networkTask.getPayload());
+            metrics.getSerializationTime().record(System.nanoTime() - serializationTime);
+            byte[] compressed = Compressor.compress(serialized);
+            metrics.recordCompression(serialized.length, compressed.length);
+            return new EncodedPayload(ModelClassCache.hash(compressed), compressed);
+        });
+        byte[] encoded = networkTask.encode(payload.hash, sentPayloads.add(payload.hash) ? payload.bytes : null);
+        metrics.recordSent(encoded.length);
+        return encoded;
+    }
+
+    /**
+     * Decompresses and deserializes the results received by a slave server
+     *
+     * @param received data received by the slave server
+     * @param model    model of the simulation
+     * @param metrics  metrics of the communication with the slave server
+     * @return the results computed by the slave server
+     * @throws IOException if the results cannot be deserialized
+     */
+    protected ComputationResult<S> decodeResult(byte[] received, Model<S> model, NetworkMetrics metrics)
+            throws IOException {
+        metrics.recordReceived(received.length);
+        byte[] decompressed = Compressor.decompress(received);
+        metrics.recordCompression(decompressed.length, received.length);
+        long deserializationTime = System.nanoTime();
+        ComputationResult<S> result = deserializeComputationResult(decompressed, model);
+        metrics.getDeserializationTime().record(System.nanoTime() - deserializationTime);
+        return result;
+    }
+
+    /**
+     * Reads the answer of a slave server to the init command
+     *
+     * @param message message received from the slave server
+     * @return the command sent by the slave server
+     * @throws IOException if the slave server could not load the model class
+     */
+    protected SlaveCommand readInitAnswer(byte[] message) throws IOException {
+        if (CommandSerializer.startsWithCommand(message, SlaveCommand.INIT_ERROR)) {
+            throw new IOException(String.format("The slave could not load the model class: %s",
+                    new String(CommandSerializer.getPayload(message), StandardCharsets.UTF_8)));
+        }
+        return CommandSerializer.deserialize(message, SlaveCommand.class);
+    }
+
+    /**
+     * Initializes a connection to the target server sending the model class
+     *
+     * @param slave NetworkManager through the model is passed
+     */
+    protected void initConnection(TCPNetworkManager slave) throws IOException {
+        try {
+            slave.writeObject(CommandSerializer.serialize(MasterCommand.INIT));
+            LOGGER.info(String.format("[%s] command sent to the slave: %s", MasterCommand.INIT,
+                    slave.getNetworkInfo().toString()));
+            slave.writeObject(CommandSerializer.serializeString(modelDefinitionClassName));
+            LOGGER.info(String.format("[%s] Model name has been sent to the slave: %s",
+                    modelDefinitionClassName, slave.getNetworkInfo().toString()));
+            slave.writeObject(CommandSerializer.serializeString(getModelClassHash()));
+
+            SlaveCommand answer = readInitAnswer(slave.readObject());
+            if (answer.equals(SlaveCommand.CLASS_REQUEST)) {
+                slave.writeObject(getModelClassBytes());
+                LOGGER.info(String.format("Class bytes have been sent to the slave: %s",
+                        slave.getNetworkInfo().toString()));
+                answer = readInitAnswer(slave.readObject());
+            }
+            if (answer.equals(SlaveCommand.INIT_RESPONSE)) {
+                LOGGER.info(
+                        String.format("Answer received: [%s] - Slave: %s", answer, slave.getNetworkInfo().toString()));
+            } else {
+                throw new ClassCastException("Wrong answer after INIT command. Expected INIT_RESPONSE");
+            }
+
+        } catch (ClassCastException e) {
+            LOGGER.severe(String.format("[%s] Message cast failure during the connection initialization - Slave: %s",
+                    e.getMessage(), slave.getNetworkInfo().toString()));
+            throw new IOException();
+        } catch (IOException e) {
+            LOGGER.severe(String.format(
+                    "[%s] Network communication failure during the connection initialization  - Slave: %s",
+                    e.getMessage(), slave.getNetworkInfo().toString()));
+            throw new IOException();
+        }
+    }
+
+    /**
+     * Returns the bytes of the model class, that are sent to the slaves that do not have it in cache
+     *
+     * @return the bytes of the model class
+     * @throws IOException if the class bytes cannot be loaded
+     */
+    protected synchronized byte[] getModelClassBytes() throws IOException {
+        if (modelClassBytes == null) {
+            modelClassBytes = ClassBytesLoader.loadClassBytes(modelDefinitionClassName);
+            modelClassHash = ModelClassCache.hash(modelClassBytes);
+        }
+        return modelClassBytes;
+    }
+
+    /**
+     * Returns the hash identifying the model class in the cache of the slaves
+     *
+     * @return the hash of the bytes of the model class
+     * @throws IOException if the class bytes cannot be loaded
+     */
+    protected synchronized String getModelClassHash() throws IOException {
+        getModelClassBytes();
+        return modelClassHash;
+    }
+
+    /**
+     * Selects, among the given tasks, the longest prefix of tasks that refer to the same
+     * simulation unit and that have consecutive indexes. These tasks can be described by a
+     * single {@link NetworkTask}. The other tasks are rescheduled.
+     *
+     * @param tasks tasks taken from the queue
+     * @return tasks that are sent to a slave server
+     */
+    protected List<SimulationTask<S>> nextReplicaRange(List<SimulationTask<S>> tasks) {
+        int size = 1;
+        while ((size < tasks.size()) && (tasks.get(size).getUnit() == tasks.get(0).getUnit())
+                && (tasks.get(size).getIndex() == tasks.get(0).getIndex() + size)) {
+            size++;
+        }
+        if (size >= tasks.size()) {
+            return tasks;
+        }
+        rescheduleAll(new LinkedList<>(tasks.subList(size, tasks.size())));
+        return new LinkedList<>(tasks.subList(0, size));
+    }
+
+    /**
+     * Creates the {@link NetworkTask} describing a range of replicas
+     *
+     * @param tasks tasks with consecutive indexes referring to the same simulation unit
+     * @return the network task describing the given tasks
+     */
+    protected NetworkTask<S> createNetworkTask(List<SimulationTask<S>> tasks) {
+        return new NetworkTask<>(tasks.get(0).getUnit(), emptySamplingFunction, seed, tasks.get(0).getIndex(),
+                tasks.size());
+    }
+
+    /**
+     * Merges the statistics computed by a slave in the sampling function of the simulation. The results
+     * of a range of replicas are merged only if none of them has already been completed: results received
+     * twice, for instance from a speculative execution, are discarded.
+     *
+     * @param result results received from a slave
+     * @return true if the results have been merged, false if they have been discarded
+     */
+    protected boolean mergeResult(ComputationResult<S> result) {
+        synchronized (samplingFunction) {
+            if (result.getFirstReplica() >= 0 && !ledger.complete(result.getFirstReplica(), result.getCompletedTasks())) {
+                LOGGER.info(String.format("Discarded the results of %d replicas already completed, starting from replica %d",
+                        result.getCompletedTasks(), result.getFirstReplica()));
+                return false;
+            }
+            if (result.getStatistics() != null && samplingFunction instanceof SweepSamplingFunction) {
+                if (result.getFirstReplica() < 0) {
+                    LOGGER.warning(String.format("Discarded the results of %d replicas whose point of the sweep is unknown",
+                            result.getCompletedTasks()));
+                    return false;
+                }
+                SweepSamplingFunction<S> sweep = (SweepSamplingFunction<S>) samplingFunction;
+                sweep.merge(sweep.getPointOf(result.getFirstReplica(), firstReplica), result.getStatistics());
+            } else if (result.getStatistics() != null) {
+                samplingFunction.merge(result.getStatistics());
+            }
+        }
+        simulationState.addCompletedTasks(result.getCompletedTasks());
+        checkpoint(false);
+        return true;
+    }
+
+    /**
+     * Stops the submission of new tasks. If the simulation has been cancelled through its monitor,
+     * the tasks that have not been sent to the slaves yet are discarded, so that the simulation
+     * concludes as soon as the running tasks are completed.
+     *
+     * @throws InterruptedException if the thread is interrupted
+     */
+    @Override
+    public void shutdown() throws InterruptedException {
+        if ((getMonitor() != null) && getMonitor().isCancelled()) {
+            List<SimulationTask<S>> discarded = getTask(pendingTasks());
+            LOGGER.info(String.format("Simulation of model %s cancelled, %d tasks discarded",
+                    modelDefinitionClassName, discarded.size()));
+            simulationState.setPendingTasks(pendingTasks());
+            checkpoint(true);
+        }
+        super.shutdown();
+    }
+
+    protected ComputationResult<S> deserializeComputationResult(byte[] toDeserialize, Model<S> model) throws IOException {
+        switch (this.crSerializerType) {
+            case FST:
+                return (ComputationResult<S>) Serializer.getSerializer(SerializerType.FST).deserialize(toDeserialize);
+            case APACHE:
+                return (ComputationResult<S>) Serializer.getSerializer(SerializerType.APACHE).deserialize(toDeserialize);
+            default:
+            case CUSTOM:
+                return ComputationResultSerializer.deserialize(toDeserialize, model);
+        }
+    }
+
+    /**
+     * Payload of a simulation unit, serialized and compressed, together with its hash
+     */
+    private static final class EncodedPayload {
+        private final String hash;
+        private final byte[] bytes;
+
+        private EncodedPayload(String hash, byte[] bytes) {
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.simulator.SimulationMonitor;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+
+/**
+ * Monitor of a simulation submitted by a client, used by the master server to cancel the
+ * simulation when the client asks for it. Once cancelled, the simulation managers discard
+ * the tasks that have not been sent to the slave servers yet.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class ClientSimulationMonitor implements SimulationMonitor {
+
+    private final PropertyChangeSupport updateSupport = new PropertyChangeSupport(this);
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Cancels the monitored simulation
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            updateSupport.firePropertyChange(CANCELLED, false, true);
+        }
+    }
+
+    @Override
+    public void startIteration(int i) {
+    }
+
+    @Override
+    public void endIteration(int i) {
+    }
+
+    @Override
+    public void endSimulation() {
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void registerPropertyChangeListener(PropertyChangeListener l) {
+        updateSupport.addPropertyChangeListener(l);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+import it.unicam.quasylab.sibilla.core.network.SimulationProgress;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Sends to a client the partial and the final results of the simulations it submitted. The state of a
+ * simulation notifies its listeners while it is locked, so they must not serialize the results nor write
+ * them on the connection: these operations are executed by a thread dedicated to the client, in the
+ * order in which they are requested.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+class ClientWriter {
+
+    private final Logger LOGGER;
+
+    private final TCPNetworkManager client;
+
+    private final Serializer serializer;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates the writer of the results sent to a client
+     *
+     * @param client     connection with the client
+     * @param serializer serializer of the results
+     */
+    ClientWriter(TCPNetworkManager client, Serializer serializer) {
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        this.client = client;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Sends the partial results of a running simulation. The counters of the simulation are read
+     * immediately, while the statistics merged so far are serialized by the writing thread holding
+     * the lock of the sampling function, so that they are consistent. Partial results that are still
+     * waiting to be sent when the simulation concludes are discarded.
+     *
+     * @param state the state of the running simulation.
+     */
+    void sendProgress(SimulationState state) {
+        int completedTasks = state.getCompletedTasks();
+        int totalTasks = state.getTotalSimulationTasks();
+        long elapsedTime = System.currentTimeMillis() - state.getSimulationStartDate().getTime();
+        SamplingFunction<State> samplingFunction = (SamplingFunction<State>) state.simulationDataSet().getModelSamplingFunction();
+        submit(() -> {
+            if (state.isConcluded()) {
+                return;
+            }
+            try {
+                byte[] progress;
+                synchronized (samplingFunction) {
+                    progress = serializer.serialize(new SimulationProgress<>(completedTasks, totalTasks, elapsedTime,
+                            samplingFunction));
+                }
+                client.writeObject(CommandSerializer.serialize(MasterCommand.PROGRESS));
+                client.writeObject(progress);
+                LOGGER.info(String.format("[%s] Partial results of %d tasks have been sent to the client: %s",
+                        MasterCommand.PROGRESS, completedTasks, client.getNetworkInfo().toString()));
+            } catch (IOException e) {
+                LOGGER.severe(String.format("[%s] Network communication failure during the partial results submit - Client: %s", e.getMessage(), client.getNetworkInfo().toString()));
+            }
+        });
+    }
+
+    /**
+     * Sends the final results of a concluded simulation, after the partial results already requested.
+     *
+     * @param state the state of the concluded simulation.
+     */
+    void sendResults(SimulationState state) {
+        submit(() -> {
+            try {
+                client.writeObject(CommandSerializer.serialize(MasterCommand.RESULTS));
+                LOGGER.info(String.format("[%s] command sent to the client: %s", MasterCommand.RESULTS,
+                        client.getNetworkInfo().toString()));
+                client.writeObject(serializer.serialize(state.simulationDataSet().getModelSamplingFunction()));
+                LOGGER.info(String.format("Results have been sent to the client: %s",
+                        client.getNetworkInfo().toString()));
+            } catch (IOException e) {
+                LOGGER.severe(String.format("[%s] Network communication failure during the results submit - Client: %s", e.getMessage(), client.getNetworkInfo().toString()));
+            }
+        });
+    }
+
+    /**
+     * Stops the writing thread once the results already requested have been sent
+     */
+    void close() {
+        writer.shutdown();
+    }
+
+    private void submit(Runnable write) {
+        try {
+            writer.execute(write);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warning(String.format("Results not sent, the connection has been closed - Client: %s",
+                    client.getNetworkInfo().toString()));
+        }
+    }
+}
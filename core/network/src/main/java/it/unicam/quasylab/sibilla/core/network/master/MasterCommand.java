@@ -23,43 +23,70 @@
 
 package it.unicam.quasylab.sibilla.core.network.master;
 
+import it.unicam.quasylab.sibilla.core.network.NetworkCommand;
+
 /**
  * All the possible command and signals that can be sent from a master server.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
  */
-public enum MasterCommand {
+public enum MasterCommand implements NetworkCommand {
     /**
      * The command sent by a master server to initiate a new connection over the network.
      */
-    INIT,
+    INIT(0x10),
     /**
      * The command sent by a master server to ping an host which has a connection open with.
      */
-    PING,
+    PING(0x11),
     /**
      * The command sent by a master server to inform that a batch of tasks will be sent over the network connection.
      */
-    TASK,
+    TASK(0x12),
+    /**
+     * The command sent by a master server to inform that a batch of tasks, tagged with the identifier of its
+     * simulation, will be sent over a network connection shared by different simulations.
+     */
+    MULTIPLEXED_TASK(0x13),
+    /**
+     * The command sent by a master server to inform that the partial results of a running simulation will be sent over the network connection.
+     */
+    PROGRESS(0x14),
     /**
      * The command sent by a master server to inform that a batch of simulations' results will be sent over the network connection.
      */
-    RESULTS,
+    RESULTS(0x15),
     /**
      * The command sent by a master server to reply to a ping request received by an host.
      */
-    PONG,
+    PONG(0x16),
     /**
      * The command sent by a master server that has received an INIT command from a client.
      */
-    INIT_RESPONSE,
+    INIT_RESPONSE(0x17),
     /**
      * The command sent by a master server that has received a DATA command from a client.
      */
-    DATA_RESPONSE,
+    DATA_RESPONSE(0x18),
     /**
      * The command sent by a master server to inform that the connection with an host will be closed.
      */
-    CLOSE_CONNECTION
+    CLOSE_CONNECTION(0x19),
+    /**
+     * The command sent by a master server, through the discovery channel, to acknowledge the DRAIN command of a
+     * slave server. It is followed, in the same message, by the discovery infos of the master server.
+     */
+    DRAIN_RESPONSE(0x1A);
+
+    private final byte opcode;
+
+    MasterCommand(int opcode) {
+        this.opcode = (byte) opcode;
+    }
+
+    @Override
+    public byte getOpcode() {
+        return opcode;
+    }
 }
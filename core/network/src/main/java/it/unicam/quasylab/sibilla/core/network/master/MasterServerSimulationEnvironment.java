@@ -26,31 +26,44 @@ package it.unicam.quasylab.sibilla.core.network.master;
 import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
 import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.ParameterSweep;
 import it.unicam.quasylab.sibilla.core.network.SimulationDataSet;
+import it.unicam.quasylab.sibilla.core.network.SweepPointModel;
 import it.unicam.quasylab.sibilla.core.network.client.ClientCommand;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
 import it.unicam.quasylab.sibilla.core.network.communication.UDPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.communication.UDPNetworkManagerType;
 import it.unicam.quasylab.sibilla.core.network.loaders.CustomClassLoader;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
 import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveCommand;
 import it.unicam.quasylab.sibilla.core.network.util.NetworkUtils;
 import it.unicam.quasylab.sibilla.core.simulator.SimulationEnvironment;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationManager;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationManagerFactory;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationUnit;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplePredicate;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 /**
@@ -72,6 +85,11 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
      */
     private final static int DISCOVERY_TIME = 15000;
 
+    /**
+     * Default milliseconds between two submissions of the partial results of a simulation to its client.
+     */
+    public final static long DEFAULT_PROGRESS_INTERVAL = 1000;
+
     /**
      * Slave servers' discovery related thread executor.
      */
@@ -117,6 +135,43 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
 
     private ComputationResultSerializerType crSerializerType;
 
+    /**
+     * Whether the connections with the slave servers are handled by a single selector thread.
+     */
+    private volatile boolean selectorDispatch = false;
+
+    /**
+     * Whether the simulations share a pool of persistent connections with the slave servers.
+     */
+    private volatile boolean multiplexedDispatch = false;
+
+    /**
+     * Milliseconds between two submissions of the partial results of a simulation to its client.
+     */
+    private volatile long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+    /**
+     * Directory where the progress of the simulations is journaled, null if it is not journaled.
+     */
+    private volatile String journalDirectory = null;
+
+    /**
+     * Pool of connections shared by the simulations, created when the first multiplexed simulation is submitted.
+     */
+    private MultiplexedSlavePool slavePool;
+
+    /**
+     * Slave servers drained by this master server, that are not registered again when they reply to the
+     * discovery messages.
+     */
+    private final Set<NetworkInfo> drainedSlaves = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Writers of the results sent to the connected clients, so that the listeners of the simulation
+     * states never write on the connections with the clients.
+     */
+    private final Map<TCPNetworkManager, ClientWriter> clientWriters = new ConcurrentHashMap<>();
+
     /**
      * Creates and starts up a master server with the given parameters.
      *
@@ -175,6 +230,57 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
 
     }
 
+    /**
+     * Sets whether the next simulations handle the connections with the slave servers through a
+     * single selector thread, see {@link SelectorNetworkSimulationManager}, instead of using a
+     * thread for each slave server.
+     *
+     * @param selectorDispatch true to use non-blocking connections with the slave servers.
+     */
+    public void setSelectorDispatch(boolean selectorDispatch) {
+        this.selectorDispatch = selectorDispatch;
+    }
+
+    /**
+     * Sets whether the next simulations share a pool of persistent connections with the slave servers,
+     * see {@link MultiplexedSlavePool}. Tasks of concurrent simulations are interleaved on the same
+     * slaves, in proportion to the weights of their data sets, see {@link SimulationDataSet#getWeight()}.
+     * This setting takes precedence over the selector dispatch.
+     *
+     * @param multiplexedDispatch true to share the connections with the slave servers among simulations.
+     */
+    public void setMultiplexedDispatch(boolean multiplexedDispatch) {
+        this.multiplexedDispatch = multiplexedDispatch;
+    }
+
+    /**
+     * Sets the minimum interval between two submissions of the partial results of a simulation to
+     * the client that submitted it. A non positive value disables the submission of partial results.
+     *
+     * @param progressInterval milliseconds between two submissions of the partial results.
+     */
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Sets the directory where the next simulations journal their progress, see {@link SimulationJournal}.
+     * When a simulation with the same model and data set is submitted again, for instance after a restart
+     * of the master server, only the replicas missing from its journal are executed.
+     *
+     * @param journalDirectory directory of the journals, null to not journal the progress of the simulations.
+     */
+    public void setJournalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    private synchronized MultiplexedSlavePool getSlavePool() {
+        if (slavePool == null) {
+            slavePool = new MultiplexedSlavePool();
+        }
+        return slavePool;
+    }
+
     /**
      * Broadcasts the slave server discovery message through every master's network interface.
      */
@@ -213,9 +319,16 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
     private void startDiscoveryServer() {
         try {
             while (true) {
-                NetworkInfo slaveSimulationServer = (NetworkInfo) serializer
-                        .deserialize(discoveryNetworkManager.readObject());
-                slaveDiscoveryConnectionExecutor.execute(() -> manageServers(slaveSimulationServer));
+                byte[] message = discoveryNetworkManager.readObject();
+                if (CommandSerializer.startsWithCommand(message, SlaveCommand.DRAIN)) {
+                    NetworkInfo slaveSimulationServer = (NetworkInfo) serializer
+                            .deserialize(CommandSerializer.getPayload(message));
+                    acknowledgeDrain(slaveSimulationServer);
+                    slaveDiscoveryConnectionExecutor.execute(() -> drainServer(slaveSimulationServer));
+                } else {
+                    NetworkInfo slaveSimulationServer = (NetworkInfo) serializer.deserialize(message);
+                    slaveDiscoveryConnectionExecutor.execute(() -> manageServers(slaveSimulationServer));
+                }
             }
         } catch (ClassCastException e) {
             LOGGER.severe(String.format("[%s] Message cast failure during the discovery server startup", e.getMessage()));
@@ -224,14 +337,64 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
         }
     }
 
+    /**
+     * Acknowledges the DRAIN command of a slave server, that sends it again until it is acknowledged.
+     * Every DRAIN command is acknowledged, since a previous acknowledgement may have been lost.
+     *
+     * @param info {@link NetworkInfo} related to the draining slave server.
+     */
+    private void acknowledgeDrain(NetworkInfo info) {
+        try {
+            discoveryNetworkManager.writeObject(CommandSerializer.serialize(MasterCommand.DRAIN_RESPONSE,
+                    serializer.serialize(localDiscoveryInfo)), info.getAddress(), remoteDiscoveryPort);
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Network communication failure during the drain acknowledgement - Slave: %s",
+                    e.getMessage(), info.toString()));
+        }
+    }
+
     /**
      * Adds the network related informations received by a discovered slave server.
      *
      * @param info {@link NetworkInfo} received by a discovered slave server that will be used to submit it simulations.
      */
     private void manageServers(NetworkInfo info) {
+        if (drainedSlaves.contains(info)) {
+            return;
+        }
         if (state.addSlaveServer(info)) {
             LOGGER.info(String.format("Added slave server - %s", info.toString()));
+            for (SimulationState simulationState : state.getRunningSimulationStates()) {
+                if (simulationState.addSlaveServer(info)) {
+                    LOGGER.info(String.format("The slave server joins the running simulation submitted by: %s - %s",
+                            simulationState.getClientNetworkInfo().toString(), info.toString()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains a slave server: it completes the tasks of the running simulations it is executing, then it
+     * receives no new tasks. The slave server is not registered again when it replies to the discovery messages.
+     *
+     * @param info {@link NetworkInfo} related to the slave server to drain.
+     */
+    public void drainSlave(NetworkInfo info) {
+        drainedSlaves.add(info);
+        drainServer(info);
+    }
+
+    /**
+     * Unregisters a slave server, that completes the tasks of the running simulations it is executing.
+     *
+     * @param info {@link NetworkInfo} related to the slave server to drain.
+     */
+    private void drainServer(NetworkInfo info) {
+        if (state.removeSlaveServer(info)) {
+            LOGGER.info(String.format("Draining slave server - %s", info.toString()));
+        }
+        for (SimulationState simulationState : state.getRunningSimulationStates()) {
+            simulationState.drainSlaveServer(info);
         }
     }
 
@@ -265,22 +428,32 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
             SimulationState simulationState = new SimulationState(this.state, localSimulationInfo,
                     simulationNetworkManager.getNetworkInfo(), this.state.getSlaveServersNetworkInfos(), this);
 
+            simulationState.setJournalDirectory(this.journalDirectory);
             AtomicBoolean clientIsActive = new AtomicBoolean(true);
+            ClientSimulationMonitor monitor = new ClientSimulationMonitor();
 
             Map<ClientCommand, Runnable> map = Map.of(ClientCommand.PING,
                     () -> this.respondPingRequest(simulationNetworkManager), ClientCommand.INIT,
                     () -> this.loadModelClass(simulationNetworkManager, simulationState), ClientCommand.DATA,
-                    () -> this.handleSimulationDataSet(simulationNetworkManager, simulationState),
+                    () -> this.handleSimulationDataSet(simulationNetworkManager, simulationState, monitor),
+                    ClientCommand.CANCEL, () -> this.cancelSimulation(simulationNetworkManager, monitor),
                     ClientCommand.CLOSE_CONNECTION,
                     () -> this.closeConnectionWithClient(simulationNetworkManager, clientIsActive));
-            while (clientIsActive.get()) {
-                ClientCommand command = (ClientCommand) serializer
-                        .deserialize(simulationNetworkManager.readObject());
-                LOGGER.info(String.format("[%s] command received by client - %s", command,
-                        simulationNetworkManager.getNetworkInfo().toString()));
-                map.getOrDefault(command, () -> {
-                    throw new ClassCastException("Command received from client wasn't expected.");
-                }).run();
+            ClientWriter writer = new ClientWriter(simulationNetworkManager, serializer);
+            clientWriters.put(simulationNetworkManager, writer);
+            try {
+                while (clientIsActive.get()) {
+                    ClientCommand command = CommandSerializer.deserialize(simulationNetworkManager.readObject(),
+                            ClientCommand.class);
+                    LOGGER.info(String.format("[%s] command received by client - %s", command,
+                            simulationNetworkManager.getNetworkInfo().toString()));
+                    map.getOrDefault(command, () -> {
+                        throw new ClassCastException("Command received from client wasn't expected.");
+                    }).run();
+                }
+            } finally {
+                clientWriters.remove(simulationNetworkManager);
+                writer.close();
             }
         } catch (ClassCastException e) {
             LOGGER.severe(String.format("[%s] Message cast failure during client communication", e.getMessage()));
@@ -297,13 +470,13 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
      */
     private void closeConnectionWithClient(TCPNetworkManager client, AtomicBoolean clientActive) {
         try {
-            String modelName = (String) serializer.deserialize(client.readObject());
+            String modelName = CommandSerializer.deserializeString(client.readObject());
             LOGGER.info(String.format("[%s] Model name to be deleted read by client: %s", modelName,
                     client.getNetworkInfo().toString()));
             clientActive.set(false);
             CustomClassLoader.removeClassBytes(modelName);
             LOGGER.info(String.format("[%s] Model deleted off the class loader", modelName));
-            client.writeObject(serializer.serialize(MasterCommand.CLOSE_CONNECTION));
+            client.writeObject(CommandSerializer.serialize(MasterCommand.CLOSE_CONNECTION));
             LOGGER.info(String.format("[%s] command sent to the client: %s", MasterCommand.CLOSE_CONNECTION,
                     client.getNetworkInfo().toString()));
 
@@ -321,8 +494,9 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
      *
      * @param client          client related {@link TCPNetworkManager}.
      * @param simulationState the state of the simulation related to the datas that need to be managed.
+     * @param monitor         the monitor used to cancel the simulation.
      */
-    private void handleSimulationDataSet(TCPNetworkManager client, SimulationState simulationState) {
+    private void handleSimulationDataSet(TCPNetworkManager client, SimulationState simulationState, ClientSimulationMonitor monitor) {
         try {
             SimulationDataSet<State> dataSet = (SimulationDataSet<State>) serializer
                     .deserialize(client.readObject());
@@ -330,10 +504,10 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
             simulationState.setClientConnection(client);
             LOGGER.info(
                     String.format("Simulation data received by the client: %s", client.getNetworkInfo().toString()));
-            client.writeObject(serializer.serialize(MasterCommand.DATA_RESPONSE));
+            client.writeObject(CommandSerializer.serialize(MasterCommand.DATA_RESPONSE));
             LOGGER.info(String.format("[%s] command sent to the client: %s", MasterCommand.DATA_RESPONSE,
                     client.getNetworkInfo().toString()));
-            this.submitSimulations(client, dataSet, simulationState);
+            this.submitSimulations(client, dataSet, simulationState, monitor);
         } catch (IOException e) {
             LOGGER.severe(String.format("[%s] Network communication failure during the simulation dataset reception - Client: %s", e.getMessage(), client.getNetworkInfo().toString()));
         }
@@ -343,13 +517,25 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
      * Submits the slave servers a new set of simulations.
      *
      * @param dataSet containing all the simulation oriented datas.
+     * @param monitor the monitor used to cancel the simulation.
      */
-    private void submitSimulations(TCPNetworkManager client, SimulationDataSet<State> dataSet, SimulationState simulationState) {
+    private void submitSimulations(TCPNetworkManager client, SimulationDataSet<State> dataSet, SimulationState simulationState, ClientSimulationMonitor monitor) {
         try {
-            SimulationEnvironment sim = new SimulationEnvironment(
-                    NetworkSimulationManager.getNetworkSimulationManagerFactory(simulationState, serializer.getType(), this.crSerializerType, client.getNetworkInfo()));
+            SimulationManagerFactory factory = this.multiplexedDispatch
+                    ? MultiplexedNetworkSimulationManager.getMultiplexedNetworkSimulationManagerFactory(simulationState, serializer.getType(), this.crSerializerType, getSlavePool(), dataSet.getWeight())
+                    : this.selectorDispatch
+                    ? SelectorNetworkSimulationManager.getSelectorNetworkSimulationManagerFactory(simulationState, serializer.getType(), this.crSerializerType)
+                    : NetworkSimulationManager.getNetworkSimulationManagerFactory(simulationState, serializer.getType(), this.crSerializerType, client.getNetworkInfo());
+            if (dataSet.getSweep() != null) {
+                submitSweep(factory, dataSet, simulationState, monitor);
+                this.state.increaseExecutedSimulations();
+                return;
+            }
+            SimulationEnvironment sim = new SimulationEnvironment(factory);
 
-            sim.simulate(dataSet.getRandomGenerator(), dataSet.getModel(), rg -> dataSet.getModelInitialState(),
+            State initialState = dataSet.getModelInitialState();
+            sim.simulate(monitor, dataSet.getRandomGenerator(), dataSet.getModel(),
+                    (Function<RandomGenerator, State> & Serializable) rg -> initialState,
                     dataSet.getModelSamplingFunction()::getSamplingHandler, dataSet.getReplica(), dataSet.getDeadline());
             this.state.increaseExecutedSimulations();
         } catch (InterruptedException e) {
@@ -357,6 +543,37 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
         }
     }
 
+    /**
+     * Submits the slave servers the replicas of all the points of a parameter sweep, as a single simulation.
+     * The replicas are submitted point by point. The model of each point is not sent to the slave servers:
+     * they instantiate it through the model definition, see {@link SweepPointModel}.
+     *
+     * @param factory         the factory of the manager of the simulation.
+     * @param dataSet         containing all the simulation oriented datas.
+     * @param simulationState the state of the simulation.
+     * @param monitor         the monitor used to cancel the simulation.
+     * @throws InterruptedException if the simulation is interrupted.
+     */
+    private void submitSweep(SimulationManagerFactory factory, SimulationDataSet<State> dataSet, SimulationState simulationState,
+                             ClientSimulationMonitor monitor) throws InterruptedException {
+        ParameterSweep sweep = dataSet.getSweep();
+        LOGGER.info(String.format("Submitting a parameter sweep of model %s: %s", simulationState.getSimulationModelName(),
+                sweep.toString()));
+        SimulationManager<State> manager = factory.getSimulationManager(dataSet.getRandomGenerator(), monitor);
+        State initialState = dataSet.getModelInitialState();
+        for (int point = 0; point < sweep.size() && !monitor.isCancelled(); point++) {
+            SimulationUnit<State> unit = new SimulationUnit<>(
+                    new SweepPointModel<>(simulationState.getSimulationModelName(), sweep, point),
+                    (Function<RandomGenerator, State> & Serializable) rg -> initialState, null,
+                    SamplePredicate.timeDeadlinePredicate(dataSet.getDeadline()));
+            for (int i = 0; i < dataSet.getReplica() && !monitor.isCancelled(); i++) {
+                manager.simulate(unit);
+            }
+        }
+        manager.shutdown();
+        monitor.endSimulation();
+    }
+
     /**
      * Manages the reception of the simulation model from the client.
      *
@@ -365,7 +582,7 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
      */
     private void loadModelClass(TCPNetworkManager client, SimulationState simulationState) {
         try {
-            String modelName = (String) serializer.deserialize(client.readObject());
+            String modelName = CommandSerializer.deserializeString(client.readObject());
             LOGGER.info(String.format("[%s] Model name read by client: %s", modelName,
                     client.getNetworkInfo().toString()));
             byte[] modelBytes = client.readObject();
@@ -373,7 +590,7 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
             String classLoadedName = Class.forName(modelName).getName();
             simulationState.setSimulationModelName(classLoadedName);
             LOGGER.info(String.format("[%s] Class loaded with success", classLoadedName));
-            client.writeObject(serializer.serialize(MasterCommand.INIT_RESPONSE));
+            client.writeObject(CommandSerializer.serialize(MasterCommand.INIT_RESPONSE));
             LOGGER.info(String.format("[%s] command sent to the client: %s", MasterCommand.INIT_RESPONSE,
                     client.getNetworkInfo().toString()));
         } catch (ClassCastException e) {
@@ -388,6 +605,18 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
         }
     }
 
+    /**
+     * Manages the cancellation of the simulation submitted by the client. The results collected
+     * until the cancellation are sent to the client as soon as the running tasks are completed.
+     *
+     * @param client  client related {@link TCPNetworkManager}.
+     * @param monitor the monitor of the simulation to cancel.
+     */
+    private void cancelSimulation(TCPNetworkManager client, ClientSimulationMonitor monitor) {
+        monitor.cancel();
+        LOGGER.info(String.format("Simulation cancelled by the client: %s", client.getNetworkInfo().toString()));
+    }
+
     /**
      * Manages a ping request from the client.
      *
@@ -395,7 +624,7 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
      */
     private void respondPingRequest(TCPNetworkManager client) {
         try {
-            client.writeObject(serializer.serialize(MasterCommand.PONG));
+            client.writeObject(CommandSerializer.serialize(MasterCommand.PONG));
             LOGGER.info(String.format("[%s] command sent to the client: %s", MasterCommand.PONG,
                     client.getNetworkInfo().toString()));
         } catch (IOException e) {
@@ -404,32 +633,23 @@ public class MasterServerSimulationEnvironment implements PropertyChangeListener
         }
     }
 
+    /**
+     * Sends the client of a simulation its partial results, when they are due, and its final results, when
+     * the simulation is concluded. This listener is notified while the state of the simulation is locked:
+     * the results are sent by the writer of the client.
+     */
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
         if (evt.getNewValue() instanceof SimulationState) {
             SimulationState state = (SimulationState) evt.getNewValue();
+            ClientWriter writer = state.clientConnection() == null ? null : clientWriters.get(state.clientConnection());
+            if (writer == null) {
+                return;
+            }
             if (state.isConcluded()) {
-                try {
-                    state.clientConnection().writeObject(serializer.serialize(MasterCommand.RESULTS));
-                    LOGGER.info(String.format("[%s] command sent to the client: %s", MasterCommand.RESULTS,
-                            state.clientConnection().getNetworkInfo().toString()));
-                    //state.clientConnection().writeObject(serializer.serialize(state.simulationDataSet().getModelSamplingFunction()));
-                    var wrapper = new Object() {
-                        byte[] toWrite;
-                    };
-
-                    //  resultSerializationBenchmark.run(() -> {
-                    wrapper.toWrite = serializer.serialize(state.simulationDataSet().getModelSamplingFunction());
-                       /* return List.of((double) wrapper.toWrite.length);
-                    });*/
-
-                    state.clientConnection().writeObject(wrapper.toWrite);
-
-                    LOGGER.info(String.format("Results have been sent to the client: %s",
-                            state.clientConnection().getNetworkInfo().toString()));
-                } catch (IOException e) {
-                    LOGGER.severe(String.format("[%s] Network communication failure during the results submit - Client: %s", e.getMessage(), state.clientConnection().getNetworkInfo().toString()));
-                }
+                writer.sendResults(state);
+            } else if (progressInterval > 0 && state.getCompletedTasks() > 0 && state.isProgressDue(progressInterval)) {
+                writer.sendProgress(state);
             }
         }
     }
@@ -110,6 +110,14 @@ public class MasterState implements Serializable, Comparable<MasterState>, Prope
         return simulationStates;
     }
 
+    /**
+     * @return a copy of the {@link java.util.Set} of the submitted simulation states that are not concluded yet.
+     */
+    public synchronized Set<SimulationState> getRunningSimulationStates() {
+        return simulationStates.stream().filter(simulationState -> !simulationState.isConcluded())
+                .collect(Collectors.toSet());
+    }
+
     /**
      * Removes a {@link SimulationState}.
      *
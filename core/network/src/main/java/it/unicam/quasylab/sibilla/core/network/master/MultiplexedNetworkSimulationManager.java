@@ -0,0 +1,238 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
+import it.unicam.quasylab.sibilla.core.simulator.*;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Simulation manager whose tasks are executed by the slave servers of a {@link MultiplexedSlavePool}.
+ * The pool keeps a single connection with each slave server, shared by all the simulations that are
+ * executed at the same time, and it chooses which simulation sends the next group of tasks to an idle
+ * slave server by weighted fair queuing.
+ *
+ * @param <S> The {@link State} of the simulation model.
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class MultiplexedNetworkSimulationManager<S extends State> extends AbstractNetworkSimulationManager<S> {
+
+    private final MultiplexedSlavePool pool;
+
+    /**
+     * Weight of the simulation in the sharing of the slave servers
+     */
+    private final double weight;
+
+    /**
+     * Identifier of the simulation in the pool, used to tag the frames exchanged with the slaves
+     */
+    private int id;
+
+    /**
+     * Number of tasks sent to the slaves and not completed yet
+     */
+    private int runningTasks = 0;
+
+    private boolean concluded = false;
+
+    /**
+     * Creates a new manager whose tasks are executed by the slaves of the given pool
+     *
+     * @param random           RandomGenerator used in the simulation
+     * @param monitor          monitor of the simulation
+     * @param simulationState  state of the simulation that is being executed
+     * @param serializerType   serializer used to exchange commands with the slaves
+     * @param crSerializerType serializer used by the slaves to send results
+     * @param pool             pool of the slave servers
+     * @param weight           weight of the simulation in the sharing of the slave servers
+     */
+    public MultiplexedNetworkSimulationManager(RandomGenerator random, SimulationMonitor monitor,
+                                               SimulationState simulationState, SerializerType serializerType,
+                                               ComputationResultSerializerType crSerializerType,
+                                               MultiplexedSlavePool pool, double weight) {
+        super(random, monitor, simulationState, serializerType, crSerializerType);
+        this.pool = pool;
+        this.weight = weight;
+        this.startTasksHandling();
+    }
+
+    public static SimulationManagerFactory getMultiplexedNetworkSimulationManagerFactory(SimulationState simulationState,
+                                                                                        SerializerType serializerType,
+                                                                                        ComputationResultSerializerType crSerializerType,
+                                                                                        MultiplexedSlavePool pool,
+                                                                                        double weight) {
+        return new SimulationManagerFactory() {
+            @Override
+            public <S extends State> SimulationManager<S> getSimulationManager(RandomGenerator random,
+                                                                               SimulationMonitor monitor) {
+                return new MultiplexedNetworkSimulationManager<>(random, monitor, simulationState, serializerType,
+                        crSerializerType, pool, weight);
+            }
+        };
+    }
+
+    @Override
+    protected void startTasksHandling() {
+        this.id = pool.register(this);
+        LOGGER.info(String.format("[%d] Simulation of model %s registered in the slave pool", id,
+                modelDefinitionClassName));
+    }
+
+    @Override
+    protected void handleTask(SimulationTask<S> simulationTask) {
+        super.handleTask(simulationTask);
+        pool.signal();
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        super.shutdown();
+        checkConcluded();
+        pool.signal();
+    }
+
+    @Override
+    public synchronized void join() throws InterruptedException {
+        while (!simulationState.isConcluded()) {
+            wait();
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+
+    double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the state of the given slave server in this simulation
+     *
+     * @param slaveInfo network info of the slave server
+     * @return the state of the slave server, or null if the slave is not used by this simulation
+     */
+    SlaveState getSlaveState(NetworkInfo slaveInfo) {
+        SlaveState state = simulationState.getSlaveStateByServerInfo(slaveInfo);
+        return (state == null || state.isRemoved() ? null : state);
+    }
+
+    /**
+     * Returns the next group of tasks to be executed by the given slave server
+     *
+     * @param state state of the slave server
+     * @return the tasks to be executed, an empty list if there are no tasks to execute
+     */
+    synchronized List<SimulationTask<S>> nextTasks(SlaveState state) {
+        if (!hasTasks()) {
+            return new LinkedList<>();
+        }
+        List<SimulationTask<S>> tasks = nextReplicaRange(getTask(nextBatchSize(state)));
+        if (!tasks.isEmpty()) {
+            runningTasks += tasks.size();
+            simulationState.increaseRunningServers();
+            simulationState.setPendingTasks(pendingTasks());
+        }
+        return tasks;
+    }
+
+    /**
+     * Records the completion of a group of tasks executed by a slave server, whose results
+     * have been merged while they were received
+     *
+     * @param tasks         executed tasks
+     * @param receivedTasks number of tasks whose results have been received
+     * @param state         state of the slave server
+     * @param elapsedTime   time needed to execute the tasks
+     */
+    void completed(List<SimulationTask<S>> tasks, int receivedTasks, SlaveState state, long elapsedTime) {
+        state.setSentTasks(tasks.size());
+        state.setReceivedTasks(receivedTasks);
+        updateSlaveState(state, tasks.size(), elapsedTime, -1);
+        synchronized (this) {
+            runningTasks -= tasks.size();
+        }
+        simulationState.decreaseRunningServers();
+        checkConcluded();
+    }
+
+    /**
+     * Reschedules the tasks of a group whose execution by a slave server has failed, except the
+     * ones whose results have already been received
+     *
+     * @param tasks tasks sent to the slave server
+     * @param state state of the slave server
+     */
+    void failed(List<SimulationTask<S>> tasks, SlaveState state) {
+        rescheduleAll(missingTasks(tasks));
+        synchronized (this) {
+            runningTasks -= tasks.size();
+        }
+        simulationState.decreaseRunningServers();
+        checkConcluded();
+        pool.signal();
+    }
+
+    /**
+     * Signals that a slave server can no longer execute the tasks of this simulation
+     *
+     * @param slaveInfo network info of the slave server
+     */
+    void slaveRemoved(NetworkInfo slaveInfo) {
+        SlaveState state = getSlaveState(slaveInfo);
+        if (state != null) {
+            state.setRemoved();
+        }
+        checkConcluded();
+    }
+
+    /**
+     * Marks the simulation as concluded when all its tasks have been executed, or when no slave
+     * server can execute them
+     */
+    void checkConcluded() {
+        synchronized (this) {
+            boolean hasSlaves = simulationState.getRegisteredSlaveServers() > 0;
+            if (concluded || runningTasks > 0 || (hasSlaves && (isRunning() || hasTasks()))) {
+                return;
+            }
+            concluded = true;
+            LOGGER.info(String.format("[%d] Simulation of model %s concluded", id, modelDefinitionClassName));
+            simulationState.setConcluded();
+            notifyAll();
+        }
+        pool.unregister(this);
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.ComputationResult;
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.NetworkTask;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.communication.TaggedNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.metrics.NetworkMetrics;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Pool of persistent connections with the slave servers, shared by the simulations that a master
+ * server executes at the same time. Each connection is handled by its own thread: when the slave
+ * server is idle, the next group of tasks is taken from the simulation that has received the lowest
+ * service with respect to its weight (weighted fair queuing). The tasks and the results exchanged
+ * on a connection are tagged with the identifier of their simulation, see {@link TaggedNetworkManager}.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class MultiplexedSlavePool {
+
+    /**
+     * Maximum time, in milliseconds, an idle connection waits before checking again for tasks.
+     */
+    private static final long IDLE_WAIT_TIME = 1000;
+
+    private final Logger LOGGER;
+
+    /**
+     * Connections with the slave servers, one for each slave server
+     */
+    private final Map<NetworkInfo, SlaveConnection> connections = new HashMap<>();
+
+    /**
+     * Virtual time of each registered simulation, that is the number of tasks sent to the
+     * slaves divided by the weight of the simulation
+     */
+    private final Map<MultiplexedNetworkSimulationManager<?>, Double> virtualTimes = new LinkedHashMap<>();
+
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * Monitor used by the idle connections to wait for new tasks. It is distinct from the monitor of the pool,
+     * so that simulations can signal new tasks while holding their own lock.
+     */
+    private final Object idle = new Object();
+
+    /**
+     * Number of signals sent to the idle connections
+     */
+    private long signals = 0;
+
+    private int nextId = 0;
+
+    private volatile boolean open = true;
+
+    /**
+     * Creates a new pool of connections with the slave servers
+     */
+    public MultiplexedSlavePool() {
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+    }
+
+    /**
+     * Registers a simulation whose tasks will be executed by the slaves of the pool. The
+     * connections with the slave servers of the simulation are opened if needed.
+     *
+     * @param simulation the simulation to register
+     * @return the identifier assigned to the simulation
+     */
+    synchronized int register(MultiplexedNetworkSimulationManager<?> simulation) {
+        double startTime = virtualTimes.values().stream().min(Double::compare).orElse(0.0);
+        virtualTimes.put(simulation, startTime);
+        for (SlaveState state : simulation.simulationState.getSlaveServersStates()) {
+            connections.computeIfAbsent(state.getSlaveInfo(), info -> {
+                SlaveConnection connection = new SlaveConnection(info);
+                connectionExecutor.execute(connection::run);
+                return connection;
+            });
+        }
+        signal();
+        return nextId++;
+    }
+
+    /**
+     * Removes a simulation from the pool
+     *
+     * @param simulation the simulation to remove
+     */
+    synchronized void unregister(MultiplexedNetworkSimulationManager<?> simulation) {
+        virtualTimes.remove(simulation);
+        signal();
+    }
+
+    /**
+     * Signals the idle connections that new tasks could be available
+     */
+    void signal() {
+        synchronized (idle) {
+            signals++;
+            idle.notifyAll();
+        }
+    }
+
+    /**
+     * Closes all the connections with the slave servers, once the groups of tasks they are
+     * executing are completed
+     */
+    public void close() {
+        open = false;
+        signal();
+    }
+
+    /**
+     * Waits until a simulation has tasks that can be executed by the given slave server
+     *
+     * @param slaveInfo network info of the slave server
+     * @return the group of tasks to execute, or null if the pool has been closed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private Dispatch<?> next(NetworkInfo slaveInfo) throws InterruptedException {
+        while (open) {
+            long signal;
+            synchronized (idle) {
+                signal = signals;
+            }
+            Dispatch<?> dispatch = nextDispatch(slaveInfo);
+            if (dispatch != null) {
+                return dispatch;
+            }
+            synchronized (idle) {
+                if (signal == signals && open) {
+                    idle.wait(IDLE_WAIT_TIME);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects, among the registered simulations, the one with the lowest virtual time that has tasks
+     * for the given slave server
+     *
+     * @param slaveInfo network info of the slave server
+     * @return the group of tasks to execute, or null if no simulation has tasks for the slave server
+     */
+    private synchronized Dispatch<?> nextDispatch(NetworkInfo slaveInfo) {
+        List<MultiplexedNetworkSimulationManager<?>> simulations = new ArrayList<>(virtualTimes.keySet());
+        simulations.sort(Comparator.comparingDouble(virtualTimes::get));
+        for (MultiplexedNetworkSimulationManager<?> simulation : simulations) {
+            Dispatch<?> dispatch = nextDispatch(simulation, slaveInfo);
+            if (dispatch != null) {
+                virtualTimes.merge(simulation, dispatch.tasks.size() / simulation.getWeight(), Double::sum);
+                return dispatch;
+            }
+        }
+        return null;
+    }
+
+    private <S extends State> Dispatch<S> nextDispatch(MultiplexedNetworkSimulationManager<S> simulation,
+                                                       NetworkInfo slaveInfo) {
+        SlaveState state = simulation.getSlaveState(slaveInfo);
+        if (state == null) {
+            return null;
+        }
+        List<SimulationTask<S>> tasks = simulation.nextTasks(state);
+        return (tasks.isEmpty() ? null : new Dispatch<>(simulation, tasks, state));
+    }
+
+    /**
+     * Removes a closed connection and signals the registered simulations that the slave is no longer available
+     *
+     * @param slaveInfo network info of the slave server
+     */
+    private void connectionClosed(NetworkInfo slaveInfo) {
+        List<MultiplexedNetworkSimulationManager<?>> simulations;
+        synchronized (this) {
+            connections.remove(slaveInfo);
+            simulations = new ArrayList<>(virtualTimes.keySet());
+        }
+        for (MultiplexedNetworkSimulationManager<?> simulation : simulations) {
+            simulation.slaveRemoved(slaveInfo);
+        }
+    }
+
+    /**
+     * Group of tasks of a simulation sent to a slave server
+     */
+    private static class Dispatch<S extends State> {
+        private final MultiplexedNetworkSimulationManager<S> simulation;
+        private final List<SimulationTask<S>> tasks;
+        private final SlaveState state;
+
+        private Dispatch(MultiplexedNetworkSimulationManager<S> simulation, List<SimulationTask<S>> tasks,
+                         SlaveState state) {
+            this.simulation = simulation;
+            this.tasks = tasks;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Persistent connection with a slave server
+     */
+    private class SlaveConnection {
+
+        private final NetworkInfo slaveInfo;
+
+        /**
+         * Models whose class has already been sent to the slave server
+         */
+        private final Set<String> initializedModels = new HashSet<>();
+
+        /**
+         * Payloads whose bytes have already been sent to the slave server
+         */
+        private final Set<String> sentPayloads = NetworkTask.newSentPayloads();
+
+        private TCPNetworkManager slave;
+
+        private SlaveConnection(NetworkInfo slaveInfo) {
+            this.slaveInfo = slaveInfo;
+        }
+
+        private void run() {
+            try {
+                slave = TCPNetworkManager.createNetworkManager(slaveInfo);
+                LOGGER.info(String.format("Opened a shared connection with the slave: %s", slaveInfo.toString()));
+                Dispatch<?> dispatch;
+                while ((dispatch = next(slaveInfo)) != null) {
+                    execute(dispatch);
+                }
+                slave.closeConnection();
+            } catch (IOException e) {
+                LOGGER.severe(String.format("[%s] Network communication failure, removing slave: %s",
+                        e.getMessage(), slaveInfo.toString()));
+                closeQuietly();
+            } catch (InterruptedException e) {
+                LOGGER.severe(String.format("[%s] Interrupted exception", e.getMessage()));
+                closeQuietly();
+            }
+            connectionClosed(slaveInfo);
+        }
+
+        /**
+         * Sends a group of tasks to the slave server and waits for all their results
+         */
+        private <S extends State> void execute(Dispatch<S> dispatch) throws IOException {
+            MultiplexedNetworkSimulationManager<S> simulation = dispatch.simulation;
+            try {
+                if (!initializedModels.contains(simulation.modelDefinitionClassName)) {
+                    simulation.initConnection(slave);
+                    initializedModels.add(simulation.modelDefinitionClassName);
+                }
+                NetworkTask<S> networkTask = simulation.createNetworkTask(dispatch.tasks);
+                TaggedNetworkManager channel = new TaggedNetworkManager(slave, simulation.getId());
+                slave.getSocket().setSoTimeout((int) (dispatch.state.getTimeout() / 1000000));
+                NetworkMetrics metrics = simulation.getMetrics(slaveInfo);
+                long startTime = System.nanoTime();
+                slave.writeObject(CommandSerializer.serialize(MasterCommand.MULTIPLEXED_TASK));
+                channel.writeObject(simulation.encodeTask(networkTask, sentPayloads, metrics));
+                Model<S> model = networkTask.getUnit().getModel();
+                int received = 0;
+                while (received < networkTask.getReplicas()) {
+                    byte[] frame = channel.readObject();
+                    if (received == 0) {
+                        metrics.getRoundTripTime().record(System.nanoTime() - startTime);
+                    }
+                    ComputationResult<S> result = simulation.decodeResult(frame, model, metrics);
+                    simulation.mergeResult(result);
+                    received += result.getCompletedTasks();
+                }
+                simulation.completed(dispatch.tasks, received, dispatch.state, System.nanoTime() - startTime);
+            } catch (IOException | RuntimeException e) {
+                simulation.failed(dispatch.tasks, dispatch.state);
+                throw new IOException(e);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                if (slave != null) {
+                    slave.closeConnection();
+                }
+            } catch (IOException e) {
+                LOGGER.severe(String.format("[%s] Failure while closing the connection with the slave: %s",
+                        e.getMessage(), slaveInfo.toString()));
+            }
+        }
+    }
+}
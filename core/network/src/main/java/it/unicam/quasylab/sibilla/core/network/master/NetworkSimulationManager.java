@@ -24,19 +24,14 @@
 package it.unicam.quasylab.sibilla.core.network.master;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
-import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
 import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.network.ComputationResult;
-import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
 import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
 import it.unicam.quasylab.sibilla.core.network.NetworkTask;
-import it.unicam.quasylab.sibilla.core.network.benchmark.BenchmarkUnit;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
-import it.unicam.quasylab.sibilla.core.network.compression.Compressor;
-import it.unicam.quasylab.sibilla.core.network.loaders.ClassBytesLoader;
-import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializer;
+import it.unicam.quasylab.sibilla.core.network.metrics.NetworkMetrics;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
-import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
 import it.unicam.quasylab.sibilla.core.network.slave.SlaveCommand;
 import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
@@ -44,12 +39,14 @@ import it.unicam.quasylab.sibilla.core.simulator.*;
 import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingHandler;
 import org.apache.commons.math3.random.RandomGenerator;
 
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -60,18 +57,18 @@ import java.util.stream.Collectors;
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
  */
-public class NetworkSimulationManager<S extends State> extends QueuedSimulationManager<S> {
+public class NetworkSimulationManager<S extends State> extends AbstractNetworkSimulationManager<S> {
 
     /**
-     * Class logger.
+     * Factor by which the running time of a batch must exceed the time expected for its slave
+     * server before the batch is speculatively executed by another slave server.
      */
-    private final Logger LOGGER;
+    private static final double STRAGGLER_FACTOR = 2.0;
 
     /**
-     * {@link ModelDefinition} that represent the Model
-     * used in the simulation.
+     * Maximum time, in milliseconds, an idle slave server waits for new tasks or for a straggling batch.
      */
-    private final String modelDefinitionClassName;
+    private static final long STRAGGLER_POLL_TIME = 100;
 
     /**
      * Queue of servers used to fetch the slave servers the tasks are sent to.
@@ -84,22 +81,32 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
     private final ExecutorService executor;
 
     /**
-     * State of the simulation that is being executed
+     * Set of network managers associated to the connected slave servers
      */
-    private final SimulationState simulationState;
+    private final Set<TCPNetworkManager> networkManagers;
 
     /**
-     * Set of network managers associated to the connected slave servers
+     * Batches of tasks that have been sent to the slave servers and whose results have not been received yet
      */
-    private final Set<TCPNetworkManager> networkManagers;
+    private final Set<RunningBatch<S>> runningBatches = ConcurrentHashMap.newKeySet();
 
-    private Serializer serializer;
+    /**
+     * Slave servers that are executing a batch of tasks
+     */
+    private final Set<TCPNetworkManager> busyServers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Payloads already sent on each connection with a slave server
+     */
+    private final Map<TCPNetworkManager, Set<String>> sentPayloads = Collections.synchronizedMap(new WeakHashMap<>());
 
-    private BenchmarkUnit decDesBenchmark;
-    private ComputationResultSerializerType crSerializerType;
-    private Map<NetworkInfo, BenchmarkUnit> slaveBenchmarks;
     private NetworkInfo clientInfo;
 
+    /**
+     * Listener of the slave servers that join the simulation while it is running
+     */
+    private final PropertyChangeListener slaveJoinListener;
+
     /**
      * Creates a NetworkSimulationManager with the parameters given in input
      *
@@ -110,45 +117,38 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
     public NetworkSimulationManager(RandomGenerator random, SimulationMonitor monitor,
                                     SimulationState simulationState, SerializerType serializerType,
                                     ComputationResultSerializerType crSerializerType, NetworkInfo clientInfo) {
-        super(random, monitor);// TODO: Gestire parametro Monitor
+        super(random, monitor, simulationState, serializerType, crSerializerType);// TODO: Gestire parametro Monitor
         this.clientInfo = clientInfo;
-        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
-        this.serializer = Serializer.getSerializer(serializerType);
-        this.slaveBenchmarks = new ConcurrentHashMap<NetworkInfo, BenchmarkUnit>();
-        this.crSerializerType = crSerializerType;
-        this.decDesBenchmark = new BenchmarkUnit(
-                String.format("sibillaBenchmarks/masterBenchmarking/ComputationResultSerializer_%s/", this.crSerializerType.getFullName()),
-                String.format("%s_resultsDecompressAndDeserialize", this.crSerializerType.toString()), "csv",
-                this.crSerializerType.getLabel(), List.of("decomprtime", "desertime", "trajectories"));
 
         List<NetworkInfo> slaveNetworkInfos = simulationState.getSlaveServersStates().stream()
                 .map(SlaveState::getSlaveInfo).collect(Collectors.toList());
         LOGGER.info(String.format("Creating a new NetworkSimulationManager to contact the slaves: [%s]",
                 slaveNetworkInfos.toString()));
-        this.simulationState = simulationState;
-        this.modelDefinitionClassName = simulationState.getSimulationModelName();
         executor = Executors.newCachedThreadPool();
-        networkManagers = slaveNetworkInfos.stream().map(serverInfo -> {
+        networkManagers = ConcurrentHashMap.newKeySet();
+        // the connections are opened in parallel, their handshakes do not depend on each other
+        List<CompletableFuture<TCPNetworkManager>> connections = slaveNetworkInfos.stream()
+                .map(TCPNetworkManager::createNetworkManagerAsync).collect(Collectors.toList());
+        networkManagers.addAll(connections.stream().map(connection -> {
             try {
-                TCPNetworkManager server = TCPNetworkManager.createNetworkManager(serverInfo);
+                TCPNetworkManager server = connection.join();
                 LOGGER.info(String.format("Created a NetworkManager to contact the slave: %s",
                         server.getNetworkInfo().toString()));
                 initConnection(server);
                 LOGGER.info(String.format("All the model informations have been sent to the slave: %s",
                         server.getNetworkInfo().toString()));
-                BenchmarkUnit newSlaveBenchmark = new BenchmarkUnit(
-                        String.format("sibillaBenchmarks/masterBenchmarking/Client_%s/Slave_%s/ComputationResultSerializer_%s/",
-                                this.clientInfo.getAddress().toString().split("/")[0], serverInfo.getAddress().toString().split("/")[0], this.crSerializerType.getFullName()),
-                        String.format("%s_sendAndReceive", this.crSerializerType.toString()), "csv",
-                        this.crSerializerType.getLabel(), List.of("sendandreceivetime", "tasks", "results"));
-                this.slaveBenchmarks.put(serverInfo, newSlaveBenchmark);
                 return server;
             } catch (IOException e) {
                 LOGGER.severe(String.format("[%s] Error during server initialization, removing slave", e.getMessage()));
+            } catch (CompletionException e) {
+                LOGGER.severe(String.format("[%s] Error during server connection, removing slave",
+                        e.getCause().getMessage()));
             }
             return null;
-        }).filter(Objects::nonNull).collect(Collectors.toSet());
+        }).filter(Objects::nonNull).collect(Collectors.toSet()));
         serverQueue = new LinkedBlockingQueue<>(networkManagers);
+        slaveJoinListener = evt -> executor.execute(() -> addSlave((NetworkInfo) evt.getNewValue()));
+        simulationState.addPropertyChangeListener("Slave Joined", slaveJoinListener);
         this.startTasksHandling();
     }
 
@@ -165,53 +165,17 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
 
     }
 
-    /**
-     * Initializes a connection to the target server sending the model class
-     *
-     * @param slave NetworkManager through the model is passed
-     */
-    private void initConnection(TCPNetworkManager slave) throws IOException {
-        try {
-            slave.writeObject(serializer.serialize(MasterCommand.INIT));
-            LOGGER.info(String.format("[%s] command sent to the slave: %s", MasterCommand.INIT,
-                    slave.getNetworkInfo().toString()));
-            slave.writeObject(serializer.serialize(modelDefinitionClassName));
-            LOGGER.info(String.format("[%s] Model name has been sent to the slave: %s",
-                    modelDefinitionClassName, slave.getNetworkInfo().toString()));
-            slave.writeObject(ClassBytesLoader.loadClassBytes(modelDefinitionClassName));
-            LOGGER.info(
-                    String.format("Class bytes have been sent to the slave: %s", slave.getNetworkInfo().toString()));
-
-            SlaveCommand answer = (SlaveCommand) serializer.deserialize(slave.readObject());
-            if (answer.equals(SlaveCommand.INIT_RESPONSE)) {
-                LOGGER.info(
-                        String.format("Answer received: [%s] - Slave: %s", answer, slave.getNetworkInfo().toString()));
-            } else {
-                throw new ClassCastException("Wrong answer after INIT command. Expected INIT_RESPONSE");
-            }
-
-        } catch (ClassCastException e) {
-            LOGGER.severe(String.format("[%s] Message cast failure during the connection initialization - Slave: %s",
-                    e.getMessage(), slave.getNetworkInfo().toString()));
-            throw new IOException();
-        } catch (IOException e) {
-            LOGGER.severe(String.format(
-                    "[%s] Network communication failure during the connection initialization  - Slave: %s",
-                    e.getMessage(), slave.getNetworkInfo().toString()));
-            throw new IOException();
-        }
-    }
-
     @Override
     protected void startTasksHandling() {
         new Thread(this::handleTasks).start();
     }
 
     private void handleTasks() {
-        while ((isRunning() || hasTasks() || this.simulationState.getRunningSlaveServers() > 0)
+        while ((isRunning() || hasTasks() || !runningBatches.isEmpty())
                 && !this.simulationState.getSlaveServersStates().isEmpty()) {
             singleTaskExecution();
         }
+        this.simulationState.removePropertyChangeListener("Slave Joined", slaveJoinListener);
         this.simulationState.setConcluded();
         this.closeStreams();
     }
@@ -226,22 +190,28 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
             LOGGER.info(String.format("Slave currently connected to: %s", server.getNetworkInfo().toString()));
             SlaveState serverState = this.simulationState.getSlaveStateByServerInfo(server.getNetworkInfo());
             LOGGER.info(String.format("State of the slave: [%s]", serverState.toString()));
-            int acceptableTasks = serverState.getExpectedTasks();
-            if (!serverState.canCompleteTask(acceptableTasks)) {
-                acceptableTasks = acceptableTasks == 1 ? 1 : acceptableTasks / 2;
-                LOGGER.severe(String.format("Server's tasks window has been reduced in half - %s",
-                        server.getNetworkInfo().toString()));
-            }
+            int acceptableTasks = nextBatchSize(serverState);
             LOGGER.info(String.format("Has tasks: %s", hasTasks()));
             LOGGER.info(String.format("Is running: %s", isRunning()));
-            List<SimulationTask<S>> toRun = getTask(acceptableTasks, true);
+            if (!hasTasks()) {
+                RunningBatch<S> straggler = findStraggler(server);
+                if (straggler != null) {
+                    LOGGER.warning(String.format("Speculative execution of %d tasks on slave: %s",
+                            straggler.networkTask.getReplicas(), server.getNetworkInfo().toString()));
+                    dispatch(straggler, server);
+                    return;
+                }
+            }
+            List<SimulationTask<S>> toRun = nextReplicaRange(getTask(acceptableTasks, true));
             LOGGER.info(String.format("Tasks to run: %d", toRun.size()));
             this.simulationState.setPendingTasks(this.pendingTasks());
             if (toRun.size() > 0) {
-                simulationState.increaseRunningServers();
-                NetworkTask<S> networkTask = new NetworkTask<>(toRun);
-                CompletableFuture.supplyAsync(() -> send(networkTask, server), executor)
-                        .whenComplete((value, error) -> manageResult(value, error, toRun, server));
+                dispatch(new RunningBatch<>(createNetworkTask(toRun), toRun), server);
+            } else {
+                enqueueServer(server);
+                synchronized (this) {
+                    wait(STRAGGLER_POLL_TIME);
+                }
             }
         } catch (InterruptedException e) {
             LOGGER.severe(String.format("[%s] Interrupted exception", e.getMessage()));
@@ -249,35 +219,175 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
     }
 
     /**
-     * Takes the first server from the queue
+     * Sends a batch of tasks to a server, that is expected to execute it within the time estimated by its state
+     *
+     * @param batch  batch of tasks to execute
+     * @param server server the tasks are sent to
+     */
+    private void dispatch(RunningBatch<S> batch, TCPNetworkManager server) {
+        SlaveState serverState = this.simulationState.getSlaveStateByServerInfo(server.getNetworkInfo());
+        batch.start(server, serverState.getExpectedTime(batch.networkTask.getReplicas()));
+        runningBatches.add(batch);
+        busyServers.add(server);
+        simulationState.increaseRunningServers();
+        CompletableFuture.supplyAsync(() -> send(batch.networkTask, server), executor)
+                .whenComplete((value, error) -> manageResult(value, error, batch, server));
+    }
+
+    /**
+     * Finds the running batch that most exceeds the time expected for its execution, among the
+     * ones that can be speculatively executed by the given server. A batch is executed by at most
+     * two servers. When the time expected for a batch is not known, since its server had not completed
+     * any task when the batch was sent, the batch is compared with the time the idle server is expected
+     * to take, so that a server hanging before its first result is not waited for indefinitely.
+     *
+     * @param server idle server
+     * @return the batch to execute speculatively, or null if no batch is straggling
+     */
+    private RunningBatch<S> findStraggler(TCPNetworkManager server) {
+        SlaveState serverState = this.simulationState.getSlaveStateByServerInfo(server.getNetworkInfo());
+        long now = System.nanoTime();
+        RunningBatch<S> straggler = null;
+        double maxDelay = STRAGGLER_FACTOR;
+        for (RunningBatch<S> batch : runningBatches) {
+            double delay = batch.getDelay(now, serverState.getExpectedTime(batch.networkTask.getReplicas()));
+            if (delay > maxDelay && batch.canBeSpeculated(server)) {
+                straggler = batch;
+                maxDelay = delay;
+            }
+        }
+        return straggler;
+    }
+
+    /**
+     * Takes the first server from the queue that is not draining. The draining servers found in the
+     * queue are released.
      *
      * @return First server available in the queue
      */
     private TCPNetworkManager findServer() throws InterruptedException {
-        return serverQueue.take();
+        TCPNetworkManager server = serverQueue.take();
+        while (isDraining(server)) {
+            releaseServer(server);
+            server = serverQueue.take();
+        }
+        return server;
     }
 
     /**
-     * Adds a server to the queue
+     * Adds a server to the queue. A draining server is released instead, since it must not receive new tasks.
      *
      * @param server Server to be added to the queue
      */
     private void enqueueServer(TCPNetworkManager server) {
-        serverQueue.add(server);
+        if (isDraining(server)) {
+            releaseServer(server);
+        } else {
+            serverQueue.add(server);
+        }
+    }
+
+    private boolean isDraining(TCPNetworkManager server) {
+        SlaveState serverState = this.simulationState.getSlaveStateByServerInfo(server.getNetworkInfo());
+        return serverState != null && serverState.isDraining();
     }
 
     /**
-     * Manages the results of a NetworkTask sent by a simulation server
+     * Connects to a slave server that joined the simulation while it is running, and adds it to the
+     * queue so that it receives tasks as soon as possible
      *
-     * @param value  results of the computation
+     * @param slaveInfo network related infos of the slave server
+     */
+    private void addSlave(NetworkInfo slaveInfo) {
+        try {
+            TCPNetworkManager server = TCPNetworkManager.createNetworkManager(slaveInfo);
+            initConnection(server);
+            networkManagers.add(server);
+            if (this.simulationState.isConcluded()) {
+                if (networkManagers.remove(server)) {
+                    closeConnection(server);
+                }
+                return;
+            }
+            LOGGER.info(String.format("The slave joined the running simulation: %s", slaveInfo.toString()));
+            enqueueServer(server);
+            synchronized (this) {
+                notifyAll();
+            }
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Error during the initialization of the joining slave: %s",
+                    e.getMessage(), slaveInfo.toString()));
+            SlaveState serverState = this.simulationState.getSlaveStateByServerInfo(slaveInfo);
+            if (serverState != null) {
+                serverState.setRemoved();
+            }
+        }
+    }
+
+    /**
+     * Closes the connection with a drained slave server, that has completed the tasks it was executing,
+     * and removes it from the simulation
+     *
+     * @param server the drained slave server
+     */
+    private void releaseServer(TCPNetworkManager server) {
+        if (networkManagers.remove(server)) {
+            closeConnection(server);
+            LOGGER.info(String.format("The slave has been drained: %s", server.getNetworkInfo().toString()));
+        }
+        SlaveState serverState = this.simulationState.getSlaveStateByServerInfo(server.getNetworkInfo());
+        if (serverState != null) {
+            serverState.setRemoved();
+        }
+    }
+
+    /**
+     * Manages the end of the execution of a NetworkTask by a simulation server. The results have already
+     * been merged while they were received, each range of replicas only once. When no server is executing
+     * the batch anymore, the replicas whose results have not been received are rescheduled.
+     *
+     * @param value  number of replicas executed by the server
      * @param error  eventually thrown error
-     * @param tasks  list of tasks executed
+     * @param batch  batch of tasks executed
      * @param server server which has been used for the simulation
      */
-    private void manageResult(ComputationResult<S> value, Throwable error, List<SimulationTask<S>> tasks,
-                              TCPNetworkManager server) {
+    private void manageResult(Integer value, Throwable error, RunningBatch<S> batch, TCPNetworkManager server) {
         LOGGER.info(String.format("Managing results by the slave: %s", server.getNetworkInfo().toString()));
-        if (error != null) {
+        busyServers.remove(server);
+        try {
+            manageServer(error, batch, server);
+        } finally {
+            synchronized (batch) {
+                List<SimulationTask<S>> missing = missingTasks(batch.tasks);
+                if (batch.finished(server, missing.isEmpty())) {
+                    runningBatches.remove(batch);
+                    if (!missing.isEmpty()) {
+                        LOGGER.warning(String.format("Rescheduling %d of the %d tasks sent to the slave: %s",
+                                missing.size(), batch.tasks.size(), server.getNetworkInfo().toString()));
+                        rescheduleAll(missing);
+                    }
+                }
+            }
+            simulationState.decreaseRunningServers();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Puts back in the queue the server that executed a batch, or the new connection with it if the
+     * server timed out and responded to the ping
+     *
+     * @param error  eventually thrown error
+     * @param batch  batch of tasks executed
+     * @param server server which has been used for the simulation
+     */
+    private void manageServer(Throwable error, RunningBatch<S> batch, TCPNetworkManager server) {
+        if (error != null && batch.isCompleted()) {
+            LOGGER.warning(String.format("Failure of a speculative execution of an already completed batch, removing slave: %s",
+                    server.getNetworkInfo().toString()));
+        } else if (error != null) {
             error.printStackTrace();
             LOGGER.severe(String.format("Timeout occurred for slave: %s", server.getNetworkInfo().toString()));
             TCPNetworkManager newServer;
@@ -290,14 +400,9 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
                     notifyAll();
                 }
             }
-            rescheduleAll(tasks);
-            simulationState.decreaseRunningServers();
         } else {
             LOGGER.info(String.format("Timeout did not occurred for slave: %s", server.getNetworkInfo().toString()));
             enqueueServer(server);
-            simulationState.decreaseRunningServers();
-            //FIXME!
-            //value.getResults().forEach(this::handleTrajectory);
         }
     }
 
@@ -319,14 +424,16 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
             pingServer.getSocket().setSoTimeout(5000); // set 5 seconds timeout on read operations
             LOGGER.info(String.format("Creating a new NetworkManager to ping slave: %s",
                     pingServer.getNetworkInfo().toString()));
-            oldState.timedOut(); // mark server as timed out
+            if (oldState != null) {
+                oldState.timedOut(); // mark server as timed out
+            }
 
             initConnection(pingServer); // initialize connection sending model data
-            pingServer.writeObject(serializer.serialize(MasterCommand.PING));
+            pingServer.writeObject(CommandSerializer.serialize(MasterCommand.PING));
             LOGGER.info(String.format("Ping request sent to slave: %s", pingServer.getNetworkInfo().toString())); // send
             // ping
             // request
-            SlaveCommand response = (SlaveCommand) serializer.deserialize(pingServer.readObject()); // wait
+            SlaveCommand response = CommandSerializer.deserialize(pingServer.readObject(), SlaveCommand.class); // wait
             // for
             // response
             if (!response.equals(SlaveCommand.PONG)) {
@@ -337,6 +444,9 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
             LOGGER.info(String.format(
                     "The response has been received within the time limit. The task window will be reduced by half for the slave: %s",
                     pingServer.getNetworkInfo().toString()));
+            if (oldState == null) {
+                throw new IllegalStateException("The slave has been removed from the simulation");
+            }
             oldState.forceExpiredTimeLimit(); // halve the task window
             oldState.migrate(pingNetworkInfo);
             this.networkManagers.add(pingServer);
@@ -344,11 +454,19 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
             server.getSocket().close();
             this.networkManagers.remove(server);
         } catch (Exception e) {
-            assert pingServer != null;
-            LOGGER.severe(
-                    String.format("The response has been received after the time limit. The slave will be removed: %s",
-                            pingServer.getNetworkInfo().toString()));
-            oldState.setRemoved(); // mark server as removed
+            LOGGER.severe(String.format("[%s] The slave did not respond within the time limit and will be removed: %s",
+                    e.getMessage(), server.getNetworkInfo().toString()));
+            if (pingServer != null) {
+                try {
+                    pingServer.closeConnection();
+                } catch (IOException closeException) {
+                    LOGGER.warning(String.format("[%s] Failure while closing the ping connection",
+                            closeException.getMessage()));
+                }
+            }
+            if (oldState != null) {
+                oldState.setRemoved(); // mark server as removed
+            }
             this.networkManagers.remove(server);
             return null;
         }
@@ -369,27 +487,44 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
      * Closes all the connection streams
      */
     private void closeStreams() {
-        try {
-            for (TCPNetworkManager server : this.networkManagers) {
-                server.writeObject(serializer.serialize(MasterCommand.CLOSE_CONNECTION));
-                LOGGER.info(String.format("[%s] command sent to the slave: %s", MasterCommand.CLOSE_CONNECTION,
-                        server.getNetworkInfo().toString()));
-                server.writeObject(serializer.serialize(modelDefinitionClassName));
-
-                SlaveCommand answer = (SlaveCommand) serializer.deserialize(server.readObject());
-                if (answer.equals(SlaveCommand.CLOSE_CONNECTION)) {
-                    LOGGER.info(String.format("Answer received: [%s] - Slave: %s", answer,
-                            server.getNetworkInfo().toString()));
-                } else {
-                    throw new ClassCastException(String.format(
-                            "Wrong answer after CLOSE_CONNECTION command. Expected CLOSE_CONNECTION from slave: %s ",
-                            server.getNetworkInfo().toString()));
-                }
+        for (TCPNetworkManager server : this.networkManagers) {
+            if (this.networkManagers.remove(server)) {
+                closeConnection(server);
+            }
+        }
+    }
 
+    /**
+     * Closes the connection with a slave server
+     *
+     * @param server the slave server
+     */
+    private void closeConnection(TCPNetworkManager server) {
+        try {
+            if (busyServers.contains(server)) {
                 server.closeConnection();
-                LOGGER.info(
-                        String.format("Closed the connection with the slave: %s", server.getNetworkInfo().toString()));
+                LOGGER.info(String.format("Closed the connection with the slave executing a discarded batch: %s",
+                        server.getNetworkInfo().toString()));
+                return;
+            }
+            server.writeObject(CommandSerializer.serialize(MasterCommand.CLOSE_CONNECTION));
+            LOGGER.info(String.format("[%s] command sent to the slave: %s", MasterCommand.CLOSE_CONNECTION,
+                    server.getNetworkInfo().toString()));
+            server.writeObject(CommandSerializer.serializeString(modelDefinitionClassName));
+
+            SlaveCommand answer = CommandSerializer.deserialize(server.readObject(), SlaveCommand.class);
+            if (answer.equals(SlaveCommand.CLOSE_CONNECTION)) {
+                LOGGER.info(String.format("Answer received: [%s] - Slave: %s", answer,
+                        server.getNetworkInfo().toString()));
+            } else {
+                throw new ClassCastException(String.format(
+                        "Wrong answer after CLOSE_CONNECTION command. Expected CLOSE_CONNECTION from slave: %s ",
+                        server.getNetworkInfo().toString()));
             }
+
+            server.closeConnection();
+            LOGGER.info(
+                    String.format("Closed the connection with the slave: %s", server.getNetworkInfo().toString()));
         } catch (IOException e) {
             LOGGER.severe(
                     String.format("[%s] Network communication failure during the connection closure", e.getMessage()));
@@ -403,29 +538,19 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
      * @param server      server to send the tasks to
      * @return result of the computation
      */
-    private ComputationResult<S> send(NetworkTask<S> networkTask, TCPNetworkManager server) {
-
+    private Integer send(NetworkTask<S> networkTask, TCPNetworkManager server) {
         SlaveState state = this.simulationState.getSlaveStateByServerInfo(server.getNetworkInfo());
-        BenchmarkUnit sendRecBenchmark = this.slaveBenchmarks.get(server.getNetworkInfo());
-
-        final var wrapper = new Object() {
-            private ComputationResult<S> result;
-        };
+        NetworkMetrics metrics = getMetrics(server.getNetworkInfo());
         try {
-            sendRecBenchmark.run(() -> {
-                server.writeObject(serializer.serialize(MasterCommand.TASK));
-                server.writeObject(Compressor.compress(serializer.serialize(networkTask)));
-                wrapper.result = awaitingResults(server, state, networkTask);
-
-                return List.of((double) networkTask.getTasks().size(), (double) wrapper.result.getResults().size());
-            });
-
-        } catch (Exception e) {
-            LOGGER.severe(e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException();
+            server.writeObject(CommandSerializer.serialize(MasterCommand.TASK));
+            server.writeObject(encodeTask(networkTask,
+                    sentPayloads.computeIfAbsent(server, connection -> NetworkTask.newSentPayloads()), metrics));
+            return awaitingResults(server, state, networkTask, metrics);
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Network communication failure during the execution of the tasks - %s",
+                    e.getMessage(), server.getNetworkInfo().toString()));
+            throw new UncheckedIOException(e);
         }
-        return wrapper.result;
     }
 
     /**
@@ -436,57 +561,102 @@ public class NetworkSimulationManager<S extends State> extends QueuedSimulationM
      * @param server the NetworkManager of the slave server that the master listens
      *               to for results
      * @param state  the SlaveState associated to the slave server
-     * @param tasks  the NetworkTask that contains the simulations to execute
-     * @return the ComputationResult that contains all the result for the given
-     * NetworkTask
+     * @param tasks   the NetworkTask that contains the simulations to execute
+     * @param metrics the metrics of the communication with the slave server
+     * @return the number of replicas executed by the slave server. Their results are merged as soon as
+     * they are received, so that they are not lost if the slave server fails before completing the NetworkTask
      * @throws IOException if communication error between servers occur
      */
-    private ComputationResult<S> awaitingResults(TCPNetworkManager server, SlaveState state, NetworkTask<?> tasks)
-            throws IOException {
-        ComputationResult<S> results = new ComputationResult<>(new LinkedList<>());
-        state.setSentTasks(tasks.getTasks().size());
+    private int awaitingResults(TCPNetworkManager server, SlaveState state, NetworkTask<S> tasks,
+                                NetworkMetrics metrics) throws IOException {
+        state.setSentTasks(tasks.getReplicas());
         state.setReceivedTasks(0);
         long elapsedTime = System.nanoTime();
 
         server.getSocket().setSoTimeout((int) (state.getTimeout() / 1000000));
         LOGGER.info(
                 String.format("A group of tasks has been sent to the server - %s", server.getNetworkInfo().toString()));
-        Model model = tasks.getTasks().get(0).getUnit().getModel();
+        Model<S> model = tasks.getUnit().getModel();
         while (state.getReceivedTasks() < state.getSentTasks()) {
-            final var wrapper = new Object() {
-                private byte[] received;
-                private ComputationResult<S> results;
-            };
-
-            wrapper.received = server.readObject();
-            this.decDesBenchmark.run(() -> {
-                wrapper.received = Compressor.decompress(wrapper.received);
-                return List.of();
-            }, () -> {
-                wrapper.results = this.deserializeComputationResult(wrapper.received, model);
-                return List.of((double) wrapper.results.getResults().size());
-            });
-            results.add(wrapper.results);
-            state.setReceivedTasks(state.getReceivedTasks() + wrapper.results.getResults().size());
+            byte[] received = server.readObject();
+            if (state.getReceivedTasks() == 0) {
+                metrics.getRoundTripTime().record(System.nanoTime() - elapsedTime);
+            }
+            ComputationResult<S> results = decodeResult(received, model, metrics);
+            mergeResult(results);
+            state.setReceivedTasks(state.getReceivedTasks() + results.getCompletedTasks());
         }
         elapsedTime = System.nanoTime() - elapsedTime;
-        LOGGER.info(String.format("\nSent tasks size: %d\nReceived tasks size: %d", tasks.getTasks().size(),
-                results.getResults().size()));
-        state.update(elapsedTime);
+        LOGGER.info(String.format("\nSent tasks size: %d\nReceived tasks size: %d", tasks.getReplicas(),
+                state.getReceivedTasks()));
+        updateSlaveState(state, tasks.getReplicas(), elapsedTime, -1);
         LOGGER.info(String.format("The results from the computation have been received from the server - %s",
                 server.getNetworkInfo().toString()));
-        return results;
+        return state.getReceivedTasks();
     }
 
-    private ComputationResult deserializeComputationResult(byte[] toDeserialize, Model model) throws IOException {
-        switch (this.crSerializerType) {
-            case FST:
-                return (ComputationResult) Serializer.getSerializer(SerializerType.FST).deserialize(toDeserialize);
-            case APACHE:
-                return (ComputationResult) Serializer.getSerializer(SerializerType.APACHE).deserialize(toDeserialize);
-            default:
-            case CUSTOM:
-                return ComputationResultSerializer.deserialize(toDeserialize, model);
+    /**
+     * Batch of tasks sent to one or more slave servers
+     *
+     * @param <S> The {@link State} of the simulation model.
+     */
+    private static class RunningBatch<S extends State> {
+
+        private final NetworkTask<S> networkTask;
+        private final List<SimulationTask<S>> tasks;
+        private final Set<TCPNetworkManager> servers = new HashSet<>();
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private long startTime;
+        private double expectedTime;
+
+        private RunningBatch(NetworkTask<S> networkTask, List<SimulationTask<S>> tasks) {
+            this.networkTask = networkTask;
+            this.tasks = tasks;
+        }
+
+        private synchronized void start(TCPNetworkManager server, double expectedTime) {
+            if (servers.isEmpty()) {
+                this.startTime = System.nanoTime();
+                this.expectedTime = expectedTime;
+            }
+            servers.add(server);
+        }
+
+        /**
+         * Returns the ratio between the running time of the batch and the time expected for its execution
+         *
+         * @param now          current time
+         * @param fallbackTime time used when the time expected for the batch is not known
+         */
+        private synchronized double getDelay(long now, double fallbackTime) {
+            double expected = expectedTime > 0 ? expectedTime : fallbackTime;
+            if (expected <= 0 || completed.get()) {
+                return 0.0;
+            }
+            return (now - startTime) / expected;
+        }
+
+        private boolean isCompleted() {
+            return completed.get();
+        }
+
+        private synchronized boolean canBeSpeculated(TCPNetworkManager server) {
+            return servers.size() == 1 && !servers.contains(server);
+        }
+
+        /**
+         * Marks the execution of the batch by the given server as ended
+         *
+         * @param allCompleted whether the results of all the replicas of the batch have been merged
+         * @return true if the batch is no longer running, since its replicas have been completed or
+         * since no other server is executing it
+         */
+        private synchronized boolean finished(TCPNetworkManager server, boolean allCompleted) {
+            servers.remove(server);
+            if (allCompleted) {
+                completed.set(true);
+            }
+            return completed.get() || servers.isEmpty();
         }
     }
-}
\ No newline at end of file
+}
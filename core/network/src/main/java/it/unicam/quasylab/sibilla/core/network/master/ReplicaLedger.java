@@ -0,0 +1,93 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Records the replicas of a simulation whose results have been merged. Results are accepted only
+ * once for each replica, so that results received twice, for instance from a speculative execution
+ * or from a slave server whose tasks have already been rescheduled, are not counted twice.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class ReplicaLedger {
+
+    private final BitSet completed = new BitSet();
+
+    /**
+     * Marks a range of replicas as completed, if none of them has already been completed
+     *
+     * @param firstReplica index of the first replica of the range
+     * @param replicas     number of replicas of the range
+     * @return true if the replicas have been marked as completed, false if at least one of them was already completed
+     */
+    public synchronized boolean complete(int firstReplica, int replicas) {
+        int next = completed.nextSetBit(firstReplica);
+        if (next >= 0 && next < firstReplica + replicas) {
+            return false;
+        }
+        completed.set(firstReplica, firstReplica + replicas);
+        return true;
+    }
+
+    /**
+     * Checks whether a replica has been completed
+     *
+     * @param replica index of the replica
+     * @return true if the results of the replica have been merged
+     */
+    public synchronized boolean isCompleted(int replica) {
+        return completed.get(replica);
+    }
+
+    /**
+     * @return the number of completed replicas
+     */
+    public synchronized int getCompletedReplicas() {
+        return completed.cardinality();
+    }
+
+    /**
+     * Returns the completed replicas as a list of ranges. Each range is described by the index of
+     * its first replica and by its number of replicas.
+     *
+     * @return the ranges of completed replicas
+     */
+    public synchronized List<int[]> getCompletedRanges() {
+        List<int[]> ranges = new LinkedList<>();
+        int first = completed.nextSetBit(0);
+        while (first >= 0) {
+            int end = completed.nextClearBit(first);
+            ranges.add(new int[]{first, end - first});
+            first = completed.nextSetBit(end);
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,556 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.ComputationResult;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.NetworkTask;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPFrameChannel;
+import it.unicam.quasylab.sibilla.core.network.metrics.NetworkMetrics;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveCommand;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationManager;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationManagerFactory;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationMonitor;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Handles and coordinates a simulation between the slave servers using a single thread.
+ * Differently from {@link NetworkSimulationManager}, that uses a blocking connection and
+ * a thread for each slave server, all the connections are non-blocking and are
+ * multiplexed by a {@link Selector}. The protocol used to communicate with the slave
+ * servers is the same, hence slaves do not need to be aware of the kind of master they
+ * are connected to. Only {@link it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType#DEFAULT}
+ * connections are supported. Many groups of tasks can be pending on each slave server, the
+ * number of groups depends on the throughput and on the latency measured by {@link SlaveState},
+ * so that slave servers do not remain idle while results and new tasks are in transit.
+ *
+ * @param <S> The {@link State} of the simulation model.
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class SelectorNetworkSimulationManager<S extends State> extends AbstractNetworkSimulationManager<S> {
+
+    /**
+     * Maximum time, in milliseconds, the event loop waits for network events.
+     */
+    private static final long MAX_SELECT_TIME = 1000;
+
+    /**
+     * Time, in milliseconds, given to the slave servers to acknowledge the closure of the connections.
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    /**
+     * Selector used to multiplex the connections with the slave servers.
+     */
+    private final Selector selector;
+
+    /**
+     * Connections with the slave servers. This list is only accessed by the event loop.
+     */
+    private final List<SlaveConnection> connections = new LinkedList<>();
+
+    /**
+     * Creates a SelectorNetworkSimulationManager with the parameters given in input
+     *
+     * @param random           RandomGenerator used in the simulation
+     * @param monitor          monitor of the simulation
+     * @param simulationState  state of the simulation that is being executed
+     * @param serializerType   serializer used to exchange commands with the slaves
+     * @param crSerializerType serializer used by the slaves to send results
+     */
+    public SelectorNetworkSimulationManager(RandomGenerator random, SimulationMonitor monitor,
+                                            SimulationState simulationState, SerializerType serializerType,
+                                            ComputationResultSerializerType crSerializerType) {
+        super(random, monitor, simulationState, serializerType, crSerializerType);
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (SlaveState slaveState : simulationState.getSlaveServersStates()) {
+            try {
+                SlaveConnection connection = new SlaveConnection(slaveState, TCPFrameChannel.open(slaveState.getSlaveInfo()));
+                connection.init();
+                connections.add(connection);
+                LOGGER.info(String.format("Model informations have been queued for the slave: %s",
+                        slaveState.getSlaveInfo().toString()));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.severe(String.format("[%s] Error during server initialization, removing slave: %s",
+                        e.getMessage(), slaveState.getSlaveInfo().toString()));
+                slaveState.setRemoved();
+            }
+        }
+        this.startTasksHandling();
+    }
+
+    public static SimulationManagerFactory getSelectorNetworkSimulationManagerFactory(SimulationState simulationState,
+                                                                                      SerializerType serializerType, ComputationResultSerializerType crSerializerType) {
+        return new SimulationManagerFactory() {
+            @Override
+            public <S extends State> SimulationManager<S> getSimulationManager(RandomGenerator random,
+                                                                               SimulationMonitor monitor) {
+                return new SelectorNetworkSimulationManager<>(random, monitor, simulationState, serializerType,
+                        crSerializerType);
+            }
+        };
+    }
+
+    @Override
+    protected void startTasksHandling() {
+        new Thread(this::handleEvents).start();
+    }
+
+    @Override
+    protected synchronized void handleTask(SimulationTask<S> simulationTask) {
+        super.handleTask(simulationTask);
+        selector.wakeup();
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        super.shutdown();
+        selector.wakeup();
+    }
+
+    @Override
+    public synchronized void join() throws InterruptedException {
+        while (!this.simulationState.isConcluded()) {
+            wait();
+        }
+    }
+
+    /**
+     * Event loop of the manager: dispatches the tasks to the idle slaves and handles the
+     * messages received from the slaves until all the tasks have been executed.
+     */
+    private void handleEvents() {
+        try {
+            while (!connections.isEmpty() && (isRunning() || hasTasks() || hasRunningSlaves())) {
+                dispatchTasks();
+                selector.select(getSelectTime());
+                processSelectedKeys();
+                checkTimeouts();
+            }
+            closeConnections();
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Network communication failure in the event loop", e.getMessage()));
+        } finally {
+            this.simulationState.setConcluded();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean hasRunningSlaves() {
+        return connections.stream().anyMatch(SlaveConnection::isRunning);
+    }
+
+    /**
+     * Sends groups of tasks to the slave servers until each of them has as many pending
+     * groups as its pipeline depth
+     */
+    private void dispatchTasks() {
+        for (SlaveConnection connection : connections) {
+            while ((connection.status == ConnectionStatus.READY)
+                    && (connection.inFlight.size() < connection.state.getPipelineDepth()) && hasTasks()) {
+                int acceptableTasks = nextBatchSize(connection.state);
+                List<SimulationTask<S>> toRun = getTask(acceptableTasks);
+                if (toRun.isEmpty()) {
+                    break;
+                }
+                connection.send(nextReplicaRange(toRun));
+            }
+        }
+        this.simulationState.setPendingTasks(this.pendingTasks());
+        removeClosedConnections();
+    }
+
+    /**
+     * Handles the network events signalled by the selector
+     */
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            SlaveConnection connection = (SlaveConnection) key.attachment();
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    connection.channel.flush();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    for (byte[] frame : connection.channel.read()) {
+                        connection.handleFrame(frame);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.fail(e);
+            }
+        }
+        removeClosedConnections();
+    }
+
+    /**
+     * Removes the slave servers that did not send their results within the expected time. A slave server that has
+     * not sent any result yet has no timeout of its own: it is given the longest timeout of the other slave servers,
+     * so that a slave server that hangs before its first result does not stall the simulation.
+     */
+    private void checkTimeouts() {
+        long now = System.nanoTime();
+        double fallback = getFallbackTimeout();
+        for (SlaveConnection connection : connections) {
+            if (connection.isRunning() && (now - getDeadline(connection.inFlight.peek(), fallback) > 0)) {
+                LOGGER.severe(String.format("Timeout occurred for slave: %s", connection.getNetworkInfo().toString()));
+                connection.state.timedOut();
+                connection.fail(null);
+            }
+        }
+        removeClosedConnections();
+    }
+
+    private long getDeadline(Batch batch, double fallback) {
+        if (batch.bounded || (fallback >= Long.MAX_VALUE)) {
+            return batch.deadline;
+        }
+        return batch.startTime + (long) fallback;
+    }
+
+    /**
+     * Returns the longest timeout of the slave servers whose timeout is known
+     *
+     * @return the longest known timeout, or {@link Long#MAX_VALUE} if no timeout is known
+     */
+    private double getFallbackTimeout() {
+        double fallback = 0.0;
+        for (SlaveConnection connection : connections) {
+            double timeout = connection.state.getTimeout();
+            if (timeout < Long.MAX_VALUE) {
+                fallback = Math.max(fallback, timeout);
+            }
+        }
+        return fallback > 0.0 ? fallback : Long.MAX_VALUE;
+    }
+
+    private void removeClosedConnections() {
+        connections.removeIf(c -> c.status == ConnectionStatus.CLOSED);
+    }
+
+    /**
+     * Returns the time to wait for network events, that is bounded by the first expiring timeout
+     *
+     * @return time, in milliseconds, to wait for network events
+     */
+    private long getSelectTime() {
+        long now = System.nanoTime();
+        long time = MAX_SELECT_TIME;
+        double fallback = getFallbackTimeout();
+        for (SlaveConnection connection : connections) {
+            if (connection.isRunning()) {
+                time = Math.min(time, (getDeadline(connection.inFlight.peek(), fallback) - now) / 1000000 + 1);
+            }
+        }
+        return Math.max(time, 1);
+    }
+
+    /**
+     * Closes all the connections, waiting for the slave servers to acknowledge it
+     */
+    private void closeConnections() throws IOException {
+        for (SlaveConnection connection : connections) {
+            connection.close();
+        }
+        removeClosedConnections();
+        long limit = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        while (!connections.isEmpty() && (System.currentTimeMillis() < limit)) {
+            selector.select(Math.max(limit - System.currentTimeMillis(), 1));
+            processSelectedKeys();
+        }
+        for (SlaveConnection connection : connections) {
+            connection.disconnect();
+        }
+        connections.clear();
+    }
+
+    /**
+     * Status of the connection with a slave server
+     */
+    private enum ConnectionStatus {
+        INITIALIZING, READY, CLOSING, CLOSED
+    }
+
+    /**
+     * Group of tasks sent to a slave server whose results have not been received yet
+     */
+    private class Batch {
+
+        private final List<SimulationTask<S>> tasks;
+        private final NetworkTask<S> networkTask;
+        private final long sendTime;
+        private final boolean pipelined;
+        private long startTime;
+        private long deadline;
+        private boolean bounded;
+        private int receivedTasks = 0;
+
+        private Batch(List<SimulationTask<S>> tasks, long sendTime, boolean pipelined) {
+            this.tasks = tasks;
+            this.networkTask = createNetworkTask(tasks);
+            this.sendTime = sendTime;
+            this.startTime = sendTime;
+            this.pipelined = pipelined;
+        }
+
+        /**
+         * Records the time when the slave server is expected to start the execution of this group
+         * of tasks, that is when the results of the previous group have been received
+         *
+         * @param startTime time when the slave server starts the execution of the tasks
+         * @param timeout   time given to the slave server to execute the tasks
+         */
+        private void start(long startTime, double timeout) {
+            this.startTime = Math.max(this.sendTime, startTime);
+            this.bounded = timeout < Long.MAX_VALUE;
+            this.deadline = (timeout >= Long.MAX_VALUE ? this.startTime + Long.MAX_VALUE / 2
+                    : this.startTime + (long) timeout);
+        }
+
+    }
+
+    /**
+     * Connection with a slave server. Many groups of tasks can be pending on the same slave
+     * server: since the slave server handles the requests received from a connection one at a
+     * time, results are received in the same order the tasks have been sent.
+     */
+    private class SlaveConnection {
+
+        private final SlaveState state;
+        private final TCPFrameChannel channel;
+        private final Deque<Batch> inFlight = new LinkedList<>();
+        private final NetworkMetrics metrics;
+        private final Set<String> sentPayloads = NetworkTask.newSentPayloads();
+        private ConnectionStatus status;
+
+        private SlaveConnection(SlaveState state, TCPFrameChannel channel) throws IOException {
+            this.state = state;
+            this.channel = channel;
+            this.metrics = getMetrics(channel.getNetworkInfo());
+            this.status = ConnectionStatus.INITIALIZING;
+            channel.register(selector, this);
+        }
+
+        private NetworkInfo getNetworkInfo() {
+            return channel.getNetworkInfo();
+        }
+
+        private boolean isRunning() {
+            return !inFlight.isEmpty();
+        }
+
+        /**
+         * Sends the name and the hash of the model class to the slave server
+         */
+        private void init() throws IOException {
+            channel.write(CommandSerializer.serialize(MasterCommand.INIT));
+            channel.write(CommandSerializer.serializeString(modelDefinitionClassName));
+            channel.write(CommandSerializer.serializeString(getModelClassHash()));
+        }
+
+        /**
+         * Sends a group of tasks to the slave server
+         *
+         * @param toRun tasks to execute
+         */
+        private void send(List<SimulationTask<S>> toRun) {
+            long now = System.nanoTime();
+            Batch batch = new Batch(toRun, now, isRunning());
+            if (!isRunning()) {
+                simulationState.increaseRunningServers();
+                batch.start(now, state.getTimeout());
+            }
+            inFlight.add(batch);
+            try {
+                channel.write(CommandSerializer.serialize(MasterCommand.TASK));
+                channel.write(encodeTask(batch.networkTask, sentPayloads, metrics));
+                LOGGER.info(String.format("A group of %d tasks has been sent to the server (%d pending groups) - %s",
+                        batch.networkTask.getReplicas(), inFlight.size(), getNetworkInfo().toString()));
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Handles a frame received by the slave server
+         *
+         * @param frame received data
+         */
+        private void handleFrame(byte[] frame) throws IOException {
+            switch (status) {
+                case INITIALIZING:
+                    if (CommandSerializer.isCommand(frame, SlaveCommand.CLASS_REQUEST)) {
+                        channel.write(getModelClassBytes());
+                        LOGGER.info(String.format("Class bytes have been sent to the slave: %s",
+                                getNetworkInfo().toString()));
+                        break;
+                    }
+                    if (!SlaveCommand.INIT_RESPONSE.equals(readInitAnswer(frame))) {
+                        throw new IOException("Wrong answer after INIT command. Expected INIT_RESPONSE");
+                    }
+                    LOGGER.info(String.format("Answer received: [%s] - Slave: %s", SlaveCommand.INIT_RESPONSE,
+                            getNetworkInfo().toString()));
+                    status = ConnectionStatus.READY;
+                    break;
+                case READY:
+                    Batch batch = inFlight.peek();
+                    if (batch == null) {
+                        LOGGER.warning(String.format("Unexpected message received from the slave: %s",
+                                getNetworkInfo().toString()));
+                        break;
+                    }
+                    if (batch.receivedTasks == 0) {
+                        metrics.getRoundTripTime().record(System.nanoTime() - batch.startTime);
+                    }
+                    ComputationResult<S> received = decodeResult(frame, batch.networkTask.getUnit().getModel(),
+                            metrics);
+                    mergeResult(received);
+                    batch.receivedTasks += received.getCompletedTasks();
+                    if (batch.receivedTasks >= batch.networkTask.getReplicas()) {
+                        completed(batch);
+                    }
+                    break;
+                case CLOSING:
+                    expect(frame, SlaveCommand.CLOSE_CONNECTION);
+                    LOGGER.info(String.format("Answer received: [%s] - Slave: %s", SlaveCommand.CLOSE_CONNECTION,
+                            getNetworkInfo().toString()));
+                    disconnect();
+                    break;
+                default:
+                    LOGGER.warning(String.format("Unexpected message received from the slave: %s",
+                            getNetworkInfo().toString()));
+            }
+        }
+
+        private void expect(byte[] frame, SlaveCommand command) throws IOException {
+            SlaveCommand answer = CommandSerializer.deserialize(frame, SlaveCommand.class);
+            if (!command.equals(answer)) {
+                throw new IOException(String.format("Wrong answer [%s]. Expected %s", answer, command));
+            }
+        }
+
+        /**
+         * Records that all the tasks of the first pending group have been executed
+         *
+         * @param batch the completed group of tasks
+         */
+        private void completed(Batch batch) {
+            long now = System.nanoTime();
+            inFlight.poll();
+            int tasks = batch.networkTask.getReplicas();
+            state.setSentTasks(tasks);
+            state.setReceivedTasks(batch.receivedTasks);
+            updateSlaveState(state, tasks, now - batch.startTime, batch.pipelined ? -1 : now - batch.sendTime);
+            LOGGER.info(String.format("The results from the computation have been received from the server - %s",
+                    getNetworkInfo().toString()));
+            Batch next = inFlight.peek();
+            if (next != null) {
+                next.start(now, state.getTimeout());
+            } else {
+                simulationState.decreaseRunningServers();
+            }
+        }
+
+        /**
+         * Removes the slave server after a failure rescheduling the tasks it was executing
+         *
+         * @param e the occurred error, null in case of timeout
+         */
+        private void fail(Exception e) {
+            if (e != null) {
+                LOGGER.severe(String.format("[%s] Network communication failure, removing slave: %s",
+                        e.getMessage(), getNetworkInfo().toString()));
+            }
+            if (isRunning()) {
+                for (Batch batch : inFlight) {
+                    rescheduleAll(missingTasks(batch.tasks));
+                }
+                inFlight.clear();
+                simulationState.decreaseRunningServers();
+            }
+            state.setRemoved();
+            disconnect();
+        }
+
+        /**
+         * Asks the slave server to close the connection
+         */
+        private void close() {
+            if ((status != ConnectionStatus.READY) || isRunning()) {
+                disconnect();
+                return;
+            }
+            try {
+                channel.write(CommandSerializer.serialize(MasterCommand.CLOSE_CONNECTION));
+                channel.write(CommandSerializer.serializeString(modelDefinitionClassName));
+                LOGGER.info(String.format("[%s] command sent to the slave: %s", MasterCommand.CLOSE_CONNECTION,
+                        getNetworkInfo().toString()));
+                status = ConnectionStatus.CLOSING;
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void disconnect() {
+            try {
+                channel.closeConnection();
+                LOGGER.info(String.format("Closed the connection with the slave: %s", getNetworkInfo().toString()));
+            } catch (IOException e) {
+                LOGGER.severe(String.format("[%s] Network communication failure during the connection closure",
+                        e.getMessage()));
+            }
+            status = ConnectionStatus.CLOSED;
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Journal where a master server periodically stores the progress of a simulation: the ranges of
+ * replicas whose results have been merged and the statistics collected from them. When the same
+ * simulation is submitted again, for instance after the restart of the master server, the journal is
+ * used to restore the statistics and only the missing replicas are executed. A simulation is
+ * identified by a key computed from its model and its data set, seed included. Each checkpoint
+ * replaces the journal atomically, so that a failure while writing does not corrupt it.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class SimulationJournal {
+
+    /**
+     * Default directory where the journals are stored.
+     */
+    public static final String DEFAULT_DIRECTORY = System.getProperty("user.home") + File.separator + ".sibilla"
+            + File.separator + "journal";
+
+    private static final int VERSION = 1;
+
+    private final Logger LOGGER;
+
+    private final Path directory;
+
+    private final Path file;
+
+    private boolean closed = false;
+
+    /**
+     * Creates the journal of a simulation
+     *
+     * @param directory directory where the journal is stored
+     * @param key       key identifying the simulation
+     */
+    public SimulationJournal(String directory, String key) {
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        this.directory = Paths.get(directory);
+        this.file = this.directory.resolve(key + ".journal");
+    }
+
+    /**
+     * Reads the content of the journal
+     *
+     * @param ledger ledger where the completed ranges of replicas are marked
+     * @return the serialized statistics of the completed replicas, or null if the journal does not exist
+     */
+    public synchronized byte[] restore(ReplicaLedger ledger) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unknown journal version");
+            }
+            int ranges = in.readInt();
+            List<int[]> completed = new LinkedList<>();
+            for (int i = 0; i < ranges; i++) {
+                completed.add(new int[]{in.readInt(), in.readInt()});
+            }
+            byte[] statistics = new byte[in.readInt()];
+            in.readFully(statistics);
+            completed.forEach(range -> ledger.complete(range[0], range[1]));
+            LOGGER.info(String.format("Restored %d replicas from the journal: %s", ledger.getCompletedReplicas(),
+                    file.toString()));
+            return statistics;
+        } catch (IOException e) {
+            LOGGER.warning(String.format("[%s] Failure while reading the journal, it will be ignored: %s",
+                    e.getMessage(), file.toString()));
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the content of the journal
+     *
+     * @param completed  the ranges of completed replicas
+     * @param statistics the serialized statistics of the completed replicas
+     */
+    public synchronized void write(List<int[]> completed, byte[] statistics) {
+        if (closed) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(VERSION);
+                out.writeInt(completed.size());
+                for (int[] range : completed) {
+                    out.writeInt(range[0]);
+                    out.writeInt(range[1]);
+                }
+                out.writeInt(statistics.length);
+                out.write(statistics);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warning(String.format("[%s] Failure while writing the journal: %s", e.getMessage(),
+                    file.toString()));
+        }
+    }
+
+    /**
+     * Deletes the journal once the simulation has been completed. The journal is not written anymore.
+     */
+    public synchronized void delete() {
+        closed = true;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warning(String.format("[%s] Failure while deleting the journal: %s", e.getMessage(),
+                    file.toString()));
+        }
+    }
+}
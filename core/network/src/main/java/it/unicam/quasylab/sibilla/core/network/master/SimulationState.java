@@ -94,6 +94,16 @@ public class SimulationState implements Serializable, PropertyChangeListener, Co
      */
     private int totalSimulationTasks;
 
+    /**
+     * The number of simulation tasks whose results have been merged.
+     */
+    private int completedTasks;
+
+    /**
+     * The last time the partial results were sent to the client, in milliseconds.
+     */
+    private long lastProgressTime;
+
     /**
      * Signals if the simulation is concluded.
      */
@@ -104,6 +114,11 @@ public class SimulationState implements Serializable, PropertyChangeListener, Co
      */
     private SimulationDataSet<?> simulationDataSet;
 
+    /**
+     * The directory where the progress of the simulation is journaled, null if it is not journaled.
+     */
+    private String journalDirectory;
+
     /**
      * To manage the {@link java.beans.PropertyChangeListener} instances.
      */
@@ -185,6 +200,47 @@ public class SimulationState implements Serializable, PropertyChangeListener, Co
         this.updateListeners();
     }
 
+    public synchronized void removePropertyChangeListener(String property, PropertyChangeListener pcl) {
+        updateSupport.removePropertyChangeListener(property, pcl);
+    }
+
+    /**
+     * Adds a slave server to the running simulation. The listeners of the "Slave Joined" property are notified
+     * with the network related infos of the slave, so that tasks can be sent to it.
+     *
+     * @param slaveNetworkInfo related to the slave server that joins the simulation.
+     * @return true if the slave server was not already taking part in the simulation.
+     */
+    public synchronized boolean addSlaveServer(NetworkInfo slaveNetworkInfo) {
+        if (this.concluded) {
+            return false;
+        }
+        SlaveState slaveState = getSlaveStateByServerInfo(slaveNetworkInfo);
+        if (slaveState != null && !slaveState.isRemoved()) {
+            return false;
+        }
+        this.slaveServers.removeIf(removed -> removed.getSlaveInfo().equals(slaveNetworkInfo));
+        this.slaveServers.add(new SlaveState(this, slaveNetworkInfo));
+        updateSupport.firePropertyChange("Slave Joined", null, slaveNetworkInfo);
+        this.updateListeners();
+        return true;
+    }
+
+    /**
+     * Drains a slave server: it completes the tasks it is executing, then it is removed from the simulation.
+     *
+     * @param slaveNetworkInfo related to the slave server to drain.
+     * @return true if the slave server was taking part in the simulation.
+     */
+    public synchronized boolean drainSlaveServer(NetworkInfo slaveNetworkInfo) {
+        SlaveState slaveState = getSlaveStateByServerInfo(slaveNetworkInfo);
+        if (slaveState == null || slaveState.isRemoved()) {
+            return false;
+        }
+        slaveState.setDraining();
+        return true;
+    }
+
     /**
      * Increases the number of slave servers that are executing simulations.
      */
@@ -290,6 +346,39 @@ public class SimulationState implements Serializable, PropertyChangeListener, Co
         return this.totalSimulationTasks;
     }
 
+    /**
+     * @return The number of simulation tasks whose results have been merged.
+     */
+    public synchronized int getCompletedTasks() {
+        return this.completedTasks;
+    }
+
+    /**
+     * Increases the number of simulation tasks whose results have been merged.
+     *
+     * @param completedTasks the number of tasks to add.
+     */
+    public synchronized void addCompletedTasks(int completedTasks) {
+        this.completedTasks += completedTasks;
+        this.updateListeners();
+    }
+
+    /**
+     * Checks whether the partial results have to be sent to the client, that is whether at least the
+     * given interval has elapsed since the last time they were sent. If so, the interval is restarted.
+     *
+     * @param interval minimum interval, in milliseconds, between two submissions of the partial results.
+     * @return true if the partial results have to be sent.
+     */
+    public synchronized boolean isProgressDue(long interval) {
+        long now = System.currentTimeMillis();
+        if (now - this.lastProgressTime < interval) {
+            return false;
+        }
+        this.lastProgressTime = now;
+        return true;
+    }
+
     /**
      * @return if the simulation is concluded.
      */
@@ -319,10 +408,26 @@ public class SimulationState implements Serializable, PropertyChangeListener, Co
      */
     public void setSimulationDataSet(SimulationDataSet<?> simulationDataSet) {
         this.simulationDataSet = simulationDataSet;
-        this.totalSimulationTasks = simulationDataSet.getReplica();
+        this.totalSimulationTasks = simulationDataSet.getTotalReplica();
         this.updateListeners();
     }
 
+    /**
+     * @return The directory where the progress of the simulation is journaled, null if it is not journaled.
+     */
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * Sets the directory where the progress of the simulation is journaled.
+     *
+     * @param journalDirectory the directory to be set, null to not journal the progress of the simulation.
+     */
+    public void setJournalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
     /**
      * @return The client communication related manager.
      */
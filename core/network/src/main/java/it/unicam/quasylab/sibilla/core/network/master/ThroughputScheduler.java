@@ -0,0 +1,116 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveState;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the number of tasks sent to each slave server of a simulation. The size of the groups of
+ * tasks follows the window of each {@link SlaveState}, that grows towards the number of tasks the slave
+ * executes in a fixed target time, given its measured throughput. When all the tasks of the simulation
+ * have been submitted, the remaining tasks are shared among the slaves proportionally to their
+ * throughput, so that the last groups of tasks are completed at the same time.
+ * The throughput measured for each slave is kept for the following simulations of the same model.
+ *
+ * @author Belenchia Matteo
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class ThroughputScheduler {
+
+    /**
+     * Throughput and latency measured for each pair of model and slave server
+     */
+    private static final Map<String, double[]> ESTIMATES = new ConcurrentHashMap<>();
+
+    private final String modelName;
+
+    private final SimulationState simulationState;
+
+    /**
+     * Creates a scheduler for the given simulation, initializing the state of the slaves with the
+     * estimations measured in previous simulations of the same model
+     *
+     * @param simulationState state of the simulation
+     */
+    public ThroughputScheduler(SimulationState simulationState) {
+        this.simulationState = simulationState;
+        this.modelName = simulationState.getSimulationModelName();
+        for (SlaveState state : simulationState.getSlaveServersStates()) {
+            double[] estimate = ESTIMATES.get(key(state.getSlaveInfo()));
+            if (estimate != null) {
+                state.restoreThroughput(estimate[0], estimate[1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks to send to a slave server
+     *
+     * @param state        state of the slave server
+     * @param pendingTasks number of tasks waiting to be executed
+     * @param lastTasks    whether all the tasks of the simulation have been submitted
+     * @return the number of tasks to send to the slave server
+     */
+    public int getBatchSize(SlaveState state, int pendingTasks, boolean lastTasks) {
+        int window = state.getExpectedTasks();
+        if (!state.canCompleteTask(window)) {
+            window = window == 1 ? 1 : window / 2;
+        }
+        if (!lastTasks || state.getThroughput() == 0.0) {
+            return window;
+        }
+        double totalThroughput = 0.0;
+        Set<SlaveState> states = simulationState.getSlaveServersStates();
+        for (SlaveState slave : states) {
+            if (!slave.isRemoved()) {
+                totalThroughput += slave.getThroughput();
+            }
+        }
+        int share = (int) Math.ceil(pendingTasks * state.getThroughput() / totalThroughput);
+        return Math.max(1, Math.min(window, share));
+    }
+
+    /**
+     * Stores the estimations of a slave server, so that they can be used by the following simulations
+     * of the same model
+     *
+     * @param state state of the slave server
+     */
+    public void record(SlaveState state) {
+        if (state.getThroughput() > 0.0) {
+            ESTIMATES.put(key(state.getSlaveInfo()), new double[]{state.getThroughput(), state.getLatency()});
+        }
+    }
+
+    private String key(NetworkInfo slaveInfo) {
+        return modelName + "@" + slaveInfo.getAddress() + ":" + slaveInfo.getPort();
+    }
+}
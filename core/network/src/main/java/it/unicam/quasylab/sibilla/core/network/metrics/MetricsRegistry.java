@@ -0,0 +1,171 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.metrics;
+
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Collects the {@link NetworkMetrics} of the communications of this host. A background thread
+ * periodically appends a snapshot of all the metrics to a CSV file, so that the threads of the network
+ * path only update counters and never write on the file system.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class MetricsRegistry {
+
+    /**
+     * Default directory where the snapshots of the metrics are written
+     */
+    public static final String DEFAULT_DIRECTORY = "sibillaBenchmarks/metrics/";
+
+    /**
+     * Default interval, in milliseconds, between two snapshots of the metrics
+     */
+    public static final long DEFAULT_INTERVAL = 10000;
+
+    private static MetricsRegistry instance;
+
+    private final Logger LOGGER;
+
+    private final Map<String, NetworkMetrics> metrics = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ScheduledFuture<?> reporting;
+
+    private File file;
+
+    private boolean headerWritten;
+
+    private MetricsRegistry() {
+        this.LOGGER = HostLoggerSupplier.getInstance().getLogger();
+        startReporting(DEFAULT_DIRECTORY, DEFAULT_INTERVAL);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeSnapshot));
+    }
+
+    /**
+     * @return the registry of the metrics of this host
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the metrics of the communication with a remote host, creating them if needed
+     *
+     * @param role     role of this host in the communication
+     * @param peerInfo network info of the remote host
+     * @return the metrics of the communication
+     */
+    public NetworkMetrics getMetrics(String role, NetworkInfo peerInfo) {
+        String name = String.format("%s_%s:%d", role, peerInfo.getAddress().getHostAddress(), peerInfo.getPort());
+        return metrics.computeIfAbsent(name, NetworkMetrics::new);
+    }
+
+    /**
+     * Starts writing the snapshots of the metrics on a new file, replacing the previous reporting
+     *
+     * @param directory directory where the file is created
+     * @param interval  interval in milliseconds between two snapshots, non positive to write only the
+     *                  snapshot taken when the JVM shuts down
+     */
+    public synchronized void startReporting(String directory, long interval) {
+        stopReporting();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_hh-mm-ss_a");
+        this.file = new File(directory, String.format("networkMetrics [%s].csv", dateFormat.format(new Date())));
+        this.headerWritten = false;
+        if (interval > 0) {
+            this.reporting = reporter.scheduleAtFixedRate(this::writeSnapshot, interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the periodic snapshots of the metrics
+     */
+    public synchronized void stopReporting() {
+        if (reporting != null) {
+            reporting.cancel(false);
+            reporting = null;
+        }
+    }
+
+    /**
+     * Appends to the file a row for each metrics collected by this registry
+     */
+    public synchronized void writeSnapshot() {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        List<NetworkMetrics> snapshot = new ArrayList<>(metrics.values());
+        long timestamp = System.currentTimeMillis();
+        try {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.exists()) {
+                directory.mkdirs();
+            }
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
+                if (!headerWritten) {
+                    writer.write("timestamp," + NetworkMetrics.getCSVHeader());
+                    writer.newLine();
+                    headerWritten = true;
+                }
+                for (NetworkMetrics networkMetrics : snapshot) {
+                    writer.write(timestamp + "," + networkMetrics.toCSV());
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Failure while writing the network metrics on: %s", e.getMessage(),
+                    file.toString()));
+        }
+    }
+}
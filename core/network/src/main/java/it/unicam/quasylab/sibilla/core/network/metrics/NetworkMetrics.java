@@ -0,0 +1,186 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the communication with a remote host: the time spent to serialize and deserialize the
+ * exchanged objects, the round trip time, the time needed to execute a group of tasks and the
+ * number of bytes sent and received. All the metrics are updated without locks.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class NetworkMetrics {
+
+    private final String name;
+
+    private final LatencyHistogram serializationTime = new LatencyHistogram();
+
+    private final LatencyHistogram deserializationTime = new LatencyHistogram();
+
+    private final LatencyHistogram roundTripTime = new LatencyHistogram();
+
+    private final LatencyHistogram batchTime = new LatencyHistogram();
+
+    private final LongAdder bytesSent = new LongAdder();
+
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private final LongAdder uncompressedBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    /**
+     * Creates the metrics of the communication with a remote host
+     *
+     * @param name name identifying the local role and the remote host
+     */
+    NetworkMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name identifying the local role and the remote host
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the histogram of the time spent to serialize the objects sent to the remote host
+     */
+    public LatencyHistogram getSerializationTime() {
+        return serializationTime;
+    }
+
+    /**
+     * @return the histogram of the time spent to deserialize the objects received by the remote host
+     */
+    public LatencyHistogram getDeserializationTime() {
+        return deserializationTime;
+    }
+
+    /**
+     * @return the histogram of the time between the sending of a group of tasks and the reception of its first
+     * results
+     */
+    public LatencyHistogram getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    /**
+     * @return the histogram of the time needed to execute a group of tasks
+     */
+    public LatencyHistogram getBatchTime() {
+        return batchTime;
+    }
+
+    /**
+     * Records the data sent to the remote host
+     *
+     * @param bytes number of bytes sent
+     */
+    public void recordSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * Records the data received by the remote host
+     *
+     * @param bytes number of bytes received
+     */
+    public void recordReceived(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    /**
+     * Records the size of some data before and after its compression
+     *
+     * @param uncompressed size in bytes of the uncompressed data
+     * @param compressed   size in bytes of the compressed data
+     */
+    public void recordCompression(long uncompressed, long compressed) {
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+    }
+
+    /**
+     * @return the number of bytes sent to the remote host
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * @return the number of bytes received by the remote host
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * @return the ratio between the size of the uncompressed data and the size of the compressed data, or 1 if no
+     * data has been compressed
+     */
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.sum();
+        return (compressed == 0 ? 1.0 : (double) uncompressedBytes.sum() / compressed);
+    }
+
+    /**
+     * @return the header of the rows returned by {@link #toCSV()}
+     */
+    static String getCSVHeader() {
+        StringBuilder header = new StringBuilder("name,bytessent,bytesreceived,compressionratio");
+        for (String histogram : new String[]{"sertime", "desertime", "rtt", "batchtime"}) {
+            header.append(String.format(",%1$s_count,%1$s_mean,%1$s_p50,%1$s_p90,%1$s_p99,%1$s_max", histogram));
+        }
+        return header.toString();
+    }
+
+    /**
+     * @return a row containing the current values of the metrics, durations are expressed in milliseconds
+     */
+    String toCSV() {
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%s,%d,%d,%.3f", name, getBytesSent(),
+                getBytesReceived(), getCompressionRatio()));
+        for (LatencyHistogram histogram : new LatencyHistogram[]{serializationTime, deserializationTime,
+                roundTripTime, batchTime}) {
+            row.append(String.format(Locale.ROOT, ",%d,%.3f,%.3f,%.3f,%.3f,%.3f", histogram.getCount(),
+                    toMillis(histogram.getMean()), toMillis(histogram.getPercentile(0.5)),
+                    toMillis(histogram.getPercentile(0.9)), toMillis(histogram.getPercentile(0.99)),
+                    toMillis(histogram.getMax())));
+        }
+        return row.toString();
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
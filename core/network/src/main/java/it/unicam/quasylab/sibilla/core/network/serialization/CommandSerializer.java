@@ -0,0 +1,192 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.serialization;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkCommand;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Utility class that handles the serialization of the commands exchanged by clients, masters and
+ * slaves, and of the string fields that follow them, with a compact binary protocol. Every message
+ * starts with the version of the protocol, followed by a one-byte opcode: a command is encoded only
+ * by its opcode, while a string field is encoded by the {@link #STRING} opcode followed by its UTF-8
+ * bytes. Unlike Java serialization, no stream header or class descriptor is sent with the messages.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class CommandSerializer {
+
+    /**
+     * Version of the protocol, written as the first byte of every message
+     */
+    public static final byte PROTOCOL_VERSION = 1;
+
+    /**
+     * Opcode of a string field
+     */
+    private static final byte STRING = 0x01;
+
+    private static final int HEADER_SIZE = 2;
+
+    /**
+     * Commands of each type, indexed by their opcode
+     */
+    private static final ClassValue<NetworkCommand[]> COMMANDS = new ClassValue<>() {
+        @Override
+        protected NetworkCommand[] computeValue(Class<?> type) {
+            NetworkCommand[] commands = new NetworkCommand[256];
+            for (Object command : type.getEnumConstants()) {
+                commands[((NetworkCommand) command).getOpcode() & 0xFF] = (NetworkCommand) command;
+            }
+            return commands;
+        }
+    };
+
+    /**
+     * Serializes a command
+     *
+     * @param command the command to serialize
+     * @return the bytes of the message
+     */
+    public static byte[] serialize(NetworkCommand command) {
+        return new byte[]{PROTOCOL_VERSION, command.getOpcode()};
+    }
+
+    /**
+     * Serializes a command followed by a payload
+     *
+     * @param command the command to serialize
+     * @param payload the bytes that follow the command
+     * @return the bytes of the message
+     */
+    public static byte[] serialize(NetworkCommand command, byte[] payload) {
+        byte[] message = new byte[HEADER_SIZE + payload.length];
+        message[0] = PROTOCOL_VERSION;
+        message[1] = command.getOpcode();
+        System.arraycopy(payload, 0, message, HEADER_SIZE, payload.length);
+        return message;
+    }
+
+    /**
+     * Deserializes a command of the given type
+     *
+     * @param message the bytes of the message
+     * @param type    the type of the expected command
+     * @param <C>     the type of the expected command
+     * @return the deserialized command
+     * @throws IOException if the message is not a command of the given type
+     */
+    public static <C extends Enum<C> & NetworkCommand> C deserialize(byte[] message, Class<C> type)
+            throws IOException {
+        checkHeader(message);
+        if (message.length != HEADER_SIZE) {
+            throw new IOException(String.format("Unexpected message of %d bytes instead of a command", message.length));
+        }
+        NetworkCommand command = COMMANDS.get(type)[message[1] & 0xFF];
+        if (command == null) {
+            throw new IOException(String.format("Unknown opcode [0x%02X] for a command of type %s", message[1],
+                    type.getSimpleName()));
+        }
+        return type.cast(command);
+    }
+
+    /**
+     * Checks whether a message contains the given command
+     *
+     * @param message the bytes of the message
+     * @param command the expected command
+     * @return true if the message contains the given command
+     */
+    public static boolean isCommand(byte[] message, NetworkCommand command) {
+        return message.length == HEADER_SIZE && message[0] == PROTOCOL_VERSION && message[1] == command.getOpcode();
+    }
+
+    /**
+     * Checks whether a message starts with the given command, regardless of the payload that follows it
+     *
+     * @param message the bytes of the message
+     * @param command the expected command
+     * @return true if the message starts with the given command
+     */
+    public static boolean startsWithCommand(byte[] message, NetworkCommand command) {
+        return message.length >= HEADER_SIZE && message[0] == PROTOCOL_VERSION && message[1] == command.getOpcode();
+    }
+
+    /**
+     * Returns the payload that follows the command of a message
+     *
+     * @param message the bytes of the message
+     * @return the bytes that follow the command
+     * @throws IOException if the message is too short or of an unsupported version
+     */
+    public static byte[] getPayload(byte[] message) throws IOException {
+        checkHeader(message);
+        return Arrays.copyOfRange(message, HEADER_SIZE, message.length);
+    }
+
+    /**
+     * Serializes a string field
+     *
+     * @param value the string to serialize
+     * @return the bytes of the message
+     */
+    public static byte[] serializeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] message = new byte[HEADER_SIZE + bytes.length];
+        message[0] = PROTOCOL_VERSION;
+        message[1] = STRING;
+        System.arraycopy(bytes, 0, message, HEADER_SIZE, bytes.length);
+        return message;
+    }
+
+    /**
+     * Deserializes a string field
+     *
+     * @param message the bytes of the message
+     * @return the deserialized string
+     * @throws IOException if the message is not a string field
+     */
+    public static String deserializeString(byte[] message) throws IOException {
+        checkHeader(message);
+        if (message[1] != STRING) {
+            throw new IOException(String.format("Unexpected opcode [0x%02X] instead of a string", message[1]));
+        }
+        return new String(message, HEADER_SIZE, message.length - HEADER_SIZE, StandardCharsets.UTF_8);
+    }
+
+    private static void checkHeader(byte[] message) throws IOException {
+        if (message.length < HEADER_SIZE) {
+            throw new IOException(String.format("Message of %d bytes is too short", message.length));
+        }
+        if (message[0] != PROTOCOL_VERSION) {
+            throw new IOException(String.format("Unsupported protocol version [%d], expected [%d]", message[0],
+                    PROTOCOL_VERSION));
+        }
+    }
+}
@@ -21,22 +21,31 @@
  *  limitations under the License.
  */
 
+
 package it.unicam.quasylab.sibilla.core.network.serialization;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
 import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.network.ComputationResult;
 import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import org.apache.commons.lang3.SerializationUtils;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Utility class that handles serialization and deserialization of
- * ComputationResults. Data is serialized and deserialized directly into byte
- * arrays to reduce time.
+ * ComputationResults. Data is serialized into a {@link SerializationBuffer} and
+ * deserialized directly from the received byte array. The number of completed
+ * tasks, the index of the first executed replica and the collected statistics are
+ * written first, followed by the number of
+ * trajectories and by the trajectories themselves, that can also be decoded lazily
+ * with {@link #trajectories(byte[], Model)}.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
@@ -54,26 +63,32 @@ public class ComputationResultSerializer {
      */
     public static <S extends State> byte[] serialize(ComputationResult<S> toSerialize, Model<S> model)
             throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        serialize(baos, toSerialize, model);
-        byte[] toReturn = baos.toByteArray();
-        baos.close();
-        return toReturn;
+        SerializationBuffer buffer = SerializationBuffer.local();
+        serialize(buffer, toSerialize, model);
+        return buffer.toByteArray();
     }
 
     /**
      * Serialize a ComputationResult and put its results inside a
-     * ByteArrayOutputStream
+     * SerializationBuffer
      *
-     * @param toSerializeInto the output stream where the serialized data will be
-     *                        put
+     * @param toSerializeInto the buffer where the serialized data will be put
      * @param toSerialize     the results to serialize
      * @param model           the model of the simulation
      * @param <S>             the state class
      * @throws IOException
      */
-    public static <S extends State> void serialize(ByteArrayOutputStream toSerializeInto,
+    public static <S extends State> void serialize(SerializationBuffer toSerializeInto,
             ComputationResult<S> toSerialize, Model<S> model) throws IOException {
+        toSerializeInto.putInt(toSerialize.getCompletedTasks());
+        toSerializeInto.putInt(toSerialize.getFirstReplica());
+        int lengthPosition = toSerializeInto.size();
+        toSerializeInto.putInt(0);
+        if (toSerialize.getStatistics() != null) {
+            SerializationUtils.serialize(toSerialize.getStatistics(), toSerializeInto.asOutputStream());
+            toSerializeInto.putInt(lengthPosition, toSerializeInto.size() - lengthPosition - 4);
+        }
+        toSerializeInto.putVarInt(toSerialize.getResults().size());
         for (Trajectory<S> trajectory : toSerialize.getResults()) {
             TrajectorySerializer.serialize(toSerializeInto, trajectory, model);
         }
@@ -90,29 +105,75 @@ public class ComputationResultSerializer {
      */
     public static <S extends State> ComputationResult<S> deserialize(byte[] toDeserialize, Model<S> model)
             throws IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(toDeserialize);
-        ComputationResult<S> result = deserialize(bais, model);
-        bais.close();
+        ByteBuffer buffer = ByteBuffer.wrap(toDeserialize);
+        int completedTasks = buffer.getInt();
+        int firstReplica = buffer.getInt();
+        ComputationResult<S> result = new ComputationResult<>(firstReplica, completedTasks, readStatistics(buffer));
+        int trajectories = SerializationBuffer.getVarInt(buffer);
+        for (int i = 0; i < trajectories; i++) {
+            result.getResults().add(TrajectorySerializer.deserialize(buffer, model));
+        }
         return result;
     }
 
     /**
-     * Deserialize data from an InputStream into a ComputationResult
+     * Returns the number of completed tasks of a serialized ComputationResult, without
+     * deserializing it
      *
-     * @param toDeserializeFrom the input stream that contains serialized data
-     * @param model             the model of the simulation
-     * @param <S>               the state class
-     * @return the deserialized ComputationResult
-     * @throws IOException
+     * @param serialized the byte array that contains serialized data
+     * @return the number of completed tasks
+     */
+    public static int getCompletedTasks(byte[] serialized) {
+        return ByteBuffer.wrap(serialized).getInt(0);
+    }
+
+    /**
+     * Returns the trajectories of a serialized ComputationResult. Each trajectory is
+     * deserialized only when it is reached by the returned iterator.
+     *
+     * @param serialized the byte array that contains serialized data
+     * @param model      the model of the simulation
+     * @param <S>        the state class
+     * @return the lazily deserialized trajectories
      */
-    public static <S extends State> ComputationResult<S> deserialize(ByteArrayInputStream toDeserializeFrom,
-            Model<S> model) throws IOException {
-        LinkedList<Trajectory<S>> trajectories = new LinkedList<>();
-        while (toDeserializeFrom.available() > 0) {
-            Trajectory<S> trajectory = TrajectorySerializer.deserialize(toDeserializeFrom, model);
-            trajectories.add(trajectory);
+    public static <S extends State> Iterable<Trajectory<S>> trajectories(byte[] serialized, Model<S> model) {
+        return () -> {
+            ByteBuffer buffer = ByteBuffer.wrap(serialized);
+            buffer.position(12 + buffer.getInt(8));
+            int size = SerializationBuffer.getVarInt(buffer);
+            return new Iterator<>() {
+                private int read = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return read < size;
+                }
+
+                @Override
+                public Trajectory<S> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        read++;
+                        return TrajectorySerializer.deserialize(buffer, model);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        };
+    }
+
+    private static <S extends State> SamplingFunction<S> readStatistics(ByteBuffer buffer) {
+        int statisticsLength = buffer.getInt();
+        if (statisticsLength == 0) {
+            return null;
         }
-        return new ComputationResult<>(trajectories);
+        SamplingFunction<S> statistics = SerializationUtils.deserialize(
+                new ByteArrayInputStream(buffer.array(), buffer.position(), statisticsLength));
+        buffer.position(buffer.position() + statisticsLength);
+        return statistics;
     }
 
 }
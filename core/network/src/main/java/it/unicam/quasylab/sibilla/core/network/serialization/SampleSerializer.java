@@ -21,20 +21,20 @@
  *  limitations under the License.
  */
 
+
 package it.unicam.quasylab.sibilla.core.network.serialization;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
 import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.simulator.sampling.Sample;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 /**
  * Utility class that handles serialization and deserialization of Samples.
- * Data is serialized and deserialized directly into byte arrays to reduce time.
+ * Data is serialized into a {@link SerializationBuffer} and deserialized directly
+ * from a {@link ByteBuffer}, without intermediate copies.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
@@ -51,26 +51,23 @@ public class SampleSerializer {
      * @throws IOException
      */
     public static <S extends State> byte[] serialize(Sample<S> sample, Model<S> model) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        serialize(baos, sample, model);
-        byte[] toReturn = baos.toByteArray();
-        baos.close();
-        return toReturn;
+        SerializationBuffer buffer = SerializationBuffer.local();
+        serialize(buffer, sample, model);
+        return buffer.toByteArray();
     }
 
     /**
-     * Serialize a Sample and put its results inside a ByteArrayOutputStream
+     * Serialize a Sample and put its results inside a SerializationBuffer
      *
-     * @param toSerializeInto the output stream where the serialized data will be put
+     * @param toSerializeInto the buffer where the serialized data will be put
      * @param sample          the sample to serialize
      * @param model           the model of the simulation
      * @param <S>             the state class
      * @throws IOException
      */
-    public static <S extends State> void serialize(ByteArrayOutputStream toSerializeInto, Sample<S> sample, Model<S> model) throws IOException {
-        double time = sample.getTime();
-        toSerializeInto.write(ByteBuffer.allocate(8).putDouble(time).array());
-        toSerializeInto.write(model.byteOf(sample.getValue()));
+    public static <S extends State> void serialize(SerializationBuffer toSerializeInto, Sample<S> sample, Model<S> model) throws IOException {
+        toSerializeInto.putDouble(sample.getTime());
+        toSerializeInto.putBytes(model.byteOf(sample.getValue()));
     }
 
     /**
@@ -83,25 +80,23 @@ public class SampleSerializer {
      * @throws IOException
      */
     public static <S extends State> Sample<S> deserialize(byte[] toDeserialize, Model<S> model) throws IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(toDeserialize);
-        Sample<S> sample = deserialize(bais, model);
-        bais.close();
-        return sample;
+        return deserialize(ByteBuffer.wrap(toDeserialize), model);
     }
 
     /**
-     * Deserialize data from an InputStream into a Sample
+     * Deserialize the Sample starting at the current position of a ByteBuffer
      *
-     * @param toDeserializeFrom the input stream that contains serialized data
+     * @param toDeserializeFrom the buffer that contains serialized data
      * @param model the model of the simulation
      * @param <S> the state class
      * @return the deserialized Sample
      * @throws IOException
      */
-    public static <S extends State> Sample<S> deserialize(ByteArrayInputStream toDeserializeFrom, Model<S> model) throws IOException {
-        double time = ByteBuffer.wrap(toDeserializeFrom.readNBytes(8)).getDouble();
-        S state = model.fromByte(toDeserializeFrom.readNBytes(model.stateByteArraySize()));
-        return new Sample<>(time, state);
+    public static <S extends State> Sample<S> deserialize(ByteBuffer toDeserializeFrom, Model<S> model) throws IOException {
+        double time = toDeserializeFrom.getDouble();
+        byte[] state = new byte[model.stateByteArraySize()];
+        toDeserializeFrom.get(state);
+        return new Sample<>(time, model.fromByte(state));
     }
 
 }
@@ -0,0 +1,232 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.network.serialization;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growing byte buffer used by the custom serializers to write data without allocating
+ * a new buffer for each field. A buffer can be cleared and reused for the next message.
+ * The class also provides the variable length encoding of integers used by the
+ * serializers, together with the methods to read them back from a {@link ByteBuffer}.
+ *
+ * @author Stelluti Francesco Pio
+ * @author Zamponi Marco
+ */
+public class SerializationBuffer {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final ThreadLocal<SerializationBuffer> LOCAL_BUFFER = ThreadLocal.withInitial(SerializationBuffer::new);
+
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a new buffer with the default initial capacity
+     */
+    public SerializationBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new buffer with the given initial capacity
+     *
+     * @param capacity initial capacity of the buffer
+     */
+    public SerializationBuffer(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Returns the buffer associated to the current thread, after clearing it
+     *
+     * @return an empty buffer that can be used by the current thread
+     */
+    public static SerializationBuffer local() {
+        return LOCAL_BUFFER.get().clear();
+    }
+
+    /**
+     * Removes all the data written in the buffer, keeping its capacity
+     *
+     * @return this buffer
+     */
+    public SerializationBuffer clear() {
+        buffer.clear();
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes written in the buffer
+     *
+     * @return the number of bytes written in the buffer
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Returns a copy of the bytes written in the buffer
+     *
+     * @return a copy of the bytes written in the buffer
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public SerializationBuffer putByte(int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+        return this;
+    }
+
+    public SerializationBuffer putInt(int value) {
+        ensureCapacity(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    /**
+     * Overwrites the int at the given position, previously written in the buffer
+     *
+     * @param position position of the int to overwrite
+     * @param value    new value
+     * @return this buffer
+     */
+    public SerializationBuffer putInt(int position, int value) {
+        buffer.putInt(position, value);
+        return this;
+    }
+
+    public SerializationBuffer putLong(long value) {
+        ensureCapacity(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    public SerializationBuffer putDouble(double value) {
+        ensureCapacity(8);
+        buffer.putDouble(value);
+        return this;
+    }
+
+    public SerializationBuffer putBytes(byte[] bytes) {
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    public SerializationBuffer putBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        buffer.put(bytes, offset, length);
+        return this;
+    }
+
+    /**
+     * Writes an unsigned int using from 1 to 5 bytes, 7 bits per byte
+     *
+     * @param value the value to write
+     * @return this buffer
+     */
+    public SerializationBuffer putVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return this;
+    }
+
+    /**
+     * Writes a signed int using the zig-zag encoding, so that values close to zero
+     * use few bytes
+     *
+     * @param value the value to write
+     * @return this buffer
+     */
+    public SerializationBuffer putSignedVarInt(int value) {
+        return putVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads an unsigned int written with {@link #putVarInt(int)}
+     *
+     * @param source buffer to read from
+     * @return the read value
+     */
+    public static int getVarInt(ByteBuffer source) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = source.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Reads a signed int written with {@link #putSignedVarInt(int)}
+     *
+     * @param source buffer to read from
+     * @return the read value
+     */
+    public static int getSignedVarInt(ByteBuffer source) {
+        int value = getVarInt(source);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Returns an output stream writing into this buffer
+     *
+     * @return an output stream writing into this buffer
+     */
+    public OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                putByte(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                putBytes(b, off, len);
+            }
+        };
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer newBuffer = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+    }
+
+}
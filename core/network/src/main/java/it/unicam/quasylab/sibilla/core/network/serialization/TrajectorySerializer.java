@@ -21,6 +21,7 @@
  *  limitations under the License.
  */
 
+
 package it.unicam.quasylab.sibilla.core.network.serialization;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
@@ -28,14 +29,17 @@ import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
 import it.unicam.quasylab.sibilla.core.simulator.sampling.Sample;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Utility class that handles serialization and deserialization of Trajectories.
- * Data is serialized and deserialized directly into byte arrays to reduce time.
+ * Data is serialized into a {@link SerializationBuffer} and deserialized directly
+ * from a {@link ByteBuffer}. Samples are stored by column: the times of all the samples
+ * are followed by the states. When the size of the states is a multiple of 4 bytes, as for
+ * the population vectors, each state is read as a sequence of ints and each int is stored
+ * as the zig-zag varint of its difference with the same int of the previous sample.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
@@ -52,37 +56,53 @@ public class TrajectorySerializer {
      * @throws IOException
      */
     public static <S extends State> byte[] serialize(Trajectory<S> t, Model<S> model) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        serialize(baos, t, model);
-        byte[] toReturn = baos.toByteArray();
-        baos.close();
-        return toReturn;
+        SerializationBuffer buffer = SerializationBuffer.local();
+        serialize(buffer, t, model);
+        return buffer.toByteArray();
     }
 
     /**
-     * Serialize a Trajectory into an array of bytes.
+     * Serialize a Trajectory into a SerializationBuffer.
      *
-     * @param toSerializeInto the output stream where the serialized data will be
-     *                        put
+     * @param toSerializeInto the buffer where the serialized data will be put
      * @param t               the trajectory to serialize
      * @param model           the model of the simulation
      * @param <S>             the state class
      * @throws IOException
      */
-    public static <S extends State> void serialize(ByteArrayOutputStream toSerializeInto, Trajectory<S> t,
+    public static <S extends State> void serialize(SerializationBuffer toSerializeInto, Trajectory<S> t,
             Model<S> model) throws IOException {
-        int numberOfSamples = t.size();
-        double start = t.getStart();
-        double end = t.getEnd();
-        long generationTime = t.getGenerationTime();
-        int isSuccessful = t.isSuccessful() ? 1 : 0;
-        toSerializeInto.write(ByteBuffer.allocate(4).putInt(numberOfSamples).array());
-        toSerializeInto.write(ByteBuffer.allocate(8).putDouble(start).array());
-        toSerializeInto.write(ByteBuffer.allocate(8).putDouble(end).array());
-        toSerializeInto.write(ByteBuffer.allocate(4).putInt(isSuccessful).array());
-        toSerializeInto.write(ByteBuffer.allocate(8).putLong(generationTime).array());
-        for (Sample<S> sample : t.getData()) {
-            SampleSerializer.serialize(toSerializeInto, sample, model);
+        List<Sample<S>> samples = t.getData();
+        toSerializeInto.putVarInt(samples.size());
+        toSerializeInto.putDouble(t.getStart());
+        toSerializeInto.putDouble(t.getEnd());
+        toSerializeInto.putByte(t.isSuccessful() ? 1 : 0);
+        toSerializeInto.putLong(t.getGenerationTime());
+        for (Sample<S> sample : samples) {
+            toSerializeInto.putDouble(sample.getTime());
+        }
+        int stateSize = model.stateByteArraySize();
+        if (stateSize % 4 != 0) {
+            for (Sample<S> sample : samples) {
+                toSerializeInto.putBytes(model.byteOf(sample.getValue()));
+            }
+            return;
+        }
+        int[][] columns = new int[stateSize / 4][samples.size()];
+        int row = 0;
+        for (Sample<S> sample : samples) {
+            ByteBuffer state = ByteBuffer.wrap(model.byteOf(sample.getValue()));
+            for (int[] column : columns) {
+                column[row] = state.getInt();
+            }
+            row++;
+        }
+        for (int[] column : columns) {
+            int previous = 0;
+            for (int value : column) {
+                toSerializeInto.putSignedVarInt(value - previous);
+                previous = value;
+            }
         }
     }
 
@@ -96,38 +116,50 @@ public class TrajectorySerializer {
      * @throws IOException
      */
     public static <S extends State> Trajectory<S> deserialize(byte[] toDeserialize, Model<S> model) throws IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(toDeserialize);
-        Trajectory<S> t = deserialize(bais, model);
-        bais.close();
-        return t;
+        return deserialize(ByteBuffer.wrap(toDeserialize), model);
     }
 
     /**
-     * Deserialize data from an InputStream into a Trajectory
+     * Deserialize the Trajectory starting at the current position of a ByteBuffer
      *
-     * @param toDeserializeFrom the input stream that contains serialized data
+     * @param toDeserializeFrom the buffer that contains serialized data
      * @param model             the model of the simulation
      * @param <S>               the state class
      * @return the deserialized trajectory
      * @throws IOException
      */
-    public static <S extends State> Trajectory<S> deserialize(ByteArrayInputStream toDeserializeFrom, Model<S> model)
+    public static <S extends State> Trajectory<S> deserialize(ByteBuffer toDeserializeFrom, Model<S> model)
             throws IOException {
         Trajectory<S> t = new Trajectory<S>();
-
-        int numberOfSamples = ByteBuffer.wrap(toDeserializeFrom.readNBytes(4)).getInt();
-        double start = ByteBuffer.wrap(toDeserializeFrom.readNBytes(8)).getDouble();
-        double end = ByteBuffer.wrap(toDeserializeFrom.readNBytes(8)).getDouble();
-        boolean isSuccessful = ByteBuffer.wrap(toDeserializeFrom.readNBytes(4)).getInt() != 0;
-        long generationTime = ByteBuffer.wrap(toDeserializeFrom.readNBytes(8)).getLong();
-        t.setStart(start);
-        t.setEnd(end);
-        t.setGenerationTime(generationTime);
-        t.setSuccessful(isSuccessful);
-
+        int numberOfSamples = SerializationBuffer.getVarInt(toDeserializeFrom);
+        t.setStart(toDeserializeFrom.getDouble());
+        t.setEnd(toDeserializeFrom.getDouble());
+        t.setSuccessful(toDeserializeFrom.get() != 0);
+        t.setGenerationTime(toDeserializeFrom.getLong());
+        double[] times = new double[numberOfSamples];
+        for (int i = 0; i < numberOfSamples; i++) {
+            times[i] = toDeserializeFrom.getDouble();
+        }
+        int stateSize = model.stateByteArraySize();
+        byte[][] states = new byte[numberOfSamples][stateSize];
+        if (stateSize % 4 != 0) {
+            for (byte[] state : states) {
+                toDeserializeFrom.get(state);
+            }
+        } else {
+            for (int offset = 0; offset < stateSize; offset += 4) {
+                int value = 0;
+                for (byte[] state : states) {
+                    value += SerializationBuffer.getSignedVarInt(toDeserializeFrom);
+                    state[offset] = (byte) (value >>> 24);
+                    state[offset + 1] = (byte) (value >>> 16);
+                    state[offset + 2] = (byte) (value >>> 8);
+                    state[offset + 3] = (byte) value;
+                }
+            }
+        }
         for (int i = 0; i < numberOfSamples; i++) {
-            Sample<S> newSample = SampleSerializer.deserialize(toDeserializeFrom, model);
-            t.addSample(newSample);
+            t.addSample(new Sample<>(times[i], model.fromByte(states[i])));
         }
         return t;
     }
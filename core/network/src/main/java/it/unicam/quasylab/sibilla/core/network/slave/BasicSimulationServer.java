@@ -23,14 +23,21 @@
 
 package it.unicam.quasylab.sibilla.core.network.slave;
 
+import it.unicam.quasylab.sibilla.core.models.ModelDefinition;
 import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
 import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
 import it.unicam.quasylab.sibilla.core.network.NetworkTask;
+import it.unicam.quasylab.sibilla.core.network.SweepPointModel;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.communication.TaggedNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
 import it.unicam.quasylab.sibilla.core.network.compression.Compressor;
 import it.unicam.quasylab.sibilla.core.network.loaders.CustomClassLoader;
+import it.unicam.quasylab.sibilla.core.network.loaders.ModelClassCache;
 import it.unicam.quasylab.sibilla.core.network.master.MasterCommand;
+import it.unicam.quasylab.sibilla.core.network.metrics.MetricsRegistry;
+import it.unicam.quasylab.sibilla.core.network.metrics.NetworkMetrics;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
 import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
@@ -41,7 +48,10 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -92,6 +102,31 @@ public class BasicSimulationServer implements SimulationServer {
     //TODO
     private ComputationResultSerializerType crSerializerType;
 
+    /**
+     * Cache of the model classes received by the master servers.
+     */
+    private ModelClassCache modelClassCache = new ModelClassCache();
+
+    /**
+     * Socket where the server accepts the connections of the master servers.
+     */
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Signals if the server has been stopped.
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * Duration, in milliseconds, of the warm-up run when a model is loaded. A zero value disables the warm-up.
+     */
+    private volatile long warmupTime = 0;
+
+    /**
+     * Hashes of the model classes for which a warm-up has already been run.
+     */
+    private final Set<String> warmedModels = ConcurrentHashMap.newKeySet();
+
     /**
      * Creates a simulation server with the given network manager type
      *
@@ -127,16 +162,35 @@ public class BasicSimulationServer implements SimulationServer {
      */
     private void startSimulationServer() {
         try {
-            ServerSocket serverSocket = TCPNetworkManager.createServerSocket(networkManagerType, simulationPort);
+            this.serverSocket = TCPNetworkManager.createServerSocket(networkManagerType, simulationPort);
             LOGGER.info(String.format("The BasicSimulationServer is now listening for servers on port: [%d]",
                     simulationPort));
-            while (true) {
+            while (!stopped) {
                 Socket socket = serverSocket.accept();
                 connectionExecutor.execute(() -> manageNewMaster(socket));
             }
         } catch (IOException e) {
-            LOGGER.severe(String.format("[%s] Network communication failure during the server socket startup",
-                    e.getMessage()));
+            if (stopped) {
+                LOGGER.info(String.format("The BasicSimulationServer on port [%d] has been stopped", simulationPort));
+            } else {
+                LOGGER.severe(String.format("[%s] Network communication failure during the server socket startup",
+                        e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Stops accepting the connections of the master servers. The connections already open
+     * are handled until the master servers close them.
+     */
+    public void stop() {
+        stopped = true;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Failure while closing the server socket", e.getMessage()));
         }
     }
 
@@ -151,13 +205,15 @@ public class BasicSimulationServer implements SimulationServer {
             TCPNetworkManager master = TCPNetworkManager.createNetworkManager(networkManagerType, socket);
 
             AtomicBoolean masterIsActive = new AtomicBoolean(true);
+            Map<String, NetworkTask.Payload<?>> payloads = NetworkTask.newPayloadCache();
 
             Map<MasterCommand, Runnable> map = Map.of(MasterCommand.PING, () -> respondPingRequest(master),
                     MasterCommand.INIT, () -> loadModelClass(master), MasterCommand.TASK,
-                    () -> handleTaskExecution(master), MasterCommand.CLOSE_CONNECTION,
+                    () -> handleTaskExecution(master, payloads), MasterCommand.MULTIPLEXED_TASK,
+                    () -> handleMultiplexedTaskExecution(master, payloads), MasterCommand.CLOSE_CONNECTION,
                     () -> closeConnectionWithMaster(masterIsActive, master));
             while (masterIsActive.get()) {
-                MasterCommand request = (MasterCommand) serializer.deserialize(master.readObject());
+                MasterCommand request = CommandSerializer.deserialize(master.readObject(), MasterCommand.class);
                 LOGGER.info(String.format("[%s] command received by master: %s", request,
                         master.getNetworkInfo().toString()));
                 map.getOrDefault(request, () -> {
@@ -179,14 +235,15 @@ public class BasicSimulationServer implements SimulationServer {
      */
     private void closeConnectionWithMaster(AtomicBoolean masterActive, TCPNetworkManager master) {
         try {
-            String modelName = (String) serializer.deserialize(master.readObject());
+            String modelName = CommandSerializer.deserializeString(master.readObject());
             LOGGER.info(String.format("[%s] Model name read to be deleted by master: %s", modelName,
                     master.getNetworkInfo().toString()));
             masterActive.set(false);
             CustomClassLoader.removeClassBytes(modelName);
+            SweepPointModel.evict(modelName);
             LOGGER.info(String.format("[%s] Model deleted off the class loader", modelName));
 
-            master.writeObject(serializer.serialize(SlaveCommand.CLOSE_CONNECTION));
+            master.writeObject(CommandSerializer.serialize(SlaveCommand.CLOSE_CONNECTION));
             LOGGER.info(String.format("[%s] command sent to the master: %s", SlaveCommand.CLOSE_CONNECTION,
                     master.getNetworkInfo().toString()));
 
@@ -203,25 +260,120 @@ public class BasicSimulationServer implements SimulationServer {
     }
 
     /**
-     * Loads the model class in the memory with the CustomClassLoader
+     * Handles the execution of a simulation tagged with the identifier of its simulation and sends
+     * its results, tagged with the same identifier, to the master
+     *
+     * @param master   server of the master
+     * @param payloads payloads already decoded on the connection with the master
+     */
+    private void handleMultiplexedTaskExecution(TCPNetworkManager master, Map<String, NetworkTask.Payload<?>> payloads) {
+        try {
+            byte[] tagged = master.readObject();
+            TaggedNetworkManager simulationChannel = new TaggedNetworkManager(master, TaggedNetworkManager.getTag(tagged));
+            NetworkMetrics metrics = MetricsRegistry.getInstance().getMetrics("slave", master.getNetworkInfo());
+            NetworkTask<?> networkTask = decodeTask(TaggedNetworkManager.untag(tagged), payloads, metrics);
+            execute(networkTask, simulationChannel, metrics);
+            LOGGER.info(String.format("[%d] Computation's results have been sent to the server - %s",
+                    simulationChannel.getTag(), master.getNetworkInfo().toString()));
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Network communication failure during the task handling - Master: %s",
+                    e.getMessage(), master.getNetworkInfo().toString()));
+        }
+    }
+
+    /**
+     * Sets the cache of the model classes used by this server
+     *
+     * @param modelClassCache cache of the model classes
+     */
+    public void setModelClassCache(ModelClassCache modelClassCache) {
+        this.modelClassCache = modelClassCache;
+    }
+
+    /**
+     * Sets the duration of the warm-up run the first time a model class is loaded, before the slave reports to
+     * the master that it is ready. The warm-up simulates trajectories of the default initial state of the model
+     * on all the threads of the executor, so that the first tasks are not executed by interpreted code and the
+     * timeouts computed by the master are not sized on them. A zero value disables the warm-up.
+     *
+     * @param warmupTime duration of the warm-up in milliseconds
+     */
+    public void setWarmupTime(long warmupTime) {
+        if (warmupTime < 0) {
+            throw new IllegalArgumentException("The warm-up time cannot be negative");
+        }
+        this.warmupTime = warmupTime;
+    }
+
+    /**
+     * Runs the warm-up of the given model class, if enabled and not already run for the same class bytes.
+     *
+     * @param modelName name of the model definition class
+     * @param modelHash hash of the bytes of the model definition class
+     */
+    private void warmUp(String modelName, String modelHash) {
+        long time = warmupTime;
+        if (time <= 0 || !warmedModels.add(modelHash)) {
+            return;
+        }
+        try {
+            ModelDefinition<?> definition = (ModelDefinition<?>) Class.forName(modelName)
+                    .getDeclaredConstructor().newInstance();
+            long start = System.nanoTime();
+            simulationExecutor.warmUp(definition.createModel(), definition.state(), time);
+            LOGGER.info(String.format("[%s] Warm-up completed in %d ms", modelName,
+                    (System.nanoTime() - start) / 1000000));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warning(String.format("[%s] Warm-up of the model %s skipped", e.getMessage(), modelName));
+        }
+    }
+
+    /**
+     * Loads the model class in the memory. The master sends the hash of the class bytes,
+     * the bytes are requested only if the class is not in the {@link ModelClassCache}.
      *
      * @param master server of the master
      */
     private void loadModelClass(TCPNetworkManager master) {
         try {
-            String modelName = (String) serializer.deserialize(master.readObject());
+            String modelName = CommandSerializer.deserializeString(master.readObject());
             LOGGER.info(
                     String.format("[%s] Model name read by master: %s", modelName, master.getNetworkInfo().toString()));
-            byte[] myClass = master.readObject();
-            CustomClassLoader.defClass(modelName, myClass);
+            String modelHash = CommandSerializer.deserializeString(master.readObject());
+            if (modelClassCache.load(modelName, modelHash)) {
+                LOGGER.info(String.format("[%s] Model class found in cache", modelName));
+            } else {
+                master.writeObject(CommandSerializer.serialize(SlaveCommand.CLASS_REQUEST));
+                LOGGER.info(String.format("[%s] command sent to the master: %s", SlaveCommand.CLASS_REQUEST,
+                        master.getNetworkInfo().toString()));
+                byte[] myClass = master.readObject();
+                modelClassCache.store(modelName, modelHash, myClass);
+            }
             String classLoadedName = Class.forName(modelName).getName();
             LOGGER.info(String.format("[%s] Class loaded with success", classLoadedName));
-            master.writeObject(serializer.serialize(SlaveCommand.INIT_RESPONSE));
+            warmUp(modelName, modelHash);
+            master.writeObject(CommandSerializer.serialize(SlaveCommand.INIT_RESPONSE));
             LOGGER.info(String.format("[%s] command sent to the master: %s", SlaveCommand.INIT_RESPONSE,
                     master.getNetworkInfo().toString()));
-        } catch (ClassNotFoundException e) {
+        } catch (ClassNotFoundException | IOException e) {
             LOGGER.severe(String.format("[%s] The simulation model was not loaded with success - Master: %s",
                     e.getMessage(), master.getNetworkInfo().toString()));
+            sendInitError(master, e);
+        }
+    }
+
+    /**
+     * Informs the master that the model class could not be loaded
+     *
+     * @param master server of the master
+     * @param error  the error occurred while loading the model class
+     */
+    private void sendInitError(TCPNetworkManager master, Exception error) {
+        try {
+            master.writeObject(CommandSerializer.serialize(SlaveCommand.INIT_ERROR,
+                    String.valueOf(error.getMessage()).getBytes(StandardCharsets.UTF_8)));
+            LOGGER.info(String.format("[%s] command sent to the master: %s", SlaveCommand.INIT_ERROR,
+                    master.getNetworkInfo().toString()));
         } catch (IOException e) {
             LOGGER.severe(
                     String.format("[%s] Network communication failure during the simulation model loading - Master: %s",
@@ -233,13 +385,14 @@ public class BasicSimulationServer implements SimulationServer {
      * Handles the simulation execution sent by the server and sends its results to
      * the master
      *
-     * @param master server of the master
+     * @param master   server of the master
+     * @param payloads payloads already decoded on the connection with the master
      */
-    private void handleTaskExecution(TCPNetworkManager master) {
+    private void handleTaskExecution(TCPNetworkManager master, Map<String, NetworkTask.Payload<?>> payloads) {
         try {
-            NetworkTask<?> networkTask = (NetworkTask<?>) serializer
-                    .deserialize(Compressor.decompress(master.readObject()));
-            simulationExecutor.simulate(networkTask, master);
+            NetworkMetrics metrics = MetricsRegistry.getInstance().getMetrics("slave", master.getNetworkInfo());
+            NetworkTask<?> networkTask = decodeTask(master.readObject(), payloads, metrics);
+            execute(networkTask, master, metrics);
             LOGGER.info(String.format("Computation's results have been sent to the server - %s",
                     master.getNetworkInfo().toString()));
         } catch (IOException e) {
@@ -248,6 +401,41 @@ public class BasicSimulationServer implements SimulationServer {
         }
     }
 
+    /**
+     * Decodes a group of tasks received by the master. The payload of the tasks is decompressed and deserialized
+     * only the first time it is received on the connection.
+     *
+     * @param received data received by the master
+     * @param payloads payloads already decoded on the connection with the master
+     * @param metrics  metrics of the communication with the master
+     * @return the tasks to execute
+     */
+    private NetworkTask<?> decodeTask(byte[] received, Map<String, NetworkTask.Payload<?>> payloads,
+                                      NetworkMetrics metrics) {
+        metrics.recordReceived(received.length);
+        return NetworkTask.decode(received, payloads, encoded -> {
+            byte[] decompressed = Compressor.decompress(encoded);
+            metrics.recordCompression(decompressed.length, encoded.length);
+            long deserializationTime = System.nanoTime();
+            NetworkTask.Payload<?> payload = (NetworkTask.Payload<?>) serializer.deserialize(decompressed);
+            metrics.getDeserializationTime().record(System.nanoTime() - deserializationTime);
+            return payload;
+        });
+    }
+
+    /**
+     * Executes a group of tasks, sending their results through the given channel
+     *
+     * @param networkTask tasks to execute
+     * @param channel     channel where the results are sent
+     * @param metrics     metrics of the communication with the master
+     */
+    private void execute(NetworkTask<?> networkTask, TCPNetworkManager channel, NetworkMetrics metrics) {
+        long batchTime = System.nanoTime();
+        simulationExecutor.simulate(networkTask, channel);
+        metrics.getBatchTime().record(System.nanoTime() - batchTime);
+    }
+
     /**
      * Responds to a ping request from the master
      *
@@ -255,7 +443,7 @@ public class BasicSimulationServer implements SimulationServer {
      */
     private void respondPingRequest(TCPNetworkManager master) {
         try {
-            master.writeObject(serializer.serialize(SlaveCommand.PONG));
+            master.writeObject(CommandSerializer.serialize(SlaveCommand.PONG));
             LOGGER.info(String.format("Ping request answered, it was sent by the master: %s",
                     master.getNetworkInfo().toString()));
         } catch (IOException e) {
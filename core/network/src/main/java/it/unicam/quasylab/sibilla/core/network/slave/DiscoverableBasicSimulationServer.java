@@ -27,6 +27,8 @@ import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
 import it.unicam.quasylab.sibilla.core.network.communication.UDPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.communication.UDPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.master.MasterCommand;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
 import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
 import it.unicam.quasylab.sibilla.core.network.slave.executor.SimulationExecutor;
@@ -35,8 +37,8 @@ import it.unicam.quasylab.sibilla.core.network.util.NetworkUtils;
 import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.SocketException;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Extensions of a simple server that executes the simulations passed by a master server.
@@ -47,6 +49,15 @@ import java.util.Set;
  */
 public class DiscoverableBasicSimulationServer extends BasicSimulationServer {
 
+    /**
+     * Time, in milliseconds, after which a DRAIN command that has not been acknowledged is sent again.
+     */
+    private static final long DRAIN_RESEND_TIME = 500;
+
+    /**
+     * Number of times a DRAIN command is sent to a master server before giving up.
+     */
+    private static final int DRAIN_ATTEMPTS = 20;
 
     /**
      * Discovery's network communication related infos.
@@ -61,7 +72,17 @@ public class DiscoverableBasicSimulationServer extends BasicSimulationServer {
     /**
      * Manages the discovery network communication with the master servers.
      */
-    private UDPNetworkManager discoveryNetworkManager;
+    private volatile UDPNetworkManager discoveryNetworkManager;
+
+    /**
+     * Signals if the server is draining, so that it no longer replies to the discovery messages.
+     */
+    private volatile boolean draining = false;
+
+    /**
+     * The master servers that have not acknowledged the DRAIN command yet.
+     */
+    private final Set<NetworkInfo> pendingDrains = ConcurrentHashMap.newKeySet();
 
     public DiscoverableBasicSimulationServer(int localDiscoveryPort, TCPNetworkManagerType simulationNetworkManager,
                                              UDPNetworkManagerType discoveryNetworkManager, SerializerType serializerType,
@@ -69,7 +90,7 @@ public class DiscoverableBasicSimulationServer extends BasicSimulationServer {
         super(simulationNetworkManager, serializerType, type, crSerializerType);
         try {
             LOCAL_DISCOVERY_INFO = new NetworkInfo(NetworkUtils.getLocalAddress(), localDiscoveryPort, discoveryNetworkManager);
-            this.knownMasters = new HashSet<>();
+            this.knownMasters = ConcurrentHashMap.newKeySet();
 
             LOGGER.info(String.format("Creating a new DiscoverableBasicSimulationServer - It will respond for discovery messages on port [%d]", localDiscoveryPort));
 
@@ -89,7 +110,12 @@ public class DiscoverableBasicSimulationServer extends BasicSimulationServer {
             this.discoveryNetworkManager = UDPNetworkManager.createNetworkManager((UDPNetworkManagerType) LOCAL_DISCOVERY_INFO.getType(), discoverySocket);
 
             while (true) {
-                NetworkInfo masterInfo = (NetworkInfo) serializer.deserialize(this.discoveryNetworkManager.readObject());
+                byte[] message = this.discoveryNetworkManager.readObject();
+                if (CommandSerializer.startsWithCommand(message, MasterCommand.DRAIN_RESPONSE)) {
+                    manageDrainResponse((NetworkInfo) serializer.deserialize(CommandSerializer.getPayload(message)));
+                    continue;
+                }
+                NetworkInfo masterInfo = (NetworkInfo) serializer.deserialize(message);
 
                 LOGGER.info(String.format("Discovered the master: %s", masterInfo.toString()));
                 manageDiscoveryMessage(this.discoveryNetworkManager, masterInfo);
@@ -112,6 +138,10 @@ public class DiscoverableBasicSimulationServer extends BasicSimulationServer {
     private void manageDiscoveryMessage(UDPNetworkManager manager, NetworkInfo masterInfo) {
         try {
             this.knownMasters.add(masterInfo);
+            if (draining) {
+                LOGGER.info(String.format("The server is draining, the discovery message is ignored - Master: %s", masterInfo.toString()));
+                return;
+            }
             manager.writeObject(serializer.serialize(this.localServerInfo), masterInfo.getAddress(), masterInfo.getPort());
             LOGGER.info(String.format("Sent the discovery response to the master: %s", masterInfo.toString()));
             LOGGER.info(String.format("Currently known masters - %s", knownMasters.toString()));
@@ -119,4 +149,73 @@ public class DiscoverableBasicSimulationServer extends BasicSimulationServer {
             LOGGER.severe(String.format("[%s] Network communication failure during the discovery message management - Master: %s", e.getMessage(), masterInfo.toString()));
         }
     }
+
+    /**
+     * Manages the acknowledgement of the DRAIN command sent to a master
+     *
+     * @param masterInfo ServerInfo of the master server
+     */
+    private void manageDrainResponse(NetworkInfo masterInfo) {
+        if (pendingDrains.remove(masterInfo)) {
+            LOGGER.info(String.format("The master acknowledged the drain: %s", masterInfo.toString()));
+            synchronized (pendingDrains) {
+                pendingDrains.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Drains the server: the known master servers are informed that the server completes the tasks it is
+     * executing and must not receive new ones, and the discovery messages are no longer replied. Since the
+     * DRAIN command travels over UDP, it is sent again to the master servers that have not acknowledged it,
+     * up to a maximum number of attempts. The method returns when every known master server has acknowledged
+     * the command or the attempts are exhausted.
+     *
+     * @return true if every known master server has acknowledged the DRAIN command
+     */
+    public boolean drain() {
+        draining = true;
+        UDPNetworkManager manager = this.discoveryNetworkManager;
+        if (manager == null) {
+            return true;
+        }
+        pendingDrains.addAll(knownMasters);
+        try {
+            for (int attempt = 0; attempt < DRAIN_ATTEMPTS && !pendingDrains.isEmpty(); attempt++) {
+                pendingDrains.forEach(masterInfo -> sendDrain(manager, masterInfo));
+                awaitDrainResponses();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warning(String.format("[%s] Interrupted while waiting for the drain acknowledgements", e.getMessage()));
+            Thread.currentThread().interrupt();
+        }
+        if (!pendingDrains.isEmpty()) {
+            LOGGER.warning(String.format("The drain has not been acknowledged by the masters - %s", pendingDrains.toString()));
+            return false;
+        }
+        return true;
+    }
+
+    private void sendDrain(UDPNetworkManager manager, NetworkInfo masterInfo) {
+        try {
+            manager.writeObject(CommandSerializer.serialize(SlaveCommand.DRAIN, serializer.serialize(this.localServerInfo)),
+                    masterInfo.getAddress(), masterInfo.getPort());
+            LOGGER.info(String.format("Sent the drain message to the master: %s", masterInfo.toString()));
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Network communication failure during the drain message sending - Master: %s", e.getMessage(), masterInfo.toString()));
+        }
+    }
+
+    /**
+     * Waits until every pending master server acknowledges the DRAIN command, or the resend time elapses
+     */
+    private void awaitDrainResponses() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_RESEND_TIME;
+        synchronized (pendingDrains) {
+            long remaining;
+            while (!pendingDrains.isEmpty() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                pendingDrains.wait(remaining);
+            }
+        }
+    }
 }
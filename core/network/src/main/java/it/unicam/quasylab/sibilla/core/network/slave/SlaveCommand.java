@@ -23,23 +23,51 @@
 
 package it.unicam.quasylab.sibilla.core.network.slave;
 
+import it.unicam.quasylab.sibilla.core.network.NetworkCommand;
+
 /**
  * All the possible command and signals that can be sent from a slave server.
  *
  * @author Stelluti Francesco Pio
  * @author Zamponi Marco
  */
-public enum SlaveCommand {
+public enum SlaveCommand implements NetworkCommand {
     /**
      * The command sent by a slave server respond to a master server ping command.
      */
-    PONG,
+    PONG(0x20),
     /**
      * The command sent by a slave server to respond to a master server init command.
      */
-    INIT_RESPONSE,
+    INIT_RESPONSE(0x21),
+    /**
+     * The command sent by a slave server to request the bytes of a model class that is not in its cache.
+     */
+    CLASS_REQUEST(0x22),
     /**
      * The command sent by a slave server to inform that the connection with an host will be closed.
      */
-    CLOSE_CONNECTION
+    CLOSE_CONNECTION(0x23),
+    /**
+     * The command sent by a slave server, through the discovery channel, to inform a master server that it is
+     * draining: it completes the tasks it is executing and must not receive new ones. The command is sent
+     * again until the master server replies with a DRAIN_RESPONSE.
+     */
+    DRAIN(0x24),
+    /**
+     * The command sent by a slave server to respond to a master server init command when the model class
+     * cannot be loaded. It is followed, in the same message, by the description of the error.
+     */
+    INIT_ERROR(0x25);
+
+    private final byte opcode;
+
+    SlaveCommand(int opcode) {
+        this.opcode = (byte) opcode;
+    }
+
+    @Override
+    public byte getOpcode() {
+        return opcode;
+    }
 }
@@ -44,6 +44,8 @@ public class SlaveState implements Serializable, Cloneable {
     private final static double beta = 0.250;
     private final static int threshold = 256;
     private final static long maxRunningTime = 3600000000000L; // 1 hour in nanoseconds
+    private final static int maxPipelineDepth = 4;
+    private final static long targetBatchTime = 1000000000L; // 1 second in nanoseconds
 
     /**
      * The standard deviation of the round trip time of the simulation tasks execution
@@ -65,6 +67,17 @@ public class SlaveState implements Serializable, Cloneable {
      */
     private int expectedTasks;
 
+    /**
+     * Estimated number of tasks executed by the slave server per nanosecond
+     */
+    private double throughput;
+
+    /**
+     * Estimated time, in nanoseconds, between the sending of a group of tasks and the
+     * moment the slave server starts executing it, plus the time needed to receive its results
+     */
+    private double latency;
+
     private int sentTasks;
 
     private int receivedTasks;
@@ -79,6 +92,11 @@ public class SlaveState implements Serializable, Cloneable {
      */
     private boolean isTimeout;
 
+    /**
+     * Whether this slave server is draining: it completes the tasks it is executing and receives no new ones.
+     */
+    private volatile boolean isDraining;
+
     /**
      * The slave server running time.
      */
@@ -101,10 +119,13 @@ public class SlaveState implements Serializable, Cloneable {
         receivedTasks = 0;
         isRemoved = false;
         isTimeout = false;
+        isDraining = false;
         runningTime = 0L;
         devRTT = 0.0;
         sampleRTT = 0.0;
         estimatedRTT = 0.0;
+        throughput = 0.0;
+        latency = 0.0;
         updateSupport = new PropertyChangeSupport(this);
         this.addPropertyChangeListener("Simulation Update", simulationState);
     }
@@ -129,17 +150,20 @@ public class SlaveState implements Serializable, Cloneable {
      */
     public void update(long elapsedTime) {
         runningTime = elapsedTime;
+        int throughputWindow = getThroughputWindow();
 
         if (devRTT != 0.0) {
-            if (runningTime >= getTimeLimit()) {
+            if (runningTime >= getTimeLimit() || (throughputWindow > 0 && runningTime > 2 * targetBatchTime)) {
                 expectedTasks = expectedTasks == 1 ? 1 : expectedTasks / 2;
-            } else if (expectedTasks < threshold) {
+            } else if (expectedTasks < throughputWindow) {
+                expectedTasks = Math.min(throughputWindow, expectedTasks * 2);
+            } else if (throughputWindow == 0 && expectedTasks < threshold) {
                 expectedTasks = expectedTasks * 2;
             } else {
                 expectedTasks = expectedTasks + 1;
             }
         } else {
-            expectedTasks = 2;
+            expectedTasks = Math.max(expectedTasks, 2);
         }
 
         sampleRTT = runningTime / sentTasks;
@@ -148,6 +172,93 @@ public class SlaveState implements Serializable, Cloneable {
         this.updateListeners();
     }
 
+    /**
+     * Updates the estimation of the throughput and of the latency of the slave server given the
+     * data about a group of executed tasks
+     *
+     * @param tasks       number of executed tasks
+     * @param busyTime    time during which the slave server has been executing the tasks
+     * @param elapsedTime time between the sending of the tasks and the reception of all their results,
+     *                    only meaningful when no other group of tasks was pending; a negative value
+     *                    means that it is not available
+     */
+    public void updateThroughput(int tasks, long busyTime, long elapsedTime) {
+        if (busyTime <= 0) {
+            return;
+        }
+        double sample = ((double) tasks) / busyTime;
+        throughput = throughput == 0.0 ? sample : alpha * sample + (1 - alpha) * throughput;
+        if (elapsedTime >= 0) {
+            double sampleLatency = Math.max(0.0, elapsedTime - tasks / throughput);
+            latency = latency == 0.0 ? sampleLatency : alpha * sampleLatency + (1 - alpha) * latency;
+        }
+    }
+
+    /**
+     * Returns the number of tasks that the slave server is expected to execute in the target time of
+     * a group of tasks, given its estimated throughput
+     *
+     * @return number of tasks executed in the target time, or 0 if the throughput is not known
+     */
+    public int getThroughputWindow() {
+        if (throughput == 0.0) {
+            return 0;
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2, throughput * targetBatchTime));
+    }
+
+    /**
+     * Initializes the estimation of the throughput and of the latency with values measured in
+     * previous simulations. The estimations are used only if no measure has been made yet.
+     *
+     * @param throughput estimated number of tasks executed per nanosecond
+     * @param latency    estimated latency in nanoseconds
+     */
+    public void restoreThroughput(double throughput, double latency) {
+        if (this.throughput == 0.0) {
+            this.throughput = throughput;
+            this.latency = latency;
+            this.expectedTasks = Math.max(expectedTasks, getThroughputWindow());
+        }
+    }
+
+    /**
+     * Returns the number of groups of tasks that should be pending on this slave server so that it
+     * does not remain idle while the results of a group are sent back and the next group is received.
+     *
+     * @return number of groups of tasks to keep pending on this slave server
+     */
+    public int getPipelineDepth() {
+        if (throughput == 0.0) {
+            return 1;
+        }
+        double tasksInLatency = latency * throughput;
+        return (int) Math.min(maxPipelineDepth, 1 + Math.ceil(tasksInLatency / expectedTasks));
+    }
+
+    /**
+     * Returns the time, in nanoseconds, that the slave server is expected to need to execute the given
+     * number of tasks and to send back their results. The estimation is based upon the measured
+     * throughput when available, and upon the estimated round trip time otherwise.
+     *
+     * @param tasks number of tasks to be executed
+     * @return expected time to execute the tasks, or 0 if no estimation is available yet
+     */
+    public double getExpectedTime(int tasks) {
+        if (throughput > 0.0) {
+            return latency + tasks / throughput;
+        }
+        return tasks * estimatedRTT;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public double getLatency() {
+        return latency;
+    }
+
     /**
      * Lowers the expected tasks following the TCP window size algorithm and signals it to the listeners
      */
@@ -172,7 +283,7 @@ public class SlaveState implements Serializable, Cloneable {
      * @return timeout length of this server
      */
     public double getTimeout() {
-        return expectedTasks == 1 ? Long.MAX_VALUE : expectedTasks * estimatedRTT + expectedTasks * 4 * devRTT;
+        return expectedTasks == 1 || devRTT == 0.0 ? Long.MAX_VALUE : expectedTasks * estimatedRTT + expectedTasks * 4 * devRTT;
     }
 
     /**
@@ -252,6 +363,21 @@ public class SlaveState implements Serializable, Cloneable {
         this.updateListeners();
     }
 
+    /**
+     * @return whether this slave server is draining.
+     */
+    public boolean isDraining() {
+        return isDraining;
+    }
+
+    /**
+     * Sets this server as draining and updates his listeners
+     */
+    public void setDraining() {
+        isDraining = true;
+        this.updateListeners();
+    }
+
     /**
      * Sets this server as timed out and updates his listeners
      */
@@ -285,13 +411,18 @@ public class SlaveState implements Serializable, Cloneable {
         if (isTimeout()) {
             return "Server has timed out, reconnecting...";
         }
+        if (isDraining()) {
+            return "Server is draining, no new tasks will be sent.";
+        }
         return this.slaveInfo +
                 "\n - Window runtime: " + runningTime + "ns " +
                 "\n - sampleRTT: " + sampleRTT + "ns " +
                 "\n - estimatedRTT: " + estimatedRTT + "ns " +
                 "\n - devRTT: " + devRTT + "ns "
                 + "\n - Next task window: " + expectedTasks + " " + "\n - Next time limit: " + getTimeLimit() + "ns "
-                + "\n - Next timeout: " + getTimeout() + "ns";
+                + "\n - Next timeout: " + getTimeout() + "ns"
+                + "\n - Throughput: " + throughput * 1000000000 + " tasks/s "
+                + "\n - Pipeline depth: " + getPipelineDepth();
     }
 
     public SlaveState clone() {
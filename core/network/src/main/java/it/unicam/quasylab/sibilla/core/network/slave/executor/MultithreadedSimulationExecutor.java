@@ -21,59 +21,75 @@
  *  limitations under the License.
  */
 
+
 package it.unicam.quasylab.sibilla.core.network.slave.executor;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.network.ComputationResult;
 import it.unicam.quasylab.sibilla.core.network.NetworkTask;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
-import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
-import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import org.apache.commons.math3.random.RandomGenerator;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Function;
 
+/**
+ * Executor that splits the replicas of a network task in contiguous sub-ranges, one for each
+ * available core. Each sub-range collects its statistics in its own sampling function and its
+ * result is sent to the master as soon as the sub-range is completed.
+ */
 public class MultithreadedSimulationExecutor extends SimulationExecutor {
 
-    private final ExecutorService taskExecutor = Executors.newCachedThreadPool();
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    private final ExecutorService taskExecutor = newWorkerPool(cores);
 
     public MultithreadedSimulationExecutor(ExecutorType exType, ComputationResultSerializerType crSerializerType) {
         super(exType, crSerializerType);
     }
 
+    /**
+     * Runs the warm-up on every thread of the pool, so that all of them are started and the code they
+     * execute is compiled before the first task is received.
+     */
     @Override
-    public void simulate(NetworkTask networkTask, TCPNetworkManager master) {
-        List<? extends SimulationTask<?>> tasks = networkTask.getTasks();
-        LinkedList<Trajectory<?>> trajectories = new LinkedList<>();
-        Model model = tasks.get(0).getUnit().getModel();
-        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
-
-        //FIXME!
-//        this.computationBenchmark.run(() -> {
-//            for (int i = 0; i < tasks.size(); i++) {
-//                futures[i] = CompletableFuture.supplyAsync(tasks.get(i), taskExecutor);
-//            }
-//            CompletableFuture.allOf(futures).join();
-//            for (SimulationTask<?> task : tasks) {
-//                Trajectory trajectory = task.getTrajectory();
-//                trajectories.add(trajectory);
-//            }
-//            return List.of((double) tasks.size());
-//        });
-
-        sendResult(new ComputationResult(trajectories), master, model);
+    public void warmUp(Model model, Function<RandomGenerator, ? extends State> initialState, long time) {
+        warmUp(taskExecutor, cores, model, initialState, time);
+    }
 
-        /*
-         * for (int i = 0; i < tasks.size(); i++) { futures[i] =
-         * CompletableFuture.supplyAsync(tasks.get(i), taskExecutor); }
-         * CompletableFuture.allOf(futures).join(); for (SimulationTask<?> task : tasks)
-         * { Trajectory trajectory = task.getTrajectory(); trajectories.add(trajectory);
-         * }
-         */
+    @Override
+    public void simulate(NetworkTask networkTask, TCPNetworkManager master) {
+        CompletionService<ComputationResult> completionService = new ExecutorCompletionService<>(taskExecutor);
+        int replicas = networkTask.getReplicas();
+        int ranges = Math.min(cores, replicas);
+        int first = networkTask.getFirstReplica();
+        for (int i = 0; i < ranges; i++) {
+            int from = first + (int) ((long) replicas * i / ranges);
+            int to = first + (int) ((long) replicas * (i + 1) / ranges);
+            completionService.submit(() -> simulateRange(networkTask, from, to));
+        }
+        streamResults(completionService, ranges, master, networkTask.getUnit().getModel());
+    }
 
+    /**
+     * Executes the replicas in the given range, collecting their statistics in a new sampling function.
+     * Each replica uses the random generator stream associated to its index.
+     *
+     * @param networkTask the network task the replicas belong to
+     * @param from        index of the first replica of the range
+     * @param to          index following the last replica of the range
+     * @return the result of the replicas in the range
+     */
+    private ComputationResult simulateRange(NetworkTask networkTask, int from, int to) {
+        SamplingFunction samplingFunction = networkTask.getSamplingFunction();
+        for (int replica = from; replica < to; replica++) {
+            networkTask.getTask(replica).get(samplingFunction.getSamplingHandler());
+        }
+        return new ComputationResult(from, to - from, samplingFunction);
     }
 }
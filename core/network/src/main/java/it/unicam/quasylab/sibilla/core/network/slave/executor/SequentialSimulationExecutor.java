@@ -29,11 +29,15 @@ import it.unicam.quasylab.sibilla.core.network.NetworkTask;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
 import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
-import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
 
-import java.util.LinkedList;
 import java.util.List;
 
+/**
+ * Executes the tasks of a batch one after the other, collecting their statistics
+ * in a single sampling function that is sent to the master when the whole batch
+ * has been executed.
+ */
 public class SequentialSimulationExecutor extends SimulationExecutor {
     public SequentialSimulationExecutor(ExecutorType exType, ComputationResultSerializerType crSerializerType) {
         super(exType, crSerializerType);
@@ -42,25 +46,13 @@ public class SequentialSimulationExecutor extends SimulationExecutor {
     @Override
     public void simulate(NetworkTask networkTask, TCPNetworkManager master) {
         List<? extends SimulationTask<?>> tasks = networkTask.getTasks();
-        LinkedList<Trajectory<?>> trajectories = new LinkedList<>();
-        Model model = tasks.get(0).getUnit().getModel();
-
-        //TODO: FIX!
-//        this.computationBenchmark.run(() -> {
-//            for (int i = 0; i < tasks.size(); i++) {
-//                Trajectory trajectory = tasks.get(i).get();
-//                trajectories.add(trajectory);
-//            }
-//            return List.of((double) tasks.size());
-//        });
+        SamplingFunction samplingFunction = networkTask.getSamplingFunction();
+        Model model = networkTask.getUnit().getModel();
 
-        sendResult(new ComputationResult(trajectories), master, model);
-
-        /*
-        for (int i = 0; i < tasks.size(); i++) {
-            Trajectory trajectory = tasks.get(i).get();
-            trajectories.add(trajectory);
+        for (SimulationTask task : tasks) {
+            task.get(samplingFunction.getSamplingHandler());
         }
-         */
+
+        sendResult(new ComputationResult(networkTask.getFirstReplica(), tasks.size(), samplingFunction), master, model);
     }
 }
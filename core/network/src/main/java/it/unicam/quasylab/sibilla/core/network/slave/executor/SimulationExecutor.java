@@ -24,18 +24,35 @@
 package it.unicam.quasylab.sibilla.core.network.slave.executor;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.SimulatorCursor;
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.HostLoggerSupplier;
 import it.unicam.quasylab.sibilla.core.network.ComputationResult;
 import it.unicam.quasylab.sibilla.core.network.NetworkTask;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.compression.Compressor;
-import it.unicam.quasylab.sibilla.core.network.benchmark.BenchmarkUnit;
+import it.unicam.quasylab.sibilla.core.network.metrics.MetricsRegistry;
+import it.unicam.quasylab.sibilla.core.network.metrics.NetworkMetrics;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
 import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
 import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.simulator.DefaultRandomGenerator;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
 
 /**
  * Represents an executor of simulations that manages the computation and the
@@ -46,17 +63,20 @@ import java.util.List;
  */
 public abstract class SimulationExecutor {
 
-    private final ExecutorType executorType;
+    /**
+     * Maximum number of steps of each trajectory simulated during a warm-up.
+     */
+    private static final int WARMUP_STEPS = 10000;
 
-    protected final BenchmarkUnit computationBenchmark;
-    private final BenchmarkUnit sendBenchmark;
+    protected final Logger LOGGER = HostLoggerSupplier.getInstance().getLogger();
+
+    private final ExecutorType executorType;
 
     // TODO
     private final ComputationResultSerializerType crSerializerType;
 
     /**
-     * Creates a new SimulationExecutor, starting the BenchmarkUnit associated to it
-     * to measure performances.
+     * Creates a new SimulationExecutor
      *
      * @param exType           the type of SimulationExecutor to create
      * @param crSerializerType //TODO
@@ -64,14 +84,6 @@ public abstract class SimulationExecutor {
     public SimulationExecutor(ExecutorType exType, ComputationResultSerializerType crSerializerType) {
         this.executorType = exType;
         this.crSerializerType = crSerializerType;
-
-        this.computationBenchmark = new BenchmarkUnit("sibillaBenchmarks/slaveBenchmarking/",
-                String.format("%s_computation", this.executorType), "csv", "o", List.of("comptime", "tasks"));
-
-        this.sendBenchmark = new BenchmarkUnit("sibillaBenchmarks/slaveBenchmarking/",
-                String.format("%s_resultsCompressSerializeAndSend", this.crSerializerType.toString()), "csv",
-                this.crSerializerType.getLabel(),
-                List.of("sertime", "trajectories", "serbytes", "comprtime", "comprbytes", "sendtime"));
     }
 
     /**
@@ -107,6 +119,82 @@ public abstract class SimulationExecutor {
      */
     public abstract void simulate(NetworkTask networkTask, TCPNetworkManager master);
 
+    /**
+     * Returns a pool of the given number of threads whose threads are all started immediately and kept
+     * alive between tasks and simulations.
+     *
+     * @param threads number of threads of the pool
+     * @return the pool of threads
+     */
+    protected static ExecutorService newWorkerPool(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        pool.prestartAllCoreThreads();
+        return pool;
+    }
+
+    /**
+     * Simulates trajectories of the given model for the given time, discarding them, so that the code
+     * executing the model is compiled before the first tasks are executed and timed by the master.
+     *
+     * @param model        the Model to simulate
+     * @param initialState the function used to build the initial state of the trajectories
+     * @param time         duration of the warm-up, in milliseconds
+     */
+    public void warmUp(Model model, Function<RandomGenerator, ? extends State> initialState, long time) {
+        warmUpUntil(model, initialState, System.nanoTime() + time * 1000000);
+    }
+
+    /**
+     * Runs the warm-up on the given number of threads of a pool at the same time, so that all of them are
+     * started and the code they execute is compiled before the first task is received.
+     *
+     * @param pool         the pool where the warm-up is executed
+     * @param threads      number of threads of the pool running the warm-up
+     * @param model        the Model to simulate
+     * @param initialState the function used to build the initial state of the trajectories
+     * @param time         duration of the warm-up, in milliseconds
+     */
+    protected void warmUp(ExecutorService pool, int threads, Model model,
+                          Function<RandomGenerator, ? extends State> initialState, long time) {
+        long end = System.nanoTime() + time * 1000000;
+        List<Callable<Void>> warmUps = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            warmUps.add(() -> {
+                warmUpUntil(model, initialState, end);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> warmUp : pool.invokeAll(warmUps)) {
+                warmUp.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warning(String.format("Warm-up failed: %s", e.getCause()));
+        }
+    }
+
+    /**
+     * Simulates trajectories of the given model, discarding them, until the given time.
+     *
+     * @param model        the Model to simulate
+     * @param initialState the function used to build the initial state of the trajectories
+     * @param end          the value of {@link System#nanoTime()} at which the warm-up ends
+     */
+    protected void warmUpUntil(Model model, Function<RandomGenerator, ? extends State> initialState, long end) {
+        RandomGenerator random = new DefaultRandomGenerator();
+        while (System.nanoTime() < end) {
+            SimulatorCursor cursor = model.createSimulationCursor(random, initialState);
+            cursor.start();
+            int steps = 0;
+            while (steps++ < WARMUP_STEPS && !cursor.isTerminated() && System.nanoTime() < end) {
+                cursor.step();
+            }
+        }
+    }
+
     /**
      * Serializes, compresses and sends the simulation results to a master server.
      *
@@ -116,25 +204,43 @@ public abstract class SimulationExecutor {
      * @param model   the Model of the executed simulation
      */
     protected void sendResult(ComputationResult results, TCPNetworkManager master, Model model) {
-        final var wrapper = new Object() {
-            private byte[] toSend;
-        };
-
-        this.sendBenchmark.run(() -> {
-            wrapper.toSend = this.serializeComputationResult(results, model);
-            return List.of((double) results.getResults().size(), (double) wrapper.toSend.length);
-        }, () -> {
-            wrapper.toSend = Compressor.compress(wrapper.toSend);
-            return List.of((double) wrapper.toSend.length);
-        }, () -> {
-            master.writeObject(wrapper.toSend);
-            return List.of();
-        });
-
-        /*
-         * try { master.writeObject(Compressor.compress(this.serializeComputationResult(
-         * results, model))); } catch (IOException e) { e.printStackTrace(); }
-         */
+        NetworkMetrics metrics = MetricsRegistry.getInstance().getMetrics("slave", master.getNetworkInfo());
+        try {
+            long serializationTime = System.nanoTime();
+            byte[] serialized = this.serializeComputationResult(results, model);
+            metrics.getSerializationTime().record(System.nanoTime() - serializationTime);
+            byte[] toSend = Compressor.compress(serialized);
+            metrics.recordCompression(serialized.length, toSend.length);
+            master.writeObject(toSend);
+            metrics.recordSent(toSend.length);
+        } catch (IOException e) {
+            LOGGER.severe(String.format("[%s] Network communication failure during the sending of the results - %s",
+                    e.getMessage(), master.getNetworkInfo().toString()));
+        }
+    }
+
+    /**
+     * Sends to the master server the results produced by the given completion service, in the
+     * order in which they are completed.
+     *
+     * @param completionService the service where the computations have been submitted
+     * @param results           the number of submitted computations
+     * @param master            the NetworkManager of the master server the results will be sent to
+     * @param model             the Model of the executed simulation
+     */
+    protected void streamResults(CompletionService<ComputationResult> completionService, int results,
+                                 TCPNetworkManager master, Model model) {
+        for (int i = 0; i < results; i++) {
+            try {
+                sendResult(completionService.take().get(), master, model);
+            } catch (InterruptedException e) {
+                LOGGER.severe("Simulation interrupted while waiting for its results");
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LOGGER.severe(String.format("[%s] Simulation failure", e.getCause().getMessage()));
+            }
+        }
     }
 
     // TODO
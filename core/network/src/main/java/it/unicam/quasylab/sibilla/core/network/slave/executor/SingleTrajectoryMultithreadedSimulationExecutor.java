@@ -21,67 +21,58 @@
  *  limitations under the License.
  */
 
+
 package it.unicam.quasylab.sibilla.core.network.slave.executor;
 
 import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.State;
 import it.unicam.quasylab.sibilla.core.network.ComputationResult;
 import it.unicam.quasylab.sibilla.core.network.NetworkTask;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
-import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
-import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import org.apache.commons.math3.random.RandomGenerator;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Function;
 
+/**
+ * Executor that runs the replicas of a network task on all the available cores and sends the
+ * result of each replica to the master as soon as it is completed.
+ */
 public class SingleTrajectoryMultithreadedSimulationExecutor extends SimulationExecutor {
 
-    private final ExecutorService taskExecutor = Executors.newCachedThreadPool();
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    private final ExecutorService taskExecutor = newWorkerPool(cores);
 
     public SingleTrajectoryMultithreadedSimulationExecutor(ExecutorType exType, ComputationResultSerializerType crSerializerType) {
         super(exType, crSerializerType);
     }
 
+    /**
+     * Runs the warm-up on every thread of the pool, so that all of them are started and the code they
+     * execute is compiled before the first task is received.
+     */
     @Override
-    public void simulate(NetworkTask networkTask, TCPNetworkManager master) {
-        List<? extends SimulationTask<?>> tasks = networkTask.getTasks();
-        Model model = tasks.get(0).getUnit().getModel();
-        LinkedList<Trajectory<?>> trajectories = new LinkedList<>();
-        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
-
-        //FIXME!
-//        this.computationBenchmark.run(() -> {
-//            for (int i = 0; i < tasks.size(); i++) {
-//                futures[i] = CompletableFuture.supplyAsync(tasks.get(i), taskExecutor);
-//            }
-//            CompletableFuture.allOf(futures).join();
-//            for (SimulationTask<?> task : tasks) {
-//                Trajectory trajectory = task.getTrajectory();
-//                trajectories.add(trajectory);
-//            }
-//            return List.of((double) tasks.size());
-//        });
-
-        for (Trajectory singleTrajectory : trajectories) {
-            sendResult(new ComputationResult(new LinkedList<>(List.of(singleTrajectory))), master, model);
-        }
-
-        /*
-        for (int i = 0; i < tasks.size(); i++) {
-            futures[i] = CompletableFuture.supplyAsync(tasks.get(i), taskExecutor);
-        }
-        CompletableFuture.allOf(futures).join();
-        for (SimulationTask<?> task : tasks) {
-            Trajectory trajectory = task.getTrajectory();
-            trajectories.add(trajectory);
-        }
+    public void warmUp(Model model, Function<RandomGenerator, ? extends State> initialState, long time) {
+        warmUp(taskExecutor, cores, model, initialState, time);
+    }
 
-        for (Trajectory singleTrajectory : trajectories) {
-            sendResult(new ComputationResult(new LinkedList<>(List.of(singleTrajectory))), master, model);
+    @Override
+    public void simulate(NetworkTask networkTask, TCPNetworkManager master) {
+        CompletionService<ComputationResult> completionService = new ExecutorCompletionService<>(taskExecutor);
+        int first = networkTask.getFirstReplica();
+        for (int i = 0; i < networkTask.getReplicas(); i++) {
+            int replica = first + i;
+            completionService.submit(() -> {
+                SamplingFunction samplingFunction = networkTask.getSamplingFunction();
+                networkTask.getTask(replica).get(samplingFunction.getSamplingHandler());
+                return new ComputationResult(replica, 1, samplingFunction);
+            });
         }
-         */
+        streamResults(completionService, networkTask.getReplicas(), master, networkTask.getUnit().getModel());
     }
 }
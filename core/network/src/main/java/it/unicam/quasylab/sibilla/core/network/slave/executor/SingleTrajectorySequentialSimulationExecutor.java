@@ -29,11 +29,14 @@ import it.unicam.quasylab.sibilla.core.network.NetworkTask;
 import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
 import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
 import it.unicam.quasylab.sibilla.core.simulator.SimulationTask;
-import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
 
-import java.util.LinkedList;
 import java.util.List;
 
+/**
+ * Executes the tasks of a batch one after the other, sending to the master the
+ * statistics of each task as soon as it has been executed.
+ */
 public class SingleTrajectorySequentialSimulationExecutor extends SimulationExecutor {
     public SingleTrajectorySequentialSimulationExecutor(ExecutorType exType, ComputationResultSerializerType crSerializerType) {
         super(exType, crSerializerType);
@@ -42,29 +45,12 @@ public class SingleTrajectorySequentialSimulationExecutor extends SimulationExec
     @Override
     public void simulate(NetworkTask networkTask, TCPNetworkManager master) {
         List<? extends SimulationTask<?>> tasks = networkTask.getTasks();
-        Model model = tasks.get(0).getUnit().getModel();
-
-        LinkedList<Trajectory> trajectories = new LinkedList<>();
-
-        //FIXME!
-//        this.computationBenchmark.run(() -> {
-//            for (int i = 0; i < tasks.size(); i++) {
-//                Trajectory trajectory = tasks.get(i).get();
-//                trajectories.add(trajectory);
-//            }
-//            return List.of((double) tasks.size());
-//        });
+        Model model = networkTask.getUnit().getModel();
 
-        for (Trajectory singleTrajectory : trajectories) {
-            sendResult(new ComputationResult(new LinkedList<>(List.of(singleTrajectory))), master, model);
+        for (SimulationTask task : tasks) {
+            SamplingFunction samplingFunction = networkTask.getSamplingFunction();
+            task.get(samplingFunction.getSamplingHandler());
+            sendResult(new ComputationResult(task.getIndex(), 1, samplingFunction), master, model);
         }
-
-        /*
-        for (int i = 0; i < tasks.size(); i++) {
-            Trajectory trajectory = tasks.get(i).get();
-            sendResult(new ComputationResult(new LinkedList<>(List.of(trajectory))), master, model);
-        }
-         */
-
     }
 }
@@ -66,42 +66,93 @@ public class SSLUtils {
      */
     private String trustStoreType;
 
+    /**
+     * Time, in seconds, the TLS sessions are cached to be resumed by later connections.
+     */
+    private int sessionTimeout = 86400;
+
+    /**
+     * SSLContext shared by all the secure connections, built on the first request.
+     */
+    private SSLContext sslContext;
+
     private static SSLUtils instance;
 
     private SSLUtils() {
     }
 
-    public static SSLUtils getInstance() {
+    public static synchronized SSLUtils getInstance() {
         if (instance == null) {
             instance = new SSLUtils();
         }
         return instance;
     }
 
-    public void setKeyStorePath(String keyStorePath) {
+    public synchronized void setKeyStorePath(String keyStorePath) {
         this.keyStorePath = keyStorePath;
+        this.sslContext = null;
     }
 
-    public void setKeyStorePass(String keyStorePass) {
+    public synchronized void setKeyStorePass(String keyStorePass) {
         this.keyStorePass = keyStorePass;
+        this.sslContext = null;
     }
 
-    public void setKeyStoreType(String keyStoreType) {
+    public synchronized void setKeyStoreType(String keyStoreType) {
         this.keyStoreType = keyStoreType;
+        this.sslContext = null;
     }
 
-    public void setTrustStorePath(String trustStorePath) {
+    public synchronized void setTrustStorePath(String trustStorePath) {
         this.trustStorePath = trustStorePath;
+        this.sslContext = null;
     }
 
-    public void setTrustStorePass(String trustStorePass) {
+    public synchronized void setTrustStorePass(String trustStorePass) {
         this.trustStorePass = trustStorePass;
+        this.sslContext = null;
     }
 
-    public void setTrustStoreType(String trustStoreType) {
+    public synchronized void setTrustStoreType(String trustStoreType) {
         this.trustStoreType = trustStoreType;
+        this.sslContext = null;
+    }
+
+    /**
+     * Sets the time the TLS sessions are cached. Connections opened towards the same host
+     * within this time resume the cached session with an abbreviated handshake.
+     *
+     * @param sessionTimeout time in seconds, zero means no limit
+     */
+    public synchronized void setSessionTimeout(int sessionTimeout) {
+        if (sessionTimeout < 0) {
+            throw new IllegalArgumentException("The session timeout cannot be negative");
+        }
+        this.sessionTimeout = sessionTimeout;
+        if (this.sslContext != null) {
+            this.sslContext.getClientSessionContext().setSessionTimeout(sessionTimeout);
+            this.sslContext.getServerSessionContext().setSessionTimeout(sessionTimeout);
+        }
     }
 
+    /**
+     * Returns the SSLContext shared by all the secure connections, creating it with the parameters that have
+     * been set previously on the first request. Since the TLS sessions are cached by the SSLContext, sharing
+     * it allows later connections to resume them instead of performing a full handshake, and avoids loading
+     * the KeyStore and the TrustStore for each connection.
+     *
+     * @return SSLContext used to create a secure connection
+     * @throws IOException when TrustStores and KeyStores filer are invalid.
+     */
+    public synchronized SSLContext getSSLContext() throws IOException {
+        if (this.sslContext == null) {
+            SSLContext context = createSSLContext();
+            context.getClientSessionContext().setSessionTimeout(sessionTimeout);
+            context.getServerSessionContext().setSessionTimeout(sessionTimeout);
+            this.sslContext = context;
+        }
+        return this.sslContext;
+    }
 
     /**
      * Creates the SSLContext with the parameters that has been set previously.
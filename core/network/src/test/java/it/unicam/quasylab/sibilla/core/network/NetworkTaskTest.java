@@ -0,0 +1,103 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetworkTaskTest {
+
+    private static final byte[] PAYLOAD = new byte[1000];
+
+    @Test
+    void testPayloadIsSentOncePerConnection() {
+        Set<String> sentPayloads = NetworkTask.newSentPayloads();
+        Map<String, NetworkTask.Payload<?>> payloads = NetworkTask.newPayloadCache();
+        AtomicInteger decoded = new AtomicInteger();
+        NetworkTask<RandomWalkDefinition.Position> first = new NetworkTask<>(null, null, 42, 0, 10);
+        NetworkTask<RandomWalkDefinition.Position> second = new NetworkTask<>(null, null, 42, 10, 5);
+        assertTrue(sentPayloads.add("a"));
+        byte[] firstBatch = first.encode("a", PAYLOAD);
+        assertFalse(sentPayloads.add("a"));
+        byte[] secondBatch = second.encode("a", null);
+        assertEquals(firstBatch.length - PAYLOAD.length - 1, secondBatch.length);
+
+        NetworkTask<?> task = NetworkTask.decode(firstBatch, payloads, countingDecoder(decoded));
+        assertEquals(42, task.getSeed());
+        assertEquals(0, task.getFirstReplica());
+        assertEquals(10, task.getReplicas());
+        task = NetworkTask.decode(secondBatch, payloads, countingDecoder(decoded));
+        assertEquals(10, task.getFirstReplica());
+        assertEquals(5, task.getReplicas());
+        assertEquals(1, decoded.get());
+    }
+
+    @Test
+    void testMissingPayloadIsReported() {
+        byte[] batch = new NetworkTask<RandomWalkDefinition.Position>(null, null, 1, 0, 1).encode("a", null);
+        assertThrows(IllegalStateException.class,
+                () -> NetworkTask.decode(batch, NetworkTask.newPayloadCache(), countingDecoder(new AtomicInteger())));
+    }
+
+    @Test
+    void testMasterKnowsThePayloadsEvictedBySlave() {
+        Random random = new Random(7);
+        Set<String> sentPayloads = NetworkTask.newSentPayloads();
+        Map<String, NetworkTask.Payload<?>> payloads = NetworkTask.newPayloadCache();
+        AtomicInteger decoded = new AtomicInteger();
+        int sent = 0;
+        for (int i = 0; i < 5000; i++) {
+            String hash = Integer.toString(random.nextInt(2 * NetworkTask.PAYLOAD_CACHE_SIZE));
+            boolean withPayload = sentPayloads.add(hash);
+            if (withPayload) {
+                sent++;
+            }
+            byte[] batch = new NetworkTask<RandomWalkDefinition.Position>(null, null, 1, i, 1)
+                    .encode(hash, withPayload ? PAYLOAD : null);
+            assertEquals(i, NetworkTask.decode(batch, payloads, countingDecoder(decoded)).getFirstReplica());
+        }
+        assertEquals(sent, decoded.get());
+        assertEquals(NetworkTask.PAYLOAD_CACHE_SIZE, payloads.size());
+        assertTrue(sent < 5000);
+    }
+
+    private static Function<byte[], NetworkTask.Payload<?>> countingDecoder(AtomicInteger counter) {
+        return bytes -> {
+            assertEquals(PAYLOAD.length, bytes.length);
+            counter.incrementAndGet();
+            return new NetworkTask<RandomWalkDefinition.Position>(null, null, 0, 0, 0).getPayload();
+        };
+    }
+
+}
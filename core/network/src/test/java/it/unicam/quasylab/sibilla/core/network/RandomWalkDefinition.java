@@ -0,0 +1,209 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import it.unicam.quasylab.sibilla.core.models.AbstractModelDefinition;
+import it.unicam.quasylab.sibilla.core.models.ImmutableState;
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.ParametricDataSet;
+import it.unicam.quasylab.sibilla.core.models.ParametricValue;
+import it.unicam.quasylab.sibilla.core.models.SimulatorCursor;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.Measure;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Definition of a random walk on the integers used by the tests of the network module. At each step,
+ * of length {@value #STEP}, the walker moves up with probability p and down otherwise.
+ */
+public class RandomWalkDefinition extends AbstractModelDefinition<RandomWalkDefinition.Position> {
+
+    public static final double STEP = 0.1;
+
+    public static final Measure<Position> X = new PositionMeasure();
+
+    public RandomWalkDefinition() {
+        registerParameter("p", 0.5);
+    }
+
+    @Override
+    protected void clearCache() {
+    }
+
+    @Override
+    public ParametricDataSet<Function<RandomGenerator, Position>> getStates() {
+        Function<RandomGenerator, Position> origin = (Function<RandomGenerator, Position> & Serializable) rg -> new Position(0);
+        return new ParametricDataSet<>(new ParametricValue<>(origin));
+    }
+
+    @Override
+    public Model<Position> createModel() {
+        return new RandomWalk(getParameterValue("p"));
+    }
+
+    /**
+     * Position of the walker
+     */
+    public static class Position implements ImmutableState, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int x;
+
+        public Position(int x) {
+            this.x = x;
+        }
+
+        public int getX() {
+            return x;
+        }
+    }
+
+    private static class PositionMeasure implements Measure<Position> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double measure(Position context) {
+            return context.x;
+        }
+
+        @Override
+        public String getName() {
+            return "X";
+        }
+    }
+
+    /**
+     * Model of the random walk
+     */
+    public static class RandomWalk implements Model<Position> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double p;
+
+        public RandomWalk(double p) {
+            this.p = p;
+        }
+
+        @Override
+        public SimulatorCursor<Position> createSimulationCursor(RandomGenerator r,
+                                                                Function<RandomGenerator, Position> initialStateBuilder) {
+            return new SimulatorCursor<>() {
+                private RandomGenerator random = r;
+                private Position state;
+                private double time = Double.NaN;
+
+                @Override
+                public void start() {
+                    state = initialStateBuilder.apply(random);
+                    time = 0.0;
+                }
+
+                @Override
+                public boolean step() {
+                    time += STEP;
+                    state = new Position(state.x + (random.nextDouble() < p ? 1 : -1));
+                    return true;
+                }
+
+                @Override
+                public Position currentState() {
+                    return state;
+                }
+
+                @Override
+                public double time() {
+                    return time;
+                }
+
+                @Override
+                public boolean isTerminated() {
+                    return false;
+                }
+
+                @Override
+                public boolean isStarted() {
+                    return state != null;
+                }
+
+                @Override
+                public void restart(RandomGenerator rg) {
+                    random = rg;
+                    start();
+                }
+
+                @Override
+                public void restart() {
+                    start();
+                }
+            };
+        }
+
+        @Override
+        public int stateByteArraySize() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public byte[] byteOf(Position state) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(state.x).array();
+        }
+
+        @Override
+        public Position fromByte(byte[] bytes) {
+            return new Position(ByteBuffer.wrap(bytes).getInt());
+        }
+
+        @Override
+        public String[] measures() {
+            return new String[]{X.getName()};
+        }
+
+        @Override
+        public double measure(String m, Position state) {
+            return X.measure(state);
+        }
+
+        @Override
+        public Measure<? super Position> getMeasure(String m) {
+            return X;
+        }
+
+        @Override
+        public Predicate<? super Position> getPredicate(String name) {
+            return null;
+        }
+
+        @Override
+        public String[] predicates() {
+            return new String[0];
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network;
+
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition.Position;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingHandler;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SummaryStatisticSampling;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SweepSamplingFunctionTest {
+
+    private static final int POINTS = 3;
+
+    private static final int REPLICAS = 4;
+
+    private static final double DEADLINE = 1.0;
+
+    @Test
+    void testHandlersFollowTheSubmissionOrder() {
+        SweepSamplingFunction<Position> sweep = newSweep();
+        for (int replica = 0; replica < POINTS * REPLICAS; replica++) {
+            record(sweep.getSamplingHandler(), replica);
+        }
+        assertPointMeans(sweep);
+        assertThrows(IllegalStateException.class, sweep::getSamplingHandler);
+    }
+
+    @Test
+    void testHandlersOfIndexedReplicas() {
+        int firstReplica = 100;
+        SweepSamplingFunction<Position> sweep = newSweep();
+        for (int replica = POINTS * REPLICAS - 1; replica >= 0; replica--) {
+            record(sweep.getSamplingHandler(firstReplica + replica, firstReplica), replica);
+        }
+        assertPointMeans(sweep);
+        assertThrows(IllegalArgumentException.class,
+                () -> sweep.getSamplingHandler(firstReplica + POINTS * REPLICAS, firstReplica));
+        assertThrows(IllegalArgumentException.class, () -> sweep.getSamplingHandler(firstReplica - 1, firstReplica));
+    }
+
+    @Test
+    void testBatchesAreMergedInTheirPoint() {
+        int firstReplica = 100;
+        SweepSamplingFunction<Position> sweep = newSweep();
+        // batches never span two points: each one is recorded by a copy of the sampling function of a point
+        for (int batch = 0; batch < POINTS * REPLICAS; batch += 2) {
+            SamplingFunction<Position> statistics = sweep.getEmptyPointCopy();
+            record(statistics.getSamplingHandler(), batch);
+            record(statistics.getSamplingHandler(), batch + 1);
+            sweep.merge(sweep.getPointOf(firstReplica + batch, firstReplica), statistics);
+        }
+        assertPointMeans(sweep);
+    }
+
+    /**
+     * Checks that each point has recorded exactly its replicas: replica <code>i</code> records the
+     * value <code>i</code>, so the mean of a point is the mean of the indexes of its replicas
+     */
+    private static void assertPointMeans(SweepSamplingFunction<Position> sweep) {
+        for (int point = 0; point < POINTS; point++) {
+            double[][] data = ((SummaryStatisticSampling<Position>) sweep.getPoint(point)).getData();
+            assertEquals(point * REPLICAS + (REPLICAS - 1) / 2.0, data[0][1], 1e-9);
+        }
+    }
+
+    private static void record(SamplingHandler<Position> handler, int value) {
+        handler.start();
+        handler.sample(0.0, new Position(value));
+        handler.end(DEADLINE);
+    }
+
+    private static SweepSamplingFunction<Position> newSweep() {
+        ParameterSweep sweep = new ParameterSweep(new String[]{"p"},
+                List.of(new double[]{1.0}, new double[]{2.0}, new double[]{3.0}));
+        return new SweepSamplingFunction<>(sweep, new SummaryStatisticSampling<>(1, DEADLINE, RandomWalkDefinition.X),
+                REPLICAS);
+    }
+
+}
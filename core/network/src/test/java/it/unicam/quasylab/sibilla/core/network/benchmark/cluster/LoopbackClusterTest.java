@@ -0,0 +1,189 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.benchmark.cluster;
+
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.executor.SimulationExecutor;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SummaryStatisticSampling;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.time.Duration.ofSeconds;
+
+class LoopbackClusterTest {
+
+    private static final int SLAVES = 3;
+
+    private static final int REPLICAS = 600;
+
+    private static final double DEADLINE = 2.0;
+
+    private static final long LATENCY = 20;
+
+    private static final long FAILURE_DELAY = 300;
+
+    private static final long SLOW_LATENCY = 200;
+
+    private static final int WEIGHTED_REPLICAS = 20000;
+
+    private static final double WEIGHTED_DEADLINE = 20.0;
+
+    private static final double HEAVY_WEIGHT = 4.0;
+
+    private static final Consumer<LoopbackCluster> FAILED_SLAVE = cluster -> cluster.failSlaveAfter(0, FAILURE_DELAY);
+
+    @Test
+    void testThreads() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.THREADS, cluster -> {});
+    }
+
+    @Test
+    void testThreadsWithFailedSlave() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.THREADS, FAILED_SLAVE);
+    }
+
+    @Test
+    void testThreadsWithStalledSlave() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.THREADS,
+                cluster -> cluster.stallSlaveAfter(0, FAILURE_DELAY));
+    }
+
+    @Test
+    void testThreadsWithSlowedSlave() {
+        // the batches of the slowed slave are speculatively executed by the other ones, and the results
+        // of the late copies must not be counted twice
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.THREADS,
+                cluster -> cluster.slowSlaveAfter(0, FAILURE_DELAY, SLOW_LATENCY));
+    }
+
+    @Test
+    void testThreadsWithDrainedSlave() {
+        boolean[] drained = new boolean[1];
+        ClusterReport report = assertTimeoutPreemptively(ofSeconds(60), () -> {
+            try (LoopbackCluster cluster = new LoopbackCluster(SLAVES, SimulationExecutor.ExecutorType.MULTITHREADED,
+                    SerializerType.APACHE, ComputationResultSerializerType.APACHE)) {
+                cluster.setLatency(LATENCY);
+                cluster.drainSlaveAfter(0, FAILURE_DELAY);
+                ClusterReport result = simulate(cluster, LoopbackCluster.DispatchType.THREADS);
+                drained[0] = cluster.getSlaveState(0).isRemoved();
+                return result;
+            }
+        });
+        assertEquals(REPLICAS, report.getCompletedReplicas(), report.toString());
+        // the drained slave completed its batch and then left the running simulation
+        assertTrue(drained[0]);
+    }
+
+    @Test
+    void testSelector() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.SELECTOR, cluster -> {});
+    }
+
+    @Test
+    void testSelectorWithFailedSlave() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.SELECTOR, FAILED_SLAVE);
+    }
+
+    @Test
+    void testSelectorWithStalledSlave() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.SELECTOR,
+                cluster -> cluster.stallSlaveAfter(0, FAILURE_DELAY));
+    }
+
+    @Test
+    void testMultiplexed() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.MULTIPLEXED, cluster -> {});
+    }
+
+    @Test
+    void testMultiplexedWithFailedSlave() {
+        assertAllReplicasCompleted(LoopbackCluster.DispatchType.MULTIPLEXED, FAILED_SLAVE);
+    }
+
+    @Test
+    void testMultiplexedSharesSlavesByWeight() {
+        ClusterReport[] reports = assertTimeoutPreemptively(ofSeconds(60), () -> {
+            try (LoopbackCluster cluster = new LoopbackCluster(SLAVES, SimulationExecutor.ExecutorType.MULTITHREADED,
+                    SerializerType.APACHE, ComputationResultSerializerType.APACHE)) {
+                cluster.setLatency(LATENCY);
+                CompletableFuture<ClusterReport> heavy = CompletableFuture.supplyAsync(() -> simulate(cluster, HEAVY_WEIGHT));
+                CompletableFuture<ClusterReport> light = CompletableFuture.supplyAsync(() -> simulate(cluster, 1.0));
+                return new ClusterReport[]{heavy.join(), light.join()};
+            }
+        });
+        assertEquals(WEIGHTED_REPLICAS, reports[0].getCompletedReplicas(), reports[0].toString());
+        assertEquals(WEIGHTED_REPLICAS, reports[1].getCompletedReplicas(), reports[1].toString());
+        // while both simulations run, the heavy one receives HEAVY_WEIGHT tasks for each task of the light
+        // one: it ends when about (1 + 1 / HEAVY_WEIGHT) / 2 of the work of both simulations is done, while
+        // with equal weights both simulations would end together
+        double ratio = reports[0].getMakespan() / reports[1].getMakespan();
+        assertTrue(ratio < 0.9, String.format("Heavy simulation ended after %.2f of the light one", ratio));
+    }
+
+    private static ClusterReport simulate(LoopbackCluster cluster, double weight) {
+        RandomWalkDefinition definition = new RandomWalkDefinition();
+        SummaryStatisticSampling<RandomWalkDefinition.Position> samplingFunction =
+                new SummaryStatisticSampling<>(10, WEIGHTED_DEADLINE / 10, RandomWalkDefinition.X);
+        try {
+            return cluster.simulate(LoopbackCluster.DispatchType.MULTIPLEXED, new JDKRandomGenerator(1), definition,
+                    definition.createModel(), new RandomWalkDefinition.Position(0), samplingFunction,
+                    WEIGHTED_REPLICAS, WEIGHTED_DEADLINE, weight);
+        } catch (InterruptedException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void assertAllReplicasCompleted(LoopbackCluster.DispatchType dispatchType,
+                                            Consumer<LoopbackCluster> faults) {
+        ClusterReport report = assertTimeoutPreemptively(ofSeconds(60), () -> {
+            try (LoopbackCluster cluster = new LoopbackCluster(SLAVES, SimulationExecutor.ExecutorType.MULTITHREADED,
+                    SerializerType.APACHE, ComputationResultSerializerType.APACHE)) {
+                cluster.setLatency(LATENCY);
+                faults.accept(cluster);
+                return simulate(cluster, dispatchType);
+            }
+        });
+        assertEquals(REPLICAS, report.getCompletedReplicas(), report.toString());
+    }
+
+    private static ClusterReport simulate(LoopbackCluster cluster, LoopbackCluster.DispatchType dispatchType)
+            throws InterruptedException {
+        RandomWalkDefinition definition = new RandomWalkDefinition();
+        SummaryStatisticSampling<RandomWalkDefinition.Position> samplingFunction =
+                new SummaryStatisticSampling<>(10, DEADLINE / 10, RandomWalkDefinition.X);
+        return cluster.simulate(dispatchType, new JDKRandomGenerator(1), definition,
+                definition.createModel(), new RandomWalkDefinition.Position(0), samplingFunction, REPLICAS,
+                DEADLINE);
+    }
+
+}
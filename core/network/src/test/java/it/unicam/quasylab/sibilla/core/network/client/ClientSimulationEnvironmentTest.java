@@ -0,0 +1,132 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.client;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition;
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition.Position;
+import it.unicam.quasylab.sibilla.core.network.SimulationProgress;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.master.MasterCommand;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SummaryStatisticSampling;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientSimulationEnvironmentTest {
+
+    private static final int REPLICAS = 100;
+
+    private final Serializer serializer = Serializer.getSerializer(SerializerType.APACHE);
+
+    @Test
+    void testClientCancelsOnProgress() throws Exception {
+        try (ServerSocket master = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<List<ClientCommand>> masterCommands = CompletableFuture.supplyAsync(() -> runMaster(master));
+            List<SimulationProgress<Position>> received = new ArrayList<>();
+            RandomWalkDefinition definition = new RandomWalkDefinition();
+            ClientSimulationEnvironment<Position> client = assertTimeoutPreemptively(ofSeconds(30), () ->
+                    new ClientSimulationEnvironment<>(new JDKRandomGenerator(1), definition, definition.createModel(),
+                            new Position(0), newSamplingFunction(), REPLICAS, 1.0,
+                            new NetworkInfo(InetAddress.getLoopbackAddress(), master.getLocalPort(),
+                                    TCPNetworkManagerType.DEFAULT),
+                            SerializerType.APACHE, 1, progress -> {
+                                received.add(progress);
+                                return false;
+                            }));
+            // the client cancels at the first partial results, and only once: the partial results
+            // received after the cancellation are skipped
+            assertEquals(List.of(ClientCommand.INIT, ClientCommand.DATA, ClientCommand.CANCEL,
+                    ClientCommand.CLOSE_CONNECTION), masterCommands.get(30, TimeUnit.SECONDS));
+            assertEquals(1, received.size());
+            assertEquals(10, received.get(0).getCompletedTasks());
+            assertEquals(REPLICAS, received.get(0).getTotalTasks());
+            assertTrue(client.getResults() instanceof SummaryStatisticSampling);
+        }
+    }
+
+    /**
+     * Plays the master server: sends a partial result, waits for the cancellation, sends another
+     * partial result and then the final results
+     *
+     * @return the commands received by the client
+     */
+    private List<ClientCommand> runMaster(ServerSocket serverSocket) {
+        List<ClientCommand> commands = new ArrayList<>();
+        try {
+            TCPNetworkManager client = TCPNetworkManager.createNetworkManager(TCPNetworkManagerType.DEFAULT,
+                    serverSocket.accept());
+            commands.add(nextCommand(client));
+            assertEquals(RandomWalkDefinition.class.getName(), CommandSerializer.deserializeString(client.readObject()));
+            client.readObject();
+            client.writeObject(CommandSerializer.serialize(MasterCommand.INIT_RESPONSE));
+            commands.add(nextCommand(client));
+            client.readObject();
+            client.writeObject(CommandSerializer.serialize(MasterCommand.DATA_RESPONSE));
+            sendProgress(client, 10);
+            commands.add(nextCommand(client));
+            sendProgress(client, 20);
+            client.writeObject(CommandSerializer.serialize(MasterCommand.RESULTS));
+            client.writeObject(serializer.serialize(newSamplingFunction()));
+            commands.add(nextCommand(client));
+            client.readObject();
+            client.writeObject(CommandSerializer.serialize(MasterCommand.CLOSE_CONNECTION));
+            client.closeConnection();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return commands;
+    }
+
+    private void sendProgress(TCPNetworkManager client, int completedTasks) throws IOException {
+        client.writeObject(CommandSerializer.serialize(MasterCommand.PROGRESS));
+        client.writeObject(serializer.serialize(new SimulationProgress<>(completedTasks, REPLICAS, 0,
+                newSamplingFunction())));
+    }
+
+    private static ClientCommand nextCommand(TCPNetworkManager client) throws IOException {
+        return CommandSerializer.deserialize(client.readObject(), ClientCommand.class);
+    }
+
+    private static SummaryStatisticSampling<Position> newSamplingFunction() {
+        return new SummaryStatisticSampling<>(10, 0.1, RandomWalkDefinition.X);
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.communication;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.util.SSLUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class TCPSecureNetworkManagerTest {
+
+    /**
+     * Self-signed key store, used by both peers as key store and trust store
+     */
+    private static final String KEY_STORE = "testKeyStore.jks";
+
+    private static final String KEY_STORE_PASS = "sibilla";
+
+    private static final String KEY_STORE_TYPE = "JKS";
+
+    private static final byte[] MESSAGE = {1, 2, 3};
+
+    private static ServerSocket serverSocket;
+
+    private static final ExecutorService server = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        SSLUtils ssl = SSLUtils.getInstance();
+        ssl.setKeyStorePath(KEY_STORE);
+        ssl.setKeyStorePass(KEY_STORE_PASS);
+        ssl.setKeyStoreType(KEY_STORE_TYPE);
+        ssl.setTrustStorePath(KEY_STORE);
+        ssl.setTrustStorePass(KEY_STORE_PASS);
+        ssl.setTrustStoreType(KEY_STORE_TYPE);
+        serverSocket = TCPNetworkManager.createServerSocket(TCPNetworkManagerType.SECURE, 0);
+        server.execute(TCPSecureNetworkManagerTest::accept);
+    }
+
+    @AfterAll
+    static void stopServer() throws IOException {
+        serverSocket.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void testLaterConnectionsResumeTheSession() {
+        assertTimeoutPreemptively(ofSeconds(30), () -> {
+            NetworkInfo info = new NetworkInfo(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort(),
+                    TCPNetworkManagerType.SECURE);
+            byte[] first = echo(new TCPSecureNetworkManager(info));
+            // the second connection is opened on the handshake threads, as the master does with the slaves
+            byte[] second = echo(TCPNetworkManager.createNetworkManagerAsync(info).join());
+            assertArrayEquals(first, second);
+        });
+    }
+
+    /**
+     * Exchanges a message on a connection and closes it
+     *
+     * @return the identifier of the TLS session of the connection
+     */
+    private static byte[] echo(TCPNetworkManager client) throws IOException {
+        client.writeObject(MESSAGE);
+        assertArrayEquals(MESSAGE, client.readObject());
+        byte[] session = ((SSLSocket) client.getSocket()).getSession().getId();
+        client.closeConnection();
+        return session;
+    }
+
+    private static void accept() {
+        try {
+            while (true) {
+                TCPNetworkManager connection = new TCPSecureNetworkManager(serverSocket.accept());
+                server.execute(() -> {
+                    try {
+                        connection.writeObject(connection.readObject());
+                    } catch (IOException e) {
+                        // the client has closed the connection
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // the server socket has been closed
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.compression;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressionTest {
+
+    @AfterEach
+    void restoreCompressor() {
+        Compressor.setCodec(CompressionType.LZ);
+        Compressor.setThreshold(Compressor.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    void testLZRoundTrip() throws IOException {
+        assertRoundTrips(new LZCodec());
+    }
+
+    @Test
+    void testDeflateRoundTrip() throws IOException {
+        assertRoundTrips(new DeflateCodec());
+        assertRoundTrips(new DeflateCodec(1));
+    }
+
+    @Test
+    void testLZCompressesRepetitiveData() throws IOException {
+        byte[] data = repetitive(10000);
+        assertTrue(new LZCodec().compress(data).length < data.length / 4);
+    }
+
+    @Test
+    void testDecompressionOfAPortion() throws IOException {
+        Codec codec = new LZCodec();
+        byte[] compressed = codec.compress(repetitive(1000));
+        byte[] framed = new byte[compressed.length + 3];
+        System.arraycopy(compressed, 0, framed, 2, compressed.length);
+        assertArrayEquals(repetitive(1000), codec.decompress(framed, 2, compressed.length));
+    }
+
+    @Test
+    void testCompressorRoundTripWithEachCodec() {
+        for (CompressionType type : CompressionType.values()) {
+            Compressor.setCodec(type);
+            for (byte[] data : samples()) {
+                byte[] compressed = Compressor.compress(data);
+                assertArrayEquals(data, Compressor.decompress(compressed), type.toString());
+            }
+        }
+    }
+
+    @Test
+    void testCompressorTagsTheCodec() {
+        Compressor.setCodec(CompressionType.DEFLATE);
+        assertEquals(CompressionType.DEFLATE.getId(), Compressor.compress(repetitive(Compressor.DEFAULT_THRESHOLD))[0]);
+        assertEquals(CompressionType.IDENTITY.getId(), Compressor.compress(repetitive(10))[0]);
+        Compressor.setThreshold(0);
+        assertEquals(CompressionType.DEFLATE.getId(), Compressor.compress(repetitive(10))[0]);
+    }
+
+    @Test
+    void testCompressorDecompressesUntaggedGZIP() throws IOException {
+        byte[] data = repetitive(2000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        assertArrayEquals(data, Compressor.decompress(out.toByteArray()));
+    }
+
+    private void assertRoundTrips(Codec codec) throws IOException {
+        for (byte[] data : samples()) {
+            byte[] compressed = codec.compress(data);
+            assertArrayEquals(data, codec.decompress(compressed, 0, compressed.length));
+        }
+    }
+
+    private static byte[][] samples() {
+        byte[] random = new byte[5000];
+        new Random(1).nextBytes(random);
+        return new byte[][]{
+                new byte[0],
+                new byte[]{42},
+                "abcabcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8),
+                repetitive(100000),
+                random
+        };
+    }
+
+    private static byte[] repetitive(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ((i % 97) < 50 ? i % 7 : 'x');
+        }
+        return data;
+    }
+
+}
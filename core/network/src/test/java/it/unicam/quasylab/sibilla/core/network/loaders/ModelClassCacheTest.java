@@ -0,0 +1,80 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.loaders;
+
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelClassCacheTest {
+
+    private static final String CLASS_NAME = RandomWalkDefinition.class.getName();
+
+    @Test
+    void testClassInClasspathIsFound() throws IOException {
+        ModelClassCache cache = new ModelClassCache(null);
+        assertTrue(cache.load(CLASS_NAME, ModelClassCache.hash(ClassBytesLoader.loadClassBytes(CLASS_NAME))));
+    }
+
+    @Test
+    void testUnknownClassIsRequested() throws IOException {
+        ModelClassCache cache = new ModelClassCache(null);
+        assertFalse(cache.load(CLASS_NAME + "Missing", ModelClassCache.hash(new byte[]{1, 2, 3})));
+    }
+
+    @Test
+    void testChangedClassIsRejected() throws IOException {
+        ModelClassCache cache = new ModelClassCache(null);
+        byte[] classBytes = ClassBytesLoader.loadClassBytes(CLASS_NAME);
+        byte[] changedBytes = Arrays.copyOf(classBytes, classBytes.length + 1);
+        String changedHash = ModelClassCache.hash(changedBytes);
+        assertThrows(IOException.class, () -> cache.load(CLASS_NAME, changedHash));
+        assertThrows(IOException.class, () -> cache.store(CLASS_NAME, changedHash, changedBytes));
+        // the rejected bytes are not recorded: the original class is still the one available
+        assertThrows(IOException.class, () -> cache.load(CLASS_NAME, changedHash));
+        assertTrue(cache.load(CLASS_NAME, ModelClassCache.hash(classBytes)));
+    }
+
+    @Test
+    void testBytesMustMatchTheirHash() {
+        ModelClassCache cache = new ModelClassCache(null);
+        assertThrows(IOException.class,
+                () -> cache.store(CLASS_NAME + "Missing", ModelClassCache.hash(new byte[]{1}), new byte[]{2}));
+    }
+
+    @Test
+    void testUndefinableBytesAreRejected() {
+        ModelClassCache cache = new ModelClassCache(null);
+        byte[] classBytes = new byte[]{1, 2, 3};
+        assertThrows(IOException.class,
+                () -> cache.store(CLASS_NAME + "Broken", ModelClassCache.hash(classBytes), classBytes));
+    }
+
+}
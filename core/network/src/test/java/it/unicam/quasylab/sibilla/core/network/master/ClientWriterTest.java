@@ -0,0 +1,180 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition;
+import it.unicam.quasylab.sibilla.core.network.SimulationDataSet;
+import it.unicam.quasylab.sibilla.core.network.SimulationProgress;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SummaryStatisticSampling;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientWriterTest {
+
+    private static final long TIMEOUT = 5;
+
+    private final Serializer serializer = Serializer.getSerializer(SerializerType.APACHE);
+
+    @Test
+    void testStateIsNotBlockedBySlowClient() throws Exception {
+        BlockingNetworkManager client = new BlockingNetworkManager();
+        ClientWriter writer = new ClientWriter(client, serializer);
+        SimulationState state = newSimulationState(writer);
+        // the client does not read: the state must still be updated without waiting for it
+        assertTimeoutPreemptively(ofSeconds(TIMEOUT), () -> {
+            for (int i = 0; i < 10; i++) {
+                state.addCompletedTasks(1);
+            }
+        });
+        client.release();
+        assertEquals(MasterCommand.PROGRESS, client.nextCommand());
+        SimulationProgress<?> progress = (SimulationProgress<?>) serializer.deserialize(client.next());
+        assertEquals(1, progress.getCompletedTasks());
+        assertEquals(100, progress.getTotalTasks());
+        writer.close();
+    }
+
+    @Test
+    void testResultsFollowTheProgress() throws Exception {
+        BlockingNetworkManager client = new BlockingNetworkManager();
+        client.release();
+        ClientWriter writer = new ClientWriter(client, serializer);
+        SimulationState state = newSimulationState(writer);
+        state.addCompletedTasks(50);
+        state.addCompletedTasks(50);
+        state.setConcluded();
+        MasterCommand command = client.nextCommand();
+        while (command == MasterCommand.PROGRESS) {
+            assertTrue(serializer.deserialize(client.next()) instanceof SimulationProgress);
+            command = client.nextCommand();
+        }
+        assertEquals(MasterCommand.RESULTS, command);
+        assertTrue(serializer.deserialize(client.next()) instanceof SummaryStatisticSampling);
+        writer.close();
+        assertNull(client.written.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Creates the state of a running simulation of 100 replicas, whose progress is sent to the client
+     * each time the state changes, as the master server does once the progress is due
+     */
+    private static SimulationState newSimulationState(ClientWriter writer) {
+        NetworkInfo info = new NetworkInfo(InetAddress.getLoopbackAddress(), 0, TCPNetworkManagerType.DEFAULT);
+        SimulationState state = new SimulationState(new MasterState(info), info, info, Set.of(), null);
+        RandomWalkDefinition definition = new RandomWalkDefinition();
+        state.setSimulationDataSet(new SimulationDataSet<>(new JDKRandomGenerator(1), definition.getClass().getName(),
+                definition.createModel(), new RandomWalkDefinition.Position(0),
+                new SummaryStatisticSampling<>(10, 1.0, RandomWalkDefinition.X), 100, 10.0));
+        state.addPropertyChangeListener("Master Environment Update", evt -> {
+            if (state.isConcluded()) {
+                writer.sendResults(state);
+            } else if (state.getCompletedTasks() > 0) {
+                writer.sendProgress(state);
+            }
+        });
+        return state;
+    }
+
+    /**
+     * Connection with a client that does not read anything until it is released
+     */
+    private static class BlockingNetworkManager implements TCPNetworkManager {
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private final BlockingQueue<byte[]> written = new LinkedBlockingQueue<>();
+
+        private void release() {
+            released.countDown();
+        }
+
+        private byte[] next() throws InterruptedException {
+            byte[] data = written.poll(TIMEOUT, TimeUnit.SECONDS);
+            if (data == null) {
+                throw new AssertionError("Nothing has been written to the client");
+            }
+            return data;
+        }
+
+        private MasterCommand nextCommand() throws InterruptedException, IOException {
+            return CommandSerializer.deserialize(next(), MasterCommand.class);
+        }
+
+        @Override
+        public byte[] readObject() throws IOException {
+            throw new IOException("Nothing to read");
+        }
+
+        @Override
+        public void writeObject(byte[] toWrite) throws IOException {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            written.add(toWrite);
+        }
+
+        @Override
+        public Socket getSocket() {
+            return null;
+        }
+
+        @Override
+        public NetworkInfo getNetworkInfo() {
+            return new NetworkInfo(InetAddress.getLoopbackAddress(), 0, getType());
+        }
+
+        @Override
+        public void closeConnection() {
+        }
+
+        @Override
+        public TCPNetworkManagerType getType() {
+            return TCPNetworkManagerType.DEFAULT;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.master;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaLedgerTest {
+
+    @Test
+    void testRangesAreCompletedOnlyOnce() {
+        ReplicaLedger ledger = new ReplicaLedger();
+        assertTrue(ledger.complete(0, 10));
+        assertFalse(ledger.complete(0, 10));
+        assertFalse(ledger.complete(5, 10));
+        assertFalse(ledger.complete(9, 1));
+        assertTrue(ledger.complete(10, 5));
+        assertEquals(15, ledger.getCompletedReplicas());
+    }
+
+    @Test
+    void testRejectedRangeIsNotMarked() {
+        ReplicaLedger ledger = new ReplicaLedger();
+        assertTrue(ledger.complete(20, 5));
+        assertFalse(ledger.complete(15, 10));
+        assertFalse(ledger.isCompleted(15));
+        assertFalse(ledger.isCompleted(19));
+        assertTrue(ledger.isCompleted(20));
+        assertEquals(5, ledger.getCompletedReplicas());
+    }
+
+    @Test
+    void testCompletedRangesAreCoalesced() {
+        ReplicaLedger ledger = new ReplicaLedger();
+        ledger.complete(10, 5);
+        ledger.complete(0, 5);
+        ledger.complete(5, 5);
+        ledger.complete(30, 2);
+        List<int[]> ranges = ledger.getCompletedRanges();
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new int[]{0, 15}, ranges.get(0));
+        assertArrayEquals(new int[]{30, 2}, ranges.get(1));
+    }
+
+    @Test
+    void testEmptyLedger() {
+        ReplicaLedger ledger = new ReplicaLedger();
+        assertEquals(0, ledger.getCompletedReplicas());
+        assertTrue(ledger.getCompletedRanges().isEmpty());
+        assertFalse(ledger.isCompleted(0));
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.serialization;
+
+import it.unicam.quasylab.sibilla.core.network.master.MasterCommand;
+import it.unicam.quasylab.sibilla.core.network.slave.SlaveCommand;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandSerializerTest {
+
+    @Test
+    void testCommandsRoundTrip() throws IOException {
+        for (MasterCommand command : MasterCommand.values()) {
+            byte[] message = CommandSerializer.serialize(command);
+            assertEquals(2, message.length);
+            assertEquals(command, CommandSerializer.deserialize(message, MasterCommand.class));
+            assertTrue(CommandSerializer.isCommand(message, command));
+        }
+        for (SlaveCommand command : SlaveCommand.values()) {
+            assertEquals(command, CommandSerializer.deserialize(CommandSerializer.serialize(command), SlaveCommand.class));
+        }
+    }
+
+    @Test
+    void testCommandOfAnotherTypeIsRejected() {
+        byte[] message = CommandSerializer.serialize(SlaveCommand.PONG);
+        assertThrows(IOException.class, () -> CommandSerializer.deserialize(message, MasterCommand.class));
+        assertFalse(CommandSerializer.isCommand(message, MasterCommand.PONG));
+    }
+
+    @Test
+    void testPayload() throws IOException {
+        byte[] payload = {1, 2, 3, 4};
+        byte[] message = CommandSerializer.serialize(MasterCommand.RESULTS, payload);
+        assertTrue(CommandSerializer.startsWithCommand(message, MasterCommand.RESULTS));
+        assertFalse(CommandSerializer.isCommand(message, MasterCommand.RESULTS));
+        assertArrayEquals(payload, CommandSerializer.getPayload(message));
+        assertThrows(IOException.class, () -> CommandSerializer.deserialize(message, MasterCommand.class));
+    }
+
+    @Test
+    void testStringRoundTrip() throws IOException {
+        String value = "it.unicam.quasylab.Modelè";
+        assertEquals(value, CommandSerializer.deserializeString(CommandSerializer.serializeString(value)));
+        assertEquals("", CommandSerializer.deserializeString(CommandSerializer.serializeString("")));
+        assertThrows(IOException.class,
+                () -> CommandSerializer.deserializeString(CommandSerializer.serialize(MasterCommand.INIT)));
+    }
+
+    @Test
+    void testMalformedMessagesAreRejected() {
+        assertThrows(IOException.class, () -> CommandSerializer.deserialize(new byte[]{CommandSerializer.PROTOCOL_VERSION},
+                MasterCommand.class));
+        byte[] otherVersion = CommandSerializer.serialize(MasterCommand.PING);
+        otherVersion[0] = (byte) (CommandSerializer.PROTOCOL_VERSION + 1);
+        assertThrows(IOException.class, () -> CommandSerializer.deserialize(otherVersion, MasterCommand.class));
+        assertFalse(CommandSerializer.isCommand(otherVersion, MasterCommand.PING));
+        assertThrows(IOException.class, () -> CommandSerializer.deserialize(
+                new byte[]{CommandSerializer.PROTOCOL_VERSION, (byte) 0xFF}, MasterCommand.class));
+    }
+
+}
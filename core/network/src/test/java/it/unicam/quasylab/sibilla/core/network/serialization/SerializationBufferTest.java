@@ -0,0 +1,88 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SerializationBufferTest {
+
+    private static final int[] VALUES = {0, 1, -1, 63, -64, 64, 127, 128, 16383, 16384, -16385, 1 << 28,
+            Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+    @Test
+    void testVarIntRoundTrip() {
+        SerializationBuffer buffer = new SerializationBuffer(1);
+        for (int value : VALUES) {
+            buffer.putVarInt(value);
+        }
+        ByteBuffer source = ByteBuffer.wrap(buffer.toByteArray());
+        for (int value : VALUES) {
+            assertEquals(value, SerializationBuffer.getVarInt(source));
+        }
+        assertEquals(0, source.remaining());
+    }
+
+    @Test
+    void testSignedVarIntRoundTrip() {
+        SerializationBuffer buffer = new SerializationBuffer(1);
+        for (int value : VALUES) {
+            buffer.putSignedVarInt(value);
+        }
+        ByteBuffer source = ByteBuffer.wrap(buffer.toByteArray());
+        for (int value : VALUES) {
+            assertEquals(value, SerializationBuffer.getSignedVarInt(source));
+        }
+        assertEquals(0, source.remaining());
+    }
+
+    @Test
+    void testVarIntLength() {
+        assertEquals(1, new SerializationBuffer().putVarInt(127).size());
+        assertEquals(2, new SerializationBuffer().putVarInt(128).size());
+        assertEquals(5, new SerializationBuffer().putVarInt(-1).size());
+        assertEquals(1, new SerializationBuffer().putSignedVarInt(-64).size());
+        assertEquals(2, new SerializationBuffer().putSignedVarInt(64).size());
+    }
+
+    @Test
+    void testMixedFieldsAndReuse() {
+        SerializationBuffer buffer = new SerializationBuffer(2);
+        buffer.putVarInt(1000).putDouble(2.5).putLong(-7L).putByte(3).putInt(42).putBytes(new byte[]{9, 8, 7});
+        ByteBuffer source = ByteBuffer.wrap(buffer.toByteArray());
+        assertEquals(1000, SerializationBuffer.getVarInt(source));
+        assertEquals(2.5, source.getDouble());
+        assertEquals(-7L, source.getLong());
+        assertEquals(3, source.get());
+        assertEquals(42, source.getInt());
+        assertEquals(9, source.get());
+        assertEquals(8, source.get());
+        assertEquals(7, source.get());
+        assertEquals(1, buffer.clear().putVarInt(5).size());
+    }
+
+}
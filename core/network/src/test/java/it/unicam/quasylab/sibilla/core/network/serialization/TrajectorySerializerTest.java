@@ -0,0 +1,110 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.serialization;
+
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition;
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.simulator.Trajectory;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.Sample;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrajectorySerializerTest {
+
+    private final Model<RandomWalkDefinition.Position> model = new RandomWalkDefinition().createModel();
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Trajectory<RandomWalkDefinition.Position> trajectory = trajectory(0, 3, -2, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, 5);
+        assertSameTrajectory(trajectory, TrajectorySerializer.deserialize(
+                TrajectorySerializer.serialize(trajectory, model), model));
+    }
+
+    @Test
+    void testEmptyTrajectory() throws IOException {
+        Trajectory<RandomWalkDefinition.Position> trajectory = trajectory();
+        assertSameTrajectory(trajectory, TrajectorySerializer.deserialize(
+                TrajectorySerializer.serialize(trajectory, model), model));
+    }
+
+    @Test
+    void testConsecutiveTrajectoriesInTheSameBuffer() throws IOException {
+        Trajectory<RandomWalkDefinition.Position> first = trajectory(1, 2, 3);
+        Trajectory<RandomWalkDefinition.Position> second = trajectory(-1, -2);
+        SerializationBuffer buffer = new SerializationBuffer();
+        TrajectorySerializer.serialize(buffer, first, model);
+        TrajectorySerializer.serialize(buffer, second, model);
+        ByteBuffer source = ByteBuffer.wrap(buffer.toByteArray());
+        assertSameTrajectory(first, TrajectorySerializer.deserialize(source, model));
+        assertSameTrajectory(second, TrajectorySerializer.deserialize(source, model));
+        assertEquals(0, source.remaining());
+    }
+
+    @Test
+    void testSmallStepsUseFewBytes() throws IOException {
+        int[] positions = new int[100];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = 1000000 + (i % 2);
+        }
+        byte[] serialized = TrajectorySerializer.serialize(trajectory(positions), model);
+        // header and times, then the first position in three bytes and each following difference in one byte
+        int header = 1 + Double.BYTES + Double.BYTES + 1 + Long.BYTES;
+        assertEquals(header + Double.BYTES * positions.length + 3 + positions.length - 1, serialized.length);
+    }
+
+    private Trajectory<RandomWalkDefinition.Position> trajectory(int... positions) {
+        Trajectory<RandomWalkDefinition.Position> trajectory = new Trajectory<>();
+        trajectory.setStart(0.0);
+        trajectory.setEnd(positions.length * RandomWalkDefinition.STEP);
+        trajectory.setSuccessful(true);
+        trajectory.setGenerationTime(123L);
+        for (int i = 0; i < positions.length; i++) {
+            trajectory.addSample(new Sample<>(i * RandomWalkDefinition.STEP,
+                    new RandomWalkDefinition.Position(positions[i])));
+        }
+        return trajectory;
+    }
+
+    private void assertSameTrajectory(Trajectory<RandomWalkDefinition.Position> expected,
+                                      Trajectory<RandomWalkDefinition.Position> actual) {
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.isSuccessful(), actual.isSuccessful());
+        assertEquals(expected.getGenerationTime(), actual.getGenerationTime());
+        List<Sample<RandomWalkDefinition.Position>> expectedSamples = expected.getData();
+        List<Sample<RandomWalkDefinition.Position>> actualSamples = actual.getData();
+        assertEquals(expectedSamples.size(), actualSamples.size());
+        for (int i = 0; i < expectedSamples.size(); i++) {
+            assertEquals(expectedSamples.get(i).getTime(), actualSamples.get(i).getTime());
+            assertEquals(expectedSamples.get(i).getValue().getX(), actualSamples.get(i).getValue().getX());
+        }
+    }
+
+}
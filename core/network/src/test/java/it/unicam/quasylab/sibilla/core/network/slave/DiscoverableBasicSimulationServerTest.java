@@ -0,0 +1,120 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.slave;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.communication.UDPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.master.MasterCommand;
+import it.unicam.quasylab.sibilla.core.network.serialization.CommandSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.network.serialization.Serializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.SerializerType;
+import it.unicam.quasylab.sibilla.core.network.slave.executor.SimulationExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscoverableBasicSimulationServerTest {
+
+    private static final int DISCOVERY_TIMEOUT = 100;
+
+    private final Serializer serializer = Serializer.getSerializer(SerializerType.APACHE);
+
+    @Test
+    void testDrainIsSentAgainUntilAcknowledged() {
+        assertTimeoutPreemptively(ofSeconds(30), () -> {
+            try (DatagramSocket master = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+                int discoveryPort = freePort();
+                DiscoverableBasicSimulationServer slave = new DiscoverableBasicSimulationServer(discoveryPort,
+                        TCPNetworkManagerType.DEFAULT, UDPNetworkManagerType.DEFAULT, SerializerType.APACHE,
+                        SimulationExecutor.ExecutorType.SEQUENTIAL, ComputationResultSerializerType.APACHE);
+                int simulationPort = freePort();
+                Thread server = new Thread(() -> slave.start(simulationPort));
+                server.setDaemon(true);
+                server.start();
+                NetworkInfo masterInfo = new NetworkInfo(InetAddress.getLoopbackAddress(), master.getLocalPort(),
+                        UDPNetworkManagerType.DEFAULT);
+                discover(master, masterInfo, discoveryPort);
+
+                CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(slave::drain);
+                // the first DRAIN is lost, the second one is acknowledged
+                NetworkInfo drainedSlave = receiveDrain(master);
+                assertEquals(simulationPort, drainedSlave.getPort());
+                receiveDrain(master);
+                send(master, CommandSerializer.serialize(MasterCommand.DRAIN_RESPONSE, serializer.serialize(masterInfo)),
+                        discoveryPort);
+                assertTrue(drained.join());
+                slave.stop();
+            }
+        });
+    }
+
+    /**
+     * Sends discovery messages to the slave until it replies, so that it knows the master
+     */
+    private void discover(DatagramSocket master, NetworkInfo masterInfo, int discoveryPort) throws IOException {
+        master.setSoTimeout(DISCOVERY_TIMEOUT);
+        while (true) {
+            send(master, serializer.serialize(masterInfo), discoveryPort);
+            try {
+                master.receive(new DatagramPacket(new byte[1500], 1500));
+                master.setSoTimeout(0);
+                return;
+            } catch (SocketTimeoutException e) {
+                // the slave is not listening yet, or it has not started the simulation server
+            }
+        }
+    }
+
+    private NetworkInfo receiveDrain(DatagramSocket master) throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[1500], 1500);
+        master.receive(packet);
+        byte[] message = packet.getData();
+        assertTrue(CommandSerializer.startsWithCommand(message, SlaveCommand.DRAIN));
+        return (NetworkInfo) serializer.deserialize(CommandSerializer.getPayload(message));
+    }
+
+    private static void send(DatagramSocket master, byte[] message, int port) throws IOException {
+        master.send(new DatagramPacket(message, message.length, InetAddress.getLoopbackAddress(), port));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.slave;
+
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.master.MasterState;
+import it.unicam.quasylab.sibilla.core.network.master.SimulationState;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlaveStateTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    void testNoPipeliningBeforeThroughputIsKnown() {
+        assertEquals(1, newSlaveState().getPipelineDepth());
+    }
+
+    @Test
+    void testPipelineCoversLatency() {
+        SlaveState state = newSlaveState();
+        // 1000 tasks per second and 50 ms of latency: a batch of 1000 tasks runs for one second,
+        // during which 50 tasks worth of latency have to be hidden by a second batch
+        state.restoreThroughput(1.0 / MILLIS, 50 * MILLIS);
+        assertEquals(1000, state.getThroughputWindow());
+        assertEquals(2, state.getPipelineDepth());
+    }
+
+    @Test
+    void testNoPipeliningWithoutLatency() {
+        SlaveState state = newSlaveState();
+        state.restoreThroughput(1.0 / MILLIS, 0);
+        assertEquals(1, state.getPipelineDepth());
+    }
+
+    @Test
+    void testPipelineDepthIsBounded() {
+        SlaveState state = newSlaveState();
+        // the latency is measured on a batch of 100 tasks: 150 ms to receive the results of 100 ms of work
+        state.updateThroughput(100, 100 * MILLIS, 150 * MILLIS);
+        assertEquals(50 * MILLIS, state.getLatency(), 1.0);
+        assertEquals(4, state.getPipelineDepth());
+    }
+
+    @Test
+    void testBatchGrowsUpToThroughputWindow() {
+        SlaveState state = newSlaveState();
+        // 1000 tasks per second: batches of one second hold 1000 tasks
+        state.updateThroughput(100, 100 * MILLIS, -1);
+        int previous = state.getExpectedTasks();
+        while (state.getExpectedTasks() < state.getThroughputWindow()) {
+            executeBatch(state, state.getExpectedTasks() * MILLIS);
+            assertTrue(state.getExpectedTasks() > previous);
+            assertTrue(state.getExpectedTasks() <= Math.max(2, 2 * previous));
+            previous = state.getExpectedTasks();
+        }
+        assertEquals(1000, state.getExpectedTasks());
+        executeBatch(state, state.getExpectedTasks() * MILLIS);
+        assertEquals(1001, state.getExpectedTasks());
+    }
+
+    @Test
+    void testBatchIsHalvedWhenTooSlow() {
+        SlaveState state = newSlaveState();
+        state.updateThroughput(100, 100 * MILLIS, -1);
+        while (state.getExpectedTasks() < state.getThroughputWindow()) {
+            executeBatch(state, state.getExpectedTasks() * MILLIS);
+        }
+        // the slave slowed down: the batch of 1000 tasks took three seconds
+        executeBatch(state, 3000 * MILLIS);
+        assertEquals(500, state.getExpectedTasks());
+    }
+
+    private static void executeBatch(SlaveState state, long elapsedTime) {
+        state.setSentTasks(state.getExpectedTasks());
+        state.update(elapsedTime);
+    }
+
+    private static SlaveState newSlaveState() {
+        NetworkInfo info = new NetworkInfo(InetAddress.getLoopbackAddress(), 0, TCPNetworkManagerType.DEFAULT);
+        return new SlaveState(new SimulationState(new MasterState(info), info, info, Set.of(), null), info);
+    }
+
+}
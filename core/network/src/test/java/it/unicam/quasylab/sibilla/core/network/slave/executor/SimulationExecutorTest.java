@@ -0,0 +1,211 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.network.slave.executor;
+
+import it.unicam.quasylab.sibilla.core.models.Model;
+import it.unicam.quasylab.sibilla.core.models.State;
+import it.unicam.quasylab.sibilla.core.network.ComputationResult;
+import it.unicam.quasylab.sibilla.core.network.NetworkInfo;
+import it.unicam.quasylab.sibilla.core.network.NetworkTask;
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition;
+import it.unicam.quasylab.sibilla.core.network.RandomWalkDefinition.Position;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManager;
+import it.unicam.quasylab.sibilla.core.network.communication.TCPNetworkManagerType;
+import it.unicam.quasylab.sibilla.core.network.compression.Compressor;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializer;
+import it.unicam.quasylab.sibilla.core.network.serialization.ComputationResultSerializerType;
+import it.unicam.quasylab.sibilla.core.simulator.SimulationUnit;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.DescriptiveStatisticSampling;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplePredicate;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.SamplingFunction;
+import it.unicam.quasylab.sibilla.core.simulator.sampling.StatisticSampling;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationExecutorTest {
+
+    private static final int FIRST_REPLICA = 100;
+
+    private static final int REPLICAS = 37;
+
+    private static final double DEADLINE = 5.0;
+
+    private static final int WARMUP_THREADS = 3;
+
+    private static final long WARMUP_TIME = 100;
+
+    private final Model<Position> model = new RandomWalkDefinition().createModel();
+
+    @Test
+    void testMultithreadedExecutorMatchesSequentialOne() throws IOException {
+        assertSameStatistics(SimulationExecutor.ExecutorType.MULTITHREADED);
+    }
+
+    @Test
+    void testSingleTrajectoryMultithreadedExecutorMatchesSequentialOne() throws IOException {
+        assertSameStatistics(SimulationExecutor.ExecutorType.SINGLE_TRAJECTORY_MULTITHREADED);
+    }
+
+    @Test
+    void testWarmUpRunsOnEveryThreadOfThePool() {
+        ExecutorService pool = SimulationExecutor.newWorkerPool(WARMUP_THREADS);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(WARMUP_THREADS);
+        AtomicBoolean concurrent = new AtomicBoolean(true);
+        SimulationExecutor executor = new SequentialSimulationExecutor(SimulationExecutor.ExecutorType.SEQUENTIAL,
+                ComputationResultSerializerType.CUSTOM) {
+            @Override
+            protected void warmUpUntil(Model model, Function<RandomGenerator, ? extends State> initialState, long end) {
+                threads.add(Thread.currentThread());
+                started.countDown();
+                try {
+                    // none of the warm-ups can go on before all of them have started
+                    concurrent.compareAndSet(true, started.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    concurrent.set(false);
+                }
+                super.warmUpUntil(model, initialState, end);
+            }
+        };
+        long start = System.nanoTime();
+        executor.warmUp(pool, WARMUP_THREADS, model, rg -> new Position(0), WARMUP_TIME);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        pool.shutdown();
+        assertEquals(WARMUP_THREADS, threads.size());
+        assertTrue(concurrent.get());
+        assertTrue(elapsed >= WARMUP_TIME, String.format("The warm-up lasted %d ms", elapsed));
+    }
+
+    @Test
+    void testMultithreadedExecutorsWarmUpForTheGivenTime() {
+        for (SimulationExecutor.ExecutorType type : List.of(SimulationExecutor.ExecutorType.MULTITHREADED,
+                SimulationExecutor.ExecutorType.SINGLE_TRAJECTORY_MULTITHREADED)) {
+            long start = System.nanoTime();
+            SimulationExecutor.getExecutor(type, ComputationResultSerializerType.CUSTOM)
+                    .warmUp(model, rg -> new Position(0), WARMUP_TIME);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= WARMUP_TIME, String.format("The warm-up of %s lasted %d ms", type, elapsed));
+        }
+    }
+
+    /**
+     * Runs the same network task on the given executor and on the sequential one, and checks that
+     * every replica is reported exactly once and that the collected statistics are the same, since each
+     * replica uses the random generator stream associated to its index.
+     */
+    private void assertSameStatistics(SimulationExecutor.ExecutorType type) throws IOException {
+        double[][] expected = simulate(SimulationExecutor.ExecutorType.SEQUENTIAL);
+        double[][] actual = simulate(type);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 1e-9);
+        }
+    }
+
+    private double[][] simulate(SimulationExecutor.ExecutorType type) throws IOException {
+        CapturingNetworkManager master = new CapturingNetworkManager();
+        SimulationExecutor.getExecutor(type, ComputationResultSerializerType.CUSTOM).simulate(newNetworkTask(), master);
+        BitSet executed = new BitSet();
+        StatisticSampling<Position> statistics = newSamplingFunction();
+        for (byte[] data : master.written) {
+            ComputationResult<Position> result = ComputationResultSerializer.deserialize(Compressor.decompress(data), model);
+            for (int replica = result.getFirstReplica(); replica < result.getFirstReplica() + result.getCompletedTasks(); replica++) {
+                assertFalse(executed.get(replica), String.format("Replica %d reported twice", replica));
+                executed.set(replica);
+            }
+            statistics.merge(result.getStatistics());
+        }
+        assertEquals(REPLICAS, executed.cardinality());
+        assertEquals(FIRST_REPLICA, executed.nextSetBit(0));
+        return statistics.getData();
+    }
+
+    private NetworkTask<Position> newNetworkTask() {
+        SimulationUnit<Position> unit = new SimulationUnit<>(model, new Position(0), null,
+                SamplePredicate.timeDeadlinePredicate(DEADLINE));
+        return new NetworkTask<>(unit, newSamplingFunction(), 42, FIRST_REPLICA, REPLICAS);
+    }
+
+    private static StatisticSampling<Position> newSamplingFunction() {
+        return new DescriptiveStatisticSampling<>(10, DEADLINE / 10, RandomWalkDefinition.X);
+    }
+
+    /**
+     * Network manager that stores the data written to the master instead of sending them
+     */
+    private static class CapturingNetworkManager implements TCPNetworkManager {
+
+        private final List<byte[]> written = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public byte[] readObject() throws IOException {
+            throw new IOException("Nothing to read");
+        }
+
+        @Override
+        public void writeObject(byte[] toWrite) {
+            written.add(toWrite);
+        }
+
+        @Override
+        public Socket getSocket() {
+            return null;
+        }
+
+        @Override
+        public NetworkInfo getNetworkInfo() {
+            return new NetworkInfo(InetAddress.getLoopbackAddress(), 0, getType());
+        }
+
+        @Override
+        public void closeConnection() {
+        }
+
+        @Override
+        public TCPNetworkManagerType getType() {
+            return TCPNetworkManagerType.DEFAULT;
+        }
+    }
+
+}
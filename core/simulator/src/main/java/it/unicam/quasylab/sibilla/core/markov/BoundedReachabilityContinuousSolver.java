@@ -23,21 +23,20 @@
 
 package it.unicam.quasylab.sibilla.core.markov;
 
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
-
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
+ * Computes the probability of reaching, within a given time, a goal state only passing through
+ * states satisfying a given condition. Iterations are performed in place on a sparse matrix and
+ * stop as soon as two successive iterates differ less than <code>epsilon</code>.
+ *
  * @author loreti
  * @param <S>
  *
@@ -47,13 +46,16 @@ public class BoundedReachabilityContinuousSolver<S> {
 	private Predicate<S> condition;
 	private Predicate<S> goal;
 	private ContinuousTimeMarkovChain<S> chain;
-	private RealMatrix matrix;
-	private RealVector p0;
-	private LinkedList<RealVector> vectorResults;
+	private SparseMatrix matrix;
+	private MatrixVectorKernels kernels = MatrixVectorKernels.getDefault();
+	private double[] p0;
 	private Set<S> yesNodes;
 	private Set<S> computingNodes;
 	private Map<S, Integer> index;
 	private double epsilon;
+	private boolean lumping;
+	private OrdinaryLumping<S> partition;
+	private BoundedReachabilityContinuousSolver<Integer> quotientSolver;
 	
 	public BoundedReachabilityContinuousSolver( 
 			ContinuousTimeMarkovChain<S> chain,
@@ -74,17 +76,15 @@ public class BoundedReachabilityContinuousSolver<S> {
 	}
 
 
-	private RealVector buildRealVector() {
-		return MarkovChain.generateVector(ArrayRealVector::new, index, s -> (yesNodes.contains(s)?1.0:0.0));
+	private double[] buildInitialVector() {
+		return MarkovChain.generateVector(index, s -> (yesNodes.contains(s)?1.0:0.0));
 	}
 
-	private RealMatrix buidProbabilityMatrix(  ) {
-		return MarkovChain.generateMatrix(i -> MatrixUtils.createRealMatrix(i, i), 
+	private SparseMatrix buidProbabilityMatrix(  ) {
+		return SparseMatrix.generate(
 				s -> {			
 					if (yesNodes.contains(s)) {
-						HashMap<S,Double> unitRow = new HashMap<>();
-						unitRow.put(s, 1.0);
-						return unitRow.entrySet().stream();
+						return Stream.of(Map.entry(s, 1.0));
 					} else {
 						return chain.uniformisedMatrixRow(s)
 								.entrySet().stream() 
@@ -95,48 +95,94 @@ public class BoundedReachabilityContinuousSolver<S> {
 				index);
 	}
 	
+	/**
+	 * Sets the kernels used to perform matrix-vector operations.
+	 *
+	 * @param kernels kernels used to perform matrix-vector operations.
+	 */
+	public void setKernels(MatrixVectorKernels kernels) {
+		this.kernels = kernels;
+	}
+
+	/**
+	 * Enables the analysis of the quotient of the chain with respect to the coarsest ordinary lumpable
+	 * partition that preserves the condition and the goal, see {@link OrdinaryLumping}. The probabilities
+	 * computed for the blocks of the quotient are mapped back to their states.
+	 *
+	 * @param lumping true if the chain is lumped before the analysis.
+	 */
+	public void setLumping(boolean lumping) {
+		this.lumping = lumping;
+	}
+
 	public Map<S,Double> compute(double t) {
-		if (vectorResults == null) {
+		if (lumping) {
+			return computeOnQuotient(t);
+		}
+		if (matrix == null) {
 			computeReachabilitySets();
 			computeStateIndex();
-			matrix = buidProbabilityMatrix( ).transpose();
-			p0 = buildRealVector( );
-			vectorResults = new LinkedList<>();
-			vectorResults.add(p0);
+			matrix = buidProbabilityMatrix( );
+			p0 = buildInitialVector( );
 		}
 		FoxGlynn fg = (t>0?FoxGlynn.compute(chain.getMaxRate()*t, epsilon):null);
-		if (fg != null) {
-			generateSteps(fg.rightPoint());			
-		}
 		return generateMap( fg );
 	}
 
 
+	private Map<S,Double> computeOnQuotient(double t) {
+		if (quotientSolver == null) {
+			partition = OrdinaryLumping.lump(chain, List.of(condition, goal));
+			quotientSolver = new BoundedReachabilityContinuousSolver<>(
+					partition.quotient(ContinuousTimeMarkovChain::new),
+					epsilon, partition.lift(condition), partition.lift(goal));
+		}
+		quotientSolver.setKernels(kernels);
+		return partition.expand(quotientSolver.compute(t));
+	}
+
+
 	private Map<S, Double> generateMap( FoxGlynn fg ) {
 		HashMap<S,Double> toReturn = new HashMap<>();
 		yesNodes.forEach(s -> toReturn.put(s, 1.0));
 		if (fg!=null) {
-			RealVector v = sum(fg);
-			index.forEach((s,i) -> toReturn.put(s, v.getEntry(i)));
+			double[] v = sum(fg);
+			index.forEach((s,i) -> toReturn.put(s, v[i]));
 		}
 		return toReturn;
 	}
 
 
-	private RealVector sum(FoxGlynn fg ) {
-		return IntStream.range(fg.leftPoint(), fg.rightPoint()).boxed()
-				.map(i -> vectorResults.get(i).mapMultiply(fg.weight(i)/fg.totalWeight()))
-				.reduce(new ArrayRealVector(index.size()), (v1,v2) -> v1.add(v2));
+	private double[] sum(FoxGlynn fg ) {
+		double[] result = new double[p0.length];
+		double[] current = p0.clone();
+		double[] next = new double[p0.length];
+		for( int k=0 ; k<=fg.rightPoint() ; k++ ) {
+			if (k>0) {
+				kernels.multiply(matrix, current, next);
+				if (kernels.distance(current, next)<=epsilon) {
+					kernels.axpy(remainingWeight(fg, k), next, result);
+					return result;
+				}
+				double[] tmp = current;
+				current = next;
+				next = tmp;
+			}
+			if (k>=fg.leftPoint()) {
+				kernels.axpy(fg.poissonProb(k), current, result);
+			}
+		}
+		return result;
 	}
 
-
-	private void generateSteps(int k) {
-		while (vectorResults.size()<k) {
-			vectorResults.add(matrix.preMultiply(vectorResults.getLast()));
+	private double remainingWeight(FoxGlynn fg, int k) {
+		double w = 0.0;
+		for( int i=Math.max(k, fg.leftPoint()) ; i<=fg.rightPoint() ; i++ ) {
+			w += fg.poissonProb(i);
 		}
+		return w;
 	}
 
-
 	private void computeStateIndex() {
 		AtomicInteger counter = new AtomicInteger(0);
 		index = computingNodes.stream().collect(Collectors.toConcurrentMap(s -> s,s -> counter.getAndIncrement()));
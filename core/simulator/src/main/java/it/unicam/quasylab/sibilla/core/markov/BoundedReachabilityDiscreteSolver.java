@@ -23,13 +23,8 @@
 
 package it.unicam.quasylab.sibilla.core.markov;
 
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
-
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,6 +32,12 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
+ * Computes the probability of reaching, within a given number of steps, a goal state only passing
+ * through states satisfying a given condition. Iterations are performed in place on a sparse matrix
+ * and only the last iterate is kept, so that subsequent queries with a larger bound resume from the
+ * previous one. Iterations stop as soon as the contribution of a step is not greater than
+ * <code>epsilon</code>.
+ *
  * @author loreti
  * @param <S>
  *
@@ -46,20 +47,38 @@ public class BoundedReachabilityDiscreteSolver<S> {
 	private Predicate<S> condition;
 	private Predicate<S> goal;
 	private DiscreteTimeMarkovChain<S> chain;
-	private RealMatrix matrix;
-	private RealVector p0;
-	private LinkedList<RealVector> vectorResults;
+	private SparseMatrix matrix;
+	private MatrixVectorKernels kernels = MatrixVectorKernels.getDefault();
+	private double[] p0;
+	private double[] current;
+	private double[] next;
+	private double[] accumulated;
+	private int steps;
+	private boolean converged;
 	private Set<S> yesNodes;
 	private Set<S> computingNodes;
 	private Map<S, Integer> index;
+	private double epsilon;
+	private boolean lumping;
+	private OrdinaryLumping<S> partition;
+	private BoundedReachabilityDiscreteSolver<Integer> quotientSolver;
 	
 	public BoundedReachabilityDiscreteSolver( 
 			DiscreteTimeMarkovChain<S> chain,
+			double epsilon,
 			Predicate<S> condition,
 			Predicate<S> goal) {
 		this.chain = chain;
 		this.condition = condition;
 		this.goal = goal;
+		this.epsilon = epsilon;
+	}
+
+	public BoundedReachabilityDiscreteSolver( 
+			DiscreteTimeMarkovChain<S> chain,
+			Predicate<S> condition,
+			Predicate<S> goal) {
+		this(chain, 0.0, condition, goal);
 	}
 
 	public BoundedReachabilityDiscreteSolver( 
@@ -69,54 +88,100 @@ public class BoundedReachabilityDiscreteSolver<S> {
 	}
 
 
-	private RealVector buildRealVector() {
-		return MarkovChain.generateVector(ArrayRealVector::new, index, s -> 
+	private double[] buildInitialVector() {
+		return MarkovChain.generateVector(index, s -> 
 		chain.probabilityMatrixRow(s)
 		.entrySet().stream()
 		.filter(e2 -> yesNodes.contains(e2.getKey()))
 		.collect(Collectors.summingDouble(Map.Entry::getValue)));
 	}
 
-	private RealMatrix buidProbabilityMatrix(  ) {
-		return MarkovChain.generateMatrix(i -> MatrixUtils.createRealMatrix(i, i), s -> 
+	private SparseMatrix buidProbabilityMatrix(  ) {
+		return SparseMatrix.generate(s -> 
 			chain.probabilityMatrixRow(s).entrySet().stream()
 				.filter(p -> computingNodes.contains(p.getKey()))
 				, index);
 	}
 	
+	/**
+	 * Sets the kernels used to perform matrix-vector operations.
+	 *
+	 * @param kernels kernels used to perform matrix-vector operations.
+	 */
+	public void setKernels(MatrixVectorKernels kernels) {
+		this.kernels = kernels;
+	}
+
+	/**
+	 * Enables the analysis of the quotient of the chain with respect to the coarsest ordinary lumpable
+	 * partition that preserves the condition and the goal, see {@link OrdinaryLumping}. The probabilities
+	 * computed for the blocks of the quotient are mapped back to their states.
+	 *
+	 * @param lumping true if the chain is lumped before the analysis.
+	 */
+	public void setLumping(boolean lumping) {
+		this.lumping = lumping;
+	}
+
 	public Map<S,Double> compute(int k) {
-		if (vectorResults == null) {
+		if (lumping) {
+			return computeOnQuotient(k);
+		}
+		if (matrix == null) {
 			computeReachabilitySets();
 			computeStateIndex();
-			matrix = buidProbabilityMatrix( ).transpose();
-			p0 = buildRealVector( );
-			vectorResults = new LinkedList<>();
-			vectorResults.add(p0);
+			matrix = buidProbabilityMatrix( );
+			p0 = buildInitialVector( );
+			next = new double[p0.length];
+			reset();
+		}
+		if (k<steps) {
+			reset();
 		}
 		generateSteps(k);
 		return generateMap( k );
 	}
 
 
+	private Map<S,Double> computeOnQuotient(int k) {
+		if (quotientSolver == null) {
+			partition = OrdinaryLumping.lump(chain, List.of(condition, goal));
+			quotientSolver = new BoundedReachabilityDiscreteSolver<>(
+					partition.quotient(DiscreteTimeMarkovChain::new),
+					epsilon, partition.lift(condition), partition.lift(goal));
+		}
+		quotientSolver.setKernels(kernels);
+		return partition.expand(quotientSolver.compute(k));
+	}
+
+
 	private Map<S, Double> generateMap( int k ) {
 		HashMap<S,Double> toReturn = new HashMap<>();
 		yesNodes.forEach(s -> toReturn.put(s, 1.0));
 		if (k>0) {
-			RealVector v = sum(k);
-			index.forEach((s,i) -> toReturn.put(s, v.getEntry(i)));
+			index.forEach((s,i) -> toReturn.put(s, accumulated[i]));
 		}
 		return toReturn;
 	}
 
 
-	private RealVector sum(int k) {
-		return vectorResults.stream().limit(k).reduce(new ArrayRealVector(index.size()), (v1,v2) -> v1.add(v2));
+	private void reset() {
+		current = p0.clone();
+		accumulated = new double[p0.length];
+		steps = 0;
+		converged = false;
 	}
 
 
 	private void generateSteps(int k) {
-		while (vectorResults.size()<k) {
-			vectorResults.add(matrix.preMultiply(vectorResults.getLast()));
+		while ((steps<k)&&(!converged)) {
+			kernels.axpy(1.0, current, accumulated);
+			converged = (kernels.norm(current)<=epsilon);
+			kernels.multiply(matrix, current, next);
+			double[] tmp = current;
+			current = next;
+			next = tmp;
+			steps++;
 		}
 	}
 
@@ -31,6 +31,7 @@ import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -207,7 +208,17 @@ public  abstract class MarkovChain<S> {
 		return rv;
 	}
 	
+	public static <S> double[] generateVector( Map<S,Integer> index, ToDoubleFunction<S> init) {
+		double[] v = new double[index.size()];
+		index.forEach((s,i) -> v[i] = init.applyAsDouble(s));
+		return v;
+	}
+	
 	public Set<S> next(S s) {
 		return matrixR.get(s).keySet();
 	}
+
+	public Set<S> previous(S s) {
+		return preR.get(s).keySet();
+	}
 }
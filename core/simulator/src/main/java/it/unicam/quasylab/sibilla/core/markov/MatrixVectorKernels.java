@@ -0,0 +1,284 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Matrix and vector operations shared by numerical solvers. Operations are partitioned by rows
+ * and executed on a {@link ForkJoinPool}; small vectors are processed in the calling thread.
+ * Matrix-vector products are partitioned so that each partition contains approximately the same
+ * number of non-zero entries.
+ */
+public class MatrixVectorKernels {
+
+    /**
+     * Minimal number of entries processed by a single task.
+     */
+    public static final int MIN_PARTITION_SIZE = 4096;
+
+    private static MatrixVectorKernels defaultKernels;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    /**
+     * Creates kernels executed on the given pool.
+     *
+     * @param pool pool used to execute the operations
+     */
+    public MatrixVectorKernels(ForkJoinPool pool) {
+        this.pool = pool;
+        this.parallelism = pool.getParallelism();
+    }
+
+    /**
+     * Creates kernels executed on a new pool with the given parallelism.
+     *
+     * @param parallelism number of threads used to execute the operations
+     */
+    public MatrixVectorKernels(int parallelism) {
+        this(new ForkJoinPool(parallelism));
+    }
+
+    /**
+     * Returns the kernels used by default by numerical solvers. These are executed on a pool
+     * whose parallelism is the number of available processors.
+     *
+     * @return the default kernels
+     */
+    public static synchronized MatrixVectorKernels getDefault() {
+        if (defaultKernels == null) {
+            defaultKernels = new MatrixVectorKernels(Runtime.getRuntime().availableProcessors());
+        }
+        return defaultKernels;
+    }
+
+    /**
+     * Sets the kernels used by default by numerical solvers.
+     *
+     * @param kernels the new default kernels
+     */
+    public static synchronized void setDefault(MatrixVectorKernels kernels) {
+        defaultKernels = kernels;
+    }
+
+    /**
+     * Returns the parallelism of these kernels.
+     *
+     * @return the parallelism of these kernels
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Computes <code>y = M*x</code>. Vector <code>y</code> is overwritten.
+     *
+     * @param m a sparse matrix
+     * @param x input vector
+     * @param y output vector
+     */
+    public void multiply(SparseMatrix m, double[] x, double[] y) {
+        int partitions = numberOfPartitions(m.nonZeroEntries() + m.size());
+        if (partitions <= 1) {
+            m.multiply(x, y);
+            return;
+        }
+        int[] bounds = rowPartition(m, partitions);
+        pool.invoke(new PartitionAction(0, partitions, p -> m.multiply(x, y, bounds[p], bounds[p + 1])));
+    }
+
+    /**
+     * Computes <code>y = y + a*x</code>.
+     *
+     * @param a a scalar
+     * @param x a vector
+     * @param y the vector that is updated
+     */
+    public void axpy(double a, double[] x, double[] y) {
+        int partitions = numberOfPartitions(y.length);
+        if (partitions <= 1) {
+            axpy(a, x, y, 0, y.length);
+            return;
+        }
+        pool.invoke(new PartitionAction(0, partitions, p -> axpy(a, x, y, lower(y.length, partitions, p), lower(y.length, partitions, p + 1))));
+    }
+
+    /**
+     * Computes <code>x = a*x</code>.
+     *
+     * @param a a scalar
+     * @param x the vector that is updated
+     */
+    public void scale(double a, double[] x) {
+        int partitions = numberOfPartitions(x.length);
+        if (partitions <= 1) {
+            scale(a, x, 0, x.length);
+            return;
+        }
+        pool.invoke(new PartitionAction(0, partitions, p -> scale(a, x, lower(x.length, partitions, p), lower(x.length, partitions, p + 1))));
+    }
+
+    /**
+     * Returns the maximum norm of the given vector.
+     *
+     * @param x a vector
+     * @return the maximum absolute value of the elements of <code>x</code>
+     */
+    public double norm(double[] x) {
+        return distance(x, null);
+    }
+
+    /**
+     * Returns the maximum norm of the difference of the given vectors.
+     *
+     * @param x a vector
+     * @param y a vector
+     * @return the maximum absolute value of the elements of <code>x-y</code>
+     */
+    public double distance(double[] x, double[] y) {
+        int partitions = numberOfPartitions(x.length);
+        if (partitions <= 1) {
+            return distance(x, y, 0, x.length);
+        }
+        return pool.invoke(new MaxTask(0, partitions, p -> distance(x, y, lower(x.length, partitions, p), lower(x.length, partitions, p + 1))));
+    }
+
+    private int numberOfPartitions(int work) {
+        return Math.min(parallelism, work / MIN_PARTITION_SIZE);
+    }
+
+    private static int lower(int size, int partitions, int p) {
+        return (int) ((long) size * p / partitions);
+    }
+
+    private static int[] rowPartition(SparseMatrix m, int partitions) {
+        int[] bounds = new int[partitions + 1];
+        long total = m.nonZeroEntries() + m.size();
+        int row = 0;
+        for (int p = 1; p < partitions; p++) {
+            long target = total * p / partitions;
+            int low = row;
+            int high = m.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (m.rowStart(mid) + mid < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            row = low;
+            bounds[p] = row;
+        }
+        bounds[partitions] = m.size();
+        return bounds;
+    }
+
+    private static void axpy(double a, double[] x, double[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    private static void scale(double a, double[] x, int from, int to) {
+        for (int i = from; i < to; i++) {
+            x[i] *= a;
+        }
+    }
+
+    private static double distance(double[] x, double[] y, int from, int to) {
+        double max = 0.0;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, Math.abs(y == null ? x[i] : x[i] - y[i]));
+        }
+        return max;
+    }
+
+    @FunctionalInterface
+    private interface PartitionBody {
+        void apply(int partition);
+    }
+
+    @FunctionalInterface
+    private interface PartitionFunction {
+        double apply(int partition);
+    }
+
+    private static class PartitionAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final PartitionBody body;
+
+        PartitionAction(int from, int to, PartitionBody body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.apply(from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PartitionAction(from, mid, body), new PartitionAction(mid, to, body));
+            }
+        }
+    }
+
+    private static class MaxTask extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final PartitionFunction function;
+
+        MaxTask(int from, int to, PartitionFunction function) {
+            this.from = from;
+            this.to = to;
+            this.function = function;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from == 1) {
+                return function.apply(from);
+            }
+            int mid = (from + to) >>> 1;
+            MaxTask left = new MaxTask(from, mid, function);
+            left.fork();
+            double right = new MaxTask(mid, to, function).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the coarsest ordinary lumpable partition of the states of a Markov chain that refines
+ * the partition induced by a labelling function, typically the atomic predicates used in a query.
+ * The partition is computed by iterative refinement with respect to splitter blocks, where only the
+ * predecessors of a splitter are inspected and, when a block is split, all its parts but the largest
+ * are used as new splitters (as in the algorithm by Valmari and Franceschinis). For continuous time
+ * chains the weights are taken from the generator matrix, so that rates between states of the same
+ * block, which do not affect lumpability, are accounted for by the diagonal.
+ *
+ * <p>The quotient chain, whose states are block indexes, can be analysed by any solver in place of
+ * the original chain. Predicates are mapped to the quotient via {@link #lift(Predicate)} while values
+ * computed for blocks can be mapped back to states via {@link #expand(Map)}.
+ *
+ * @param <S> type of states
+ */
+public class OrdinaryLumping<S> {
+
+    private static final double TOLERANCE = 1.0E-10;
+
+    private final MarkovChain<S> chain;
+    private final Map<S, Integer> blockOf = new HashMap<>();
+    private final List<Set<S>> blocks = new ArrayList<>();
+
+    private OrdinaryLumping(MarkovChain<S> chain) {
+        this.chain = chain;
+    }
+
+    /**
+     * Computes the coarsest ordinary lumpable partition of the states of the given chain where states
+     * in the same block satisfy the same predicates in the given list.
+     *
+     * @param chain a Markov chain
+     * @param predicates predicates that must be preserved by the lumping
+     * @param <S> type of states
+     * @return the lumping of the given chain
+     */
+    public static <S> OrdinaryLumping<S> lump(MarkovChain<S> chain, List<Predicate<S>> predicates) {
+        return lump(chain, s -> predicates.stream().map(p -> p.test(s)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Computes the coarsest ordinary lumpable partition of the states of the given chain where states
+     * in the same block have the same label.
+     *
+     * @param chain a Markov chain
+     * @param label function used to compute the initial partition
+     * @param <S> type of states
+     * @return the lumping of the given chain
+     */
+    public static <S> OrdinaryLumping<S> lump(MarkovChain<S> chain, Function<S, ?> label) {
+        OrdinaryLumping<S> lumping = new OrdinaryLumping<>(chain);
+        lumping.refine(label);
+        return lumping;
+    }
+
+    /**
+     * Returns the number of blocks in the partition.
+     *
+     * @return the number of blocks in the partition
+     */
+    public int numberOfBlocks() {
+        return blocks.size();
+    }
+
+    /**
+     * Returns the index of the block containing the given state.
+     *
+     * @param s a state of the chain
+     * @return the index of the block containing <code>s</code>
+     */
+    public int getBlock(S s) {
+        return blockOf.get(s);
+    }
+
+    /**
+     * Returns the states in the given block.
+     *
+     * @param block index of a block
+     * @return the states in the block
+     */
+    public Set<S> getStates(int block) {
+        return Collections.unmodifiableSet(blocks.get(block));
+    }
+
+    /**
+     * Builds the quotient chain whose states are block indexes. In continuous time chains, rates
+     * between states in the same block are dropped since they do not affect the behaviour of the
+     * quotient.
+     *
+     * @param builder supplier used to create the quotient chain
+     * @param <M> type of the quotient chain
+     * @return the quotient chain
+     */
+    public <M extends MarkovChain<Integer>> M quotient(Supplier<M> builder) {
+        M quotient = builder.get();
+        boolean dropSelfLoops = chain instanceof ContinuousTimeMarkovChain;
+        for (int b = 0; b < blocks.size(); b++) {
+            S representative = blocks.get(b).iterator().next();
+            Map<Integer, Double> row = new HashMap<>();
+            for (S s2 : chain.next(representative)) {
+                int target = blockOf.get(s2);
+                if (!dropSelfLoops || target != b) {
+                    MarkovChain.addTo(row, target, chain.rate(representative, s2));
+                }
+            }
+            quotient.add(b, row);
+        }
+        return quotient;
+    }
+
+    /**
+     * Builds the quotient chain whose states are block indexes. The quotient is a continuous time chain
+     * when the lumped chain is, a discrete time chain otherwise.
+     *
+     * @return the quotient chain
+     */
+    public MarkovChain<Integer> quotient() {
+        if (chain instanceof ContinuousTimeMarkovChain) {
+            return quotient(ContinuousTimeMarkovChain::new);
+        }
+        return quotient(DiscreteTimeMarkovChain::new);
+    }
+
+    /**
+     * Returns the predicate on blocks corresponding to the given predicate on states. The given
+     * predicate must be preserved by the lumping.
+     *
+     * @param predicate a predicate on states
+     * @return the corresponding predicate on blocks
+     */
+    public Predicate<Integer> lift(Predicate<S> predicate) {
+        return b -> predicate.test(blocks.get(b).iterator().next());
+    }
+
+    /**
+     * Maps values computed for blocks, like reachability probabilities, to the states of each block.
+     *
+     * @param values values associated with blocks
+     * @return the map associating each state with the value of its block
+     */
+    public Map<S, Double> expand(Map<Integer, Double> values) {
+        Map<S, Double> toReturn = new HashMap<>();
+        values.forEach((b, v) -> blocks.get(b).forEach(s -> toReturn.put(s, v)));
+        return toReturn;
+    }
+
+    /**
+     * Maps a probability distribution over states to the corresponding distribution over blocks.
+     *
+     * @param distribution a probability distribution over states
+     * @return the probability of each block
+     */
+    public Map<Integer, Double> project(Map<S, Double> distribution) {
+        Map<Integer, Double> toReturn = new HashMap<>();
+        distribution.forEach((s, v) -> MarkovChain.addTo(toReturn, blockOf.get(s), v));
+        return toReturn;
+    }
+
+    private void refine(Function<S, ?> label) {
+        Map<Object, Integer> initial = new HashMap<>();
+        for (S s : chain.getStates()) {
+            int b = initial.computeIfAbsent(label.apply(s), l -> newBlock());
+            blocks.get(b).add(s);
+            blockOf.put(s, b);
+        }
+        LinkedList<Integer> splitters = new LinkedList<>();
+        BitSet inQueue = new BitSet();
+        for (int b = 0; b < blocks.size(); b++) {
+            splitters.add(b);
+            inQueue.set(b);
+        }
+        while (!splitters.isEmpty()) {
+            int splitter = splitters.poll();
+            inQueue.clear(splitter);
+            split(weights(splitter), splitters, inQueue);
+        }
+    }
+
+    private Map<S, Double> weights(int splitter) {
+        Map<S, Double> weights = new HashMap<>();
+        boolean continuous = chain instanceof ContinuousTimeMarkovChain;
+        for (S s2 : blocks.get(splitter)) {
+            if (continuous) {
+                // generator rows sum to zero: the rate towards the own block is the opposite of the exit rate
+                double exitRate = 0.0;
+                for (S s3 : chain.next(s2)) {
+                    if (blockOf.get(s3) != splitter) {
+                        exitRate += chain.rate(s2, s3);
+                    }
+                }
+                weights.put(s2, -exitRate);
+            }
+            for (S s1 : chain.previous(s2)) {
+                if (!continuous || blockOf.get(s1) != splitter) {
+                    MarkovChain.addTo(weights, s1, chain.rate(s1, s2));
+                }
+            }
+        }
+        return weights;
+    }
+
+    private void split(Map<S, Double> weights, LinkedList<Integer> splitters, BitSet inQueue) {
+        Map<Integer, List<S>> touched = weights.keySet().stream().collect(Collectors.groupingBy(blockOf::get));
+        touched.forEach((b, states) -> {
+            List<List<S>> parts = partition(states, weights);
+            Set<S> block = blocks.get(b);
+            if (states.size() == block.size() && parts.size() == 1) {
+                return;
+            }
+            if (states.size() == block.size()) {
+                // the block keeps the states of the first part
+                parts.remove(0);
+            }
+            List<Integer> newBlocks = new ArrayList<>();
+            for (List<S> part : parts) {
+                int nb = newBlock();
+                newBlocks.add(nb);
+                for (S s : part) {
+                    block.remove(s);
+                    blocks.get(nb).add(s);
+                    blockOf.put(s, nb);
+                }
+            }
+            enqueue(b, newBlocks, splitters, inQueue);
+        });
+    }
+
+    private void enqueue(int block, List<Integer> newBlocks, LinkedList<Integer> splitters, BitSet inQueue) {
+        if (inQueue.get(block)) {
+            newBlocks.forEach(nb -> {
+                splitters.add(nb);
+                inQueue.set(nb);
+            });
+            return;
+        }
+        int largest = block;
+        for (int nb : newBlocks) {
+            if (blocks.get(nb).size() > blocks.get(largest).size()) {
+                largest = nb;
+            }
+        }
+        if (largest != block) {
+            splitters.add(block);
+            inQueue.set(block);
+        }
+        for (int nb : newBlocks) {
+            if (nb != largest) {
+                splitters.add(nb);
+                inQueue.set(nb);
+            }
+        }
+    }
+
+    private List<List<S>> partition(List<S> states, Map<S, Double> weights) {
+        List<S> sorted = new ArrayList<>(states);
+        sorted.sort(Comparator.comparingDouble(weights::get));
+        List<List<S>> parts = new LinkedList<>();
+        List<S> current = null;
+        double last = 0.0;
+        for (S s : sorted) {
+            double w = weights.get(s);
+            if (current == null || Math.abs(w - last) > TOLERANCE * Math.max(Math.abs(w), Math.abs(last))) {
+                current = new ArrayList<>();
+                parts.add(current);
+                last = w;
+            }
+            current.add(s);
+        }
+        return parts;
+    }
+
+    private int newBlock() {
+        blocks.add(new HashSet<>());
+        return blocks.size() - 1;
+    }
+
+}
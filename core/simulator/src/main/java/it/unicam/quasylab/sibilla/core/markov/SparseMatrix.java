@@ -0,0 +1,187 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A square sparse matrix stored in compressed sparse row (CSR) format over primitive arrays.
+ * It is used by numerical solvers to iterate matrix-vector products without materialising
+ * dense matrices.
+ */
+public final class SparseMatrix {
+
+    private final int size;
+    private final int[] rowPointers;
+    private final int[] columns;
+    private final double[] values;
+
+    private SparseMatrix(int size, int[] rowPointers, int[] columns, double[] values) {
+        this.size = size;
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Generates the sparse matrix whose row associated with state <code>s</code> is given by
+     * <code>rowFunction.apply(s)</code>. Rows and columns are numbered according to <code>index</code>.
+     *
+     * @param rowFunction function returning the non-zero entries of each row
+     * @param index index of the states
+     * @param <S> type of states
+     * @return the generated matrix
+     */
+    public static <S> SparseMatrix generate(Function<S, Stream<Map.Entry<S, Double>>> rowFunction, Map<S, Integer> index) {
+        return generate(rowFunction, index, false);
+    }
+
+    /**
+     * Generates the transpose of the matrix that would be obtained via
+     * {@link #generate(Function, Map)}. This is useful to compute <code>v*M</code> as a
+     * product of a matrix with a column vector.
+     *
+     * @param rowFunction function returning the non-zero entries of each row
+     * @param index index of the states
+     * @param <S> type of states
+     * @return the transposed matrix
+     */
+    public static <S> SparseMatrix generateTransposed(Function<S, Stream<Map.Entry<S, Double>>> rowFunction, Map<S, Integer> index) {
+        return generate(rowFunction, index, true);
+    }
+
+    private static <S> SparseMatrix generate(Function<S, Stream<Map.Entry<S, Double>>> rowFunction, Map<S, Integer> index, boolean transpose) {
+        int size = index.size();
+        EntryCollector collector = new EntryCollector();
+        index.forEach((s1, i1) -> rowFunction.apply(s1).forEach(e -> {
+            int i2 = index.get(e.getKey());
+            if (transpose) {
+                collector.add(i2, i1, e.getValue());
+            } else {
+                collector.add(i1, i2, e.getValue());
+            }
+        }));
+        return collector.build(size);
+    }
+
+    /**
+     * Returns the number of rows (and columns) of this matrix.
+     *
+     * @return the number of rows of this matrix
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of non-zero entries stored in this matrix.
+     *
+     * @return the number of stored entries
+     */
+    public int nonZeroEntries() {
+        return values.length;
+    }
+
+    /**
+     * Computes <code>y = M*x</code>. Vector <code>y</code> is overwritten.
+     *
+     * @param x input vector
+     * @param y output vector
+     */
+    public void multiply(double[] x, double[] y) {
+        multiply(x, y, 0, size);
+    }
+
+    /**
+     * Computes the rows in the range <code>[from, to)</code> of <code>y = M*x</code>.
+     *
+     * @param x input vector
+     * @param y output vector
+     * @param from first row (inclusive)
+     * @param to last row (exclusive)
+     */
+    public void multiply(double[] x, double[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double sum = 0.0;
+            for (int j = rowPointers[i]; j < rowPointers[i + 1]; j++) {
+                sum += values[j] * x[columns[j]];
+            }
+            y[i] = sum;
+        }
+    }
+
+    /**
+     * Returns the index of the first entry of row <code>i</code> in the internal arrays.
+     * Entries of row <code>i</code> are in the range <code>[rowStart(i), rowStart(i+1))</code>.
+     *
+     * @param i row index
+     * @return the index of the first entry of the row
+     */
+    public int rowStart(int i) {
+        return rowPointers[i];
+    }
+
+    private static class EntryCollector {
+
+        private int[] rows = new int[16];
+        private int[] columns = new int[16];
+        private double[] values = new double[16];
+        private int counter = 0;
+
+        void add(int row, int column, double value) {
+            if (counter == rows.length) {
+                rows = Arrays.copyOf(rows, 2 * counter);
+                columns = Arrays.copyOf(columns, 2 * counter);
+                values = Arrays.copyOf(values, 2 * counter);
+            }
+            rows[counter] = row;
+            columns[counter] = column;
+            values[counter] = value;
+            counter++;
+        }
+
+        SparseMatrix build(int size) {
+            int[] rowPointers = new int[size + 1];
+            for (int k = 0; k < counter; k++) {
+                rowPointers[rows[k] + 1]++;
+            }
+            for (int i = 0; i < size; i++) {
+                rowPointers[i + 1] += rowPointers[i];
+            }
+            int[] next = Arrays.copyOf(rowPointers, size);
+            int[] csrColumns = new int[counter];
+            double[] csrValues = new double[counter];
+            for (int k = 0; k < counter; k++) {
+                int pos = next[rows[k]]++;
+                csrColumns[pos] = columns[k];
+                csrValues[pos] = values[k];
+            }
+            return new SparseMatrix(size, rowPointers, csrColumns, csrValues);
+        }
+    }
+}
@@ -24,8 +24,15 @@
 package it.unicam.quasylab.sibilla.core.markov;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
+ * Computes the steady state distribution of a continuous time Markov chain starting from a given
+ * state. The distribution is computed by power iterations on the lazy version of the uniformised
+ * chain, that has the same stationary distribution and is aperiodic, until two successive iterates
+ * differ less than <code>epsilon</code>.
+ *
  * @author loreti
  * @param <S>
  *
@@ -40,11 +47,55 @@ public class SteadyStateSolver<S> {
 	private List<S> bsccQueue = new LinkedList<>();
 	private Set<S> inQueue = new HashSet<S>();
 	private int indexCounter = 0;
+	private double epsilon;
+	private MatrixVectorKernels kernels = MatrixVectorKernels.getDefault();
 	
-	public SteadyStateSolver(ContinuousTimeMarkovChain<S> chain, S init) {
+	public SteadyStateSolver(ContinuousTimeMarkovChain<S> chain, double epsilon, S init) {
 		this.chain = chain;
+		this.epsilon = epsilon;
 		this.init = init;
 	}
+
+	public SteadyStateSolver(ContinuousTimeMarkovChain<S> chain, S init) {
+		this(chain, UnboundedReachabilitySolver.DEFAULT_EPSILON, init);
+	}
+
+	/**
+	 * Sets the kernels used to perform matrix-vector operations.
+	 *
+	 * @param kernels kernels used to perform matrix-vector operations.
+	 */
+	public void setKernels(MatrixVectorKernels kernels) {
+		this.kernels = kernels;
+	}
+
+	/**
+	 * Returns the steady state distribution of the chain when <code>init</code> is the initial state.
+	 *
+	 * @return the probability of each state at the steady state.
+	 */
+	public Map<S,Double> compute() {
+		AtomicInteger counter = new AtomicInteger(0);
+		Map<S,Integer> index = chain.getStates().stream().collect(Collectors.toMap(s -> s, s -> counter.getAndIncrement()));
+		SparseMatrix matrix = SparseMatrix.generateTransposed(s -> chain.uniformisedMatrixRow(s).entrySet().stream(), index);
+		double[] current = new double[index.size()];
+		double[] next = new double[index.size()];
+		current[index.get(init)] = 1.0;
+		double error = Double.POSITIVE_INFINITY;
+		while (error>epsilon) {
+			kernels.multiply(matrix, current, next);
+			kernels.axpy(1.0, current, next);
+			kernels.scale(0.5, next);
+			error = kernels.distance(current, next);
+			double[] tmp = current;
+			current = next;
+			next = tmp;
+		}
+		Map<S,Double> toReturn = new HashMap<>();
+		double[] values = current;
+		index.forEach((s,i) -> toReturn.put(s, values[i]));
+		return toReturn;
+	}
 	
 	public void computeBSCC( ) {
 		for (S s : chain.getStates()) {
@@ -23,19 +23,20 @@
 
 package it.unicam.quasylab.sibilla.core.markov;
 
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
-
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
+ * Computes transient probabilities of a continuous time Markov chain via uniformisation.
+ * All the requested time points are handled in a single pass: the vectors obtained by
+ * iterating the uniformised matrix are computed once and accumulated, with the Poisson
+ * weights of each time point, as soon as they are generated.
+ *
  * @author loreti
  * @param <S>
  *
@@ -43,11 +44,12 @@ import java.util.stream.IntStream;
 public class TransientProbabilityContinuousSolver<S> {
 
 	private ContinuousTimeMarkovChain<S> chain;
-	private RealMatrix matrix;
+	private SparseMatrix matrix;
+	private MatrixVectorKernels kernels = MatrixVectorKernels.getDefault();
 	private S init;
-	private LinkedList<RealVector> vectorResults;
 	private double epsilon;
 	private Map<S, Integer> index;
+	private boolean lumping;
 	
 	public TransientProbabilityContinuousSolver( 
 			ContinuousTimeMarkovChain<S> chain,
@@ -58,57 +60,134 @@ public class TransientProbabilityContinuousSolver<S> {
 		this.epsilon = epsilon;
 	}
 
-	private RealVector buildRealVector() {
-		RealVector rv = new ArrayRealVector(index.size());
-		rv.setEntry(index.get(init), 1.0);
-		return rv;
+	private double[] buildInitialVector() {
+		double[] v = new double[index.size()];
+		v[index.get(init)] = 1.0;
+		return v;
 	}
 
-	private RealMatrix buidProbabilityMatrix(  ) {
-		return MarkovChain.generateMatrix(i -> MatrixUtils.createRealMatrix(i, i), 
+	private SparseMatrix buidProbabilityMatrix(  ) {
+		return SparseMatrix.generateTransposed(
 				s -> chain.uniformisedMatrixRow(s).entrySet().stream(),
 				index);
 	}
-	
+
+	/**
+	 * Sets the kernels used to perform matrix-vector operations.
+	 *
+	 * @param kernels kernels used to perform matrix-vector operations.
+	 */
+	public void setKernels(MatrixVectorKernels kernels) {
+		this.kernels = kernels;
+	}
+
+	/**
+	 * Enables the analysis of the quotient of the chain when the probability of a predicate is computed,
+	 * see {@link #compute(List, Predicate)}. The quotient is built with respect to the coarsest ordinary
+	 * lumpable partition that preserves the predicate, see {@link OrdinaryLumping}. Since lumping does not
+	 * preserve the probabilities of the single states, distributions over states are always computed on
+	 * the original chain.
+	 *
+	 * @param lumping true if the chain is lumped before the analysis.
+	 */
+	public void setLumping(boolean lumping) {
+		this.lumping = lumping;
+	}
+
+	/**
+	 * Returns the probability of being in a state satisfying the given predicate at each of the given
+	 * time points.
+	 *
+	 * @param times time points at which the probabilities are computed.
+	 * @param predicate predicate on states.
+	 * @return the list containing the probability of the predicate at each of the given time points.
+	 */
+	public List<Double> compute(List<Double> times, Predicate<S> predicate) {
+		if (lumping) {
+			OrdinaryLumping<S> partition = OrdinaryLumping.lump(chain, List.of(predicate));
+			TransientProbabilityContinuousSolver<Integer> quotientSolver = new TransientProbabilityContinuousSolver<>(
+					partition.quotient(ContinuousTimeMarkovChain::new), epsilon, partition.getBlock(init));
+			quotientSolver.setKernels(kernels);
+			return quotientSolver.compute(times, partition.lift(predicate));
+		}
+		return compute(times).stream().map(distribution -> distribution.entrySet().stream()
+				.filter(e -> predicate.test(e.getKey())).mapToDouble(Map.Entry::getValue).sum())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the transient probability distribution at time <code>t</code>.
+	 *
+	 * @param t time at which the distribution is computed.
+	 * @return the probability of each state at time <code>t</code>.
+	 */
 	public Map<S,Double> compute(double t) {
-		if (vectorResults == null) {
+		return compute(List.of(t)).get(0);
+	}
+
+	/**
+	 * Returns the transient probability distributions at the given time points. Matrix-vector
+	 * products are shared among all the time points, only the Poisson weights are computed
+	 * for each of them.
+	 *
+	 * @param times time points at which the distributions are computed.
+	 * @return the list containing the distribution at each of the given time points.
+	 */
+	public List<Map<S,Double>> compute(List<Double> times) {
+		if (matrix == null) {
 			computeStateIndex();
 			matrix = buidProbabilityMatrix( );
-			vectorResults = new LinkedList<>();
-			vectorResults.add(buildRealVector( ));
 		}
-		FoxGlynn fg = (t>0?FoxGlynn.compute(chain.getMaxRate()*t, epsilon):null);
-		if (fg != null) {
-			generateSteps(fg.rightPoint());			
+		FoxGlynn[] weights = new FoxGlynn[times.size()];
+		double[][] results = new double[times.size()][];
+		int steps = 0;
+		for( int j=0 ; j<weights.length ; j++ ) {
+			double t = times.get(j);
+			if (t<0) {
+				throw new IllegalArgumentException("Time points must be non negative!");
+			}
+			if (t>0) {
+				weights[j] = FoxGlynn.compute(chain.getMaxRate()*t, epsilon);
+				results[j] = new double[index.size()];
+				steps = Math.max(steps, weights[j].rightPoint());
+			}
 		}
-		return generateMap( fg );
-	}
-
-
-	private Map<S, Double> generateMap( FoxGlynn fg ) {
-		HashMap<S,Double> toReturn = new HashMap<>();
-		RealVector v;
-		if (fg!=null) {
-			v = sum(fg);
-		} else {
-			v = this.vectorResults.getFirst();
+		double[] v = buildInitialVector();
+		double[] next = new double[v.length];
+		for( int j=0 ; j<weights.length ; j++ ) {
+			if (weights[j] == null) {
+				results[j] = v.clone();
+			}
+		}
+		for( int k=0 ; k<=steps ; k++ ) {
+			if (k>0) {
+				kernels.multiply(matrix, v, next);
+				double[] tmp = v;
+				v = next;
+				next = tmp;
+			}
+			accumulate(k, v, weights, results);
+		}
+		List<Map<S,Double>> toReturn = new ArrayList<>(results.length);
+		for (double[] r : results) {
+			toReturn.add(generateMap(r));
 		}
-		index.forEach((s,i) -> toReturn.put(s, v.getEntry(i)));
 		return toReturn;
 	}
 
-
-	private RealVector sum(FoxGlynn fg ) {
-		return IntStream.range(fg.leftPoint(), fg.rightPoint()).boxed()
-				.map(i -> vectorResults.get(i).mapMultiply(fg.weight(i)/fg.totalWeight()))
-				.reduce(new ArrayRealVector(index.size()), (v1,v2) -> v1.add(v2));
+	private void accumulate(int k, double[] v, FoxGlynn[] weights, double[][] results) {
+		for( int j=0 ; j<weights.length ; j++ ) {
+			FoxGlynn fg = weights[j];
+			if ((fg != null)&&(fg.leftPoint()<=k)&&(k<=fg.rightPoint())) {
+				kernels.axpy(fg.poissonProb(k), v, results[j]);
+			}
+		}
 	}
 
-
-	private void generateSteps(int k) {
-		while (vectorResults.size()<k) {
-			vectorResults.add(matrix.preMultiply(vectorResults.getLast()));
-		}
+	private Map<S, Double> generateMap( double[] v ) {
+		HashMap<S,Double> toReturn = new HashMap<>();
+		index.forEach((s,i) -> toReturn.put(s, v[i]));
+		return toReturn;
 	}
 
 
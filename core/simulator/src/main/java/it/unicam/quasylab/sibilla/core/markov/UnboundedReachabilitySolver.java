@@ -23,10 +23,9 @@
 
 package it.unicam.quasylab.sibilla.core.markov;
 
-import it.unicam.quasylab.sibilla.core.util.Pair;
-import org.apache.commons.math3.linear.*;
-
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -34,26 +33,58 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
+ * Computes the probability of eventually reaching a goal state only passing through states
+ * satisfying a given condition. After states reaching the goal with probability 0 or 1 are
+ * identified, remaining probabilities are computed iteratively. Since the error of an iterate is
+ * about <code>delta*rho/(1-rho)</code>, where <code>delta</code> is the distance between two
+ * successive iterates and <code>rho</code> is the rate at which this distance shrinks, iterations
+ * stop when this bound is below <code>epsilon</code>, and not as soon as <code>delta</code> is, which
+ * would stop too early on slowly mixing chains. An {@link IllegalStateException} is thrown if the
+ * bound is not met within a maximum number of iterations.
+ *
  * @author loreti
  * @param <S>
  *
  */
 public class UnboundedReachabilitySolver<S> {
 
+	/**
+	 * Default tolerance used to stop iterations.
+	 */
+	public static final double DEFAULT_EPSILON = 1.0E-10;
+
+	/**
+	 * Default maximum number of iterations.
+	 */
+	public static final int DEFAULT_MAX_ITERATIONS = 10_000_000;
+
 	private Predicate<S> condition;
 	private Predicate<S> goal;
 	private MarkovChain<S> chain;
 	private Set<S> yesNodes;
 	private Set<S> computingNodes;
 	private Map<S,Integer> index;
+	private double epsilon;
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+	private MatrixVectorKernels kernels = MatrixVectorKernels.getDefault();
+	private boolean lumping;
 	
 	public UnboundedReachabilitySolver( 
 			MarkovChain<S> chain,
+			double epsilon,
 			Predicate<S> condition,
 			Predicate<S> goal) {
 		this.chain = chain;
 		this.condition = condition;
 		this.goal = goal;
+		this.epsilon = epsilon;
+	}
+
+	public UnboundedReachabilitySolver( 
+			MarkovChain<S> chain,
+			Predicate<S> condition,
+			Predicate<S> goal) {
+		this(chain, DEFAULT_EPSILON, condition, goal);
 	}
 	
 	public UnboundedReachabilitySolver( 
@@ -61,33 +92,80 @@ public class UnboundedReachabilitySolver<S> {
 			Predicate<S> goal) {
 		this(chain,s -> true,goal);
 	}
-	
 
-	private RealVector buildRealVector() {
-		return MarkovChain.generateVector(ArrayRealVector::new, index, s -> 
+	/**
+	 * Sets the kernels used to perform matrix-vector operations.
+	 *
+	 * @param kernels kernels used to perform matrix-vector operations.
+	 */
+	public void setKernels(MatrixVectorKernels kernels) {
+		this.kernels = kernels;
+	}
+
+	/**
+	 * Sets the maximum number of iterations performed before giving up.
+	 *
+	 * @param maxIterations maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Enables the analysis of the quotient of the chain with respect to the coarsest ordinary lumpable
+	 * partition that preserves the condition and the goal, see {@link OrdinaryLumping}. The probabilities
+	 * computed for the blocks of the quotient are mapped back to their states.
+	 *
+	 * @param lumping true if the chain is lumped before the analysis.
+	 */
+	public void setLumping(boolean lumping) {
+		this.lumping = lumping;
+	}
+
+	private double[] buildInitialVector() {
+		return MarkovChain.generateVector(index, s -> 
 		chain.probabilityMatrixRow(s).entrySet().stream()
 		.filter(e2 -> yesNodes.contains(e2.getKey()))
 		.collect(Collectors.summingDouble(e -> e.getValue())));
 	}
 
-	private RealMatrix buidProbabilityMatrix(  ) {
-		return MarkovChain.generateMatrix(i -> MatrixUtils.createRealIdentityMatrix(i), s -> 
+	private SparseMatrix buidProbabilityMatrix(  ) {
+		return SparseMatrix.generate(s -> 
 			chain.probabilityMatrixRow(s).entrySet().stream()
 				.filter(p -> computingNodes.contains(p.getKey()))
 				, index);
 	}
 	
 	public Map<S,Double> compute() {
+		if (lumping) {
+			return computeOnQuotient();
+		}
 		computeReachabilitySets();
 		computeStateIndex();
-		RealMatrix m = buidProbabilityMatrix( );
-		DecompositionSolver solver = new LUDecomposition( m ).getSolver();
-		RealVector p0 = buildRealVector( );
-		RealVector result = solver.solve(p0);			
-		Map<S,Double> map = index.entrySet().stream()
-				.map(e -> Pair.apply(e, result::getEntry))
-				.collect(Collectors.toConcurrentMap(e -> e.getKey(), e -> e.getValue()))
-				;
+		SparseMatrix m = buidProbabilityMatrix( );
+		double[] p0 = buildInitialVector( );
+		double[] result = p0.clone();
+		double[] next = new double[p0.length];
+		double previous = Double.POSITIVE_INFINITY;
+		int iterations = 0;
+		boolean converged = (p0.length==0);
+		while (!converged) {
+			if (iterations++ >= maxIterations) {
+				throw new IllegalStateException(String.format("No convergence within %d iterations", maxIterations));
+			}
+			kernels.multiply(m, result, next);
+			kernels.axpy(1.0, p0, next);
+			double delta = kernels.distance(result, next);
+			double rate = (iterations>1?delta/previous:Double.POSITIVE_INFINITY);
+			converged = (delta == 0.0)||((rate<1.0)&&(delta*rate/(1-rate)<=epsilon));
+			previous = delta;
+			double[] tmp = result;
+			result = next;
+			next = tmp;
+		}
+		Map<S,Double> map = new HashMap<>();
+		double[] values = result;
+		index.forEach((s,i) -> map.put(s, values[i]));
 		for (S s : yesNodes) {
 			map.put(s, 1.0);
 		}
@@ -95,6 +173,16 @@ public class UnboundedReachabilitySolver<S> {
 	}
 
 
+	private Map<S,Double> computeOnQuotient() {
+		OrdinaryLumping<S> partition = OrdinaryLumping.lump(chain, List.of(condition, goal));
+		UnboundedReachabilitySolver<Integer> quotientSolver = new UnboundedReachabilitySolver<>(
+				partition.quotient(), epsilon, partition.lift(condition), partition.lift(goal));
+		quotientSolver.setKernels(kernels);
+		quotientSolver.setMaxIterations(maxIterations);
+		return partition.expand(quotientSolver.compute());
+	}
+
+
 	private void computeStateIndex() {
 		AtomicInteger counter = new AtomicInteger(0);
 		index = computingNodes.stream().collect(Collectors.toConcurrentMap(s -> s,s -> counter.getAndIncrement()));
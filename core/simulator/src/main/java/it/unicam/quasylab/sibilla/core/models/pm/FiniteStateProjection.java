@@ -0,0 +1,227 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.models.pm;
+
+import it.unicam.quasylab.sibilla.core.markov.ContinuousTimeMarkovChain;
+import it.unicam.quasylab.sibilla.core.markov.TransientProbabilityContinuousSolver;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements the Finite State Projection (FSP) algorithm used to compute transient
+ * probabilities of a population model. States are explored in breadth-first order starting from
+ * the initial state. The CTMC is truncated to the explored states: all the transitions leaving the
+ * projection lead to an absorbing sink whose probability is an upper bound of the truncation error.
+ * The projection is expanded, doubling its size, until the error is below the given bound or the
+ * maximum number of states is reached.
+ *
+ * <p>Rates are evaluated at time 0, hence the analysis is only meaningful for time homogeneous models.
+ */
+public class FiniteStateProjection {
+
+    /**
+     * Sink state collecting the probability mass leaving the projection.
+     */
+    private static final PopulationState SINK = new PopulationState(new int[0]);
+
+    private final PopulationModel model;
+    private final PopulationState init;
+    private final double errorBound;
+    private final int maxStates;
+    private final double epsilon;
+    private final Map<PopulationState, Map<PopulationState, Double>> rows = new HashMap<>();
+    private final LinkedList<PopulationState> boundary = new LinkedList<>();
+    private final Set<PopulationState> discovered = new HashSet<>();
+
+    /**
+     * Creates a new projection of the given model.
+     *
+     * @param model the model to analyse
+     * @param init the initial state
+     * @param errorBound maximal probability mass that can leave the projection
+     * @param maxStates maximal number of states in the projection
+     * @param epsilon precision used in the computation of transient probabilities
+     * @throws IllegalArgumentException if a rule of the model does not support numerical analysis
+     */
+    public FiniteStateProjection(PopulationModel model, PopulationState init, double errorBound, int maxStates, double epsilon) {
+        model.requireEnumerableUpdates();
+        this.model = model;
+        this.init = init;
+        this.errorBound = errorBound;
+        this.maxStates = maxStates;
+        this.epsilon = epsilon;
+        this.boundary.add(init);
+        this.discovered.add(init);
+    }
+
+    /**
+     * Creates a new projection of the given model where transient probabilities are computed with
+     * a precision that is two orders of magnitude smaller than <code>errorBound</code>.
+     *
+     * @param model the model to analyse
+     * @param init the initial state
+     * @param errorBound maximal probability mass that can leave the projection
+     * @param maxStates maximal number of states in the projection
+     * @throws IllegalArgumentException if a rule of the model does not support numerical analysis
+     */
+    public FiniteStateProjection(PopulationModel model, PopulationState init, double errorBound, int maxStates) {
+        this(model, init, errorBound, maxStates, errorBound / 100);
+    }
+
+    /**
+     * Returns the transient distribution at time <code>t</code>.
+     *
+     * @param t a time point
+     * @return the transient distribution at time <code>t</code>
+     */
+    public Result compute(double t) {
+        return compute(List.of(t)).get(0);
+    }
+
+    /**
+     * Returns the transient distributions at the given time points. The projection is expanded until
+     * the truncation error at each time point is below the error bound.
+     *
+     * @param times time points
+     * @return the transient distributions at the given time points
+     */
+    public List<Result> compute(List<Double> times) {
+        if (rows.isEmpty()) {
+            expand(1);
+        }
+        while (true) {
+            ContinuousTimeMarkovChain<PopulationState> chain = buildChain();
+            List<Map<PopulationState, Double>> distributions = solve(chain, times);
+            double error = distributions.stream().mapToDouble(d -> d.getOrDefault(SINK, 0.0)).max().orElse(0.0);
+            if ((error <= errorBound) || boundary.isEmpty() || (rows.size() >= maxStates)) {
+                return distributions.stream().map(this::getResult).collect(Collectors.toList());
+            }
+            expand(Math.min(2 * rows.size(), maxStates));
+        }
+    }
+
+    /**
+     * Returns the number of states in the current projection.
+     *
+     * @return the number of states in the current projection
+     */
+    public int numberOfStates() {
+        return rows.size();
+    }
+
+    private List<Map<PopulationState, Double>> solve(ContinuousTimeMarkovChain<PopulationState> chain, List<Double> times) {
+        if (chain.getMaxRate() == 0.0) {
+            return times.stream().map(t -> Map.of(init, 1.0)).collect(Collectors.toList());
+        }
+        return new TransientProbabilityContinuousSolver<>(chain, epsilon, init).compute(times);
+    }
+
+    private Result getResult(Map<PopulationState, Double> distribution) {
+        Map<PopulationState, Double> probabilities = new HashMap<>(distribution);
+        double error = Optional.ofNullable(probabilities.remove(SINK)).orElse(0.0);
+        return new Result(probabilities, error);
+    }
+
+    private void expand(int size) {
+        while ((rows.size() < size) && !boundary.isEmpty()) {
+            PopulationState s = boundary.poll();
+            Map<PopulationState, Double> row = model.next(0.0, s);
+            rows.put(s, row);
+            for (PopulationState s2 : row.keySet()) {
+                if (discovered.add(s2)) {
+                    boundary.add(s2);
+                }
+            }
+        }
+    }
+
+    private ContinuousTimeMarkovChain<PopulationState> buildChain() {
+        ContinuousTimeMarkovChain<PopulationState> chain = new ContinuousTimeMarkovChain<>();
+        rows.forEach((s, row) -> {
+            Map<PopulationState, Double> truncatedRow = new HashMap<>();
+            row.forEach((s2, rate) -> truncatedRow.merge(rows.containsKey(s2) ? s2 : SINK, rate, Double::sum));
+            chain.add(s, truncatedRow);
+        });
+        chain.add(SINK, new HashMap<>());
+        return chain;
+    }
+
+    /**
+     * The transient distribution computed on a projection, together with the probability mass that
+     * left the projection.
+     */
+    public static class Result {
+
+        private final Map<PopulationState, Double> distribution;
+        private final double errorBound;
+
+        private Result(Map<PopulationState, Double> distribution, double errorBound) {
+            this.distribution = distribution;
+            this.errorBound = errorBound;
+        }
+
+        /**
+         * Returns the probability of each state in the projection. Each value is a lower bound of the
+         * exact probability.
+         *
+         * @return the probability of each state in the projection
+         */
+        public Map<PopulationState, Double> getDistribution() {
+            return distribution;
+        }
+
+        /**
+         * Returns the probability mass that left the projection. The exact probability of any set of
+         * states is at most this value greater than the one computed on the projection.
+         *
+         * @return the truncation error
+         */
+        public double getErrorBound() {
+            return errorBound;
+        }
+
+        /**
+         * Returns the (lower bound of the) probability of the states satisfying the given predicate.
+         *
+         * @param predicate a predicate on states
+         * @return the probability of the states satisfying the predicate
+         */
+        public double probability(Predicate<PopulationState> predicate) {
+            return distribution.entrySet().stream().filter(e -> predicate.test(e.getKey())).mapToDouble(Map.Entry::getValue).sum();
+        }
+
+        /**
+         * Returns the expected value of the given function computed on the projection.
+         *
+         * @param f a function on states
+         * @return the expected value of <code>f</code>
+         */
+        public double expectedValue(ToDoubleFunction<PopulationState> f) {
+            return distribution.entrySet().stream().mapToDouble(e -> e.getValue() * f.applyAsDouble(e.getKey())).sum();
+        }
+    }
+}
@@ -79,6 +79,49 @@ public class PopulationModel extends AbstractModel<PopulationState> implements C
         return activities;
     }
 
+    /**
+     * Returns the states reachable in one step from the given state together with the rate of
+     * reaching each of them. Transitions that do not change the state are ignored.
+     *
+     * @param now current time
+     * @param state current state
+     * @return the map associating each successor of <code>state</code> with its rate.
+     * @throws IllegalArgumentException if a rule of this model does not support numerical analysis.
+     */
+    public Map<PopulationState, Double> next(double now, PopulationState state) {
+        Map<PopulationState, Double> toReturn = new HashMap<>();
+        for (PopulationRule rule : rules) {
+            List<WeightedElement<Update>> updates = rule.updates(now, state)
+                    .orElseThrow(() -> notEnumerable(rule));
+            for (WeightedElement<Update> u : updates) {
+                PopulationState next = state.apply(u.getElement());
+                if (!next.equals(state)) {
+                    toReturn.merge(next, u.getWeight(), Double::sum);
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Checks that the successors of each state can be enumerated, namely that all the rules of this
+     * model support numerical analysis.
+     *
+     * @throws IllegalArgumentException if a rule of this model does not support numerical analysis.
+     */
+    public void requireEnumerableUpdates() {
+        for (PopulationRule rule : rules) {
+            if (!rule.hasEnumerableUpdates()) {
+                throw notEnumerable(rule);
+            }
+        }
+    }
+
+    private static IllegalArgumentException notEnumerable(PopulationRule rule) {
+        return new IllegalArgumentException("Rule " + rule.getClass().getSimpleName()
+                + " does not support numerical analysis: its updates are randomly sampled!");
+    }
+
     public static Map<String, Integer> createPopulation(String... species) {
         HashMap<String, Integer> map = new HashMap<>();
         IntStream.range(0, species.length).forEach(i -> map.put(species[i], i));
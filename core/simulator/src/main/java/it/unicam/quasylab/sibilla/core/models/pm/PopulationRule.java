@@ -25,9 +25,12 @@
  */
 package it.unicam.quasylab.sibilla.core.models.pm;
 
+import it.unicam.quasylab.sibilla.core.simulator.util.WeightedElement;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -45,6 +48,30 @@ public interface PopulationRule extends Serializable {
 	 */
 	PopulationTransition apply( RandomGenerator r , double now, PopulationState state );
 
+	/**
+	 * Returns the updates enabled by this rule in the given state, each weighted with its rate.
+	 * This is used by numerical analyses that need the exact successors of a state.
+	 *
+	 * @param now current time
+	 * @param state current state
+	 * @return the list of enabled updates with their rates, or an empty optional if
+	 * {@link #hasEnumerableUpdates()} is false.
+	 */
+	default Optional<List<WeightedElement<Update>>> updates( double now, PopulationState state ) {
+		return Optional.empty();
+	}
+
+	/**
+	 * Returns true if the updates enabled by this rule can be enumerated via
+	 * {@link #updates(double, PopulationState)}. Rules whose updates are computed by
+	 * sampling random functions, like the next state of senders and receivers, cannot.
+	 *
+	 * @return true if this rule supports numerical analysis.
+	 */
+	default boolean hasEnumerableUpdates() {
+		return false;
+	}
+
 
 	static Function<PopulationState,Double> fractionOf(int idx) {
 		return s -> s.getFraction(idx);
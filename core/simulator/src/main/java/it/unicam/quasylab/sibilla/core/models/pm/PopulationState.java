@@ -224,6 +224,18 @@ public class PopulationState implements ImmutableState {
         return Arrays.toString(populationVector);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(populationVector, ((PopulationState) o).populationVector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(populationVector);
+    }
+
     public int size() {
         return populationVector.length;
     }
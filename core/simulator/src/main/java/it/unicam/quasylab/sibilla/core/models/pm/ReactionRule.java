@@ -25,11 +25,14 @@
  */
 package it.unicam.quasylab.sibilla.core.models.pm;
 
+import it.unicam.quasylab.sibilla.core.simulator.util.WeightedElement;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 /**
@@ -102,6 +105,22 @@ public class ReactionRule implements PopulationRule, Serializable {
 		return null;
 	}
 	
+	@Override
+	public Optional<List<WeightedElement<Update>>> updates(double now, PopulationState state) {
+		if (isEnabled(state)) {
+			double rate = rateFunction.apply(now,state);
+			if (rate>0&&Double.isFinite(rate)) {
+				return Optional.of(List.of(new WeightedElement<>(rate, update)));
+			}
+		}
+		return Optional.of(List.of());
+	}
+	
+	@Override
+	public boolean hasEnumerableUpdates() {
+		return true;
+	}
+
 	private boolean isEnabled(PopulationState state) {
 		if ((guard != null)&&(!guard.test(state))) {
 			return false;
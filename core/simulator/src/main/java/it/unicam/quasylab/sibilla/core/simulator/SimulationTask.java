@@ -72,9 +72,19 @@ public class SimulationTask<S extends State> implements Supplier<Long>, Serializ
 
 	@Override
 	public Long get() {
+		return get(this.unit.getSamplingHandler());
+	}
+
+	/**
+	 * Runs this task recording the simulation steps in the given handler instead of
+	 * in the one provided by the simulation unit.
+	 *
+	 * @param handler the handler used to collect the data of the simulation.
+	 * @return the time, in milliseconds, needed to complete the simulation.
+	 */
+	public Long get(SamplingHandler<S> handler) {
 		running();
 		long start = System.currentTimeMillis();
-		SamplingHandler<S> handler = this.unit.getSamplingHandler();
 		SimulatorCursor<S> cursor = this.unit.getSimulationCursor(this.random);
 		cursor.start();
 		handler.start();
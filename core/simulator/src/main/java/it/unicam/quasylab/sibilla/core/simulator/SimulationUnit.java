@@ -54,7 +54,11 @@ public class SimulationUnit<S extends State> implements Serializable {
 	
 	private StatePredicate<? super S> reachPredicate;
 
-	private Supplier<SamplingHandler<S>> handlerSupplier;
+	/**
+	 * Sampling handlers are not serialized together with the unit: data collected on a
+	 * remote host are gathered by a sampling function provided there.
+	 */
+	private transient Supplier<SamplingHandler<S>> handlerSupplier;
 
 	public SimulationUnit(Model<S> model, Function<RandomGenerator,S> state, Supplier<SamplingHandler<S>> handlerSupplier, SamplePredicate<? super S> stoppingPredicate) {
 		this(model,state,handlerSupplier,stoppingPredicate,StatePredicate.TRUE);
@@ -85,6 +89,9 @@ public class SimulationUnit<S extends State> implements Serializable {
 	}
 
 	public SamplingHandler<S> getSamplingHandler() {
+		if (handlerSupplier == null) {
+			throw new IllegalStateException("No sampling handler is available for this simulation unit");
+		}
 		return handlerSupplier.get();
 	}
 
@@ -91,31 +91,14 @@ public class DescriptiveStatisticSampling<S extends State> extends StatisticSamp
 			out.printf("%c%f",separator, this.data[i].getMin());//Print min value
 			out.printf("%c%f",separator, this.data[i].getPercentile(25));//Print first quartile
 			out.printf("%c%f",separator, this.data[i].getMean());//Print mean
-			out.printf("%c%f",separator, getMedian(i));//Print median
-			out.printf("%c%f",separator, this.data[i].getPercentile(25));//Print third quartile
+			out.printf("%c%f",separator, this.data[i].getPercentile(50));//Print median
+			out.printf("%c%f",separator, this.data[i].getPercentile(75));//Print third quartile
 			out.printf("%c%f\n",separator, this.data[i].getMax());//Print first quartile
 			time += dt;
 		}
 		out.close();
 	}
 
-	private double getMedian(int i) {
-		long n = this.data[i].getN();
-		if (n == 0) {
-			return Double.NaN;
-		}
-		int idx = (int) n/2;
-		if (n%2==0) {
-			double v1 = this.data[i].getElement(idx);
-			double v2 = this.data[i].getElement(idx-1);
-			return (v1+v2)/2;
-		} else {
-			return this.data[i].getElement(idx+1);
-		}
-	}
-
-
-
 	@Override
 	public synchronized int getSize() {
 		return data.length;
@@ -131,6 +114,24 @@ public class DescriptiveStatisticSampling<S extends State> extends StatisticSamp
 		}
 	}
 
+	@Override
+	public SamplingFunction<S> getEmptyCopy() {
+		return new DescriptiveStatisticSampling<>(data.length, dt, measure);
+	}
+
+	@Override
+	public synchronized void merge(SamplingFunction<S> other) {
+		if (!(other instanceof DescriptiveStatisticSampling)||(((DescriptiveStatisticSampling<S>) other).data.length != data.length)) {
+			throw new IllegalArgumentException("Incompatible sampling function: "+other);
+		}
+		DescriptiveStatistics[] otherData = ((DescriptiveStatisticSampling<S>) other).data;
+		for(int i=0; i<data.length; i++) {
+			for (double v: otherData[i].getValues()) {
+				data[i].addValue(v);
+			}
+		}
+	}
+
 	@Override
 	protected synchronized double[] getDataRow(int i) {
 		return new double[] {getTimeOfIndex(i),
@@ -0,0 +1,146 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.simulator.sampling;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+
+import java.io.Serializable;
+
+/**
+ * Summary statistics of a set of values that only stores the sufficient statistics
+ * needed to compute mean and variance (number of values, mean and sum of squared
+ * deviations from the mean) together with minimum and maximum. Two summaries can be
+ * merged without accessing the original values, so that partial statistics computed
+ * on different hosts can be combined.
+ *
+ * @author loreti
+ */
+public class MergeableSummaryStatistics implements StatisticalSummary, Serializable {
+
+	private static final long serialVersionUID = 4366204463373522138L;
+
+	private long n = 0;
+
+	private double mean = 0.0;
+
+	private double m2 = 0.0;
+
+	private double min = Double.NaN;
+
+	private double max = Double.NaN;
+
+	/**
+	 * Adds a value to this summary.
+	 *
+	 * @param value the value to add.
+	 */
+	public synchronized void addValue(double value) {
+		n++;
+		double delta = value - mean;
+		mean += delta / n;
+		m2 += delta * (value - mean);
+		if (n == 1) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+	}
+
+	/**
+	 * Adds to this summary all the values summarised by <code>other</code>.
+	 *
+	 * @param other the summary to merge in this one.
+	 */
+	public synchronized void merge(MergeableSummaryStatistics other) {
+		long otherN;
+		double otherMean, otherM2, otherMin, otherMax;
+		synchronized (other) {
+			otherN = other.n;
+			otherMean = other.mean;
+			otherM2 = other.m2;
+			otherMin = other.min;
+			otherMax = other.max;
+		}
+		if (otherN == 0) {
+			return;
+		}
+		if (n == 0) {
+			n = otherN;
+			mean = otherMean;
+			m2 = otherM2;
+			min = otherMin;
+			max = otherMax;
+			return;
+		}
+		long total = n + otherN;
+		double delta = otherMean - mean;
+		mean += delta * otherN / total;
+		m2 += otherM2 + delta * delta * ((double) n * otherN / total);
+		n = total;
+		min = Math.min(min, otherMin);
+		max = Math.max(max, otherMax);
+	}
+
+	@Override
+	public synchronized double getMean() {
+		return (n == 0 ? Double.NaN : mean);
+	}
+
+	@Override
+	public synchronized double getVariance() {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		return (n == 1 ? 0.0 : m2 / (n - 1));
+	}
+
+	@Override
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public synchronized double getMax() {
+		return max;
+	}
+
+	@Override
+	public synchronized double getMin() {
+		return min;
+	}
+
+	@Override
+	public synchronized long getN() {
+		return n;
+	}
+
+	@Override
+	public synchronized double getSum() {
+		return mean * n;
+	}
+
+}
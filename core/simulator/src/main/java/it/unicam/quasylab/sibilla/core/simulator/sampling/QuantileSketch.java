@@ -0,0 +1,273 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.simulator.sampling;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mergeable summary of a set of values that answers percentile queries in bounded memory. Values
+ * are stored in levels, where a value at level <code>h</code> stands for <code>2^h</code> values.
+ * When a level contains <code>capacity</code> values it is compacted: its values are sorted and
+ * every other one is promoted to the next level. Percentiles are exact until the first compaction,
+ * then the rank error is bounded by the number of levels divided by <code>capacity</code>. Number of
+ * values, mean, minimum and maximum are always exact. Two sketches can be merged without accessing
+ * the original values, so that partial statistics computed on different hosts can be combined
+ * sending at most <code>capacity</code> values for each level.
+ *
+ * @author loreti
+ */
+public class QuantileSketch implements Serializable {
+
+	private static final long serialVersionUID = -2873164410315437806L;
+
+	/**
+	 * Default number of values stored in each level.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int capacity;
+
+	private final MergeableSummaryStatistics summary = new MergeableSummaryStatistics();
+
+	private final List<Level> levels = new ArrayList<>();
+
+	/**
+	 * Creates an empty sketch storing {@link #DEFAULT_CAPACITY} values for each level.
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty sketch storing the given number of values for each level.
+	 *
+	 * @param capacity number of values stored in each level.
+	 */
+	public QuantileSketch(int capacity) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("The capacity of a sketch must be at least 2");
+		}
+		this.capacity = capacity;
+		this.levels.add(new Level(capacity));
+	}
+
+	/**
+	 * Returns the number of values stored in each level.
+	 *
+	 * @return the number of values stored in each level.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Adds a value to this sketch.
+	 *
+	 * @param value the value to add.
+	 */
+	public synchronized void addValue(double value) {
+		summary.addValue(value);
+		levels.get(0).add(value);
+		compress();
+	}
+
+	/**
+	 * Adds to this sketch all the values summarised by <code>other</code>.
+	 *
+	 * @param other the sketch to merge in this one.
+	 */
+	public synchronized void merge(QuantileSketch other) {
+		List<double[]> otherLevels = new ArrayList<>();
+		synchronized (other) {
+			summary.merge(other.summary);
+			for (Level l : other.levels) {
+				otherLevels.add(Arrays.copyOf(l.values, l.size));
+			}
+		}
+		for (int h = 0; h < otherLevels.size(); h++) {
+			if (h == levels.size()) {
+				levels.add(new Level(capacity));
+			}
+			levels.get(h).addAll(otherLevels.get(h), otherLevels.get(h).length);
+		}
+		compress();
+	}
+
+	private void compress() {
+		for (int h = 0; h < levels.size(); h++) {
+			Level level = levels.get(h);
+			if (level.size >= capacity) {
+				if (h + 1 == levels.size()) {
+					levels.add(new Level(capacity));
+				}
+				level.compactTo(levels.get(h + 1));
+			}
+		}
+	}
+
+	/**
+	 * Returns an estimate of the given percentile of the values added to this sketch.
+	 *
+	 * @param p the requested percentile, in the range (0,100].
+	 * @return an estimate of the percentile, or {@link Double#NaN} if the sketch is empty.
+	 */
+	public synchronized double getPercentile(double p) {
+		if ((p <= 0) || (p > 100)) {
+			throw new IllegalArgumentException("Percentile must be in the range (0,100]: " + p);
+		}
+		if (summary.getN() == 0) {
+			return Double.NaN;
+		}
+		if (levels.size() == 1) {
+			Level level = levels.get(0);
+			return new Percentile().evaluate(level.values, 0, level.size, p);
+		}
+		int retained = getRetainedValues();
+		double[] values = new double[retained];
+		long[] weights = new long[retained];
+		Integer[] order = new Integer[retained];
+		int k = 0;
+		for (int h = 0; h < levels.size(); h++) {
+			Level level = levels.get(h);
+			for (int i = 0; i < level.size; i++) {
+				values[k] = level.values[i];
+				weights[k] = 1L << h;
+				order[k] = k;
+				k++;
+			}
+		}
+		Arrays.sort(order, (i, j) -> Double.compare(values[i], values[j]));
+		double target = p / 100 * summary.getN();
+		long cumulated = 0;
+		for (int i : order) {
+			cumulated += weights[i];
+			if (cumulated >= target) {
+				return values[i];
+			}
+		}
+		return summary.getMax();
+	}
+
+	/**
+	 * Returns the number of values actually stored by this sketch.
+	 *
+	 * @return the number of values stored by this sketch.
+	 */
+	public synchronized int getRetainedValues() {
+		return levels.stream().mapToInt(l -> l.size).sum();
+	}
+
+	public synchronized long getN() {
+		return summary.getN();
+	}
+
+	public synchronized double getMean() {
+		return summary.getMean();
+	}
+
+	public synchronized double getMin() {
+		return summary.getMin();
+	}
+
+	public synchronized double getMax() {
+		return summary.getMax();
+	}
+
+	/**
+	 * Values stored at a given level of the sketch.
+	 */
+	private static class Level implements Serializable {
+
+		private static final long serialVersionUID = 5167431928815240372L;
+
+		private transient double[] values;
+
+		private int size;
+
+		/**
+		 * Alternates the values promoted by compactions, so that their errors compensate.
+		 */
+		private boolean odd;
+
+		private Level(int capacity) {
+			this.values = new double[capacity];
+		}
+
+		private void add(double value) {
+			ensureCapacity(size + 1);
+			values[size++] = value;
+		}
+
+		private void addAll(double[] others, int length) {
+			ensureCapacity(size + length);
+			System.arraycopy(others, 0, values, size, length);
+			size += length;
+		}
+
+		private void ensureCapacity(int required) {
+			if (required > values.length) {
+				values = Arrays.copyOf(values, Math.max(required, 2 * values.length));
+			}
+		}
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			out.defaultWriteObject();
+			for (int i = 0; i < size; i++) {
+				out.writeDouble(values[i]);
+			}
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.defaultReadObject();
+			values = new double[Math.max(size, 1)];
+			for (int i = 0; i < size; i++) {
+				values[i] = in.readDouble();
+			}
+		}
+
+		private void compactTo(Level next) {
+			Arrays.sort(values, 0, size);
+			int even = size - size % 2;
+			for (int i = (odd ? 1 : 0); i < even; i += 2) {
+				next.add(values[i]);
+			}
+			odd = !odd;
+			if (size % 2 == 1) {
+				values[0] = values[size - 1];
+			}
+			size = size % 2;
+		}
+
+	}
+
+}
@@ -81,4 +81,20 @@ public class SamplingCollection<S extends State> implements SamplingFunction<S>
 	public void add(SamplingFunction<S> f) {
 		functions.add(f);
 	}
+
+	@Override
+	public SamplingFunction<S> getEmptyCopy() {
+		return new SamplingCollection<>(functions.stream().map(SamplingFunction::getEmptyCopy).collect(Collectors.toList()));
+	}
+
+	@Override
+	public void merge(SamplingFunction<S> other) {
+		if (!(other instanceof SamplingCollection)||(((SamplingCollection<S>) other).size() != size())) {
+			throw new IllegalArgumentException("Incompatible sampling function: "+other);
+		}
+		Iterator<SamplingFunction<S>> otherFunctions = ((SamplingCollection<S>) other).functions.iterator();
+		for (SamplingFunction<S> f: functions) {
+			f.merge(otherFunctions.next());
+		}
+	}
 }
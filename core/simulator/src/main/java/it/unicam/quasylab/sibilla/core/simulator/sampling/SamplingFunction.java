@@ -66,4 +66,22 @@ public interface SamplingFunction<S> extends Serializable {
 
 	Map<String, double[][]> getSimulationTimeSeries();
 
+	/**
+	 * Returns a sampling function that collects the same measures of this one but that
+	 * does not contain any data. Data collected by the returned function can be added to
+	 * this one via {@link SamplingFunction#merge(SamplingFunction)}. This is used to collect
+	 * partial statistics on remote hosts.
+	 *
+	 * @return an empty copy of this sampling function.
+	 */
+	SamplingFunction<S> getEmptyCopy();
+
+	/**
+	 * Adds to this sampling function the data collected by <code>other</code>. The given function
+	 * must have been obtained from {@link SamplingFunction#getEmptyCopy()}.
+	 *
+	 * @param other the sampling function whose data are added to this one.
+	 */
+	void merge(SamplingFunction<S> other);
+
 }
@@ -26,19 +26,46 @@ package it.unicam.quasylab.sibilla.core.simulator.sampling;
 import it.unicam.quasylab.sibilla.core.models.State;
 
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 /**
+ * Sampling function that prints the sampled states on the standard output. The copies obtained via
+ * {@link #getEmptyCopy()}, used to sample on remote hosts, record the lines instead of printing them,
+ * the lines are then printed when the copy is merged in the original function.
+ *
  * @author loreti
  *
  */
 public class SamplingLog<S extends State> implements SamplingFunction<S> {
 
+	private static final long serialVersionUID = 1L;
+
 	private final double dt;
 
+	/**
+	 * Lines recorded by this function, null if the lines are printed.
+	 */
+	private final List<String> lines;
+
 	public SamplingLog(double dt) {
+		this(dt, null);
+	}
+
+	private SamplingLog(double dt, List<String> lines) {
 		this.dt = dt;
+		this.lines = lines;
+	}
+
+	private void log(String line) {
+		if (lines == null) {
+			System.out.println(line);
+		} else {
+			synchronized (lines) {
+				lines.add(line);
+			}
+		}
 	}
 
 
@@ -51,14 +78,14 @@ public class SamplingLog<S extends State> implements SamplingFunction<S> {
 			@Override
 			public void sample(double time, S context) {
 				while (time >= last_time) {
-					System.out.println(last_time + ": " + context.toString());
+					log(last_time + ": " + context.toString());
 					this.last_time += dt;
 				}
 			}
 
 			@Override
 			public void end(double time) {
-				System.out.println(time + ": END");
+				log(time + ": END");
 			}
 
 			@Override
@@ -77,4 +104,20 @@ public class SamplingLog<S extends State> implements SamplingFunction<S> {
 		return Map.of();
 	}
 
+	@Override
+	public SamplingFunction<S> getEmptyCopy() {
+		return new SamplingLog<>(dt, new LinkedList<>());
+	}
+
+	@Override
+	public void merge(SamplingFunction<S> other) {
+		if (!(other instanceof SamplingLog)||(((SamplingLog<S>) other).lines == null)) {
+			throw new IllegalArgumentException("Incompatible sampling function: "+other);
+		}
+		List<String> otherLines = ((SamplingLog<S>) other).lines;
+		synchronized (otherLines) {
+			otherLines.forEach(this::log);
+		}
+	}
+
 }
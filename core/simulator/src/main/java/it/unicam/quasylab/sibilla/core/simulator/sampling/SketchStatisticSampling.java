@@ -0,0 +1,165 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.simulator.sampling;
+
+import it.unicam.quasylab.sibilla.core.models.MeasureFunction;
+import it.unicam.quasylab.sibilla.core.models.State;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.function.Function;
+
+
+/**
+ * Sampling function that, like {@link DescriptiveStatisticSampling}, collects min, quartiles,
+ * mean and max of a measure, but estimates the percentiles with a {@link QuantileSketch}. Unlike
+ * the exact statistics, partial results computed on different hosts are merged sending a bounded
+ * number of values for each sample.
+ *
+ * @author loreti
+ *
+ */
+public class SketchStatisticSampling<S extends State> extends StatisticSampling<S> {
+
+	private final QuantileSketch[] data;
+
+	private final int capacity;
+
+	public static <S extends State> StatisticSampling<S> measure(String name, int samplings, double deadline, MeasureFunction<S> m) {
+		return measure(name, samplings, deadline, m, QuantileSketch.DEFAULT_CAPACITY);
+	}
+
+	public static <S extends State> StatisticSampling<S> measure(String name, int samplings, double deadline, MeasureFunction<S> m, int capacity) {
+		return new SketchStatisticSampling<>(samplings, deadline / samplings,
+				new Measure<>() {
+
+					@Override
+					public double measure(S t) {
+						return m.apply(t);
+					}
+
+					@Override
+					public String getName() {
+						return name;
+					}
+
+				}, capacity);
+
+	}
+
+
+
+	public SketchStatisticSampling(int samples, double dt, Measure<? super S> measure) {
+		this(samples, dt, measure, QuantileSketch.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a sampling function whose percentiles are estimated by sketches storing the given
+	 * number of values for each level, see {@link QuantileSketch}.
+	 *
+	 * @param samples number of samples.
+	 * @param dt time between two samples.
+	 * @param measure the sampled measure.
+	 * @param capacity number of values stored in each level of the sketches.
+	 */
+	public SketchStatisticSampling(int samples, double dt, Measure<? super S> measure, int capacity) {
+		super(measure, dt);
+		this.data = new QuantileSketch[samples];
+		this.capacity = capacity;
+		init();
+	}
+
+	@Override
+	protected void init() {
+		for (int i = 0; i < data.length; i++) {
+			data[i] = new QuantileSketch(capacity);
+		}
+	}
+
+
+
+
+	@Override
+	public synchronized void printTimeSeries(Function<String, String> nameFunction, char separator, double significance) throws FileNotFoundException {
+
+		String fileName = nameFunction.apply(this.getName());
+		PrintStream out = new PrintStream(fileName);
+		double time = 0.0;
+		for (int i = 0; i < this.data.length; i++) {
+			out.printf("%f",time);//Print time
+			out.printf("%c%f",separator, this.data[i].getMin());//Print min value
+			out.printf("%c%f",separator, this.data[i].getPercentile(25));//Print first quartile
+			out.printf("%c%f",separator, this.data[i].getMean());//Print mean
+			out.printf("%c%f",separator, this.data[i].getPercentile(50));//Print median
+			out.printf("%c%f",separator, this.data[i].getPercentile(75));//Print third quartile
+			out.printf("%c%f\n",separator, this.data[i].getMax());//Print first quartile
+			time += dt;
+		}
+		out.close();
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return data.length;
+	}
+
+	@Override
+	protected synchronized void recordValues(double[] values) {
+		if (values.length != data.length) {
+			throw new IllegalArgumentException();//TODO: Add Message!
+		}
+		for(int i=0; i<values.length; i++) {
+			data[i].addValue(values[i]);
+		}
+	}
+
+	@Override
+	public SamplingFunction<S> getEmptyCopy() {
+		return new SketchStatisticSampling<>(data.length, dt, measure, capacity);
+	}
+
+	@Override
+	public synchronized void merge(SamplingFunction<S> other) {
+		if (!(other instanceof SketchStatisticSampling)||(((SketchStatisticSampling<S>) other).data.length != data.length)) {
+			throw new IllegalArgumentException("Incompatible sampling function: "+other);
+		}
+		QuantileSketch[] otherData = ((SketchStatisticSampling<S>) other).data;
+		for(int i=0; i<data.length; i++) {
+			data[i].merge(otherData[i]);
+		}
+	}
+
+	@Override
+	protected synchronized double[] getDataRow(int i) {
+		return new double[] {getTimeOfIndex(i),
+				data[i].getMin(),
+				data[i].getPercentile(25),
+				data[i].getMean(),
+				data[i].getPercentile(50),
+				data[i].getPercentile(75),
+				data[i].getMax()
+		};
+	}
+
+}
\ No newline at end of file
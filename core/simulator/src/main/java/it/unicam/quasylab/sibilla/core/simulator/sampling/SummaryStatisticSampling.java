@@ -26,7 +26,6 @@ package it.unicam.quasylab.sibilla.core.simulator.sampling;
 import it.unicam.quasylab.sibilla.core.models.MeasureFunction;
 import it.unicam.quasylab.sibilla.core.models.State;
 import org.apache.commons.math3.distribution.TDistribution;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
@@ -40,7 +39,7 @@ import java.util.function.Function;
  */
 public class SummaryStatisticSampling<S extends State> extends StatisticSampling<S> {
 
-	private final SummaryStatistics[] data;
+	private final MergeableSummaryStatistics[] data;
 
 	public static <S extends State> StatisticSampling<S> measure(String name, int samplings, double deadline, MeasureFunction<S> m) {
 		return new SummaryStatisticSampling<>(samplings, deadline / samplings,
@@ -64,14 +63,14 @@ public class SummaryStatisticSampling<S extends State> extends StatisticSampling
 
 	public SummaryStatisticSampling(int samples, double dt, Measure<? super S> measure) {
 		super(measure, dt);
-		this.data = new SummaryStatistics[samples];
+		this.data = new MergeableSummaryStatistics[samples];
 		init();
 	}
 
 	@Override
 	protected void init() {
 		for (int i = 0; i < data.length; i++) {
-			data[i] = new SummaryStatistics();
+			data[i] = new MergeableSummaryStatistics();
 		}
 	}
 
@@ -85,6 +84,22 @@ public class SummaryStatisticSampling<S extends State> extends StatisticSampling
 		}
 	}
 
+	@Override
+	public SamplingFunction<S> getEmptyCopy() {
+		return new SummaryStatisticSampling<>(data.length, dt, measure);
+	}
+
+	@Override
+	public synchronized void merge(SamplingFunction<S> other) {
+		if (!(other instanceof SummaryStatisticSampling)||(((SummaryStatisticSampling<S>) other).data.length != data.length)) {
+			throw new IllegalArgumentException("Incompatible sampling function: "+other);
+		}
+		MergeableSummaryStatistics[] otherData = ((SummaryStatisticSampling<S>) other).data;
+		for(int i=0; i<data.length; i++) {
+			data[i].merge(otherData[i]);
+		}
+	}
+
 
 	@Override
 	public void printTimeSeries(Function<String, String> nameFunction, char separator, double significance) throws FileNotFoundException {
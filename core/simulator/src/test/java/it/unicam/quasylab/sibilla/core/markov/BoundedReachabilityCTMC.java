@@ -0,0 +1,132 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoundedReachabilityCTMC {
+
+	private static final int N = 6;
+	private static final double UP = 2.0;
+	private static final double DOWN = 1.0;
+
+	@Test
+	void testSparseIterationMatchesDenseUniformisation() {
+		ContinuousTimeMarkovChain<Integer> ctmc = generateCTMC();
+		Predicate<Integer> goal = s -> s == N;
+		BoundedReachabilityContinuousSolver<Integer> solver = new BoundedReachabilityContinuousSolver<>(ctmc, 1.0E-10, goal);
+		for (double t : new double[] { 0.1, 0.5, 1.0, 2.0, 5.0 }) {
+			Map<Integer,Double> prob = solver.compute(t);
+			double[] expected = denseReachability(ctmc, s -> true, goal, t);
+			for( int s=0 ; s<=N ; s++ ) {
+				assertEquals(expected[s], prob.getOrDefault(s, 0.0), 1.0E-7);
+			}
+		}
+	}
+
+	@Test
+	void testSparseIterationWithConditionMatchesDenseUniformisation() {
+		ContinuousTimeMarkovChain<Integer> ctmc = generateCTMC();
+		Predicate<Integer> condition = s -> s > 0;
+		Predicate<Integer> goal = s -> s == N;
+		BoundedReachabilityContinuousSolver<Integer> solver = new BoundedReachabilityContinuousSolver<>(ctmc, 1.0E-10, condition, goal);
+		for (double t : new double[] { 0.5, 2.0, 5.0 }) {
+			Map<Integer,Double> prob = solver.compute(t);
+			double[] expected = denseReachability(ctmc, condition, goal, t);
+			for( int s=0 ; s<=N ; s++ ) {
+				assertEquals(expected[s], prob.getOrDefault(s, 0.0), 1.0E-7);
+			}
+		}
+	}
+
+	@Test
+	void testEarlyTerminationConvergesToUnboundedReachability() {
+		ContinuousTimeMarkovChain<Integer> ctmc = generateCTMC();
+		BoundedReachabilityContinuousSolver<Integer> solver = new BoundedReachabilityContinuousSolver<>(ctmc, 1.0E-10, s -> s > 0, s -> s == N);
+		Map<Integer,Double> prob = solver.compute(10000.0);
+		double r = DOWN/UP;
+		for( int s=1 ; s<N ; s++ ) {
+			// gambler's ruin: probability of reaching N before 0
+			assertEquals((1-Math.pow(r, s))/(1-Math.pow(r, N)), prob.get(s), 1.0E-6);
+		}
+	}
+
+	/**
+	 * Birth-death chain on 0..N: each state moves up with rate UP and down with rate DOWN.
+	 */
+	private ContinuousTimeMarkovChain<Integer> generateCTMC() {
+		ContinuousTimeMarkovChain<Integer> ctmc = new ContinuousTimeMarkovChain<>();
+		for( int s=0 ; s<=N ; s++ ) {
+			Map<Integer,Double> next = new HashMap<>();
+			if (s<N) {
+				next.put(s+1, UP);
+			}
+			if (s>0) {
+				next.put(s-1, DOWN);
+			}
+			ctmc.add(s, next);
+		}
+		return ctmc;
+	}
+
+	/**
+	 * Computes the bounded reachability with dense matrices, summing all the terms of the uniformisation
+	 * series without any early termination.
+	 */
+	private double[] denseReachability(ContinuousTimeMarkovChain<Integer> ctmc, Predicate<Integer> condition,
+			Predicate<Integer> goal, double t) {
+		double q = ctmc.getMaxRate();
+		RealMatrix p = new Array2DRowRealMatrix(N+1, N+1);
+		RealVector v = new ArrayRealVector(N+1);
+		for( int s=0 ; s<=N ; s++ ) {
+			if (goal.test(s)) {
+				p.setEntry(s, s, 1.0);
+				v.setEntry(s, 1.0);
+			} else if (condition.test(s)) {
+				for (Map.Entry<Integer,Double> e: ctmc.uniformisedMatrixRow(s).entrySet()) {
+					p.setEntry(s, e.getKey(), e.getValue());
+				}
+			}
+		}
+		RealVector result = new ArrayRealVector(N+1);
+		double weight = Math.exp(-q*t);
+		for( int k=0 ; k<1000 ; k++ ) {
+			result = result.add(v.mapMultiply(weight));
+			v = p.operate(v);
+			weight = weight*q*t/(k+1);
+		}
+		return result.toArray();
+	}
+
+}
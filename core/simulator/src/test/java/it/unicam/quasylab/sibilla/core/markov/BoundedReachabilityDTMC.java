@@ -0,0 +1,79 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoundedReachabilityDTMC {
+
+	@Test
+	void testBoundedReach() {
+		DiscreteTimeMarkovChain<Integer> dtmc = generateDTMC();
+		BoundedReachabilityDiscreteSolver<Integer> solver = new BoundedReachabilityDiscreteSolver<>(dtmc, s -> s.intValue()==2);
+		for( int k=1 ; k<20 ; k++ ) {
+			Map<Integer,Double> prob = solver.compute(k);
+			assertEquals(1-Math.pow(0.5, k), prob.get(0), 0.000001);
+			assertEquals(1.0, prob.get(2), 0.000001);
+		}
+		assertEquals(1-Math.pow(0.5, 3), solver.compute(3).get(0), 0.000001);
+	}
+
+	@Test
+	void testBoundedReachWithCondition() {
+		DiscreteTimeMarkovChain<Integer> dtmc = generateDTMC();
+		BoundedReachabilityDiscreteSolver<Integer> solver = new BoundedReachabilityDiscreteSolver<>(dtmc, s -> s.intValue()!=1, s -> s.intValue()==2);
+		Map<Integer,Double> prob = solver.compute(10);
+		assertEquals(1-Math.pow(0.5, 10), prob.get(0), 0.000001);
+		assertEquals(0.0, prob.getOrDefault(1, 0.0), 0.000001);
+	}
+
+	@Test
+	void testEarlyTermination() {
+		DiscreteTimeMarkovChain<Integer> dtmc = generateDTMC();
+		BoundedReachabilityDiscreteSolver<Integer> solver = new BoundedReachabilityDiscreteSolver<>(dtmc, 1.0E-10, s -> true, s -> s.intValue()==2);
+		assertEquals(1.0, solver.compute(10000).get(0), 0.000001);
+	}
+
+	private DiscreteTimeMarkovChain<Integer> generateDTMC() {
+		DiscreteTimeMarkovChain<Integer> dtmc = new DiscreteTimeMarkovChain<>();
+		Map<Integer,Double> next0 = new HashMap<>();
+		next0.put(0, 0.5);
+		next0.put(2, 0.5);
+		Map<Integer,Double> next1 = new HashMap<>();
+		next1.put(1, 1.0);
+		Map<Integer,Double> next2 = new HashMap<>();
+		next2.put(2, 1.0);
+		dtmc.add(0, next0);
+		dtmc.add(1, next1);
+		dtmc.add(2, next2);
+		return dtmc;
+	}
+
+}
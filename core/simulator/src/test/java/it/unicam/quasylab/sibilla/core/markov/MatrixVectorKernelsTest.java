@@ -0,0 +1,89 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MatrixVectorKernelsTest {
+
+	private static final int SIZE = 50000;
+
+	@Test
+	void testParallelMultiply() {
+		Random r = new Random(1);
+		Map<Integer,Map<Integer,Double>> rows = new HashMap<>();
+		Map<Integer,Integer> index = new HashMap<>();
+		for( int i=0 ; i<SIZE ; i++ ) {
+			index.put(i, i);
+			Map<Integer,Double> row = new HashMap<>();
+			int entries = r.nextInt(i%100==0?50:5);
+			for( int j=0 ; j<entries ; j++ ) {
+				row.put(r.nextInt(SIZE), r.nextDouble());
+			}
+			rows.put(i, row);
+		}
+		SparseMatrix m = SparseMatrix.generate(i -> rows.get(i).entrySet().stream(), index);
+		double[] x = r.doubles(SIZE).toArray();
+		double[] expected = new double[SIZE];
+		double[] actual = new double[SIZE];
+		m.multiply(x, expected);
+		new MatrixVectorKernels(4).multiply(m, x, actual);
+		assertArrayEquals(expected, actual, 0.0);
+	}
+
+	@Test
+	void testParallelVectorOperations() {
+		MatrixVectorKernels kernels = new MatrixVectorKernels(4);
+		double[] x = new double[SIZE];
+		double[] y = new double[SIZE];
+		for( int i=0 ; i<SIZE ; i++ ) {
+			x[i] = i;
+			y[i] = 1.0;
+		}
+		kernels.axpy(2.0, x, y);
+		assertEquals(2.0*(SIZE-1)+1.0, kernels.norm(y), 0.0);
+		kernels.scale(0.5, y);
+		assertEquals(SIZE-0.5, kernels.norm(y), 0.0);
+		assertEquals(SIZE-1, kernels.distance(x, new double[SIZE]), 0.0);
+	}
+
+	@Test
+	void testTransposedMatrix() {
+		Map<Integer,Integer> index = Map.of(0, 0, 1, 1);
+		SparseMatrix m = SparseMatrix.generateTransposed(i -> (i==0?Stream.of(Map.entry(1, 2.0)):Stream.empty()), index);
+		double[] y = new double[2];
+		m.multiply(new double[] { 1.0, 0.0 }, y);
+		assertArrayEquals(new double[] { 0.0, 2.0 }, y, 0.0);
+	}
+
+}
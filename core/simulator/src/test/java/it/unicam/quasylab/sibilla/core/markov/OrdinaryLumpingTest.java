@@ -0,0 +1,145 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrdinaryLumpingTest {
+
+	private static final int AGENTS = 6;
+
+	@Test
+	void testSymmetricAgentsAreLumped() {
+		ContinuousTimeMarkovChain<List<Integer>> ctmc = generateCTMC();
+		assertEquals(1 << AGENTS, ctmc.numberOfStates());
+		OrdinaryLumping<List<Integer>> lumping = OrdinaryLumping.lump(ctmc, List.of(allOn()));
+		assertEquals(AGENTS+1, lumping.numberOfBlocks());
+	}
+
+	@Test
+	void testTransientProbabilityOnQuotient() {
+		ContinuousTimeMarkovChain<List<Integer>> ctmc = generateCTMC();
+		List<Integer> init = Collections.nCopies(AGENTS, 0);
+		OrdinaryLumping<List<Integer>> lumping = OrdinaryLumping.lump(ctmc, List.of(allOn()));
+		ContinuousTimeMarkovChain<Integer> quotient = lumping.quotient(ContinuousTimeMarkovChain::new);
+		Map<List<Integer>, Double> expected = new TransientProbabilityContinuousSolver<>(ctmc, 1.0E-8, init).compute(1.5);
+		Map<Integer, Double> actual = new TransientProbabilityContinuousSolver<>(quotient, 1.0E-8, lumping.getBlock(init)).compute(1.5);
+		Map<Integer, Double> projected = lumping.project(expected);
+		for( int b=0 ; b<lumping.numberOfBlocks() ; b++ ) {
+			assertEquals(projected.get(b), actual.get(b), 0.000001);
+		}
+	}
+
+	@Test
+	void testReachabilityOnQuotient() {
+		ContinuousTimeMarkovChain<List<Integer>> ctmc = generateCTMC();
+		OrdinaryLumping<List<Integer>> lumping = OrdinaryLumping.lump(ctmc, List.of(allOn()));
+		ContinuousTimeMarkovChain<Integer> quotient = lumping.quotient(ContinuousTimeMarkovChain::new);
+		Map<List<Integer>, Double> expected = new BoundedReachabilityContinuousSolver<>(ctmc, 1.0E-8, allOn()).compute(2.0);
+		Map<List<Integer>, Double> actual = lumping.expand(new BoundedReachabilityContinuousSolver<>(quotient, 1.0E-8, lumping.lift(allOn())).compute(2.0));
+		expected.forEach((s, v) -> assertEquals(v, actual.get(s), 0.000001));
+	}
+
+	@Test
+	void testRatesInsideABlockDoNotPreventLumping() {
+		ContinuousTimeMarkovChain<String> ctmc = new ContinuousTimeMarkovChain<>();
+		ctmc.add("a", Map.of("b", 1.0, "c", 1.0));
+		ctmc.add("b", Map.of("a", 2.0, "c", 1.0));
+		ctmc.add("c", Map.of("a", 1.0));
+		OrdinaryLumping<String> lumping = OrdinaryLumping.lump(ctmc, s -> s.equals("c"));
+		assertEquals(2, lumping.numberOfBlocks());
+		assertEquals(lumping.getBlock("a"), lumping.getBlock("b"));
+	}
+
+	@Test
+	void testSymmetricAgentsWithSwapsAreLumped() {
+		OrdinaryLumping<List<Integer>> lumping = OrdinaryLumping.lump(generateCTMCWithSwaps(), List.of(allOn()));
+		assertEquals(AGENTS+1, lumping.numberOfBlocks());
+	}
+
+	@Test
+	void testSolversWithLumping() {
+		ContinuousTimeMarkovChain<List<Integer>> ctmc = generateCTMCWithSwaps();
+		List<Integer> init = Collections.nCopies(AGENTS, 0);
+		BoundedReachabilityContinuousSolver<List<Integer>> bounded = new BoundedReachabilityContinuousSolver<>(ctmc, 1.0E-8, allOn());
+		Map<List<Integer>, Double> expected = bounded.compute(2.0);
+		bounded.setLumping(true);
+		Map<List<Integer>, Double> actual = bounded.compute(2.0);
+		expected.forEach((s, v) -> assertEquals(v, actual.get(s), 0.000001));
+		UnboundedReachabilitySolver<List<Integer>> unbounded = new UnboundedReachabilitySolver<>(ctmc, s -> s.get(0) == 0, allOn());
+		Map<List<Integer>, Double> expectedUnbounded = unbounded.compute();
+		unbounded.setLumping(true);
+		Map<List<Integer>, Double> actualUnbounded = unbounded.compute();
+		expectedUnbounded.forEach((s, v) -> assertEquals(v, actualUnbounded.get(s), 0.000001));
+		TransientProbabilityContinuousSolver<List<Integer>> solver = new TransientProbabilityContinuousSolver<>(ctmc, 1.0E-8, init);
+		List<Double> expectedTransient = solver.compute(List.of(0.5, 1.5), allOn());
+		solver.setLumping(true);
+		List<Double> actualTransient = solver.compute(List.of(0.5, 1.5), allOn());
+		for( int i=0 ; i<expectedTransient.size() ; i++ ) {
+			assertEquals(expectedTransient.get(i), actualTransient.get(i), 0.000001);
+		}
+	}
+
+	private Predicate<List<Integer>> allOn() {
+		return s -> s.stream().allMatch(i -> i==1);
+	}
+
+	private ContinuousTimeMarkovChain<List<Integer>> generateCTMCWithSwaps() {
+		return MarkovChain.generateMarkovChain(ContinuousTimeMarkovChain::new, Collections.nCopies(AGENTS, 0), s -> {
+			Map<List<Integer>, Double> next = new HashMap<>();
+			for( int i=0 ; i<s.size() ; i++ ) {
+				List<Integer> s2 = new ArrayList<>(s);
+				s2.set(i, 1-s.get(i));
+				next.put(s2, (s.get(i)==0?2.0:0.5));
+				int j = (i+1)%s.size();
+				if (!s.get(i).equals(s.get(j))) {
+					List<Integer> s3 = new ArrayList<>(s);
+					s3.set(i, s.get(j));
+					s3.set(j, s.get(i));
+					MarkovChain.addTo(next, s3, 1.0);
+				}
+			}
+			return next;
+		});
+	}
+
+	private ContinuousTimeMarkovChain<List<Integer>> generateCTMC() {
+		return MarkovChain.generateMarkovChain(ContinuousTimeMarkovChain::new, Collections.nCopies(AGENTS, 0), s -> {
+			Map<List<Integer>, Double> next = new HashMap<>();
+			for( int i=0 ; i<s.size() ; i++ ) {
+				List<Integer> s2 = new ArrayList<>(s);
+				s2.set(i, 1-s.get(i));
+				next.put(s2, (s.get(i)==0?2.0:0.5));
+			}
+			return next;
+		});
+	}
+
+}
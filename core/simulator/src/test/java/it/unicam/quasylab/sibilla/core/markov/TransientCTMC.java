@@ -25,8 +25,11 @@ package it.unicam.quasylab.sibilla.core.markov;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -119,6 +122,28 @@ class TransientCTMC {
 		}
 	}
 
+	@Test
+	void testTransientMultipleTimes() {
+		ContinuousTimeMarkovChain<Integer> ctmc = generateCTMC();
+		TransientProbabilityContinuousSolver<Integer> solver = new TransientProbabilityContinuousSolver<Integer>(ctmc, 1.0E-6, 0);
+		List<Double> times = Arrays.stream(time).boxed().collect(Collectors.toList());
+		List<Map<Integer,Double>> probs = solver.compute(times);
+		assertEquals(time.length, probs.size());
+		for( int i=0 ; i<time.length; i++ ) {
+			assertEquals(resultsTransient[i][0],probs.get(i).getOrDefault(0, 0.0),0.000001);
+			assertEquals(resultsTransient[i][1],probs.get(i).get(1),0.000001);
+		}
+	}
+
+	@Test
+	void testSteadyState() {
+		ContinuousTimeMarkovChain<Integer> ctmc = generateCTMC();
+		SteadyStateSolver<Integer> solver = new SteadyStateSolver<Integer>(ctmc, 0);
+		Map<Integer,Double> prob = solver.compute();
+		assertEquals(0.6,prob.get(0),0.000001);
+		assertEquals(0.4,prob.get(1),0.000001);
+	}
+
 	private ContinuousTimeMarkovChain<Integer> generateCTMC() {
 		ContinuousTimeMarkovChain<Integer> ctmc = new ContinuousTimeMarkovChain<Integer>();
 		Map<Integer,Double> next0 = new HashMap<>();
@@ -0,0 +1,75 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.markov;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UnboundedReachabilityDTMC {
+
+	private static final int N = 100;
+
+	@Test
+	void testSlowMixingChain() {
+		DiscreteTimeMarkovChain<Integer> dtmc = generateGamblersRuin();
+		UnboundedReachabilitySolver<Integer> solver = new UnboundedReachabilitySolver<>(dtmc, s -> s.intValue()==N);
+		Map<Integer,Double> prob = solver.compute();
+		for( int s=0 ; s<=N ; s++ ) {
+			assertEquals(((double) s)/N, prob.getOrDefault(s, 0.0), 1.0E-8);
+		}
+	}
+
+	@Test
+	void testMaxIterations() {
+		DiscreteTimeMarkovChain<Integer> dtmc = generateGamblersRuin();
+		UnboundedReachabilitySolver<Integer> solver = new UnboundedReachabilitySolver<>(dtmc, s -> s.intValue()==N);
+		solver.setMaxIterations(100);
+		assertThrows(IllegalStateException.class, solver::compute);
+	}
+
+	/*
+	 * Fair gambler's ruin on 0..N: state s reaches N before 0 with probability s/N, while
+	 * successive iterates get closer only by a factor cos(pi/N) at each step.
+	 */
+	private DiscreteTimeMarkovChain<Integer> generateGamblersRuin() {
+		DiscreteTimeMarkovChain<Integer> dtmc = new DiscreteTimeMarkovChain<>();
+		for( int s=0 ; s<=N ; s++ ) {
+			Map<Integer,Double> next = new HashMap<>();
+			if ((s==0)||(s==N)) {
+				next.put(s, 1.0);
+			} else {
+				next.put(s-1, 0.5);
+				next.put(s+1, 0.5);
+			}
+			dtmc.add(s, next);
+		}
+		return dtmc;
+	}
+
+}
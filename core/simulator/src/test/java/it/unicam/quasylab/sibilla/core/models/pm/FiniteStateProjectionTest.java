@@ -0,0 +1,87 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.models.pm;
+
+import it.unicam.quasylab.sibilla.core.models.pm.util.PopulationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiniteStateProjectionTest {
+
+    private static final double BIRTH_RATE = 10.0;
+    private static final double DEATH_RATE = 1.0;
+
+    @Test
+    void testImmigrationDeathIsPoisson() {
+        FiniteStateProjection fsp = new FiniteStateProjection(immigrationDeathModel(), new PopulationState(new int[] { 0 }), 1.0E-6, 1000);
+        List<FiniteStateProjection.Result> results = fsp.compute(List.of(0.5, 1.0, 2.0));
+        for (int j = 0; j < results.size(); j++) {
+            double t = List.of(0.5, 1.0, 2.0).get(j);
+            double mean = BIRTH_RATE / DEATH_RATE * (1 - Math.exp(-DEATH_RATE * t));
+            FiniteStateProjection.Result result = results.get(j);
+            assertTrue(result.getErrorBound() <= 1.0E-6);
+            double p = Math.exp(-mean);
+            for (int n = 0; n < 20; n++) {
+                assertEquals(p, result.getDistribution().getOrDefault(new PopulationState(new int[] { n }), 0.0), 1.0E-6);
+                p = p * mean / (n + 1);
+            }
+            assertEquals(mean, result.expectedValue(s -> s.getOccupancy(0)), 1.0E-4);
+        }
+    }
+
+    @Test
+    void testMaximalNumberOfStates() {
+        FiniteStateProjection fsp = new FiniteStateProjection(immigrationDeathModel(), new PopulationState(new int[] { 0 }), 1.0E-9, 8);
+        FiniteStateProjection.Result result = fsp.compute(2.0);
+        assertEquals(8, fsp.numberOfStates());
+        assertTrue(result.getErrorBound() > 1.0E-9);
+        assertEquals(1.0, result.probability(s -> true) + result.getErrorBound(), 1.0E-6);
+    }
+
+    @Test
+    void testRandomlySampledRulesAreRejected() {
+        PopulationRegistry registry = PopulationRegistry.createRegistry("A", "B");
+        List<PopulationRule> rules = List.of(
+                new UnicastRule("infect", s -> 1.0, 0, rg -> 0, new UnicastRule.UnicastReceiver(1, s -> 1.0, rg -> 0))
+        );
+        PopulationModel model = new PopulationModel(registry, rules, new HashMap<>(), new HashMap<>());
+        assertThrows(IllegalArgumentException.class, () -> new FiniteStateProjection(model, new PopulationState(new int[] { 1, 1 }), 1.0E-6, 1000));
+    }
+
+    private PopulationModel immigrationDeathModel() {
+        PopulationRegistry registry = PopulationRegistry.createRegistry("A");
+        List<PopulationRule> rules = List.of(
+                new ReactionRule("birth", new Population[] {}, new Population[] { new Population(0) }, (t, s) -> BIRTH_RATE),
+                new ReactionRule("death", new Population[] { new Population(0) }, new Population[] {}, (t, s) -> DEATH_RATE * s.getOccupancy(0))
+        );
+        return new PopulationModel(registry, rules, new HashMap<>(), new HashMap<>());
+    }
+
+}
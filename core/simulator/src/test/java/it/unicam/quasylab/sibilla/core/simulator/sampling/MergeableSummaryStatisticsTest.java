@@ -0,0 +1,72 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.simulator.sampling;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MergeableSummaryStatisticsTest {
+
+	@Test
+	void testMergeIsEquivalentToSequentialAdd() {
+		Random r = new Random(1);
+		SummaryStatistics expected = new SummaryStatistics();
+		MergeableSummaryStatistics[] partial = new MergeableSummaryStatistics[4];
+		for( int i=0 ; i<partial.length ; i++ ) {
+			partial[i] = new MergeableSummaryStatistics();
+		}
+		for( int i=0 ; i<1000 ; i++ ) {
+			double v = r.nextGaussian()*10+5;
+			expected.addValue(v);
+			partial[i%(i<100?1:partial.length)].addValue(v);
+		}
+		MergeableSummaryStatistics actual = new MergeableSummaryStatistics();
+		for (MergeableSummaryStatistics p: partial) {
+			actual.merge(p);
+		}
+		assertEquals(expected.getN(), actual.getN());
+		assertEquals(expected.getMean(), actual.getMean(), 1e-10);
+		assertEquals(expected.getVariance(), actual.getVariance(), 1e-8);
+		assertEquals(expected.getMin(), actual.getMin());
+		assertEquals(expected.getMax(), actual.getMax());
+		assertEquals(expected.getSum(), actual.getSum(), 1e-8);
+	}
+
+	@Test
+	void testMergeOfEmptySummaries() {
+		MergeableSummaryStatistics s = new MergeableSummaryStatistics();
+		s.merge(new MergeableSummaryStatistics());
+		assertEquals(0, s.getN());
+		s.addValue(3.0);
+		s.merge(new MergeableSummaryStatistics());
+		assertEquals(1, s.getN());
+		assertEquals(3.0, s.getMean());
+		assertEquals(0.0, s.getVariance());
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.simulator.sampling;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+	@Test
+	void testPercentilesAreExactBeforeCompaction() {
+		Random r = new Random(1);
+		DescriptiveStatistics expected = new DescriptiveStatistics();
+		QuantileSketch first = new QuantileSketch(1024);
+		QuantileSketch second = new QuantileSketch(1024);
+		for( int i=0 ; i<500 ; i++ ) {
+			double v = r.nextGaussian();
+			expected.addValue(v);
+			(i%2==0?first:second).addValue(v);
+		}
+		first.merge(second);
+		for (double p: new double[] { 25, 50, 75, 100 }) {
+			assertEquals(expected.getPercentile(p), first.getPercentile(p));
+		}
+		assertEquals(expected.getMean(), first.getMean(), 1e-10);
+		assertEquals(expected.getMin(), first.getMin());
+		assertEquals(expected.getMax(), first.getMax());
+	}
+
+	@Test
+	void testMergedSketchesAreBoundedAndAccurate() {
+		Random r = new Random(2);
+		int n = 200000;
+		double[] values = new double[n];
+		QuantileSketch[] partial = new QuantileSketch[8];
+		for( int i=0 ; i<partial.length ; i++ ) {
+			partial[i] = new QuantileSketch(256);
+		}
+		for( int i=0 ; i<n ; i++ ) {
+			values[i] = r.nextGaussian()*10+5;
+			partial[i%partial.length].addValue(values[i]);
+		}
+		QuantileSketch sketch = new QuantileSketch(256);
+		for (QuantileSketch p: partial) {
+			sketch.merge(p);
+		}
+		Arrays.sort(values);
+		assertEquals(n, sketch.getN());
+		assertTrue(sketch.getRetainedValues() < 256*12);
+		for (double p: new double[] { 1, 25, 50, 75, 99 }) {
+			double rank = (double) Math.abs(Arrays.binarySearch(values, sketch.getPercentile(p)))/n;
+			assertEquals(p/100, rank, 0.01);
+		}
+	}
+
+	@Test
+	void testSerializationKeepsTheSketch() throws IOException, ClassNotFoundException {
+		Random r = new Random(3);
+		QuantileSketch sketch = new QuantileSketch(64);
+		for( int i=0 ; i<10000 ; i++ ) {
+			sketch.addValue(r.nextDouble());
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(sketch);
+		}
+		QuantileSketch copy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (QuantileSketch) in.readObject();
+		}
+		assertTrue(bytes.size() < 8*64*10);
+		assertEquals(sketch.getN(), copy.getN());
+		for (double p: new double[] { 10, 50, 90 }) {
+			assertEquals(sketch.getPercentile(p), copy.getPercentile(p));
+		}
+		copy.addValue(0.5);
+		assertEquals(sketch.getN()+1, copy.getN());
+	}
+
+}
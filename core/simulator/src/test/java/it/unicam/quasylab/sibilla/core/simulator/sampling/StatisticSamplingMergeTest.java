@@ -0,0 +1,83 @@
+/*
+ * Sibilla:  a Java framework designed to support analysis of Collective
+ * Adaptive Systems.
+ *
+ *             Copyright (C) 2020.
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unicam.quasylab.sibilla.core.simulator.sampling;
+
+import it.unicam.quasylab.sibilla.core.models.pm.PopulationState;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatisticSamplingMergeTest {
+
+	@Test
+	void testMergedDescriptiveStatisticsAreExact() {
+		StatisticSampling<PopulationState> sampling = DescriptiveStatisticSampling.measure("x", 1, 1.0, s -> 0.0);
+		DescriptiveStatistics expected = new DescriptiveStatistics();
+		fill(sampling, expected);
+		assertArrayEquals(new double[] { 0.0,
+				expected.getMin(),
+				expected.getPercentile(25),
+				expected.getMean(),
+				expected.getPercentile(50),
+				expected.getPercentile(75),
+				expected.getMax() }, sampling.getDataRow(0), 1e-12);
+	}
+
+	@Test
+	void testMergedSketchesKeepExactMoments() {
+		StatisticSampling<PopulationState> sampling = SketchStatisticSampling.measure("x", 1, 1.0, s -> 0.0, 64);
+		DescriptiveStatistics expected = new DescriptiveStatistics();
+		fill(sampling, expected);
+		double[] row = sampling.getDataRow(0);
+		assertEquals(expected.getMin(), row[1]);
+		assertEquals(expected.getMean(), row[3], 1e-12);
+		assertEquals(expected.getMax(), row[6]);
+		assertEquals(expected.getPercentile(50), row[4], 0.1);
+	}
+
+	/*
+	 * Records 5000 values, more than a sketch can store without compacting, in four empty
+	 * copies of the given sampling function and merges them into it.
+	 */
+	private void fill(StatisticSampling<PopulationState> sampling, DescriptiveStatistics expected) {
+		Random r = new Random(3);
+		StatisticSampling<PopulationState>[] partial = new StatisticSampling[4];
+		for( int i=0 ; i<partial.length ; i++ ) {
+			partial[i] = (StatisticSampling<PopulationState>) sampling.getEmptyCopy();
+		}
+		for( int i=0 ; i<5000 ; i++ ) {
+			double v = r.nextGaussian();
+			expected.addValue(v);
+			partial[i%partial.length].recordValues(new double[] { v });
+		}
+		for (StatisticSampling<PopulationState> p: partial) {
+			sampling.merge(p);
+		}
+	}
+
+}